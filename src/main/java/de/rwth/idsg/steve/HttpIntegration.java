@@ -0,0 +1,40 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The external HTTP services that SteVe calls. Each of them has its own connection pool, timeouts, concurrency limit
+ * and circuit breaker, so that a slow or failing one does not hold up the others.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum HttpIntegration {
+    TARIFF("tariff"),
+    WALLET("wallet"),
+    NOTIFICATION("notification"),
+    SCHEDULE_NOTIFY("schedule.notify"),
+    UPDATE_TRANSACTION("update.transaction"),
+    PAYOUT("payout");
+
+    // Used in the property keys: integration.<propertyName>.*
+    private final String propertyName;
+}
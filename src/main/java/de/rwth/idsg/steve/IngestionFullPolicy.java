@@ -0,0 +1,48 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve;
+
+/**
+ * What to do with an incoming message when the ingestion queue of its partition is full.
+ */
+public enum IngestionFullPolicy {
+    /**
+     * Block the calling (WebSocket) thread until there is room. The charge point will not receive its response
+     * before that, which naturally throttles it.
+     */
+    BLOCK,
+    /**
+     * Append the message to a file on disk and respond immediately. Spilled messages are stored later when the
+     * queue has drained, but they do not take part in billing anymore, since newer samples may already have been
+     * billed by then.
+     */
+    SPILL;
+
+    public static IngestionFullPolicy fromName(String v) {
+        if (v == null) {
+            return BLOCK;
+        }
+        for (IngestionFullPolicy p : IngestionFullPolicy.values()) {
+            if (p.name().equalsIgnoreCase(v)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Could not find a valid IngestionFullPolicy for name: " + v);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve;
+
+/**
+ * How the samples of the MeterValues of transactions are stored.
+ */
+public enum MeterValueStorage {
+    /**
+     * One row per sample in transaction_meter_values.
+     */
+    ROWS,
+    /**
+     * The samples of a transaction are collected in memory and written as compressed blocks of a few minutes into
+     * transaction_meter_value_block. An open block is written again every few minutes, so that a crash loses at
+     * most the samples since then.
+     */
+    BLOCKS;
+
+    public static MeterValueStorage fromName(String v) {
+        if (v == null) {
+            return ROWS;
+        }
+        for (MeterValueStorage s : MeterValueStorage.values()) {
+            if (s.name().equalsIgnoreCase(v)) {
+                return s;
+            }
+        }
+        throw new IllegalArgumentException("Could not find a valid MeterValueStorage for name: " + v);
+    }
+}
@@ -110,14 +110,21 @@ public class SteveAppContext {
         ServletHolder web = new ServletHolder("spring-dispatcher", new DispatcherServlet(springContext));
         ServletHolder cxf = new ServletHolder("cxf", new CXFServlet());
 
+        // Controllers may return a CompletableFuture to release the thread while waiting for a charge point
+        web.setAsyncSupported(true);
+
         ctx.addEventListener(new ContextLoaderListener(springContext));
         ctx.addServlet(web, CONFIG.getSpringMapping());
         ctx.addServlet(cxf, CONFIG.getCxfMapping() + "/*");
 
         if (CONFIG.getProfile().isProd()) {
 
+            FilterHolder securityFilter =
+                new FilterHolder(new DelegatingFilterProxy(AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME));
+            securityFilter.setAsyncSupported(true);
+
             ctx.addFilter(
-                new FilterHolder(new DelegatingFilterProxy(AbstractSecurityWebApplicationInitializer.DEFAULT_FILTER_NAME)),
+                securityFilter,
                 CONFIG.getSpringMapping() + "*",
                 EnumSet.allOf(DispatcherType.class)
             );
@@ -26,6 +26,9 @@ import lombok.Getter;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import java.util.EnumMap;
+import java.util.Map;
+
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 19.08.2014
@@ -62,6 +65,10 @@ public enum SteveConfiguration {
     private final DB db2;
     private final DB db3;
     private final Jetty jetty;
+    private final Ingestion ingestion;
+    private final Notification notification;
+    private final Http httpDefault;
+    private final Map<HttpIntegration, Http> http;
 
     SteveConfiguration() {
         PropertiesFileLoader p = new PropertiesFileLoader("main.properties");
@@ -89,6 +96,9 @@ public enum SteveConfiguration {
                 .userName(p.getString("db.user"))
                 .password(p.getString("db.password"))
                 .sqlLogging(p.getBoolean("db.sql.logging"))
+                .pool(readPool(p, "db", 20, 5))
+                .replica(readReplica(p, "db"))
+                .replicaMaxLagSeconds(useFallbackIfNotSet(p.getOptionalInt("db.replica.max.lag.seconds"), 5))
                 .build();
 
         db3 = DB.builder()
@@ -98,6 +108,9 @@ public enum SteveConfiguration {
                 .userName(p.getString("db3.user"))
                 .password(p.getString("db3.password"))
                 .sqlLogging(p.getBoolean("db3.sql.logging"))
+                .pool(readPool(p, "db3", 5, 1))
+                .replica(readReplica(p, "db3"))
+                .replicaMaxLagSeconds(useFallbackIfNotSet(p.getOptionalInt("db3.replica.max.lag.seconds"), 5))
                 .build();
 
 
@@ -108,6 +121,9 @@ public enum SteveConfiguration {
                 .userName(p.getString("db2.user"))
                 .password(p.getString("db2.password"))
                 .sqlLogging(p.getBoolean("db2.sql.logging"))
+                .pool(readPool(p, "db2", 10, 2))
+                .replica(readReplica(p, "db2"))
+                .replicaMaxLagSeconds(useFallbackIfNotSet(p.getOptionalInt("db2.replica.max.lag.seconds"), 5))
                 .build();
 
         PasswordEncoder encoder = new BCryptPasswordEncoder();
@@ -127,8 +143,55 @@ public enum SteveConfiguration {
                 .autoRegisterUnknownStations(p.getOptionalBoolean("auto.register.unknown.stations"))
                 .wsSessionSelectStrategy(
                         WsSessionSelectStrategyEnum.fromName(p.getString("ws.session.select.strategy")))
+                .callTimeoutSeconds(useFallbackIfNotSet(p.getOptionalInt("ws.call.timeout.seconds"), 30))
+                .maxPendingCallsPerSession(useFallbackIfNotSet(p.getOptionalInt("ws.call.max.pending.per.session"), 50))
+                .handshakeMaxConcurrent(useFallbackIfNotSet(p.getOptionalInt("ws.handshake.max.concurrent"), 50))
+                .handshakeRatePerSecond(useFallbackIfNotSet(p.getOptionalInt("ws.handshake.rate.per.second"), 20))
+                .handshakeBurst(useFallbackIfNotSet(p.getOptionalInt("ws.handshake.burst"), 100))
+                .handshakeRetryAfterMaxSeconds(useFallbackIfNotSet(p.getOptionalInt("ws.handshake.retry.after.max.seconds"), 30))
+                .build();
+
+        ingestion = Ingestion.builder()
+                .meterValueWorkers(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.workers"), 4))
+                .meterValueQueueCapacity(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.queue.capacity"), 10_000))
+                .meterValueBatchSize(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.batch.size"), 200))
+                .meterValueFullPolicy(IngestionFullPolicy.fromName(p.getOptionalString("ingestion.metervalue.full.policy")))
+                .meterValueSpillDirectory(useFallbackIfNotSet(p.getOptionalString("ingestion.metervalue.spill.directory"),
+                        System.getProperty("java.io.tmpdir") + "/steve-metervalues"))
+                .meterValueStopAwaitMillis(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.stop.await.millis"), 1_000))
+                .meterValueStorage(MeterValueStorage.fromName(p.getOptionalString("ingestion.metervalue.storage")))
+                .meterValueBlockMinutes(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.block.minutes"), 15))
+                .meterValueBlockFlushSeconds(useFallbackIfNotSet(p.getOptionalInt("ingestion.metervalue.block.flush.seconds"), 600))
+                .wsLogBufferSize(useFallbackIfNotSet(p.getOptionalInt("ingestion.wslog.buffer.size"), 16_384))
+                .wsLogBatchSize(useFallbackIfNotSet(p.getOptionalInt("ingestion.wslog.batch.size"), 500))
+                .wsLogRetentionDays(useFallbackIfNotSet(p.getOptionalInt("ingestion.wslog.retention.days"), 30))
+                .connectionWorkers(useFallbackIfNotSet(p.getOptionalInt("ingestion.connection.workers"), 2))
+                .connectionQueueCapacity(useFallbackIfNotSet(p.getOptionalInt("ingestion.connection.queue.capacity"), 5_000))
+                .connectionBatchSize(useFallbackIfNotSet(p.getOptionalInt("ingestion.connection.batch.size"), 200))
                 .build();
 
+        notification = Notification.builder()
+                .pushWindowSeconds(useFallbackIfNotSet(p.getOptionalInt("notification.push.window.seconds"), 10))
+                .pushQueueCapacity(useFallbackIfNotSet(p.getOptionalInt("notification.push.queue.capacity"), 10_000))
+                .pushBatchSize(useFallbackIfNotSet(p.getOptionalInt("notification.push.batch.size"), 20))
+                .pushWorkers(useFallbackIfNotSet(p.getOptionalInt("notification.push.workers"), 2))
+                .pushMaxAttempts(useFallbackIfNotSet(p.getOptionalInt("notification.push.max.attempts"), 5))
+                .build();
+
+        httpDefault = readHttp(p, "integration.default", Http.builder()
+                .connectTimeoutMillis(2_000)
+                .readTimeoutMillis(5_000)
+                .maxConcurrent(20)
+                .keepAliveSeconds(30)
+                .circuitFailureThreshold(5)
+                .circuitOpenSeconds(30)
+                .build());
+
+        http = new EnumMap<>(HttpIntegration.class);
+        for (HttpIntegration i : HttpIntegration.values()) {
+            http.put(i, readHttp(p, "integration." + i.getPropertyName(), httpDefault));
+        }
+
         validate();
     }
 
@@ -152,6 +215,54 @@ public enum SteveConfiguration {
         }
     }
 
+    private static int useFallbackIfNotSet(Integer value, int fallback) {
+        return value == null ? fallback : value;
+    }
+
+    private static Pool readPool(PropertiesFileLoader p, String db, int maxSize, int minIdle) {
+        String prefix = db + ".pool";
+        return Pool.builder()
+                .maxSize(useFallbackIfNotSet(p.getOptionalInt(prefix + ".max.size"), maxSize))
+                .minIdle(useFallbackIfNotSet(p.getOptionalInt(prefix + ".min.idle"), minIdle))
+                .connectionTimeoutMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".connection.timeout.millis"), 30_000))
+                .idleTimeoutMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".idle.timeout.millis"), 300_000))
+                // https://github.com/steve-community/steve/issues/736
+                .maxLifetimeMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".max.lifetime.millis"), 580_000))
+                .leakDetectionThresholdMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".leak.detection.millis"), 0))
+                .build();
+    }
+
+    /**
+     * A read-only replica is optional. Apart from the host, its settings default to the ones of the primary.
+     */
+    private static DB readReplica(PropertiesFileLoader p, String db) {
+        String prefix = db + ".replica";
+        String ip = p.getOptionalString(prefix + ".ip");
+        if (ip == null) {
+            return null;
+        }
+        return DB.builder()
+                .ip(ip)
+                .port(useFallbackIfNotSet(p.getOptionalInt(prefix + ".port"), p.getInt(db + ".port")))
+                .schema(useFallbackIfNotSet(p.getOptionalString(prefix + ".schema"), p.getString(db + ".schema")))
+                .userName(useFallbackIfNotSet(p.getOptionalString(prefix + ".user"), p.getString(db + ".user")))
+                .password(useFallbackIfNotSet(p.getOptionalString(prefix + ".password"), p.getString(db + ".password")))
+                .sqlLogging(p.getBoolean(db + ".sql.logging"))
+                .pool(readPool(p, prefix, 10, 2))
+                .build();
+    }
+
+    private static Http readHttp(PropertiesFileLoader p, String prefix, Http fallback) {
+        return Http.builder()
+                .connectTimeoutMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".connect.timeout.millis"), fallback.connectTimeoutMillis))
+                .readTimeoutMillis(useFallbackIfNotSet(p.getOptionalInt(prefix + ".read.timeout.millis"), fallback.readTimeoutMillis))
+                .maxConcurrent(useFallbackIfNotSet(p.getOptionalInt(prefix + ".max.concurrent"), fallback.maxConcurrent))
+                .keepAliveSeconds(useFallbackIfNotSet(p.getOptionalInt(prefix + ".keep.alive.seconds"), fallback.keepAliveSeconds))
+                .circuitFailureThreshold(useFallbackIfNotSet(p.getOptionalInt(prefix + ".circuit.failure.threshold"), fallback.circuitFailureThreshold))
+                .circuitOpenSeconds(useFallbackIfNotSet(p.getOptionalInt(prefix + ".circuit.open.seconds"), fallback.circuitOpenSeconds))
+                .build();
+    }
+
     private String sanitizeContextPath(String s) {
         if (s == null || "/".equals(s)) {
             return "";
@@ -169,6 +280,43 @@ public enum SteveConfiguration {
             throw new IllegalArgumentException(
                     "HTTP and HTTPS are both disabled. Well, how do you want to access the server, then?");
         }
+        if (ocpp.handshakeMaxConcurrent < 1 || ocpp.handshakeRatePerSecond < 1 || ocpp.handshakeBurst < 1
+                || ocpp.handshakeRetryAfterMaxSeconds < 1) {
+            throw new IllegalArgumentException("WebSocket handshake limits and Retry-After must be positive");
+        }
+        if (ingestion.meterValueWorkers < 1 || ingestion.meterValueQueueCapacity < 1 || ingestion.meterValueBatchSize < 1) {
+            throw new IllegalArgumentException("MeterValues ingestion workers, queue capacity and batch size must be positive");
+        }
+        if (ingestion.meterValueStopAwaitMillis < 0) {
+            throw new IllegalArgumentException("MeterValues stop await millis must not be negative");
+        }
+        if (ingestion.meterValueBlockMinutes < 1 || ingestion.meterValueBlockFlushSeconds < 1) {
+            throw new IllegalArgumentException("MeterValues block minutes and flush seconds must be positive");
+        }
+        if (Integer.bitCount(ingestion.wsLogBufferSize) != 1 || ingestion.wsLogBatchSize < 1) {
+            throw new IllegalArgumentException("WebSocket log buffer size must be a power of 2 and batch size positive");
+        }
+        if (ingestion.connectionWorkers < 1 || ingestion.connectionQueueCapacity < 1 || ingestion.connectionBatchSize < 1) {
+            throw new IllegalArgumentException("Connection event workers, queue capacity and batch size must be positive");
+        }
+        if (notification.pushQueueCapacity < 1 || notification.pushBatchSize < 1 || notification.pushWorkers < 1
+                || notification.pushMaxAttempts < 1) {
+            throw new IllegalArgumentException("Push notification queue capacity, batch size, workers and attempts must be positive");
+        }
+        for (DB d : new DB[] {db, db2, db3, db.replica, db2.replica, db3.replica}) {
+            if (d != null && (d.pool.maxSize < 1 || d.pool.minIdle < 0 || d.pool.minIdle > d.pool.maxSize)) {
+                throw new IllegalArgumentException("Pool of '" + d.schema + "' must have a positive size, and at most that many idle connections");
+            }
+        }
+        if (db.replicaMaxLagSeconds < 0 || db2.replicaMaxLagSeconds < 0 || db3.replicaMaxLagSeconds < 0) {
+            throw new IllegalArgumentException("Max replica lag must not be negative");
+        }
+        http.forEach((integration, h) -> {
+            if (h.connectTimeoutMillis < 1 || h.readTimeoutMillis < 1 || h.maxConcurrent < 1 || h.keepAliveSeconds < 1
+                    || h.circuitFailureThreshold < 1 || h.circuitOpenSeconds < 1) {
+                throw new IllegalArgumentException("HTTP settings of " + integration + " must be positive");
+            }
+        });
     }
 
     // -------------------------------------------------------------------------
@@ -203,6 +351,23 @@ public enum SteveConfiguration {
         private final String userName;
         private final String password;
         private final boolean sqlLogging;
+        private final Pool pool;
+        // Optional. Read-only queries go there, as long as it is not further behind than replicaMaxLagSeconds
+        private final DB replica;
+        private final int replicaMaxLagSeconds;
+    }
+
+    // Connection pool of one database
+    @Builder
+    @Getter
+    public static class Pool {
+        private final int maxSize;
+        private final int minIdle;
+        private final int connectionTimeoutMillis;
+        private final int idleTimeoutMillis;
+        private final int maxLifetimeMillis;
+        // 0 disables it
+        private final int leakDetectionThresholdMillis;
     }
 
     // Credentials for Web interface access
@@ -227,6 +392,61 @@ public enum SteveConfiguration {
     public static class Ocpp {
         private final boolean autoRegisterUnknownStations;
         private final WsSessionSelectStrategy wsSessionSelectStrategy;
+        private final int callTimeoutSeconds;
+        private final int maxPendingCallsPerSession;
+        private final int handshakeMaxConcurrent;
+        private final int handshakeRatePerSecond;
+        private final int handshakeBurst;
+        private final int handshakeRetryAfterMaxSeconds;
+    }
+
+    // Asynchronous ingestion of OCPP messages
+    @Builder
+    @Getter
+    public static class Ingestion {
+        private final int meterValueWorkers;
+        private final int meterValueQueueCapacity;
+        private final int meterValueBatchSize;
+        private final IngestionFullPolicy meterValueFullPolicy;
+        private final String meterValueSpillDirectory;
+        private final int meterValueStopAwaitMillis;
+        private final MeterValueStorage meterValueStorage;
+        private final int meterValueBlockMinutes;
+        private final int meterValueBlockFlushSeconds;
+
+        // Must be a power of 2
+        private final int wsLogBufferSize;
+        private final int wsLogBatchSize;
+        private final int wsLogRetentionDays;
+
+        private final int connectionWorkers;
+        private final int connectionQueueCapacity;
+        private final int connectionBatchSize;
+    }
+
+    // Background delivery of push notifications
+    @Builder
+    @Getter
+    public static class Notification {
+        private final int pushWindowSeconds;
+        private final int pushQueueCapacity;
+        private final int pushBatchSize;
+        private final int pushWorkers;
+        private final int pushMaxAttempts;
+    }
+
+    // Outbound HTTP calls, per integration
+    @Builder
+    @Getter
+    public static class Http {
+        private final int connectTimeoutMillis;
+        private final int readTimeoutMillis;
+        // Size of the connection pool, and how many calls may run at a time
+        private final int maxConcurrent;
+        private final int keepAliveSeconds;
+        // Consecutive failures that open the circuit, and for how long it stays open
+        private final int circuitFailureThreshold;
+        private final int circuitOpenSeconds;
     }
 
 }
@@ -73,4 +73,11 @@ public class SteveException extends RuntimeException {
             super(message);
         }
     }
+
+    public static class Timeout extends SteveException {
+
+        public Timeout(String template, Object arg1) {
+            super(format(template, arg1));
+        }
+    }
 }
@@ -22,8 +22,6 @@ import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
-import com.mysql.cj.conf.PropertyKey;
-import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import de.rwth.idsg.steve.SteveConfiguration;
 import de.rwth.idsg.steve.service.DummyReleaseCheckService;
@@ -31,7 +29,9 @@ import de.rwth.idsg.steve.service.GithubReleaseCheckService;
 import de.rwth.idsg.steve.service.ReleaseCheckService;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.utils.InternetChecker;
+import de.rwth.idsg.steve.utils.TimerWheel;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.ConnectionProvider;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.Settings;
@@ -52,6 +52,7 @@ import org.springframework.http.converter.json.MappingJackson2HttpMessageConvert
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -84,108 +85,16 @@ import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 @ComponentScan("de.rwth.idsg.steve")
 public class BeanConfiguration implements WebMvcConfigurer {
 
-    private HikariDataSource dataSource;
     private ScheduledThreadPoolExecutor executor;
 
     /**
-     * https://github.com/brettwooldridge/HikariCP/wiki/MySQL-Configuration
+     * The pools are closed after the DSLContexts built on them, which Spring destroys after the beans using them.
      */
-    private void initDataSource() {
-        SteveConfiguration.DB dbConfig = CONFIG.getDb();
-
-        HikariConfig hc = new HikariConfig();
-
-        // set standard params
-        hc.setJdbcUrl("jdbc:mysql://" + dbConfig.getIp() + ":" + dbConfig.getPort() + "/" + dbConfig.getSchema());
-        hc.setUsername(dbConfig.getUserName());
-        hc.setPassword(dbConfig.getPassword());
-
-        hc.setMaximumPoolSize(10);
-        hc.setMinimumIdle(2);
-        hc.setIdleTimeout(300000);     // 5 min
-        hc.setMaxLifetime(580000);     // 580 sec
-        hc.setConnectionTimeout(30000);
-
-        // set non-standard params
-        hc.addDataSourceProperty(PropertyKey.cachePrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.useServerPrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSize.getKeyName(), 250);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSqlLimit.getKeyName(), 2048);
-        hc.addDataSourceProperty(PropertyKey.characterEncoding.getKeyName(), "utf8");
-        hc.addDataSourceProperty(PropertyKey.connectionTimeZone.getKeyName(), CONFIG.getTimeZoneId());
-        hc.addDataSourceProperty(PropertyKey.useSSL.getKeyName(), true);
-
-        // https://github.com/steve-community/steve/issues/736
-        hc.setMaxLifetime(580_000);
-
-        dataSource = new HikariDataSource(hc);
+    @Bean(destroyMethod = "close")
+    public DatabasePools databasePools() {
+        return new DatabasePools();
     }
 
-    private void initSecondaryDataSource() {
-        SteveConfiguration.DB dbConfig = CONFIG.getDb2();
-
-        HikariConfig hc = new HikariConfig();
-
-        // set standard params
-        hc.setJdbcUrl("jdbc:mysql://" + dbConfig.getIp() + ":" + dbConfig.getPort() + "/" + dbConfig.getSchema());
-        hc.setUsername(dbConfig.getUserName());
-        hc.setPassword(dbConfig.getPassword());
-
-        hc.setMaximumPoolSize(10);
-        hc.setMinimumIdle(2);
-        hc.setIdleTimeout(300000);     // 5 min
-        hc.setMaxLifetime(580000);     // 580 sec
-        hc.setConnectionTimeout(30000);
-
-        // set non-standard params
-        hc.addDataSourceProperty(PropertyKey.cachePrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.useServerPrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSize.getKeyName(), 250);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSqlLimit.getKeyName(), 2048);
-        hc.addDataSourceProperty(PropertyKey.characterEncoding.getKeyName(), "utf8");
-        hc.addDataSourceProperty(PropertyKey.connectionTimeZone.getKeyName(), CONFIG.getTimeZoneId());
-        hc.addDataSourceProperty(PropertyKey.useSSL.getKeyName(), true);
-
-        // https://github.com/steve-community/steve/issues/736
-        hc.setMaxLifetime(580_000);
-
-        dataSource = new HikariDataSource(hc);
-    }
-
-
-    private void initPhpDataSource() {
-        SteveConfiguration.DB db = CONFIG.getDb3();
-
-        HikariConfig hc = new HikariConfig();
-
-        // set standard params
-        hc.setJdbcUrl("jdbc:mysql://" + db.getIp() + ":" + db.getPort() + "/" + db.getSchema());
-        hc.setUsername(db.getUserName());
-        hc.setPassword(db.getPassword());
-
-        hc.setMaximumPoolSize(10);
-        hc.setMinimumIdle(2);
-        hc.setIdleTimeout(300000);     // 5 min
-        hc.setMaxLifetime(580000);     // 580 sec
-        hc.setConnectionTimeout(30000);
-
-        // set non-standard params
-        hc.addDataSourceProperty(PropertyKey.cachePrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.useServerPrepStmts.getKeyName(), true);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSize.getKeyName(), 250);
-        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSqlLimit.getKeyName(), 2048);
-        hc.addDataSourceProperty(PropertyKey.characterEncoding.getKeyName(), "utf8");
-        hc.addDataSourceProperty(PropertyKey.connectionTimeZone.getKeyName(), CONFIG.getTimeZoneId());
-        hc.addDataSourceProperty(PropertyKey.useSSL.getKeyName(), true);
-
-        // https://github.com/steve-community/steve/issues/736
-        hc.setMaxLifetime(580_000);
-
-        dataSource = new HikariDataSource(hc);
-
-    }
-
-
     /**
      * Can we re-use DSLContext as a Spring bean (singleton)? Yes, the Spring tutorial of
      * Jooq also does it that way, but only if we do not change anything about the
@@ -201,7 +110,7 @@ public class BeanConfiguration implements WebMvcConfigurer {
     @Primary
     @Bean
     public DSLContext dslContext() {
-        initDataSource();
+        HikariDataSource dataSource = databasePools().getOrCreate("primary", CONFIG.getDb());
 
         Settings settings = new Settings()
                 // Normally, the records are "attached" to the Configuration that created (i.e. fetch/insert) them.
@@ -224,7 +133,7 @@ public class BeanConfiguration implements WebMvcConfigurer {
     @Bean
     @Qualifier("secondary")
     public DSLContext secondaryDslContext() {
-        initSecondaryDataSource();
+        HikariDataSource dataSource = databasePools().getOrCreate("secondary", CONFIG.getDb2());
 
         Settings settings = new Settings()
                 .withAttachRecords(false)
@@ -241,7 +150,7 @@ public class BeanConfiguration implements WebMvcConfigurer {
     @Bean
     @Qualifier("php")
     public DSLContext phpDslContext() {
-        initPhpDataSource();
+        HikariDataSource dataSource = databasePools().getOrCreate("php", CONFIG.getDb3());
 
         Settings settings = new Settings()
                 .withAttachRecords(false)
@@ -256,6 +165,41 @@ public class BeanConfiguration implements WebMvcConfigurer {
     }
 
 
+    /**
+     * Read-only counterparts of the contexts above, for reports and listings that can live with data that is a few
+     * seconds old. Without a configured replica, they use the same pool as their counterpart.
+     */
+    @Bean
+    @Qualifier("readOnly")
+    public DSLContext readOnlyDslContext() {
+        return readOnly(databasePools().getOrCreateReadOnly("primary", CONFIG.getDb()), CONFIG.getDb());
+    }
+
+    @Bean
+    @Qualifier("secondaryReadOnly")
+    public DSLContext secondaryReadOnlyDslContext() {
+        return readOnly(databasePools().getOrCreateReadOnly("secondary", CONFIG.getDb2()), CONFIG.getDb2());
+    }
+
+    @Bean
+    @Qualifier("phpReadOnly")
+    public DSLContext phpReadOnlyDslContext() {
+        return readOnly(databasePools().getOrCreateReadOnly("php", CONFIG.getDb3()), CONFIG.getDb3());
+    }
+
+    private static DSLContext readOnly(ConnectionProvider connectionProvider, SteveConfiguration.DB dbConfig) {
+        Settings settings = new Settings()
+                .withAttachRecords(false)
+                .withExecuteLogging(dbConfig.isSqlLogging());
+
+        org.jooq.Configuration conf = new DefaultConfiguration()
+                .set(SQLDialect.MYSQL)
+                .set(connectionProvider)
+                .set(settings);
+
+        return DSL.using(conf);
+    }
+
     @Bean
     public ScheduledExecutorService scheduledExecutorService() {
         ThreadFactory threadFactory = new ThreadFactoryBuilder().setNameFormat("SteVe-Executor-%d")
@@ -265,6 +209,14 @@ public class BeanConfiguration implements WebMvcConfigurer {
         return executor;
     }
 
+    /**
+     * Shared timer for deadlines and schedules. Expired tasks run on the executor above.
+     */
+    @Bean(destroyMethod = "stop")
+    public TimerWheel timerWheel() {
+        return new TimerWheel("SteVe-TimerWheel", 100, TimeUnit.MILLISECONDS, 512, scheduledExecutorService());
+    }
+
     @Bean
     public Validator validator() {
         return new LocalValidatorFactoryBean();
@@ -292,10 +244,6 @@ public class BeanConfiguration implements WebMvcConfigurer {
 
     @PreDestroy
     public void shutDown() {
-        if (dataSource != null) {
-            dataSource.close();
-        }
-
         if (executor != null) {
             gracefulShutDown(executor);
         }
@@ -341,6 +289,14 @@ public class BeanConfiguration implements WebMvcConfigurer {
         registry.addResourceHandler("/static/**").addResourceLocations("static/");
     }
 
+    /**
+     * Async requests wait for the response of a charge point, which is failed after the call timeout at the latest.
+     */
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setDefaultTimeout(TimeUnit.SECONDS.toMillis(CONFIG.getOcpp().getCallTimeoutSeconds() + 15));
+    }
+
     @Override
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/manager/signin").setViewName("signin");
@@ -0,0 +1,216 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.config;
+
+import com.mysql.cj.conf.PropertyKey;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.service.dto.ConnectionPoolStats;
+import de.rwth.idsg.steve.service.dto.ReplicaRoutingStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * The connection pools of the databases, each sized by its own settings, so that slow queries on one database
+ * cannot take the connections of another. Every pool is named, which shows up in the thread names and logs of Hikari.
+ */
+@Slf4j
+public class DatabasePools {
+
+    private final Map<String, HikariDataSource> dataSources = new LinkedHashMap<>();
+    private final Map<String, Tracker> trackers = new LinkedHashMap<>();
+    private final Map<String, ReplicaRoutingConnectionProvider> readOnlyProviders = new LinkedHashMap<>();
+
+    public synchronized HikariDataSource getOrCreate(String name, SteveConfiguration.DB dbConfig) {
+        HikariDataSource dataSource = dataSources.get(name);
+        if (dataSource == null) {
+            dataSource = create(name, dbConfig, false);
+        }
+        return dataSource;
+    }
+
+    /**
+     * For the queries that can live with slightly stale data. They go to the replica of the database, if one is
+     * configured, and otherwise to the same pool as all other queries.
+     */
+    public synchronized ReplicaRoutingConnectionProvider getOrCreateReadOnly(String name, SteveConfiguration.DB dbConfig) {
+        ReplicaRoutingConnectionProvider provider = readOnlyProviders.get(name);
+        if (provider == null) {
+            HikariDataSource primary = getOrCreate(name, dbConfig);
+            HikariDataSource replica = dbConfig.getReplica() == null
+                    ? null
+                    : create(name + "-replica", dbConfig.getReplica(), true);
+            provider = new ReplicaRoutingConnectionProvider(primary, replica, dbConfig.getReplicaMaxLagSeconds());
+            provider.checkLag();
+            readOnlyProviders.put(name, provider);
+        }
+        return provider;
+    }
+
+    @Scheduled(initialDelay = 5_000, fixedDelay = 5_000)
+    public void checkReplicas() {
+        List<ReplicaRoutingConnectionProvider> providers;
+        synchronized (this) {
+            providers = new ArrayList<>(readOnlyProviders.values());
+        }
+        // outside the lock, since an unreachable replica blocks until the connection timeout
+        providers.forEach(ReplicaRoutingConnectionProvider::checkLag);
+    }
+
+    /**
+     * https://github.com/brettwooldridge/HikariCP/wiki/MySQL-Configuration
+     */
+    private HikariDataSource create(String name, SteveConfiguration.DB dbConfig, boolean readOnly) {
+        SteveConfiguration.Pool pool = dbConfig.getPool();
+
+        HikariConfig hc = new HikariConfig();
+        hc.setPoolName(name);
+        hc.setReadOnly(readOnly);
+        if (readOnly) {
+            // a replica that is down must not prevent the start, the queries go to the primary meanwhile
+            hc.setInitializationFailTimeout(-1);
+        }
+
+        // set standard params
+        hc.setJdbcUrl("jdbc:mysql://" + dbConfig.getIp() + ":" + dbConfig.getPort() + "/" + dbConfig.getSchema());
+        hc.setUsername(dbConfig.getUserName());
+        hc.setPassword(dbConfig.getPassword());
+
+        hc.setMaximumPoolSize(pool.getMaxSize());
+        hc.setMinimumIdle(pool.getMinIdle());
+        hc.setIdleTimeout(pool.getIdleTimeoutMillis());
+        hc.setConnectionTimeout(pool.getConnectionTimeoutMillis());
+        hc.setLeakDetectionThreshold(pool.getLeakDetectionThresholdMillis());
+
+        // https://github.com/steve-community/steve/issues/736
+        hc.setMaxLifetime(pool.getMaxLifetimeMillis());
+
+        // set non-standard params
+        hc.addDataSourceProperty(PropertyKey.cachePrepStmts.getKeyName(), true);
+        hc.addDataSourceProperty(PropertyKey.useServerPrepStmts.getKeyName(), true);
+        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSize.getKeyName(), 250);
+        hc.addDataSourceProperty(PropertyKey.prepStmtCacheSqlLimit.getKeyName(), 2048);
+        hc.addDataSourceProperty(PropertyKey.characterEncoding.getKeyName(), "utf8");
+        hc.addDataSourceProperty(PropertyKey.connectionTimeZone.getKeyName(), CONFIG.getTimeZoneId());
+        hc.addDataSourceProperty(PropertyKey.useSSL.getKeyName(), true);
+
+        Tracker tracker = new Tracker();
+        hc.setMetricsTrackerFactory((poolName, poolStats) -> tracker);
+
+        HikariDataSource dataSource = new HikariDataSource(hc);
+        dataSources.put(name, dataSource);
+        trackers.put(name, tracker);
+        return dataSource;
+    }
+
+    public synchronized Map<String, ConnectionPoolStats> getStats() {
+        Map<String, ConnectionPoolStats> stats = new LinkedHashMap<>();
+        dataSources.forEach((name, dataSource) -> {
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            if (pool == null) {
+                return;
+            }
+            Tracker tracker = trackers.get(name);
+            stats.put(name, ConnectionPoolStats.builder()
+                    .active(pool.getActiveConnections())
+                    .idle(pool.getIdleConnections())
+                    .total(pool.getTotalConnections())
+                    .waiting(pool.getThreadsAwaitingConnection())
+                    .maxSize(dataSource.getMaximumPoolSize())
+                    .acquired(tracker.acquired.sum())
+                    .acquireAvgMicros(average(tracker.acquireNanos.sum(), tracker.acquired.sum()) / 1000)
+                    .acquireMaxMicros(tracker.acquireMaxNanos.get() / 1000)
+                    .timeouts(tracker.timeouts.sum())
+                    .usageAvgMillis(average(tracker.usageMillis.sum(), tracker.usages.sum()))
+                    .build());
+        });
+        return stats;
+    }
+
+    public synchronized Map<String, ReplicaRoutingStats> getReplicaStats() {
+        Map<String, ReplicaRoutingStats> stats = new LinkedHashMap<>();
+        readOnlyProviders.forEach((name, provider) -> stats.put(name, provider.getStats()));
+        return stats;
+    }
+
+    /**
+     * Closes the pools in the reverse order of their creation.
+     */
+    public synchronized void close() {
+        List<String> names = new ArrayList<>(dataSources.keySet());
+        Collections.reverse(names);
+        for (String name : names) {
+            try {
+                dataSources.get(name).close();
+            } catch (Exception e) {
+                log.error("Failed to close the connection pool '{}'", name, e);
+            }
+        }
+        dataSources.clear();
+        trackers.clear();
+        readOnlyProviders.clear();
+    }
+
+    private static long average(long sum, long count) {
+        return count == 0 ? 0 : sum / count;
+    }
+
+    /**
+     * Called by Hikari on every checkout and return of a connection, so only adds to striped counters.
+     */
+    private static class Tracker implements IMetricsTracker {
+        private final LongAdder acquired = new LongAdder();
+        private final LongAdder acquireNanos = new LongAdder();
+        private final LongAccumulator acquireMaxNanos = new LongAccumulator(Math::max, 0);
+        private final LongAdder timeouts = new LongAdder();
+        private final LongAdder usages = new LongAdder();
+        private final LongAdder usageMillis = new LongAdder();
+
+        @Override
+        public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+            acquired.increment();
+            acquireNanos.add(elapsedAcquiredNanos);
+            acquireMaxNanos.accumulate(elapsedAcquiredNanos);
+        }
+
+        @Override
+        public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+            usages.increment();
+            usageMillis.add(elapsedBorrowedMillis);
+        }
+
+        @Override
+        public void recordConnectionTimeout() {
+            timeouts.increment();
+        }
+    }
+}
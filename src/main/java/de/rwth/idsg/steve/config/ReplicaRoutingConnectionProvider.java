@@ -0,0 +1,188 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.config;
+
+import de.rwth.idsg.steve.service.dto.ReplicaRoutingStats;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.ConnectionProvider;
+import org.jooq.exception.DataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands out connections of the replica for read-only queries, as long as the replica is reachable and not further
+ * behind than the max lag. Otherwise, the queries go to the primary. Without a replica, this is the primary only.
+ * <p>
+ * The lag is not measured per query, but by {@link #checkLag()}, which is called periodically.
+ */
+@Slf4j
+public class ReplicaRoutingConnectionProvider implements ConnectionProvider {
+
+    private static final String[] STATUS_QUERIES = {"SHOW REPLICA STATUS", "SHOW SLAVE STATUS"};
+    private static final String[] LAG_COLUMNS = {"Seconds_Behind_Source", "Seconds_Behind_Master"};
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final int maxLagSeconds;
+
+    // Until the first check, the state of the replica is unknown and the primary is used
+    private volatile boolean replicaUsable = false;
+    private volatile Long lagSeconds;
+    private volatile int statusQueryIndex = 0;
+    private volatile boolean warnedNotReplicating = false;
+
+    private final LongAdder toReplica = new LongAdder();
+    private final LongAdder toPrimary = new LongAdder();
+    private final LongAdder replicaErrors = new LongAdder();
+
+    public ReplicaRoutingConnectionProvider(DataSource primary, DataSource replica, int maxLagSeconds) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    @Override
+    public Connection acquire() throws DataAccessException {
+        if (replicaUsable) {
+            try {
+                Connection connection = replica.getConnection();
+                toReplica.increment();
+                return connection;
+            } catch (SQLException e) {
+                replicaUsable = false;
+                replicaErrors.increment();
+                log.warn("Could not get a connection of the replica, using the primary until the next lag check", e);
+            }
+        }
+
+        try {
+            Connection connection = primary.getConnection();
+            toPrimary.increment();
+            return connection;
+        } catch (SQLException e) {
+            throw new DataAccessException("Error getting connection from data source " + primary, e);
+        }
+    }
+
+    @Override
+    public void release(Connection connection) throws DataAccessException {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            throw new DataAccessException("Error closing connection " + connection, e);
+        }
+    }
+
+    public void checkLag() {
+        if (replica == null) {
+            return;
+        }
+
+        Long lag;
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement()) {
+            lag = readLag(statement);
+        } catch (SQLException e) {
+            replicaErrors.increment();
+            lagSeconds = null;
+            if (replicaUsable) {
+                log.warn("Replica is not reachable, read-only queries go to the primary", e);
+            }
+            replicaUsable = false;
+            return;
+        }
+
+        boolean usable = lag != null && lag <= maxLagSeconds;
+        if (usable != replicaUsable) {
+            if (usable) {
+                log.info("Replica is {}s behind, read-only queries go to the replica", lag);
+            } else {
+                log.warn("Replica is {}s behind (max {}s), read-only queries go to the primary",
+                        lag == null ? "unknown" : lag, maxLagSeconds);
+            }
+        }
+        lagSeconds = lag;
+        replicaUsable = usable;
+    }
+
+    public ReplicaRoutingStats getStats() {
+        return ReplicaRoutingStats.builder()
+                .replicaConfigured(replica != null)
+                .replicaUsable(replicaUsable)
+                .lagSeconds(lagSeconds)
+                .maxLagSeconds(maxLagSeconds)
+                .toReplica(toReplica.sum())
+                .toPrimary(toPrimary.sum())
+                .replicaErrors(replicaErrors.sum())
+                .build();
+    }
+
+    /**
+     * @return the lag of the replica in seconds, or null if the replication is not running
+     */
+    private Long readLag(Statement statement) throws SQLException {
+        ResultSet rs;
+        try {
+            rs = statement.executeQuery(STATUS_QUERIES[statusQueryIndex]);
+        } catch (SQLException e) {
+            // older MySQL and MariaDB versions know only the legacy statement
+            if (statusQueryIndex + 1 == STATUS_QUERIES.length) {
+                throw e;
+            }
+            statusQueryIndex++;
+            rs = statement.executeQuery(STATUS_QUERIES[statusQueryIndex]);
+        }
+
+        try (rs) {
+            if (!rs.next()) {
+                // not set up as a replica at all, e.g. a copy that is kept in sync otherwise
+                if (!warnedNotReplicating) {
+                    log.warn("The replica does not report a replication status, treating it as up to date");
+                    warnedNotReplicating = true;
+                }
+                return 0L;
+            }
+
+            String column = findLagColumn(rs.getMetaData());
+            if (column == null) {
+                return null;
+            }
+            long lag = rs.getLong(column);
+            return rs.wasNull() ? null : lag;
+        }
+    }
+
+    private static String findLagColumn(ResultSetMetaData metaData) throws SQLException {
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            String label = metaData.getColumnLabel(i);
+            for (String column : LAG_COLUMNS) {
+                if (column.equalsIgnoreCase(label)) {
+                    return label;
+                }
+            }
+        }
+        return null;
+    }
+}
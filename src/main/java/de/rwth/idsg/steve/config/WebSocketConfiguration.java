@@ -19,6 +19,7 @@
 package de.rwth.idsg.steve.config;
 
 import com.google.common.collect.Lists;
+import de.rwth.idsg.steve.ocpp.ws.HandshakeAdmissionControl;
 import de.rwth.idsg.steve.ocpp.ws.OcppWebSocketHandshakeHandler;
 import de.rwth.idsg.steve.ocpp.ws.ocpp12.Ocpp12WebSocketEndpoint;
 import de.rwth.idsg.steve.ocpp.ws.ocpp15.Ocpp15WebSocketEndpoint;
@@ -46,6 +47,8 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
 
     @Autowired
     private ChargePointHelperService chargePointHelperService;
+    @Autowired
+    private HandshakeAdmissionControl handshakeAdmissionControl;
 
     @Autowired
     private Ocpp12WebSocketEndpoint ocpp12WebSocketEndpoint;
@@ -65,7 +68,8 @@ public class WebSocketConfiguration implements WebSocketConfigurer {
         OcppWebSocketHandshakeHandler handshakeHandler = new OcppWebSocketHandshakeHandler(
                 new DefaultHandshakeHandler(),
                 Lists.newArrayList(ocpp16WebSocketEndpoint, ocpp15WebSocketEndpoint, ocpp12WebSocketEndpoint),
-                chargePointHelperService
+                chargePointHelperService,
+                handshakeAdmissionControl
         );
 
         registry.addHandler(handshakeHandler.getDummyWebSocketHandler(), PATH_INFIX + "*")
@@ -0,0 +1,189 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.externalconfig;
+
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.service.dto.IntegrationStats;
+import de.rwth.idsg.steve.utils.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * The RestTemplate of one external HTTP service, behind a bulkhead and a circuit breaker. The connection pool is as
+ * large as the bulkhead, and a call that finds the bulkhead full or the circuit open is not attempted at all. In both
+ * cases (and when the call fails) the fallback decides what the caller gets.
+ *
+ * A 4xx response counts as a failed call, but not against the circuit, since the service did answer.
+ */
+@Slf4j
+public class IntegrationClient implements Closeable {
+
+    private final HttpIntegration integration;
+    private final int maxConcurrent;
+    private final CloseableHttpClient httpClient;
+    private final RestTemplate restTemplate;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong shortCircuited = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong latencySumMillis = new AtomicLong();
+    private final AtomicLong maxLatencyMillis = new AtomicLong();
+    private volatile long lastLatencyMillis;
+
+    public IntegrationClient(HttpIntegration integration, SteveConfiguration.Http config) {
+        this.integration = integration;
+        this.maxConcurrent = config.getMaxConcurrent();
+        this.httpClient = createHttpClient(config);
+        this.restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.circuitBreaker = new CircuitBreaker(config.getCircuitFailureThreshold(),
+                TimeUnit.SECONDS.toNanos(config.getCircuitOpenSeconds()));
+    }
+
+    /**
+     * Keep-alive connections are reused for at most keepAliveSeconds (or less, if the server says so), and the
+     * idle ones are evicted in the background.
+     */
+    static CloseableHttpClient createHttpClient(SteveConfiguration.Http config) {
+        long keepAliveMillis = TimeUnit.SECONDS.toMillis(config.getKeepAliveSeconds());
+
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(config.getMaxConcurrent());
+        pool.setDefaultMaxPerRoute(config.getMaxConcurrent());
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectTimeoutMillis())
+                .setConnectionRequestTimeout(config.getConnectTimeoutMillis())
+                .setSocketTimeout(config.getReadTimeoutMillis())
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(requestConfig)
+                .setKeepAliveStrategy((response, context) -> {
+                    long fromServer = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return fromServer > 0 ? Math.min(fromServer, keepAliveMillis) : keepAliveMillis;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(config.getKeepAliveSeconds(), TimeUnit.SECONDS)
+                .build();
+    }
+
+    public <T> T execute(Function<RestTemplate, T> call, Function<RuntimeException, T> fallback) {
+        if (!circuitBreaker.tryAcquirePermission(System.nanoTime())) {
+            shortCircuited.incrementAndGet();
+            return fallback.apply(new Unavailable("The circuit of %s is open", integration));
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.releasePermission();
+            rejected.incrementAndGet();
+            return fallback.apply(new Unavailable("Too many concurrent calls to %s", integration));
+        }
+
+        calls.incrementAndGet();
+        long start = System.nanoTime();
+        try {
+            T result = call.apply(restTemplate);
+            circuitBreaker.onSuccess();
+            return result;
+
+        } catch (HttpClientErrorException e) {
+            failures.incrementAndGet();
+            circuitBreaker.onSuccess();
+            return fallback.apply(e);
+
+        } catch (RuntimeException e) {
+            failures.incrementAndGet();
+            circuitBreaker.onFailure(System.nanoTime());
+            if (circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                log.warn("The circuit of {} is open after: {}", integration, e.getMessage());
+            }
+            return fallback.apply(e);
+
+        } finally {
+            bulkhead.release();
+            recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Without a fallback, the caller gets the exception.
+     */
+    public <T> T execute(Function<RestTemplate, T> call) {
+        return execute(call, e -> {
+            throw e;
+        });
+    }
+
+    public IntegrationStats getStats() {
+        long count = calls.get();
+        return IntegrationStats.builder()
+                .circuit(circuitBreaker.getState().name())
+                .inFlight(maxConcurrent - bulkhead.availablePermits())
+                .maxConcurrent(maxConcurrent)
+                .calls(count)
+                .failures(failures.get())
+                .shortCircuited(shortCircuited.get())
+                .rejected(rejected.get())
+                .lastLatencyMillis(lastLatencyMillis)
+                .maxLatencyMillis(maxLatencyMillis.get())
+                .avgLatencyMillis(count == 0 ? 0 : latencySumMillis.get() / count)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    private void recordLatency(long latency) {
+        lastLatencyMillis = latency;
+        latencySumMillis.addAndGet(latency);
+        maxLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    /**
+     * The call was not attempted.
+     */
+    public static class Unavailable extends SteveException {
+
+        public Unavailable(String template, Object arg1) {
+            super(template, arg1);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.externalconfig;
+
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.service.dto.IntegrationStats;
+import lombok.extern.slf4j.Slf4j;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * One {@link IntegrationClient} per external HTTP service.
+ */
+@Slf4j
+public class IntegrationClients {
+
+    private final Map<HttpIntegration, IntegrationClient> clients = new EnumMap<>(HttpIntegration.class);
+
+    public IntegrationClients() {
+        CONFIG.getHttp().forEach((integration, config) -> clients.put(integration, new IntegrationClient(integration, config)));
+    }
+
+    public IntegrationClient get(HttpIntegration integration) {
+        return clients.get(integration);
+    }
+
+    public Map<String, IntegrationStats> getStats() {
+        Map<String, IntegrationStats> stats = new LinkedHashMap<>();
+        clients.forEach((integration, client) -> stats.put(integration.getPropertyName(), client.getStats()));
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        for (IntegrationClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                log.warn("Closing the HTTP client failed", e);
+            }
+        }
+    }
+}
@@ -20,12 +20,26 @@ package de.rwth.idsg.steve.externalconfig;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
 @Configuration
 public class RestTemplateConfig {
+
+    @Bean
+    public IntegrationClients integrationClients() {
+        return new IntegrationClients();
+    }
+
+    /**
+     * For calls that are not one of the {@link de.rwth.idsg.steve.HttpIntegration}s. Pooled and with the default
+     * timeouts, but without bulkhead and circuit breaker.
+     */
     @Bean
     public RestTemplate restTemplate() {
-        return new RestTemplate();
+        return new RestTemplate(new HttpComponentsClientHttpRequestFactory(
+                IntegrationClient.createHttpClient(CONFIG.getHttpDefault())));
     }
 }
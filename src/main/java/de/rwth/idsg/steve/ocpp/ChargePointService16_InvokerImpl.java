@@ -28,6 +28,7 @@ import de.rwth.idsg.steve.ocpp.ws.pipeline.OutgoingCallPipeline;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
 import de.rwth.idsg.steve.repository.dto.Transaction;
 import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
+import de.rwth.idsg.steve.service.LatestConnectorStatusService;
 import de.rwth.idsg.steve.service.TransactionStopService;
 import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
 import lombok.extern.slf4j.Slf4j;
@@ -38,7 +39,6 @@ import org.springframework.stereotype.Service;
 
 import java.util.List;
 
-import static jooq.steve.db.Tables.CONNECTOR_STATUS;
 import static jooq.steve.db.tables.ChargingFeeExemptChargebox.CHARGING_FEE_EXEMPT_CHARGEBOX;
 import static jooq.steve.db.tables.Connector.CONNECTOR;
 
@@ -59,6 +59,8 @@ public class ChargePointService16_InvokerImpl implements ChargePointService16_In
     private TransactionRepositoryImpl transactionRepositoryImpl;
     @Autowired
     private TransactionStopService transactionStopService;
+    @Autowired
+    private LatestConnectorStatusService latestConnectorStatusService;
 
     @Autowired
     public ChargePointService16_InvokerImpl(OutgoingCallPipeline pipeline, Ocpp16WebSocketEndpoint endpoint, ClientProvider clientProvider) {
@@ -283,12 +285,7 @@ public class ChargePointService16_InvokerImpl implements ChargePointService16_In
 
 
     public String lastStatusFromConnector(Integer connectorPk) {
-        return dslContext.select(CONNECTOR_STATUS.STATUS)
-                .from(CONNECTOR_STATUS)
-                .where(CONNECTOR_STATUS.CONNECTOR_PK.eq(connectorPk))
-                .orderBy(CONNECTOR_STATUS.STATUS_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOne(CONNECTOR_STATUS.STATUS);
+        return latestConnectorStatusService.getStatus(connectorPk);
     }
 
     public Integer getConnectorPk(String chargeBoxId, Integer connectorId) {
@@ -134,7 +134,10 @@ public abstract class CommunicationTask<S extends ChargePointSelection, RESPONSE
         }
     }
 
-    protected void failed(String chargeBoxId, Exception exception) {
+    /**
+     * Public, because a call can also fail outside of the response handler, e.g. when it times out.
+     */
+    public void failed(String chargeBoxId, Exception exception) {
         for (OcppCallback<RESPONSE> c : callbackList) {
             try {
                 c.failed(chargeBoxId, exception);
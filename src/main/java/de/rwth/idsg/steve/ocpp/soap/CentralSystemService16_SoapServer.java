@@ -20,11 +20,11 @@ package de.rwth.idsg.steve.ocpp.soap;
 
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
-import de.rwth.idsg.steve.repository.dto.Transaction;
-import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
+import de.rwth.idsg.steve.service.ActiveTransactionRegistry;
 import de.rwth.idsg.steve.service.CentralSystemService16_Service;
+import de.rwth.idsg.steve.service.LatestConnectorStatusService;
 import de.rwth.idsg.steve.service.TransactionStopService;
-import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.*;
 import org.joda.time.DateTime;
@@ -67,9 +67,11 @@ public class CentralSystemService16_SoapServer implements CentralSystemService {
     @Autowired
     private DSLContext dslContext;
     @Autowired
-    private TransactionRepositoryImpl transactionRepositoryImpl;
+    private ActiveTransactionRegistry activeTransactionRegistry;
     @Autowired
     private TransactionStopService transactionStopService;
+    @Autowired
+    private LatestConnectorStatusService latestConnectorStatusService;
 
     @Autowired
     @Qualifier("secondary")
@@ -371,36 +373,29 @@ public class CentralSystemService16_SoapServer implements CentralSystemService {
     }
 
 
+    /**
+     * Reads the open transactions from the registry rather than the database, so that one which was started a moment
+     * ago is not missed when the listings are served by a lagging replica.
+     */
     public boolean isConnectorEligibleForStartTransaction(String chargeBoxId, Integer connectorId) {
-        List<Transaction> obj = transactionRepositoryImpl.getTransactions(new TransactionQueryForm());
-
-        for (Transaction transaction : obj) {
-            String chargePoint = transaction.getChargeBoxId();
-            Integer connector = transaction.getConnectorId();
-
-            if (chargeBoxId.equalsIgnoreCase(chargePoint) && connector.equals(connectorId)) {
-
-                String status = lastStatusFromConnector(getConnectorPk(chargeBoxId, connectorId));
+        List<ActiveTransaction> active = activeTransactionRegistry.getByConnector(chargeBoxId, connectorId);
+        if (active.isEmpty()) {
+            return true;
+        }
 
-                if (!status.equalsIgnoreCase("Charging")) {
-                    transactionStopService.stop(transaction.getId());
-                    return true;
-                } else {
-                    return false;
-                }
-            }
+        String status = lastStatusFromConnector(getConnectorPk(chargeBoxId, connectorId));
+        if ("Charging".equalsIgnoreCase(status)) {
+            return false;
         }
 
+        for (ActiveTransaction transaction : active) {
+            transactionStopService.stop(transaction.getTransactionPk());
+        }
         return true;
     }
 
     public String lastStatusFromConnector(Integer connectorPk) {
-        return dslContext.select(CONNECTOR_STATUS.STATUS)
-                .from(CONNECTOR_STATUS)
-                .where(CONNECTOR_STATUS.CONNECTOR_PK.eq(connectorPk))
-                .orderBy(CONNECTOR_STATUS.STATUS_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOne(CONNECTOR_STATUS.STATUS);
+        return latestConnectorStatusService.getStatus(connectorPk);
     }
 
     private Integer getConnectorPk(String chargeBoxId, Integer connectorId) {
@@ -18,6 +18,8 @@
  */
 package de.rwth.idsg.steve.ocpp.ws;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Strings;
 import de.rwth.idsg.steve.config.WebSocketConfiguration;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
@@ -26,17 +28,19 @@ import de.rwth.idsg.steve.ocpp.ws.data.CommunicationContext;
 import de.rwth.idsg.steve.ocpp.ws.data.SessionContext;
 import de.rwth.idsg.steve.ocpp.ws.pipeline.IncomingPipeline;
 import de.rwth.idsg.steve.repository.OcppServerRepository;
-import de.rwth.idsg.steve.service.ChargerPointAvailableStatusService;
-import de.rwth.idsg.steve.service.ChargerStatusService;
+import de.rwth.idsg.steve.service.ChargeBoxConnectionEventProcessor;
 import de.rwth.idsg.steve.service.ManuallyStopTransaction;
 import de.rwth.idsg.steve.service.ReasonRetrieveService;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionEvent;
 import de.rwth.idsg.steve.service.notification.OcppStationWebSocketConnected;
 import de.rwth.idsg.steve.service.notification.OcppStationWebSocketDisconnected;
+import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.web.socket.*;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -47,6 +51,7 @@ import java.util.function.Consumer;
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 17.03.2015
  */
+@Slf4j
 public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandler implements SubProtocolCapable {
 
     @Autowired
@@ -59,15 +64,15 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
     private ApplicationEventPublisher applicationEventPublisher;
 
     @Autowired
-    private ChargerStatusService chargerStatusService;
-    @Autowired
-    private ChargerPointAvailableStatusService chargerPointAvailableStatusService;
+    private ChargeBoxConnectionEventProcessor connectionEventProcessor;
 
     @Autowired
     private ManuallyStopTransaction manuallyStopTransaction;
 
     public static final String CHARGEBOX_ID_KEY = "CHARGEBOX_ID_KEY";
 
+    private static final ObjectMapper MAPPER = JsonObjectMapper.INSTANCE.getMapper();
+
     private final SessionContextStore sessionContextStore = new SessionContextStore();
     private final List<Consumer<String>> connectedCallbackList = new ArrayList<>();
     private final List<Consumer<String>> disconnectedCallbackList = new ArrayList<>();
@@ -114,15 +119,34 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
             WebSocketLogger.receivedEmptyText(chargeBoxId, session);
             return;
         }
-        incomingString = ReasonRetrieveService.retrieve(incomingString);
-        WebSocketLogger.receivedText(chargeBoxId, session, incomingString);
+
+        JsonNode frame = parseFrame(chargeBoxId, incomingString);
+        if (frame != null) {
+            ReasonRetrieveService.rewrite(frame);
+        }
+        WebSocketLogger.receivedText(chargeBoxId, session, incomingString, frame);
 
         CommunicationContext context = new CommunicationContext(session, chargeBoxId);
         context.setIncomingString(incomingString);
+        context.setIncomingFrame(frame);
 
         pipeline.accept(context);
     }
 
+    /**
+     * The only place where an incoming frame is parsed. Anything that is not a JSON array is left to the
+     * deserializer, which responds with the proper error.
+     */
+    private static JsonNode parseFrame(String chargeBoxId, String incomingString) {
+        try {
+            JsonNode frame = MAPPER.readTree(incomingString);
+            return frame.isArray() ? frame : null;
+        } catch (IOException e) {
+            log.warn("[chargeBoxId={}] Incoming message is not valid JSON: {}", chargeBoxId, e.getMessage());
+            return null;
+        }
+    }
+
     private void handlePongMessage(WebSocketSession session) {
         WebSocketLogger.receivedPong(getChargeBoxId(session), session);
         ocppServerRepository.updateChargeboxHeartbeat(getChargeBoxId(session), DateTime.now());
@@ -133,9 +157,6 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
 
         String chargeBoxId = getChargeBoxId(session);
         WebSocketLogger.connected(chargeBoxId, session);
-        chargerPointAvailableStatusService.updateChargerStatus(chargeBoxId, true);
-        chargerStatusService.get(chargeBoxId, true);
-        ocppServerRepository.updateOcppProtocol(chargeBoxId, getVersion().toProtocol(OcppTransport.JSON));
 
         // Just to keep the connection alive, such that the servers do not close
         // the connection because of a idle timeout, we ping-pong at fixed intervals.
@@ -159,16 +180,22 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
         if (sizeBeforeAdd == 0) {
             connectedCallbackList.forEach(consumer -> consumer.accept(chargeBoxId));
         }
+
+        // The session is usable already, the database can catch up in the background
+        connectionEventProcessor.submit(ChargeBoxConnectionEvent.builder()
+                .chargeBoxId(chargeBoxId)
+                .online(true)
+                .protocol(getVersion().toProtocol(OcppTransport.JSON))
+                .timestamp(DateTime.now())
+                .build());
     }
 
     @Override
     public void onClose(WebSocketSession session, CloseStatus closeStatus) throws Exception {
         String chargeBoxId = getChargeBoxId(session);
-        chargerPointAvailableStatusService.updateChargerStatus(chargeBoxId, false);
         WebSocketLogger.closed(chargeBoxId, session, closeStatus);
 
         futureResponseContextStore.removeSession(session);
-        chargerStatusService.get(chargeBoxId, false);
         int sizeAfterRemove;
 
         synchronized (sessionContextLock) {
@@ -181,6 +208,12 @@ public abstract class AbstractWebSocketEndpoint extends ConcurrentWebSocketHandl
         if (sizeAfterRemove == 0) {
             disconnectedCallbackList.forEach(consumer -> consumer.accept(chargeBoxId));
         }
+
+        connectionEventProcessor.submit(ChargeBoxConnectionEvent.builder()
+                .chargeBoxId(chargeBoxId)
+                .online(false)
+                .timestamp(DateTime.now())
+                .build());
     }
 
     @Override
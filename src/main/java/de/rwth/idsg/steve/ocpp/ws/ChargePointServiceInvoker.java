@@ -53,8 +53,8 @@ public class ChargePointServiceInvoker {
             run(chargeBoxId, task);
         } catch (Exception e) {
             log.error("Exception occurred", e);
-            // Outgoing call failed due to technical problems. Pass the exception to handler to inform the user
-            task.defaultCallback().failed(chargeBoxId, e);
+            // Outgoing call failed due to technical problems. Pass the exception to the callbacks to inform the user
+            task.failed(chargeBoxId, e);
         }
     }
 
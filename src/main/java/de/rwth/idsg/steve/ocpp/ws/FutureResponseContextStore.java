@@ -18,21 +18,33 @@
  */
 package de.rwth.idsg.steve.ocpp.ws;
 
+import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ws.data.FutureResponseContext;
+import de.rwth.idsg.steve.service.dto.PendingCallStats;
+import de.rwth.idsg.steve.utils.TimerWheel;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiFunction;
 
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
 /**
  * Presumption: The responses must be sent using the same connection as the requests!
  *
+ * Every stored call has a deadline. If the charge point does not respond in time, the call is removed and the task
+ * is failed, so that its callbacks do not need their own timeouts. The number of unanswered calls per connection is
+ * limited, so that a station that stopped responding cannot make the store grow indefinitely.
+ *
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 21.03.2015
  */
@@ -40,6 +52,14 @@ import java.util.function.BiFunction;
 @Service
 public class FutureResponseContextStore {
 
+    @Autowired private TimerWheel timerWheel;
+
+    private final long timeoutSeconds = CONFIG.getOcpp().getCallTimeoutSeconds();
+    private final int maxPendingPerSession = CONFIG.getOcpp().getMaxPendingCallsPerSession();
+
+    private final AtomicLong expired = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
     // We store for each chargeBox connection, multiple pairs of (messageId, context)
     // (session, (messageId, context))
     private final Map<WebSocketSession, Map<String, FutureResponseContext>> lookupTable = new ConcurrentHashMap<>();
@@ -48,19 +68,97 @@ public class FutureResponseContextStore {
         addIfAbsent(session);
     }
 
+    /**
+     * The responses to the calls that are still open will never arrive, since they must use the same connection.
+     */
     public void removeSession(WebSocketSession session) {
         log.debug("Deleting the store for sessionId '{}'", session.getId());
-        lookupTable.remove(session);
+        Map<String, FutureResponseContext> map = lookupTable.remove(session);
+        if (map == null) {
+            return;
+        }
+
+        for (FutureResponseContext context : map.values()) {
+            cancelTimeout(context);
+            fail(context, new SteveException("The connection was closed before a response was received"));
+        }
     }
 
-    public void add(WebSocketSession session, String messageId, FutureResponseContext context) {
+    /**
+     * @throws SteveException if the session has too many unanswered calls
+     */
+    public void add(WebSocketSession session, String chargeBoxId, String messageId, FutureResponseContext context) {
         Map<String, FutureResponseContext> map = addIfAbsent(session);
+
+        // Not atomic with the put below, so concurrent calls can exceed the limit slightly. That is fine for its
+        // purpose of bounding the memory.
+        if (map.size() >= maxPendingPerSession) {
+            rejected.incrementAndGet();
+            throw new SteveException("Too many unanswered calls (%s) to chargeBoxId '%s'", map.size(), chargeBoxId);
+        }
+
+        context.setChargeBoxId(chargeBoxId);
+        context.setTimeout(timerWheel.schedule(() -> expire(session, messageId), timeoutSeconds, TimeUnit.SECONDS));
         map.put(messageId, context);
         log.debug("Store size for sessionId '{}': {}", session.getId(), map.size());
     }
 
     @Nullable
     public FutureResponseContext get(WebSocketSession session, String messageId) {
+        FutureResponseContext context = remove(session, messageId);
+        if (context != null) {
+            cancelTimeout(context);
+        }
+        return context;
+    }
+
+    public PendingCallStats getStats() {
+        int pending = 0;
+        for (Map<String, FutureResponseContext> map : lookupTable.values()) {
+            pending += map.size();
+        }
+
+        return PendingCallStats.builder()
+                .sessions(lookupTable.size())
+                .pending(pending)
+                .maxPendingPerSession(maxPendingPerSession)
+                .timeoutSeconds(timeoutSeconds)
+                .expired(expired.get())
+                .rejected(rejected.get())
+                .build();
+    }
+
+    private void expire(WebSocketSession session, String messageId) {
+        // If the response arrived in the meantime, it has already removed the context
+        FutureResponseContext context = remove(session, messageId);
+        if (context == null) {
+            return;
+        }
+
+        expired.incrementAndGet();
+        log.warn("No response from chargeBoxId '{}' to call '{}' of {} within {} seconds",
+                context.getChargeBoxId(), messageId, context.getTask().getOperationName(), timeoutSeconds);
+
+        fail(context, new SteveException.Timeout("No response within %s seconds", timeoutSeconds));
+    }
+
+    private static void fail(FutureResponseContext context, Exception e) {
+        try {
+            context.getTask().failed(context.getChargeBoxId(), e);
+        } catch (Exception ex) {
+            log.error("Failing the task of chargeBoxId '{}' failed", context.getChargeBoxId(), ex);
+        }
+    }
+
+    private static void cancelTimeout(FutureResponseContext context) {
+        TimerWheel.Timeout timeout = context.getTimeout();
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    @Nullable
+    private FutureResponseContext remove(WebSocketSession session, String messageId) {
         RemoveFunction removeFunction = new RemoveFunction(messageId);
         lookupTable.computeIfPresent(session, removeFunction);
         return removeFunction.removedContext;
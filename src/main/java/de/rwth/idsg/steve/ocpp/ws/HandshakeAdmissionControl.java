@@ -0,0 +1,104 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.ocpp.ws;
+
+import de.rwth.idsg.steve.service.dto.HandshakeAdmissionStats;
+import de.rwth.idsg.steve.utils.PerSecondCounter;
+import de.rwth.idsg.steve.utils.TokenBucket;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * Admission control for WebSocket handshakes. After a restart all stations reconnect within seconds, and each of them
+ * follows up with a BootNotification and a StatusNotification per connector. Handshakes are admitted with a limited
+ * rate (token bucket) and a limited number at a time, the others are turned away with a Retry-After.
+ *
+ * The Retry-After is picked randomly, so that the rejected stations do not come back all in the same second.
+ */
+@Service
+public class HandshakeAdmissionControl {
+
+    private static final int HISTORY_SECONDS = 60;
+
+    private final int maxConcurrent = CONFIG.getOcpp().getHandshakeMaxConcurrent();
+    private final int retryAfterMaxSeconds = CONFIG.getOcpp().getHandshakeRetryAfterMaxSeconds();
+
+    private final Semaphore inFlight = new Semaphore(maxConcurrent);
+    private final TokenBucket bucket = new TokenBucket(CONFIG.getOcpp().getHandshakeBurst(),
+            CONFIG.getOcpp().getHandshakeRatePerSecond(), System.nanoTime());
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final PerSecondCounter acceptedPerSecond = new PerSecondCounter(HISTORY_SECONDS + 1);
+    private final PerSecondCounter rejectedPerSecond = new PerSecondCounter(HISTORY_SECONDS + 1);
+
+    /**
+     * @return true, if the handshake may go ahead. Then, the caller has to call {@link #release()} when it is done.
+     */
+    public boolean tryAdmit() {
+        long nowSecond = currentSecond();
+        if (inFlight.tryAcquire()) {
+            if (bucket.tryAcquire(System.nanoTime())) {
+                accepted.incrementAndGet();
+                acceptedPerSecond.increment(nowSecond);
+                return true;
+            }
+            inFlight.release();
+        }
+
+        rejected.incrementAndGet();
+        rejectedPerSecond.increment(nowSecond);
+        return false;
+    }
+
+    public void release() {
+        inFlight.release();
+    }
+
+    /**
+     * At least the time until the bucket has a token again, spread randomly up to the configured maximum.
+     */
+    public int getRetryAfterSeconds() {
+        long wait = TimeUnit.NANOSECONDS.toSeconds(bucket.nanosUntilAvailable(System.nanoTime())) + 1;
+        int min = (int) Math.min(wait, retryAfterMaxSeconds);
+        return ThreadLocalRandom.current().nextInt(min, retryAfterMaxSeconds + 1);
+    }
+
+    public HandshakeAdmissionStats getStats() {
+        long nowSecond = currentSecond();
+        return HandshakeAdmissionStats.builder()
+                .inFlight(maxConcurrent - inFlight.availablePermits())
+                .maxConcurrent(maxConcurrent)
+                .accepted(accepted.get())
+                .rejected(rejected.get())
+                .acceptedPerSecond(acceptedPerSecond.getHistory(nowSecond))
+                .rejectedPerSecond(rejectedPerSecond.getHistory(nowSecond))
+                .build();
+    }
+
+    private static long currentSecond() {
+        return TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+    }
+}
@@ -23,6 +23,7 @@ import de.rwth.idsg.steve.service.ChargePointHelperService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.RegistrationStatus;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
@@ -51,6 +52,7 @@ public class OcppWebSocketHandshakeHandler implements HandshakeHandler {
     private final DefaultHandshakeHandler delegate;
     private final List<AbstractWebSocketEndpoint> endpoints;
     private final ChargePointHelperService chargePointHelperService;
+    private final HandshakeAdmissionControl admissionControl;
 
     /**
      * We need some WebSocketHandler just for Spring to register it for the path. We will not use it for the actual
@@ -85,7 +87,29 @@ public class OcppWebSocketHandshakeHandler implements HandshakeHandler {
         attributes.put(AbstractWebSocketEndpoint.CHARGEBOX_ID_KEY, chargeBoxId);
 
         // -------------------------------------------------------------------------
-        // 2. Route according to the selected protocol
+        // 2. Admission control
+        // -------------------------------------------------------------------------
+
+        if (!admissionControl.tryAdmit()) {
+            int retryAfter = admissionControl.getRetryAfterSeconds();
+            log.debug("Too many handshakes, ChargeBoxId '{}' is asked to retry after {} s", chargeBoxId, retryAfter);
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter));
+            return false;
+        }
+
+        try {
+            return doHandshakeInternal(request, response, attributes, chargeBoxId);
+        } finally {
+            admissionControl.release();
+        }
+    }
+
+    private boolean doHandshakeInternal(ServerHttpRequest request, ServerHttpResponse response,
+                                        Map<String, Object> attributes, String chargeBoxId) {
+
+        // -------------------------------------------------------------------------
+        // 3. Route according to the selected protocol
         // -------------------------------------------------------------------------
 
         List<String> requestedProtocols = new WebSocketHttpHeaders(request.getHeaders()).getSecWebSocketProtocol();
@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.ocpp.ws;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import de.rwth.idsg.steve.service.WebSocketLogParser;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.socket.CloseStatus;
@@ -54,11 +55,14 @@ public final class WebSocketLogger {
         log.debug("[chargeBoxId={}, sessionId={}] Received pong message", chargeBoxId, session.getId());
     }
 
-    public static void receivedText(String chargeBoxId, WebSocketSession session, String msg) {
+    /**
+     * @param frame the already parsed msg, if it is valid JSON
+     */
+    public static void receivedText(String chargeBoxId, WebSocketSession session, String msg, JsonNode frame) {
         log.info("[chargeBoxId={}, sessionId={}] Received: {}", chargeBoxId, session.getId(), msg);
-        WebSocketLogParser.parse("received", chargeBoxId, session, msg);
-
-
+        if (frame != null) {
+            WebSocketLogParser.parse("received", chargeBoxId, session, frame);
+        }
     }
 
     public static void receivedEmptyText(String chargeBoxId, WebSocketSession session) {
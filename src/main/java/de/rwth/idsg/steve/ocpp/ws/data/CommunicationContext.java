@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.ocpp.ws.data;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import de.rwth.idsg.ocpp.jaxb.ResponseType;
 import de.rwth.idsg.steve.ocpp.CommunicationTask;
 import lombok.AccessLevel;
@@ -45,6 +46,8 @@ public class CommunicationContext {
     private final String chargeBoxId;
 
     @Setter private String incomingString;
+    // incomingString parsed once, shared by the audit log and the deserializer. null, if it is not valid JSON
+    @Setter private JsonNode incomingFrame;
     @Setter private String outgoingString;
 
     @Setter private OcppJsonMessage incomingMessage;
@@ -66,7 +66,7 @@ public class Deserializer implements Consumer<CommunicationContext> {
      */
     @Override
     public void accept(CommunicationContext context) {
-        try (JsonParser parser = mapper.getFactory().createParser(context.getIncomingString())) {
+        try (JsonParser parser = createParser(context)) {
             parser.nextToken(); // set cursor to '['
 
             parser.nextToken();
@@ -101,6 +101,18 @@ public class Deserializer implements Consumer<CommunicationContext> {
     // Private Helpers
     // -------------------------------------------------------------------------
 
+    /**
+     * Walk the frame that was already parsed on arrival, instead of parsing the string again.
+     */
+    private JsonParser createParser(CommunicationContext context) throws IOException {
+        JsonNode frame = context.getIncomingFrame();
+        if (frame != null) {
+            return mapper.treeAsTokens(frame);
+        } else {
+            return mapper.getFactory().createParser(context.getIncomingString());
+        }
+    }
+
     /**
      * Catch exceptions and wrap them in outgoing ERRORs for incoming CALLs.
      */
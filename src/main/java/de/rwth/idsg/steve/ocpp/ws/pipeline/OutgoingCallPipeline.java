@@ -41,8 +41,8 @@ public class OutgoingCallPipeline implements Consumer<CommunicationContext> {
     @Autowired
     public OutgoingCallPipeline(FutureResponseContextStore store) {
         chainedConsumers = OutgoingCallPipeline.start(Serializer.INSTANCE)
-                                               .andThen(Sender.INSTANCE)
-                                               .andThen(saveInStore(store));
+                                               .andThen(saveInStore(store))
+                                               .andThen(send(store));
     }
 
     @Override
@@ -50,12 +50,26 @@ public class OutgoingCallPipeline implements Consumer<CommunicationContext> {
         chainedConsumers.accept(ctx);
     }
 
+    /**
+     * The response context is stored before sending, so that a fast response cannot arrive before it. This is also
+     * where the store rejects the call, if the station has too many unanswered calls.
+     */
     private static Consumer<CommunicationContext> saveInStore(FutureResponseContextStore store) {
+        return context -> store.add(context.getSession(),
+                                    context.getChargeBoxId(),
+                                    context.getOutgoingMessage().getMessageId(),
+                                    context.getFutureResponseContext());
+    }
+
+    private static Consumer<CommunicationContext> send(FutureResponseContextStore store) {
         return context -> {
-            // All went well, and the call is sent. Store the response context for later lookup.
-            store.add(context.getSession(),
-                      context.getOutgoingMessage().getMessageId(),
-                      context.getFutureResponseContext());
+            try {
+                Sender.INSTANCE.accept(context);
+            } catch (RuntimeException e) {
+                // The call is not sent. Forget it, the caller fails the task.
+                store.get(context.getSession(), context.getOutgoingMessage().getMessageId());
+                throw e;
+            }
         };
     }
 
@@ -38,6 +38,7 @@ import java.util.Optional;
  */
 public interface ChargePointRepository {
     Optional<String> getRegistrationStatus(String chargeBoxId);
+    Map<String, String> getRegistrationStatuses();
 
     List<ChargePointSelect> getChargePointSelect(OcppProtocol protocol, List<String> inStatusFilter, List<String> chargeBoxIdFilter);
 
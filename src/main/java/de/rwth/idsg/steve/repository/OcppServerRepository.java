@@ -21,12 +21,14 @@ package de.rwth.idsg.steve.repository;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.repository.dto.InsertConnectorStatusParams;
 import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.repository.dto.MeterValueSample;
 import de.rwth.idsg.steve.repository.dto.UpdateChargeboxParams;
 import de.rwth.idsg.steve.repository.dto.UpdateTransactionParams;
 import ocpp.cs._2015._10.MeterValue;
 import org.joda.time.DateTime;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
@@ -35,7 +37,7 @@ import java.util.List;
 public interface OcppServerRepository {
 
     void updateChargebox(UpdateChargeboxParams params);
-    void updateOcppProtocol(String chargeBoxId, OcppProtocol protocol);
+    void updateOcppProtocol(Map<String, OcppProtocol> protocols);
     void updateEndpointAddress(String chargeBoxIdentity, String endpointAddress);
     void updateChargeboxFirmwareStatus(String chargeBoxIdentity, String firmwareStatus);
     void updateChargeboxDiagnosticsStatus(String chargeBoxIdentity, String status);
@@ -46,6 +48,13 @@ public interface OcppServerRepository {
     void insertMeterValues(String chargeBoxIdentity, List<MeterValue> list, int connectorId, Integer transactionId);
     void insertMeterValues(String chargeBoxIdentity, List<MeterValue> list, int transactionId);
 
+    /**
+     * Stores the MeterValues messages of many charge points with multi-row inserts, within one database transaction.
+     * Throws, if anything fails, so that the caller can retry the samples one by one. Does not bill the samples, see
+     * {@link de.rwth.idsg.steve.service.RetrieveTransactionMeterValues#bill(List)}.
+     */
+    void insertMeterValues(List<MeterValueSample> samples);
+
     int insertTransaction(InsertTransactionParams params);
     void updateTransaction(UpdateTransactionParams params);
 }
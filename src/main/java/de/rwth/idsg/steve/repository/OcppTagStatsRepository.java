@@ -0,0 +1,48 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository;
+
+import de.rwth.idsg.steve.repository.dto.OcppTagStats;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public interface OcppTagStatsRepository {
+
+    /**
+     * idTags without completed transactions are not contained
+     */
+    Map<String, OcppTagStats> getStats(Collection<String> idTags);
+
+    /**
+     * Adds the completed ones of the given transactions to the stats of their idTags, unless they are counted already.
+     *
+     * @return the idTags whose stats changed
+     */
+    Set<String> countCompleted(Collection<Integer> transactionPks);
+
+    /**
+     * @return the completed transactions in [fromPk, toPk) that are not counted yet
+     */
+    List<Integer> getUncountedCompleted(int fromPk, int toPk);
+
+    int getMaxTransactionPk();
+}
@@ -32,6 +32,12 @@ import java.util.List;
 public interface TransactionRepository {
     List<Transaction> getTransactions(TransactionQueryForm form);
 
+    /**
+     * Same as {@link #getTransactions(TransactionQueryForm)}, but may be served by a replica that lags behind. Only
+     * for listings and reports, not for decisions on the transactions.
+     */
+    List<Transaction> getTransactionsReadOnly(TransactionQueryForm form);
+
     void writeTransactionsCSV(TransactionQueryForm form, Writer writer);
 
     List<Integer> getActiveTransactionIds(String chargeBoxId);
@@ -39,4 +45,9 @@ public interface TransactionRepository {
     TransactionDetails getDetails(int transactionPk);
 
     public List<Transaction> getAllTransactions(TransactionQueryForm form);
+
+    /**
+     * Same as {@link #getAllTransactions(TransactionQueryForm)}, but may be served by a replica that lags behind.
+     */
+    List<Transaction> getAllTransactionsReadOnly(TransactionQueryForm form);
 }
@@ -19,43 +19,189 @@
 package de.rwth.idsg.steve.repository;
 
 import de.rwth.idsg.steve.service.dto.WebSocketLog;
+import de.rwth.idsg.steve.web.dto.WebSocketLogQueryForm;
+import jooq.steve.db.tables.records.WebsocketLogRecord;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.joda.time.LocalDate;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
-import org.jooq.DataType;
+import org.jooq.InsertValuesStep7;
 import org.jooq.impl.DSL;
-import org.jooq.impl.SQLDataType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import static jooq.steve.db.Tables.WEBSOCKET_LOG;
 
+@Slf4j
 @Repository
 public class WebSocketLogRepository {
 
+    private static final String FUTURE_PARTITION = "p_future";
+
     @Autowired
     private DSLContext dslContext;
 
-    public List<WebSocketLog> getLogsByDate(LocalDate date) {
-        DateTime start = date.toDateTimeAtStartOfDay();
-        DateTime end = date.plusDays(1).toDateTimeAtStartOfDay(); 
+    /**
+     * Newest entries first, at most limit of them. The date condition lets MySQL read only the partition of that day.
+     */
+    public List<WebSocketLog> getLogs(WebSocketLogQueryForm form, int limit) {
+        List<Condition> conditions = new ArrayList<>();
+
+        if (form.getDay() != null) {
+            conditions.add(WEBSOCKET_LOG.TIME.ge(form.getDay().toDateTimeAtStartOfDay()));
+            conditions.add(WEBSOCKET_LOG.TIME.lt(form.getDay().plusDays(1).toDateTimeAtStartOfDay()));
+        }
+
+        if (form.isChargeBoxIdSet()) {
+            conditions.add(WEBSOCKET_LOG.CHARGE_BOX_ID.eq(form.getChargeBoxId()));
+        }
 
+        if (form.isEventSet()) {
+            conditions.add(WEBSOCKET_LOG.EVENT.eq(form.getEvent()));
+        }
 
-        DataType<DateTime> jodaTimestamp =
-                SQLDataType.TIMESTAMP.asConvertedDataType(new JodaDateTimeConverter());
+        if (form.isTransactionIdSet()) {
+            conditions.add(WEBSOCKET_LOG.TRANSACTION_ID.eq(form.getTransactionId()));
+        }
+
+        if (form.isCursorSet()) {
+            conditions.add(DSL.row(WEBSOCKET_LOG.TIME, WEBSOCKET_LOG.ID)
+                              .lt(new DateTime(form.getBeforeTime()), form.getBeforeId()));
+        }
 
         return dslContext
                 .selectFrom(WEBSOCKET_LOG)
-                .where(
-                        DSL.field("time", jodaTimestamp).between(
-                                DSL.val(start, jodaTimestamp),
-                                DSL.val(end,   jodaTimestamp)
-                        )
-                )
-                .orderBy(WEBSOCKET_LOG.TIME.desc())
+                .where(conditions)
+                .orderBy(WEBSOCKET_LOG.TIME.desc(), WEBSOCKET_LOG.ID.desc())
+                .limit(limit)
                 .fetchInto(WebSocketLog.class);
     }
 
+    /**
+     * One multi-row insert for the whole batch.
+     */
+    public void insert(List<WebSocketLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+
+        InsertValuesStep7<WebsocketLogRecord, DateTime, String, String, String, String, String, String> insert =
+                dslContext.insertInto(WEBSOCKET_LOG,
+                        WEBSOCKET_LOG.TIME,
+                        WEBSOCKET_LOG.CHARGE_BOX_ID,
+                        WEBSOCKET_LOG.SESSION_ID,
+                        WEBSOCKET_LOG.TRANSACTION_ID,
+                        WEBSOCKET_LOG.EVENT,
+                        WEBSOCKET_LOG.PAYLOAD,
+                        WEBSOCKET_LOG.DIRECTION);
+
+        for (WebSocketLog view : logs) {
+            insert = insert.values(view.getTime(), view.getChargeBoxId(), view.getSessionId(),
+                    view.getTransactionId(), view.getEvent(), view.getPayload(), view.getDirection());
+        }
+        insert.execute();
+    }
+
+    // -------------------------------------------------------------------------
+    // Retention
+    // -------------------------------------------------------------------------
+
+    /**
+     * Splits the catch-all partition, so that every day until the given one has its own partition. A table that is
+     * not partitioned at all is reported as an error, its entries are purged with deletes.
+     */
+    public void createPartitionsUntil(LocalDate until) {
+        List<Partition> partitions = getDailyPartitions();
+
+        LocalDate day;
+        if (!partitions.isEmpty()) {
+            // The upper bound of the last partition is the first day that is not covered yet
+            day = partitions.get(partitions.size() - 1).upperBound;
+        } else if (isPartitioned()) {
+            // Only the catch-all partition is there, the one of today also takes its older entries
+            day = LocalDate.now();
+        } else {
+            log.error("websocket_log is not partitioned (see migration V1_1_9), old entries are purged with deletes");
+            return;
+        }
+
+        while (!day.isAfter(until)) {
+            LocalDate next = day.plusDays(1);
+            dslContext.execute("ALTER TABLE websocket_log REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                    + "PARTITION p" + day.toString("yyyyMMdd") + " VALUES LESS THAN (TO_DAYS('" + next + "')), "
+                    + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+            day = next;
+        }
+    }
+
+    /**
+     * Drops the partitions that only contain entries before the threshold.
+     *
+     * @return false, if the table is not partitioned and nothing was dropped
+     */
+    public boolean dropPartitionsBefore(LocalDate threshold) {
+        List<Partition> partitions = getDailyPartitions();
+        if (partitions.isEmpty()) {
+            return false;
+        }
+
+        for (Partition p : partitions) {
+            if (!p.upperBound.isAfter(threshold)) {
+                dslContext.execute("ALTER TABLE websocket_log DROP PARTITION " + p.name);
+                log.info("Dropped websocket_log partition {}", p.name);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Fallback for tables that are not partitioned. Deletes in chunks, so that the table is not locked for the
+     * whole purge.
+     *
+     * @return number of deleted rows
+     */
+    public int deleteOlderThan(DateTime threshold, int chunkSize) {
+        int total = 0;
+        int deleted;
+        do {
+            deleted = dslContext.deleteFrom(WEBSOCKET_LOG)
+                    .where(WEBSOCKET_LOG.TIME.lt(threshold))
+                    .limit(chunkSize)
+                    .execute();
+            total += deleted;
+        } while (deleted == chunkSize);
+        return total;
+    }
+
+    private boolean isPartitioned() {
+        return dslContext.resultQuery(
+                        "SELECT 1 FROM information_schema.PARTITIONS "
+                                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'websocket_log' "
+                                + "AND PARTITION_NAME IS NOT NULL LIMIT 1")
+                .fetchOne() != null;
+    }
+
+    /**
+     * Name and exclusive upper bound of all partitions except the catch-all one, in ascending order.
+     */
+    private List<Partition> getDailyPartitions() {
+        return dslContext.resultQuery(
+                        "SELECT PARTITION_NAME, FROM_DAYS(PARTITION_DESCRIPTION) "
+                                + "FROM information_schema.PARTITIONS "
+                                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'websocket_log' "
+                                + "AND PARTITION_NAME IS NOT NULL AND PARTITION_DESCRIPTION <> 'MAXVALUE' "
+                                + "ORDER BY PARTITION_ORDINAL_POSITION")
+                .fetch(r -> new Partition(r.get(0, String.class), new LocalDate(r.get(1, java.sql.Date.class))));
+    }
+
+    @RequiredArgsConstructor
+    private static class Partition {
+        private final String name;
+        private final LocalDate upperBound;
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import ocpp.cs._2015._10.MeterValue;
+
+import java.util.List;
+
+/**
+ * One MeterValues message of a charge point, as it travels through the ingestion queue. It is also the format of the
+ * spill file, therefore it must stay (de)serializable with the OCPP JSON mapper.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class MeterValueSample {
+    private String chargeBoxId;
+    private int connectorId;
+    private Integer transactionId;
+    private List<MeterValue> meterValues;
+    private long receivedAtMillis;
+
+    // Set during processing
+    @JsonIgnore private int connectorPk;
+    @JsonIgnore private boolean replayed;
+    // Whether the sample had values to store, and whether it was billed already
+    @JsonIgnore private boolean valuesStored;
+    @JsonIgnore private boolean billed;
+}
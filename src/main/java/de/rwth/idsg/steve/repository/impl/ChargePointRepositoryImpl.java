@@ -25,6 +25,8 @@ import de.rwth.idsg.steve.repository.ChargePointRepository;
 import de.rwth.idsg.steve.repository.dto.ChargePoint;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
 import de.rwth.idsg.steve.repository.dto.ConnectorStatus;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import de.rwth.idsg.steve.service.notification.ChargePointRegistrationChanged;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.web.dto.ChargePointForm;
 import de.rwth.idsg.steve.web.dto.ChargePointQueryForm;
@@ -36,19 +38,19 @@ import ocpp.cs._2015._10.RegistrationStatus;
 import org.joda.time.DateTime;
 import org.jooq.Condition;
 import org.jooq.DSLContext;
-import org.jooq.Field;
 import org.jooq.Record1;
 import org.jooq.Record5;
 import org.jooq.Result;
 import org.jooq.SelectConditionStep;
 import org.jooq.SelectQuery;
-import org.jooq.Table;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -58,7 +60,7 @@ import static de.rwth.idsg.steve.utils.CustomDSL.date;
 import static de.rwth.idsg.steve.utils.CustomDSL.includes;
 import static jooq.steve.db.tables.ChargeBox.CHARGE_BOX;
 import static jooq.steve.db.tables.Connector.CONNECTOR;
-import static jooq.steve.db.tables.ConnectorStatus.CONNECTOR_STATUS;
+import static jooq.steve.db.tables.ConnectorStatusLatest.CONNECTOR_STATUS_LATEST;
 
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
@@ -70,11 +72,14 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
 
     private final DSLContext ctx;
     private final AddressRepository addressRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
 
     @Autowired
-    public ChargePointRepositoryImpl(DSLContext ctx, AddressRepository addressRepository) {
+    public ChargePointRepositoryImpl(DSLContext ctx, AddressRepository addressRepository,
+                                     ApplicationEventPublisher applicationEventPublisher) {
         this.ctx = ctx;
         this.addressRepository = addressRepository;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     @Override
@@ -87,6 +92,13 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
         return Optional.ofNullable(status);
     }
 
+    @Override
+    public Map<String, String> getRegistrationStatuses() {
+        return ctx.select(CHARGE_BOX.CHARGE_BOX_ID, CHARGE_BOX.REGISTRATION_STATUS)
+                  .from(CHARGE_BOX)
+                  .fetchMap(CHARGE_BOX.CHARGE_BOX_ID, CHARGE_BOX.REGISTRATION_STATUS);
+    }
+
     @Override
     public List<ChargePointSelect> getChargePointSelect(OcppProtocol protocol, List<String> inStatusFilter, List<String> chargeBoxIdFilter) {
         Condition chargeBoxIdCondition = CollectionUtils.isEmpty(chargeBoxIdFilter)
@@ -207,26 +219,6 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
 
     @Override
     public List<ConnectorStatus> getChargePointConnectorStatus(ConnectorStatusForm form) {
-        // find out the latest timestamp for each connector
-        Field<Integer> t1Pk = CONNECTOR_STATUS.CONNECTOR_PK.as("t1_pk");
-        Field<DateTime> t1TsMax = DSL.max(CONNECTOR_STATUS.STATUS_TIMESTAMP).as("t1_ts_max");
-        Table<?> t1 = ctx.select(t1Pk, t1TsMax)
-                         .from(CONNECTOR_STATUS)
-                         .groupBy(CONNECTOR_STATUS.CONNECTOR_PK)
-                         .asTable("t1");
-
-        // get the status table with latest timestamps only
-        Field<Integer> t2Pk = CONNECTOR_STATUS.CONNECTOR_PK.as("t2_pk");
-        Field<DateTime> t2Ts = CONNECTOR_STATUS.STATUS_TIMESTAMP.as("t2_ts");
-        Field<String> t2Status = CONNECTOR_STATUS.STATUS.as("t2_status");
-        Field<String> t2Error = CONNECTOR_STATUS.ERROR_CODE.as("t2_error");
-        Table<?> t2 = ctx.selectDistinct(t2Pk, t2Ts, t2Status, t2Error)
-                         .from(CONNECTOR_STATUS)
-                         .join(t1)
-                            .on(CONNECTOR_STATUS.CONNECTOR_PK.equal(t1.field(t1Pk)))
-                            .and(CONNECTOR_STATUS.STATUS_TIMESTAMP.equal(t1.field(t1TsMax)))
-                         .asTable("t2");
-
         // https://github.com/steve-community/steve/issues/691
         Condition chargeBoxCondition = CHARGE_BOX.REGISTRATION_STATUS.eq(RegistrationStatus.ACCEPTED.value());
 
@@ -238,24 +230,24 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
         if (form == null || form.getStatus() == null) {
             statusCondition = DSL.noCondition();
         } else {
-            statusCondition = t2.field(t2Status).eq(form.getStatus());
+            statusCondition = CONNECTOR_STATUS_LATEST.STATUS.eq(form.getStatus());
         }
 
         return ctx.select(
                         CHARGE_BOX.CHARGE_BOX_PK,
                         CONNECTOR.CHARGE_BOX_ID,
                         CONNECTOR.CONNECTOR_ID,
-                        t2.field(t2Ts),
-                        t2.field(t2Status),
-                        t2.field(t2Error),
+                        CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP,
+                        CONNECTOR_STATUS_LATEST.STATUS,
+                        CONNECTOR_STATUS_LATEST.ERROR_CODE,
                         CHARGE_BOX.OCPP_PROTOCOL)
-                  .from(t2)
+                  .from(CONNECTOR_STATUS_LATEST)
                   .join(CONNECTOR)
-                        .on(CONNECTOR.CONNECTOR_PK.eq(t2.field(t2Pk)))
+                        .on(CONNECTOR.CONNECTOR_PK.eq(CONNECTOR_STATUS_LATEST.CONNECTOR_PK))
                   .join(CHARGE_BOX)
                         .on(CHARGE_BOX.CHARGE_BOX_ID.eq(CONNECTOR.CHARGE_BOX_ID))
                   .where(chargeBoxCondition, statusCondition)
-                  .orderBy(t2.field(t2Ts).desc())
+                  .orderBy(CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP.desc())
                   .fetch()
                   .map(r -> ConnectorStatus.builder()
                                            .chargeBoxPk(r.value1())
@@ -289,12 +281,13 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
                                                      .collect(Collectors.toList());
 
         ctx.batchInsert(batch).execute();
+        applicationEventPublisher.publishEvent(new ChargePointRegistrationChanged(chargeBoxIdList));
     }
 
 
     @Override
     public int addChargePoint(ChargePointForm form) {
-        return ctx.transactionResult(configuration -> {
+        int chargeBoxPk = ctx.transactionResult(configuration -> {
             DSLContext ctx = DSL.using(configuration);
             try {
                 Integer addressId = addressRepository.updateOrInsert(ctx, form.getAddress());
@@ -305,6 +298,10 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
                         form.getChargeBoxId(), e);
             }
         });
+
+        applicationEventPublisher.publishEvent(
+                new ChargePointRegistrationChanged(Collections.singletonList(form.getChargeBoxId())));
+        return chargeBoxPk;
     }
 
     @Override
@@ -320,20 +317,34 @@ public class ChargePointRepositoryImpl implements ChargePointRepository {
                         form.getChargeBoxId(), e);
             }
         });
+
+        applicationEventPublisher.publishEvent(
+                new ChargePointRegistrationChanged(Collections.singletonList(form.getChargeBoxId())));
     }
 
     @Override
     public void deleteChargePoint(int chargeBoxPk) {
-        ctx.transaction(configuration -> {
+        String chargeBoxId = ctx.transactionResult(configuration -> {
             DSLContext ctx = DSL.using(configuration);
             try {
+                String id = ctx.select(CHARGE_BOX.CHARGE_BOX_ID)
+                               .from(CHARGE_BOX)
+                               .where(CHARGE_BOX.CHARGE_BOX_PK.equal(chargeBoxPk))
+                               .fetchOne(CHARGE_BOX.CHARGE_BOX_ID);
+
                 addressRepository.delete(ctx, selectAddressId(chargeBoxPk));
                 deleteChargePointInternal(ctx, chargeBoxPk);
+                return id;
 
             } catch (DataAccessException e) {
                 throw new SteveException("Failed to delete the charge point", e);
             }
         });
+
+        // The connectors are deleted with the charge point
+        if (chargeBoxId != null) {
+            applicationEventPublisher.publishEvent(new ChargePointDeleted(chargeBoxId));
+        }
     }
 
     @Override
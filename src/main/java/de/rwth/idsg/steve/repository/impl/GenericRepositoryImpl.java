@@ -20,13 +20,11 @@ package de.rwth.idsg.steve.repository.impl;
 
 import de.rwth.idsg.steve.repository.GenericRepository;
 import de.rwth.idsg.steve.repository.ReservationStatus;
-import de.rwth.idsg.steve.repository.TransactionRepository;
 import de.rwth.idsg.steve.repository.dto.DbVersion;
-import de.rwth.idsg.steve.repository.dto.Transaction;
+import de.rwth.idsg.steve.service.ActiveTransactionRegistry;
 import de.rwth.idsg.steve.utils.DateTimeConverter;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.web.dto.Statistics;
-import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.jooq.*;
@@ -35,11 +33,8 @@ import org.jooq.impl.SQLDataType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
-
 import static de.rwth.idsg.steve.utils.CustomDSL.date;
 import static jooq.steve.db.Tables.RESERVATION;
-import static jooq.steve.db.Tables.TRANSACTION;
 import static jooq.steve.db.tables.ChargeBox.CHARGE_BOX;
 import static jooq.steve.db.tables.OcppTag.OCPP_TAG;
 import static jooq.steve.db.tables.SchemaVersion.SCHEMA_VERSION;
@@ -59,7 +54,7 @@ public class GenericRepositoryImpl implements GenericRepository {
     private DSLContext ctx;
 
     @Autowired
-    private TransactionRepository transactionRepositoryImpl;
+    private ActiveTransactionRegistry activeTransactionRegistry;
 
     @Override
     public Statistics getStats() {
@@ -91,12 +86,6 @@ public class GenericRepositoryImpl implements GenericRepository {
                         .and(RESERVATION.STATUS.eq(ReservationStatus.ACCEPTED.name()))
                         .asField("num_reservations");
 
-        Field<Integer> numTransactions =
-                ctx.selectCount()
-                        .from(TRANSACTION)
-                        .where(TRANSACTION.STOP_TIMESTAMP.isNull())
-                        .asField("num_transactions");
-
         Field<Integer> heartbeatsToday =
                 ctx.selectCount()
                         .from(CHARGE_BOX)
@@ -118,13 +107,12 @@ public class GenericRepositoryImpl implements GenericRepository {
                                 .lessThan(date(DSL.val(yesterdaysNow, dateTimeDataType))))
                         .asField("heartbeats_earlier");
 
-        Record8<Integer, Integer, Integer, Integer, Integer, Integer, Integer, Integer> gs =
+        Record7<Integer, Integer, Integer, Integer, Integer, Integer, Integer> gs =
                 ctx.select(
                         numChargeBoxes,
                         numOcppTags,
                         numUsers,
                         numReservations,
-                        numTransactions,
                         heartbeatsToday,
                         heartbeatsYesterday,
                         heartbeatsEarlier
@@ -135,31 +123,13 @@ public class GenericRepositoryImpl implements GenericRepository {
                 .numOcppTags(gs.value2())
                 .numUsers(gs.value3())
                 .numReservations(gs.value4())
-                .numTransactions(retrieveCountFromActiveTransactionId())
-                .heartbeatToday(gs.value6())
-                .heartbeatYesterday(gs.value7())
-                .heartbeatEarlier(gs.value8())
+                .numTransactions(activeTransactionRegistry.size())
+                .heartbeatToday(gs.value5())
+                .heartbeatYesterday(gs.value6())
+                .heartbeatEarlier(gs.value7())
                 .build();
     }
 
-    private int retrieveCountFromActiveTransactionId() {
-
-        TransactionQueryForm form = new TransactionQueryForm();
-        form.setChargeBoxId(null);
-        form.setOcppIdTag(null);
-        form.setFrom(null);
-        form.setTo(null);
-        form.setTransactionPk(null);
-        form.setReturnCSV(false);
-        form.setType(TransactionQueryForm.QueryType.ACTIVE);
-        form.setPeriodType(TransactionQueryForm.QueryPeriodType.ALL);
-
-        List<Transaction> txList = transactionRepositoryImpl.getTransactions(form);
-
-        return (int) txList.stream().count();
-    }
-
-
     @Override
     public DbVersion getDBVersion() {
         Record2<String, DateTime> record = ctx.select(SCHEMA_VERSION.VERSION, SCHEMA_VERSION.INSTALLED_ON)
@@ -20,25 +20,35 @@ package de.rwth.idsg.steve.repository.impl;
 
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Striped;
+import de.rwth.idsg.steve.HttpIntegration;
 import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
 import de.rwth.idsg.steve.externalconfig.ScheduledChargingMessages;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.repository.OcppServerRepository;
 import de.rwth.idsg.steve.repository.ReservationRepository;
 import de.rwth.idsg.steve.repository.dto.*;
 import de.rwth.idsg.steve.service.*;
+import de.rwth.idsg.steve.service.dto.LatestConnectorStatus;
+import de.rwth.idsg.steve.service.dto.TransactionMeterValues;
 import jooq.steve.db.enums.TransactionStopEventActor;
 import jooq.steve.db.enums.TransactionStopFailedEventActor;
 import jooq.steve.db.tables.records.ConnectorMeterValueRecord;
+import jooq.steve.db.tables.records.ConnectorRecord;
 import jooq.steve.db.tables.records.ScheduleChargingRecord;
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.MeterValue;
+import org.jetbrains.annotations.Nullable;
 import org.joda.time.DateTime;
 import org.jooq.DSLContext;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertValuesStep2;
+import org.jooq.Query;
 import org.jooq.Record1;
 import org.jooq.Result;
+import org.jooq.Row2;
 import org.jooq.SelectConditionStep;
 import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -46,16 +56,19 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.CollectionUtils;
-import org.springframework.web.client.RestTemplate;
 
 import java.math.BigDecimal;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.locks.Lock;
@@ -91,6 +104,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
     @Autowired
     private RetrieveTransactionMeterValues retrieveTransactionMeterValues;
     @Autowired
+    private TransactionMeterValueStore meterValueStore;
+    @Autowired
     private ScheduleChargingService scheduleChargingService;
 
     @Autowired
@@ -110,7 +125,14 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
     private TariffAmountCalculation tariffAmountCalculation;
 
     @Autowired
-    private RestTemplate restTemplate;
+    private IntegrationClients integrationClients;
+
+    @Autowired
+    private OcppIdentityDirectory identityDirectory;
+    @Autowired
+    private ActiveTransactionRegistry activeTransactionRegistry;
+    @Autowired
+    private LatestConnectorStatusService latestConnectorStatusService;
 
     @Override
     public void updateChargebox(UpdateChargeboxParams p) {
@@ -131,11 +153,18 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
     }
 
     @Override
-    public void updateOcppProtocol(String chargeBoxIdentity, OcppProtocol protocol) {
-        ctx.update(CHARGE_BOX)
-                .set(CHARGE_BOX.OCPP_PROTOCOL, protocol.getCompositeValue())
-                .where(CHARGE_BOX.CHARGE_BOX_ID.equal(chargeBoxIdentity))
-                .execute();
+    public void updateOcppProtocol(Map<String, OcppProtocol> protocols) {
+        // There are only a few protocols, so one update per protocol covers all stations
+        Map<OcppProtocol, List<String>> byProtocol = new EnumMap<>(OcppProtocol.class);
+        protocols.forEach((chargeBoxId, protocol) ->
+                byProtocol.computeIfAbsent(protocol, k -> new ArrayList<>()).add(chargeBoxId));
+
+        List<Query> queries = new ArrayList<>(byProtocol.size());
+        byProtocol.forEach((protocol, chargeBoxIds) ->
+                queries.add(ctx.update(CHARGE_BOX)
+                               .set(CHARGE_BOX.OCPP_PROTOCOL, protocol.getCompositeValue())
+                               .where(CHARGE_BOX.CHARGE_BOX_ID.in(chargeBoxIds))));
+        ctx.batch(queries).execute();
     }
 
     @Override
@@ -174,21 +203,22 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
 
     @Override
     public void insertConnectorStatus(InsertConnectorStatusParams p) {
-        ctx.transaction(configuration -> {
+        LatestConnectorStatus latest = ctx.transactionResult(configuration -> {
             DSLContext ctx = DSL.using(configuration);
 
             // Step
             insertIgnoreConnector(ctx, p.getChargeBoxId(), p.getConnectorId());
+            Integer connectorPk = ctx.select(CONNECTOR.CONNECTOR_PK)
+                                     .from(CONNECTOR)
+                                     .where(CONNECTOR.CHARGE_BOX_ID.equal(p.getChargeBoxId()))
+                                     .and(CONNECTOR.CONNECTOR_ID.equal(p.getConnectorId()))
+                                     .fetchOne(CONNECTOR.CONNECTOR_PK);
             // -------------------------------------------------------------------------
-            // Step 2: We store a log of connector statuses
+            // Step 2: We store a log of connector statuses, and the newest one separately
             // -------------------------------------------------------------------------
 
             ctx.insertInto(CONNECTOR_STATUS)
-                    .set(CONNECTOR_STATUS.CONNECTOR_PK, DSL.select(CONNECTOR.CONNECTOR_PK)
-                            .from(CONNECTOR)
-                            .where(CONNECTOR.CHARGE_BOX_ID.equal(p.getChargeBoxId()))
-                            .and(CONNECTOR.CONNECTOR_ID.equal(p.getConnectorId()))
-                    )
+                    .set(CONNECTOR_STATUS.CONNECTOR_PK, connectorPk)
                     .set(CONNECTOR_STATUS.STATUS_TIMESTAMP, p.getTimestamp())
                     .set(CONNECTOR_STATUS.STATUS, p.getStatus())
                     .set(CONNECTOR_STATUS.ERROR_CODE, p.getErrorCode())
@@ -197,12 +227,26 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                     .set(CONNECTOR_STATUS.VENDOR_ERROR_CODE, p.getVendorErrorCode())
                     .execute();
 
+            LatestConnectorStatus status = LatestConnectorStatus.builder()
+                    .connectorPk(connectorPk)
+                    .statusTimestamp(p.getTimestamp())
+                    .status(p.getStatus())
+                    .errorCode(p.getErrorCode())
+                    .errorInfo(p.getErrorInfo())
+                    .vendorId(p.getVendorId())
+                    .vendorErrorCode(p.getVendorErrorCode())
+                    .build();
+            latestConnectorStatusService.write(ctx, status);
+
             if (!p.getStatus().equalsIgnoreCase("finishing")) {
                 chargerStatusService.sendNotification(p.getChargeBoxId(), p.getConnectorId(), p.getStatus(), p.getErrorCode(), p.getErrorInfo(), p.getVendorErrorCode());
             }
 
             log.debug("Stored a new connector status for {}/{}.", p.getChargeBoxId(), p.getConnectorId());
+            return status;
         });
+
+        latestConnectorStatusService.apply(latest);
     }
 
     @Override
@@ -211,17 +255,30 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
             return;
         }
 
-        ctx.transaction(configuration -> {
+        Integer knownConnectorPk = identityDirectory.getConnectorPk(chargeBoxIdentity, connectorId);
+
+        Integer connectorPk = ctx.transactionResult(configuration -> {
             try {
                 DSLContext ctx = DSL.using(configuration);
 
-                insertIgnoreConnector(ctx, chargeBoxIdentity, connectorId);
-                int connectorPk = getConnectorPkFromConnector(ctx, chargeBoxIdentity, connectorId);
-                batchInsertMeterValues(ctx, list, connectorPk, transactionId);
+                int pk;
+                if (knownConnectorPk != null) {
+                    pk = knownConnectorPk;
+                } else {
+                    insertIgnoreConnector(ctx, chargeBoxIdentity, connectorId);
+                    pk = getConnectorPkFromConnector(ctx, chargeBoxIdentity, connectorId);
+                }
+                batchInsertMeterValues(ctx, list, pk, transactionId);
+                return pk;
             } catch (Exception e) {
                 log.error("Exception occurred  line 226 :", e);
+                return null;
             }
         });
+
+        if (knownConnectorPk == null && connectorPk != null) {
+            identityDirectory.putConnector(chargeBoxIdentity, connectorId, connectorPk);
+        }
     }
 
     @Override
@@ -234,12 +291,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
             try {
                 DSLContext ctx = DSL.using(configuration);
 
-                // First, get connector primary key from transaction table
-                int connectorPk = ctx.select(TRANSACTION_START.CONNECTOR_PK)
-                        .from(TRANSACTION_START)
-                        .where(TRANSACTION_START.TRANSACTION_PK.equal(transactionId))
-                        .fetchOne()
-                        .value1();
+                // First, get connector primary key of the transaction
+                int connectorPk = identityDirectory.getTransaction(transactionId).getConnectorPk();
 
                 batchInsertMeterValues(ctx, list, connectorPk, transactionId);
             } catch (Exception e) {
@@ -248,6 +301,116 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
         });
     }
 
+    @Override
+    public void insertMeterValues(List<MeterValueSample> samples) {
+        List<MeterValueSample> resolved = new ArrayList<>(samples.size());
+        List<TransactionMeterValues> rows = new ArrayList<>(samples.size());
+
+        ctx.transaction(configuration -> {
+            DSLContext ctx = DSL.using(configuration);
+
+            List<MeterValueSample> nonEmpty = samples.stream()
+                    .filter(s -> !CollectionUtils.isEmpty(s.getMeterValues()))
+                    .collect(Collectors.toList());
+            if (nonEmpty.isEmpty()) {
+                return;
+            }
+
+            resolved.addAll(resolveConnectorPks(ctx, nonEmpty));
+
+            List<MeterValueSample> stored = new ArrayList<>(resolved.size());
+            InsertSetMoreStep<ConnectorMeterValueRecord> insert = null;
+            for (MeterValueSample s : resolved) {
+                List<ConnectorMeterValueRecord> records =
+                        toConnectorMeterValueRecords(ctx, s.getMeterValues(), s.getConnectorPk(), s.getTransactionId());
+                s.setValuesStored(!records.isEmpty());
+                if (records.isEmpty()) {
+                    continue;
+                }
+                for (ConnectorMeterValueRecord r : records) {
+                    insert = (insert == null)
+                            ? ctx.insertInto(CONNECTOR_METER_VALUE).set(r)
+                            : insert.newRecord().set(r);
+                }
+                stored.add(s);
+            }
+
+            if (insert != null) {
+                insert.execute();
+            }
+
+            // In the same transaction, so that a failed batch leaves nothing behind that its retry would duplicate
+            rows.addAll(retrieveTransactionMeterValues.toTransactionMeterValues(stored));
+            meterValueStore.storeRows(ctx, rows);
+        });
+
+        // Only now that the connectors are committed
+        for (MeterValueSample sample : resolved) {
+            identityDirectory.putConnector(sample.getChargeBoxId(), sample.getConnectorId(), sample.getConnectorPk());
+        }
+
+        retrieveTransactionMeterValues.afterStored(rows);
+    }
+
+    /**
+     * Sets the connectorPks of the samples from the directory. The connectors that are not known yet are inserted,
+     * if missing, and looked up with one query each instead of two per sample.
+     *
+     * @return the samples whose connector could be resolved. INSERT IGNORE skips a connector silently (e.g. when the
+     *         charge box does not exist), and such samples are left out.
+     */
+    private List<MeterValueSample> resolveConnectorPks(DSLContext ctx, List<MeterValueSample> samples) {
+        List<MeterValueSample> resolved = new ArrayList<>(samples.size());
+        List<MeterValueSample> unknown = new ArrayList<>();
+        for (MeterValueSample s : samples) {
+            Integer connectorPk = identityDirectory.getConnectorPk(s.getChargeBoxId(), s.getConnectorId());
+            if (connectorPk == null) {
+                unknown.add(s);
+            } else {
+                s.setConnectorPk(connectorPk);
+                resolved.add(s);
+            }
+        }
+        if (unknown.isEmpty()) {
+            return resolved;
+        }
+
+        Map<String, Set<Integer>> connectorIds = new HashMap<>();
+        for (MeterValueSample s : unknown) {
+            connectorIds.computeIfAbsent(s.getChargeBoxId(), k -> new HashSet<>()).add(s.getConnectorId());
+        }
+
+        InsertValuesStep2<ConnectorRecord, String, Integer> insert =
+                ctx.insertInto(CONNECTOR, CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID);
+        List<Row2<String, Integer>> rows = new ArrayList<>();
+        for (Map.Entry<String, Set<Integer>> entry : connectorIds.entrySet()) {
+            for (Integer id : entry.getValue()) {
+                insert = insert.values(entry.getKey(), id);
+                rows.add(DSL.row(entry.getKey(), id));
+            }
+        }
+        insert.onDuplicateKeyIgnore().execute();
+
+        Map<String, Map<Integer, Integer>> connectorPks = new HashMap<>();
+        ctx.select(CONNECTOR.CONNECTOR_PK, CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+           .from(CONNECTOR)
+           .where(DSL.row(CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID).in(rows))
+           .fetch()
+           .forEach(r -> connectorPks.computeIfAbsent(r.value2(), k -> new HashMap<>()).put(r.value3(), r.value1()));
+
+        for (MeterValueSample s : unknown) {
+            Integer connectorPk = connectorPks.getOrDefault(s.getChargeBoxId(), Map.of()).get(s.getConnectorId());
+            if (connectorPk == null) {
+                log.warn("Dropping MeterValues of '{}' connector {}, since the connector could not be stored",
+                        s.getChargeBoxId(), s.getConnectorId());
+                continue;
+            }
+            s.setConnectorPk(connectorPk);
+            resolved.add(s);
+        }
+        return resolved;
+    }
+
     @Override
     public int insertTransaction(InsertTransactionParams p) {
 
@@ -313,8 +476,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                 HttpEntity<UpdateTransactionRequest> entity =
                         new HttpEntity<>(request, headers);
 
-                ResponseEntity<String> response =
-                        restTemplate.postForEntity(url, entity, String.class);
+                integrationClients.get(HttpIntegration.UPDATE_TRANSACTION)
+                                  .execute(rt -> rt.postForEntity(url, entity, String.class));
             } catch (Exception e) {
                 log.error("Exception occurred 322 line", e);
 
@@ -372,6 +535,7 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                     .set(TRANSACTION_STOP.STOP_VALUE, p.getStopMeterValue())
                     .set(TRANSACTION_STOP.STOP_REASON, reason)
                     .execute();
+            activeTransactionRegistry.remove(p.getTransactionId());
             ReasonRetrieveService.removeCustomReason(p.getTransactionId());
             Integer connectorPk = ctx.select(TRANSACTION_START.CONNECTOR_PK)
                     .from(TRANSACTION_START)
@@ -398,6 +562,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
 
             tariffAmountCalculation.
                     sets(idTag, Double.parseDouble(p.getStopMeterValue()), p.getChargeBoxId(), p.getStopTimestamp(), p.getTransactionId(), connectorPk);
+            // flush the billing state, since the following steps read the final amounts from wallet_track
+            tariffAmountCalculation.completeTransaction(p.getTransactionId());
             retrieveTransactionMeterValues.insertTran(p.getTransactionId(), connectorPk, 0.0, 0.0, Double.parseDouble(p.getStopMeterValue()), 0.0, 0.0, idTag, p.getChargeBoxId());
             if (isPayUser(retrieveQrPaymentIdTag(p.getTransactionId()))) {
                 updateQrPaymentActiveTransaction(p.getTransactionId(), retrieveChargedAmount(p.getTransactionId()));
@@ -419,6 +585,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
         } catch (Exception e) {
             log.error("Exception occurred 406 line", e);
             tryInsertingFailed(p, e);
+            // otherwise the wallet reservation of the transaction is never released
+            tariffAmountCalculation.completeTransaction(p.getTransactionId());
         }
 
         // -------------------------------------------------------------------------
@@ -528,13 +696,15 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                         .set(CONNECTOR_METER_VALUE.LOCATION, "Outlet")
                         .set(CONNECTOR_METER_VALUE.UNIT, "Wh")
                         .execute();
+                DateTime now = DateTime.now();
                 ctx.insertInto(CONNECTOR_STATUS)
                         .set(CONNECTOR_STATUS.STATUS, "Charging")
-                        .set(CONNECTOR_STATUS.STATUS_TIMESTAMP, DateTime.now())
+                        .set(CONNECTOR_STATUS.STATUS_TIMESTAMP, now)
                         .set(CONNECTOR_STATUS.CONNECTOR_PK, connectorPkQuery)
                         .set(CONNECTOR_STATUS.ERROR_CODE, "NoError")
                         .set(CONNECTOR_STATUS.ERROR_INFO, "Manually Inserted ")
                         .execute();
+                writeLatestConnectorStatus(ctx, connectorPkQuery, now, "Charging", "NoError", "Manually Inserted ");
             }
 
             // Actually unnecessary, because JOOQ will throw an exception, if something goes wrong
@@ -569,11 +739,36 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                     .set(CONNECTOR_STATUS.STATUS, statusUpdate.getStatus())
                     .set(CONNECTOR_STATUS.ERROR_CODE, statusUpdate.getErrorCode())
                     .execute();
+            writeLatestConnectorStatus(ctx, connectorPkQuery, timestamp, statusUpdate.getStatus(),
+                    statusUpdate.getErrorCode(), null);
         } catch (Exception e) {
             log.error("Exception occurred 508 line", e);
         }
     }
 
+    /**
+     * For the statuses that are written outside of a transaction, so that the mirror can be updated right away.
+     */
+    private void writeLatestConnectorStatus(DSLContext ctx,
+                                            SelectConditionStep<Record1<Integer>> connectorPkQuery,
+                                            DateTime timestamp, String status, String errorCode,
+                                            @Nullable String errorInfo) {
+        Integer connectorPk = ctx.fetchValue(connectorPkQuery);
+        if (connectorPk == null) {
+            return;
+        }
+
+        LatestConnectorStatus latest = LatestConnectorStatus.builder()
+                .connectorPk(connectorPk)
+                .statusTimestamp(timestamp)
+                .status(status)
+                .errorCode(errorCode)
+                .errorInfo(errorInfo)
+                .build();
+        latestConnectorStatusService.write(ctx, latest);
+        latestConnectorStatusService.apply(latest);
+    }
+
     /**
      * If the connector information was not received before, insert it. Otherwise, ignore.
      */
@@ -644,8 +839,23 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
             int connectorPk,
             Integer transactionId) {
 
-        List<ConnectorMeterValueRecord> batch =
-                list.stream()
+        List<ConnectorMeterValueRecord> batch = toConnectorMeterValueRecords(ctx, list, connectorPk, transactionId);
+
+        if (!batch.isEmpty()) {
+            ctx.batchInsert(batch).execute();
+
+            retrieveTransactionMeterValues.buildTransactionMeterValues(
+                    list, connectorPk, transactionId);
+        }
+    }
+
+    private static List<ConnectorMeterValueRecord> toConnectorMeterValueRecords(
+            DSLContext ctx,
+            List<MeterValue> list,
+            int connectorPk,
+            Integer transactionId) {
+
+        return list.stream()
                         .flatMap(mv ->
                                 mv.getSampledValue().stream()
                                         .filter(sv ->
@@ -715,13 +925,6 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                                         .filter(Objects::nonNull)
                         )
                         .collect(Collectors.toList());
-
-        if (!batch.isEmpty()) {
-            ctx.batchInsert(batch).execute();
-
-            retrieveTransactionMeterValues.buildTransactionMeterValues(
-                    list, connectorPk, transactionId);
-        }
     }
 
     private void tryInsertingFailed(UpdateTransactionParams p, Exception e) {
@@ -790,6 +993,7 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
                                 .set(SCHEDULE_CHARGING.IS_ENABLE, false)
                                 .where(SCHEDULE_CHARGING.ID.eq(toStart.get(0).getId()))
                                 .execute();
+                        scheduleChargingService.refresh(toStart.get(0).getId());
                     } catch (Exception e) {
                         log.error("OcppServerRepository implement updateScheduleCharging method Error Occur : " + e.getMessage());
                     }
@@ -917,13 +1121,8 @@ public class OcppServerRepositoryImpl implements OcppServerRepository {
 
     private String retrieveStopEnergy(String stopValue, Integer transactionPk) {
         try {
-            BigDecimal lastEnergy = ctx
-                    .select(TRANSACTION_METER_VALUES.ENERGY)
-                    .from(TRANSACTION_METER_VALUES)
-                    .where(TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionPk))
-                    .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.desc())
-                    .limit(1)
-                    .fetchOneInto(BigDecimal.class);
+            Double latestEnergy = meterValueStore.getLatestEnergy(transactionPk);
+            BigDecimal lastEnergy = latestEnergy == null ? null : BigDecimal.valueOf(latestEnergy);
 
             BigDecimal stopVal = (stopValue == null)
                     ? BigDecimal.ZERO
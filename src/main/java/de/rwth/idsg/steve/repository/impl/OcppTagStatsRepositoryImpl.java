@@ -0,0 +1,197 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.repository.impl;
+
+import de.rwth.idsg.steve.repository.OcppTagStatsRepository;
+import de.rwth.idsg.steve.repository.dto.OcppTagStats;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.jooq.BatchBindStep;
+import org.jooq.DSLContext;
+import org.jooq.Query;
+import org.jooq.Record5;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static jooq.steve.db.tables.OcppTagStats.OCPP_TAG_STATS;
+import static jooq.steve.db.tables.OcppTagStatsTransaction.OCPP_TAG_STATS_TRANSACTION;
+import static jooq.steve.db.tables.Transaction.TRANSACTION;
+import static jooq.steve.db.tables.TransactionStart.TRANSACTION_START;
+import static jooq.steve.db.tables.TransactionStop.TRANSACTION_STOP;
+import static jooq.steve.db2.Tables.WALLET_TRACK;
+
+@Slf4j
+@Repository
+public class OcppTagStatsRepositoryImpl implements OcppTagStatsRepository {
+
+    @Autowired
+    private DSLContext ctx;
+
+    @Autowired
+    @Qualifier("secondary")
+    private DSLContext secondary;
+
+    @Override
+    public Map<String, OcppTagStats> getStats(Collection<String> idTags) {
+        return ctx.selectFrom(OCPP_TAG_STATS)
+                .where(OCPP_TAG_STATS.ID_TAG.in(idTags))
+                .fetchMap(OCPP_TAG_STATS.ID_TAG, r -> OcppTagStats.builder()
+                        .idTag(r.getIdTag())
+                        .sessionCount(r.getSessionCount())
+                        .totalEnergyKwh(r.getTotalEnergyKwh())
+                        .totalSpend(r.getTotalSpend())
+                        .lastSessionTimestamp(r.getLastSessionTimestamp())
+                        .build());
+    }
+
+    @Override
+    public Set<String> countCompleted(Collection<Integer> transactionPks) {
+        List<Record5<Integer, String, String, String, DateTime>> transactions =
+                ctx.select(TRANSACTION.TRANSACTION_PK,
+                                TRANSACTION.ID_TAG,
+                                TRANSACTION.START_VALUE,
+                                TRANSACTION.STOP_VALUE,
+                                TRANSACTION.STOP_TIMESTAMP)
+                        .from(TRANSACTION)
+                        .where(TRANSACTION.TRANSACTION_PK.in(transactionPks))
+                        .and(TRANSACTION.STOP_TIMESTAMP.isNotNull())
+                        .fetch();
+
+        if (transactions.isEmpty()) {
+            return Set.of();
+        }
+
+        // The same order in all concurrent callers, so that they wait for each other instead of deadlocking
+        transactions = new ArrayList<>(transactions);
+        transactions.sort(Comparator.comparing(r -> r.value1()));
+
+        // After a stop, all segments of wallet_track carry the final amount. Read from the other database, before
+        // the transaction of this one.
+        Map<Integer, Double> spendByPk = secondary.select(WALLET_TRACK.TRANSACTION_ID, DSL.max(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT))
+                .from(WALLET_TRACK)
+                .where(WALLET_TRACK.TRANSACTION_ID.in(transactionPks))
+                .groupBy(WALLET_TRACK.TRANSACTION_ID)
+                .fetchMap(r -> r.value1(), r -> r.value2() == null ? 0.0 : r.value2());
+
+        List<Record5<Integer, String, String, String, DateTime>> rows = transactions;
+        return ctx.transactionResult(configuration -> {
+            DSLContext tx = DSL.using(configuration);
+
+            // Whoever inserts the marker of a transaction first, counts it
+            BatchBindStep markers = tx.batch(
+                    tx.insertInto(OCPP_TAG_STATS_TRANSACTION)
+                      .set(OCPP_TAG_STATS_TRANSACTION.TRANSACTION_PK, (Integer) null)
+                      .onDuplicateKeyIgnore());
+            rows.forEach(r -> markers.bind(r.value1()));
+            int[] inserted = markers.execute();
+
+            Map<String, Delta> deltas = new TreeMap<>();
+            for (int i = 0; i < rows.size(); i++) {
+                if (inserted[i] <= 0) {
+                    continue;
+                }
+                Record5<Integer, String, String, String, DateTime> r = rows.get(i);
+                deltas.computeIfAbsent(r.value2(), k -> new Delta())
+                      .add(energyKwh(r.value3(), r.value4()), spendByPk.getOrDefault(r.value1(), 0.0), r.value5());
+            }
+
+            if (deltas.isEmpty()) {
+                return Set.<String>of();
+            }
+
+            List<Query> upserts = new ArrayList<>(deltas.size());
+            deltas.forEach((idTag, d) -> upserts.add(
+                    tx.insertInto(OCPP_TAG_STATS)
+                      .set(OCPP_TAG_STATS.ID_TAG, idTag)
+                      .set(OCPP_TAG_STATS.SESSION_COUNT, d.count)
+                      .set(OCPP_TAG_STATS.TOTAL_ENERGY_KWH, d.energyKwh)
+                      .set(OCPP_TAG_STATS.TOTAL_SPEND, d.spend)
+                      .set(OCPP_TAG_STATS.LAST_SESSION_TIMESTAMP, d.last)
+                      .onDuplicateKeyUpdate()
+                      .set(OCPP_TAG_STATS.SESSION_COUNT, OCPP_TAG_STATS.SESSION_COUNT.plus(d.count))
+                      .set(OCPP_TAG_STATS.TOTAL_ENERGY_KWH, OCPP_TAG_STATS.TOTAL_ENERGY_KWH.plus(d.energyKwh))
+                      .set(OCPP_TAG_STATS.TOTAL_SPEND, OCPP_TAG_STATS.TOTAL_SPEND.plus(d.spend))
+                      .set(OCPP_TAG_STATS.LAST_SESSION_TIMESTAMP,
+                              DSL.greatest(
+                                      DSL.coalesce(OCPP_TAG_STATS.LAST_SESSION_TIMESTAMP, DSL.val(d.last, OCPP_TAG_STATS.LAST_SESSION_TIMESTAMP)),
+                                      DSL.val(d.last, OCPP_TAG_STATS.LAST_SESSION_TIMESTAMP)))));
+            tx.batch(upserts).execute();
+
+            return deltas.keySet();
+        });
+    }
+
+    @Override
+    public List<Integer> getUncountedCompleted(int fromPk, int toPk) {
+        return ctx.selectDistinct(TRANSACTION_STOP.TRANSACTION_PK)
+                .from(TRANSACTION_STOP)
+                .leftJoin(OCPP_TAG_STATS_TRANSACTION)
+                    .on(OCPP_TAG_STATS_TRANSACTION.TRANSACTION_PK.eq(TRANSACTION_STOP.TRANSACTION_PK))
+                .where(TRANSACTION_STOP.TRANSACTION_PK.ge(fromPk))
+                .and(TRANSACTION_STOP.TRANSACTION_PK.lt(toPk))
+                .and(OCPP_TAG_STATS_TRANSACTION.TRANSACTION_PK.isNull())
+                .fetch(TRANSACTION_STOP.TRANSACTION_PK);
+    }
+
+    @Override
+    public int getMaxTransactionPk() {
+        Integer max = ctx.select(DSL.max(TRANSACTION_START.TRANSACTION_PK))
+                .from(TRANSACTION_START)
+                .fetchOne(0, Integer.class);
+        return max == null ? 0 : max;
+    }
+
+    /**
+     * The meter values are in Wh. A transaction with unreadable values counts with 0 kWh.
+     */
+    private static double energyKwh(String startValue, String stopValue) {
+        try {
+            double wh = Double.parseDouble(stopValue) - Double.parseDouble(startValue);
+            return wh > 0 ? wh / 1000 : 0;
+        } catch (NullPointerException | NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static class Delta {
+        private int count;
+        private double energyKwh;
+        private double spend;
+        private DateTime last;
+
+        private void add(double energyKwh, double spend, DateTime stopTimestamp) {
+            this.count++;
+            this.energyKwh += energyKwh;
+            this.spend += spend;
+            if (last == null || stopTimestamp.isAfter(last)) {
+                last = stopTimestamp;
+            }
+        }
+    }
+}
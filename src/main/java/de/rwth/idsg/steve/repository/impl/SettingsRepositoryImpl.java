@@ -22,11 +22,13 @@ import de.rwth.idsg.steve.NotificationFeature;
 import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.repository.SettingsRepository;
 import de.rwth.idsg.steve.repository.dto.MailSettings;
+import de.rwth.idsg.steve.service.notification.SettingsChanged;
 import de.rwth.idsg.steve.web.dto.SettingsForm;
 import jooq.steve.db.tables.records.SettingsRecord;
 import org.jooq.DSLContext;
 import org.jooq.exception.DataAccessException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Repository;
 
 import java.nio.charset.StandardCharsets;
@@ -54,6 +56,11 @@ public class SettingsRepositoryImpl implements SettingsRepository {
     );
 
     @Autowired private DSLContext ctx;
+    @Autowired private ApplicationEventPublisher applicationEventPublisher;
+
+    // The settings are read for every BootNotification and most authorizations, but only change through update().
+    // The record is never modified after it is fetched, and replaced as a whole.
+    private volatile SettingsRecord snapshot;
 
     @Override
     public SettingsForm getForm() {
@@ -132,9 +139,21 @@ public class SettingsRepositoryImpl implements SettingsRepository {
         } catch (DataAccessException e) {
             throw new SteveException("FAILED to save the settings", e);
         }
+
+        snapshot = fetch();
+        applicationEventPublisher.publishEvent(new SettingsChanged());
     }
 
     private SettingsRecord getInternal() {
+        SettingsRecord r = snapshot;
+        if (r == null) {
+            r = fetch();
+            snapshot = r;
+        }
+        return r;
+    }
+
+    private SettingsRecord fetch() {
         return ctx.selectFrom(SETTINGS)
                   .where(SETTINGS.APP_ID.eq(APP_ID))
                   .fetchOne();
@@ -36,6 +36,7 @@ import org.joda.time.DateTime;
 import org.jooq.*;
 import org.jooq.impl.SQLDataType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Repository;
 
 import java.io.Writer;
@@ -59,10 +60,16 @@ import static jooq.steve.db.tables.TransactionStart.TRANSACTION_START;
 public class TransactionRepositoryImpl implements TransactionRepository {
 
     private final DSLContext ctx;
+    private final DSLContext readOnlyCtx;
 
-    @Autowired
     public TransactionRepositoryImpl(DSLContext ctx) {
+        this(ctx, ctx);
+    }
+
+    @Autowired
+    public TransactionRepositoryImpl(DSLContext ctx, @Qualifier("readOnly") DSLContext readOnlyCtx) {
         this.ctx = ctx;
+        this.readOnlyCtx = readOnlyCtx;
     }
 
     @Autowired
@@ -71,7 +78,14 @@ public class TransactionRepositoryImpl implements TransactionRepository {
     @Override
     public List<Transaction> getTransactions(TransactionQueryForm form) {
 
-        return getInternal(form).fetch()
+        return getInternal(ctx, form).fetch()
+                .map(new TransactionMapper());
+    }
+
+    @Override
+    public List<Transaction> getTransactionsReadOnly(TransactionQueryForm form) {
+
+        return getInternal(readOnlyCtx, form).fetch()
                 .map(new TransactionMapper());
     }
 
@@ -104,7 +118,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
         form.setPeriodType(TransactionQueryForm.QueryPeriodType.ALL);
 
         Record12<Integer, String, Integer, String, DateTime, String, DateTime, String, String, Integer, Integer, TransactionStopEventActor>
-                transaction = getInternal(form).fetchOne();
+                transaction = getInternal(ctx, form).fetchOne();
 
         if (transaction == null) {
             throw new SteveException("There is no transaction with id '%s'", transactionPk);
@@ -204,7 +218,13 @@ public class TransactionRepositoryImpl implements TransactionRepository {
 
     @Override
     public List<Transaction> getAllTransactions(TransactionQueryForm form) {
-        return getInternal(form).fetch()
+        return getInternal(ctx, form).fetch()
+                .map(new TransactionMapper());
+    }
+
+    @Override
+    public List<Transaction> getAllTransactionsReadOnly(TransactionQueryForm form) {
+        return getInternal(readOnlyCtx, form).fetch()
                 .map(new TransactionMapper());
     }
 
@@ -217,7 +237,7 @@ public class TransactionRepositoryImpl implements TransactionRepository {
     private SelectQuery<Record9<Integer, String, Integer, String, DateTime, String, DateTime, String, String>>
     getInternalCSV(TransactionQueryForm form) {
 
-        SelectQuery selectQuery = ctx.selectQuery();
+        SelectQuery selectQuery = readOnlyCtx.selectQuery();
         selectQuery.addFrom(TRANSACTION);
         selectQuery.addJoin(CONNECTOR, TRANSACTION.CONNECTOR_PK.eq(CONNECTOR.CONNECTOR_PK));
         selectQuery.addSelect(
@@ -241,9 +261,9 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      */
     @SuppressWarnings("unchecked")
     private SelectQuery<Record12<Integer, String, Integer, String, DateTime, String, DateTime, String, String, Integer, Integer, TransactionStopEventActor>>
-    getInternal(TransactionQueryForm form) {
+    getInternal(DSLContext context, TransactionQueryForm form) {
 
-        SelectQuery selectQuery = ctx.selectQuery();
+        SelectQuery selectQuery = context.selectQuery();
         selectQuery.addFrom(TRANSACTION);
         selectQuery.addJoin(CONNECTOR, TRANSACTION.CONNECTOR_PK.eq(CONNECTOR.CONNECTOR_PK));
         selectQuery.addJoin(CHARGE_BOX, CHARGE_BOX.CHARGE_BOX_ID.eq(CONNECTOR.CHARGE_BOX_ID));
@@ -0,0 +1,264 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import de.rwth.idsg.steve.service.notification.OcppTransactionEnded;
+import de.rwth.idsg.steve.service.notification.OcppTransactionStarted;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static jooq.steve.db.Tables.CONNECTOR;
+import static jooq.steve.db.Tables.TRANSACTION_START;
+import static jooq.steve.db.Tables.TRANSACTION_STOP;
+
+/**
+ * The transactions that are running right now, indexed by transactionPk, idTag and charge point, so that the
+ * callers that need them do not scan all transactions for every MeterValues sample or scheduler tick.
+ *
+ * Entries are added at StartTransaction and removed as soon as a stop row is written, whichever path writes it.
+ * Everything else that can change the set (manual edits in the database, a failed stop insert) is caught by the
+ * periodic reconciliation against the database.
+ *
+ * Writers are serialized on this object, readers are not. The reconciliation holds the same lock while it queries,
+ * so that a start or stop that is committed during the query is applied after it and not overwritten by it. Since
+ * the query can still read a snapshot from before a concurrent stop, stopped transactions are remembered for a while
+ * and never re-added by the reconciliation.
+ */
+@Slf4j
+@Service
+public class ActiveTransactionRegistry {
+
+    private static final long RECONCILE_INTERVAL_MILLIS = 5 * 60_000;
+
+    @Autowired
+    private DSLContext dslContext;
+
+    private final Map<Integer, ActiveTransaction> byTransactionPk = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> byIdTag = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> byChargeBoxId = new ConcurrentHashMap<>();
+
+    // Key: transactionPk, value: when it was stopped. Guarded by this.
+    private final Map<Integer, Long> recentlyStopped = new HashMap<>();
+
+    @PostConstruct
+    public void init() {
+        reconcile();
+        log.info("Loaded {} active transactions", size());
+    }
+
+    @Scheduled(initialDelay = RECONCILE_INTERVAL_MILLIS, fixedDelay = RECONCILE_INTERVAL_MILLIS)
+    public synchronized void reconcile() {
+        List<ActiveTransaction> open = dslContext
+                .select(TRANSACTION_START.TRANSACTION_PK, TRANSACTION_START.ID_TAG, TRANSACTION_START.START_TIMESTAMP,
+                        CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+                .from(TRANSACTION_START)
+                .join(CONNECTOR).on(CONNECTOR.CONNECTOR_PK.eq(TRANSACTION_START.CONNECTOR_PK))
+                .leftJoin(TRANSACTION_STOP).on(TRANSACTION_STOP.TRANSACTION_PK.eq(TRANSACTION_START.TRANSACTION_PK))
+                .where(TRANSACTION_STOP.TRANSACTION_PK.isNull())
+                .fetch(r -> ActiveTransaction.builder()
+                        .transactionPk(r.get(TRANSACTION_START.TRANSACTION_PK))
+                        .chargeBoxId(r.get(CONNECTOR.CHARGE_BOX_ID))
+                        .connectorId(r.get(CONNECTOR.CONNECTOR_ID))
+                        .idTag(r.get(TRANSACTION_START.ID_TAG))
+                        .startTimestamp(r.get(TRANSACTION_START.START_TIMESTAMP))
+                        .build());
+
+        int drift = replaceAll(open);
+        if (drift > 0) {
+            log.info("Active transaction registry corrected {} entries against the database", drift);
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Lookups
+    // -------------------------------------------------------------------------
+
+    @Nullable
+    public ActiveTransaction get(int transactionPk) {
+        return byTransactionPk.get(transactionPk);
+    }
+
+    public List<ActiveTransaction> getByIdTag(String idTag) {
+        return resolve(byIdTag.get(idTag));
+    }
+
+    public int countByIdTag(String idTag) {
+        Set<Integer> pks = byIdTag.get(idTag);
+        return pks == null ? 0 : pks.size();
+    }
+
+    public List<ActiveTransaction> getByChargeBoxId(String chargeBoxId) {
+        return resolve(byChargeBoxId.get(chargeBoxId));
+    }
+
+    public List<ActiveTransaction> getByConnector(String chargeBoxId, int connectorId) {
+        return getByChargeBoxId(chargeBoxId).stream()
+                                            .filter(tx -> tx.getConnectorId() == connectorId)
+                                            .collect(Collectors.toList());
+    }
+
+    public Collection<ActiveTransaction> getAll() {
+        return Collections.unmodifiableCollection(byTransactionPk.values());
+    }
+
+    public int size() {
+        return byTransactionPk.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Updates
+    // -------------------------------------------------------------------------
+
+    public synchronized void add(ActiveTransaction tx) {
+        unregister(tx.getTransactionPk());
+
+        byTransactionPk.put(tx.getTransactionPk(), tx);
+        index(byIdTag, tx.getIdTag(), tx.getTransactionPk());
+        index(byChargeBoxId, tx.getChargeBoxId(), tx.getTransactionPk());
+    }
+
+    /**
+     * To be called once the stop row of the transaction is written.
+     */
+    public synchronized void remove(int transactionPk) {
+        recentlyStopped.put(transactionPk, System.currentTimeMillis());
+        unregister(transactionPk);
+    }
+
+    private void unregister(int transactionPk) {
+        ActiveTransaction tx = byTransactionPk.remove(transactionPk);
+        if (tx == null) {
+            return;
+        }
+
+        unindex(byIdTag, tx.getIdTag(), transactionPk);
+        unindex(byChargeBoxId, tx.getChargeBoxId(), transactionPk);
+    }
+
+    /**
+     * @return the number of entries that were added or removed
+     */
+    synchronized int replaceAll(Collection<ActiveTransaction> open) {
+        Map<Integer, ActiveTransaction> openByPk = open.stream()
+                .collect(Collectors.toMap(ActiveTransaction::getTransactionPk, tx -> tx, (a, b) -> a));
+
+        // Long enough for any query that could still have seen them open
+        long tombstoneLimit = System.currentTimeMillis() - 2 * RECONCILE_INTERVAL_MILLIS;
+        recentlyStopped.values().removeIf(stoppedAt -> stoppedAt < tombstoneLimit);
+
+        int drift = 0;
+        for (Integer pk : new ArrayList<>(byTransactionPk.keySet())) {
+            if (!openByPk.containsKey(pk)) {
+                unregister(pk);
+                drift++;
+            }
+        }
+        for (ActiveTransaction tx : openByPk.values()) {
+            if (recentlyStopped.containsKey(tx.getTransactionPk())) {
+                continue;
+            }
+            if (!byTransactionPk.containsKey(tx.getTransactionPk())) {
+                add(tx);
+                drift++;
+            }
+        }
+        return drift;
+    }
+
+    @EventListener
+    public void onTransactionStarted(OcppTransactionStarted event) {
+        InsertTransactionParams p = event.getParams();
+
+        add(ActiveTransaction.builder()
+                .transactionPk(event.getTransactionId())
+                .chargeBoxId(p.getChargeBoxId())
+                .connectorId(p.getConnectorId())
+                .idTag(p.getIdTag())
+                .startTimestamp(p.getStartTimestamp())
+                .build());
+    }
+
+    @EventListener
+    public void onTransactionEnded(OcppTransactionEnded event) {
+        remove(event.getParams().getTransactionId());
+    }
+
+    @EventListener
+    public synchronized void onChargePointDeleted(ChargePointDeleted event) {
+        getByChargeBoxId(event.getChargeBoxId()).forEach(tx -> remove(tx.getTransactionPk()));
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private List<ActiveTransaction> resolve(@Nullable Set<Integer> transactionPks) {
+        if (transactionPks == null) {
+            return Collections.emptyList();
+        }
+
+        List<ActiveTransaction> list = new ArrayList<>(transactionPks.size());
+        for (Integer pk : transactionPks) {
+            ActiveTransaction tx = byTransactionPk.get(pk);
+            if (tx != null) {
+                list.add(tx);
+            }
+        }
+        return list;
+    }
+
+    private static void index(Map<String, Set<Integer>> map, @Nullable String key, int transactionPk) {
+        if (key != null) {
+            map.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(transactionPk);
+        }
+    }
+
+    private static void unindex(Map<String, Set<Integer>> map, @Nullable String key, int transactionPk) {
+        if (key == null) {
+            return;
+        }
+
+        Set<Integer> pks = map.get(key);
+        if (pks != null) {
+            pks.remove(transactionPk);
+            if (pks.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+}
@@ -18,7 +18,6 @@
  */
 package de.rwth.idsg.steve.service;
 
-import de.rwth.idsg.steve.repository.OcppTagRepository;
 import de.rwth.idsg.steve.repository.SettingsRepository;
 import jooq.steve.db.tables.records.OcppTagActivityRecord;
 import lombok.RequiredArgsConstructor;
@@ -41,7 +40,7 @@ import static jooq.steve.db.Tables.CONNECTOR_STATUS;
 @RequiredArgsConstructor
 public class AuthTagServiceLocal implements AuthTagService {
 
-    private final OcppTagRepository ocppTagRepository;
+    private final OcppTagActivityCache ocppTagActivityCache;
     private final SettingsRepository settingsRepository;
     private final DSLContext dslContext;
 
@@ -49,7 +48,7 @@ public class AuthTagServiceLocal implements AuthTagService {
     public IdTagInfo decideStatus(String idTag, boolean isStartTransactionReqContext,
                                   @Nullable String chargeBoxId, @Nullable Integer connectorId) {
 
-        OcppTagActivityRecord record = ocppTagRepository.getRecord(idTag);
+        OcppTagActivityRecord record = ocppTagActivityCache.get(idTag);
 //        if (!activeTransactionIsConnector(connectorId,chargeBoxId)){
 //            log.error("Connector [{}] on ChargeBox [{}] has an open transaction. Cannot proceed.", connectorId, chargeBoxId);
 //            return new IdTagInfo().withStatus(AuthorizationStatus.CONCURRENT_TX);
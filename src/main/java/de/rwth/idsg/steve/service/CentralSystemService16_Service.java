@@ -23,6 +23,7 @@ import de.rwth.idsg.steve.repository.OcppServerRepository;
 import de.rwth.idsg.steve.repository.SettingsRepository;
 import de.rwth.idsg.steve.repository.dto.InsertConnectorStatusParams;
 import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.repository.dto.MeterValueSample;
 import de.rwth.idsg.steve.repository.dto.UpdateChargeboxParams;
 import de.rwth.idsg.steve.repository.dto.UpdateTransactionParams;
 import de.rwth.idsg.steve.service.notification.OccpStationBooted;
@@ -37,9 +38,12 @@ import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.util.CollectionUtils;
 
 import java.util.Optional;
 
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
 /**
  * @author Sevket Goekay <sevketgokay@gmail.com>
  * @since 13.03.2018
@@ -63,6 +67,8 @@ public class CentralSystemService16_Service {
     private LiveChargingData liveChargingData;
     @Autowired
     private TestChargingData testChargingData;
+    @Autowired
+    private MeterValueIngestionService meterValueIngestionService;
 
     @Autowired
     private DSLContext dslContext;
@@ -142,12 +148,16 @@ public class CentralSystemService16_Service {
     public MeterValuesResponse meterValues(MeterValuesRequest parameters, String chargeBoxIdentity) {
         Integer transactionId = getTransactionId(parameters);
 
-        ocppServerRepository.insertMeterValues(
-                chargeBoxIdentity,
-                parameters.getMeterValue(),
-                parameters.getConnectorId(),
-                transactionId
-        );
+        if (!CollectionUtils.isEmpty(parameters.getMeterValue())) {
+            // Stored asynchronously, the station gets its response without waiting for the database
+            MeterValueSample sample = new MeterValueSample();
+            sample.setChargeBoxId(chargeBoxIdentity);
+            sample.setConnectorId(parameters.getConnectorId());
+            sample.setTransactionId(transactionId);
+            sample.setMeterValues(parameters.getMeterValue());
+            sample.setReceivedAtMillis(System.currentTimeMillis());
+            meterValueIngestionService.submit(sample);
+        }
 
         return new MeterValuesResponse();
     }
@@ -216,6 +226,12 @@ public class CentralSystemService16_Service {
                         .eventActor(TransactionStopEventActor.station)
                         .build();
 
+        // The final billing of the transaction should see all MeterValues that the station sent before. This blocks
+        // the WebSocket thread, so the wait is kept short.
+        if (!meterValueIngestionService.awaitStored(chargeBoxIdentity, CONFIG.getIngestion().getMeterValueStopAwaitMillis())) {
+            log.warn("Stopping transaction {} before all MeterValues of '{}' are stored", transactionId, chargeBoxIdentity);
+        }
+
         ocppServerRepository.updateTransaction(params);
 
         ocppServerRepository.insertMeterValues(chargeBoxIdentity, parameters.getTransactionData(), transactionId);
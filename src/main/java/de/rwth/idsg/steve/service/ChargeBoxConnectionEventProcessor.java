@@ -0,0 +1,256 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.repository.OcppServerRepository;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionEvent;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionState;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Takes the database side effects of stations connecting and disconnecting off the WebSocket threads, so that a
+ * session is usable as soon as it is opened. The events are partitioned by chargeBoxId, and each partition has its
+ * own bounded queue and worker, so that the events of one station are written in the order they happened. A worker
+ * collapses the events of a batch per station and writes the rows of all of them with a few statements.
+ */
+@Slf4j
+@Service
+public class ChargeBoxConnectionEventProcessor {
+
+    @Autowired
+    private ChargerPointAvailableStatusService chargerPointAvailableStatusService;
+    @Autowired
+    private ChargerStatusService chargerStatusService;
+    @Autowired
+    private OcppServerRepository ocppServerRepository;
+
+    private final SteveConfiguration.Ingestion config = SteveConfiguration.CONFIG.getIngestion();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong processedInline = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private Partition[] partitions;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() {
+        int workers = config.getConnectionWorkers();
+        partitions = new Partition[workers];
+        for (int i = 0; i < workers; i++) {
+            partitions[i] = new Partition();
+        }
+
+        running = true;
+        executor = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("SteVe-Connections-%d").build());
+        for (Partition p : partitions) {
+            executor.execute(p);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Connection event workers did not finish in time, {} events are lost", getQueueDepth());
+            }
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the event over to the worker of its station. Blocks only when the queue of the station is full, because
+     * writing the event right away could overtake the earlier events of the station that are still queued.
+     * <p>
+     * After the shutdown, the event is written right away once the workers have drained their queues. If they do not
+     * finish in time, the event is rejected for the same reason.
+     */
+    public void submit(ChargeBoxConnectionEvent event) {
+        if (!running) {
+            if (awaitWorkers()) {
+                processedInline.incrementAndGet();
+                write(Collections.singletonList(event));
+            } else {
+                reject(event);
+            }
+            return;
+        }
+
+        try {
+            partitionOf(event.getChargeBoxId()).queue.put(event);
+            enqueued.incrementAndGet();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reject(event);
+        }
+    }
+
+    public ChargeBoxConnectionStats getStats() {
+        return ChargeBoxConnectionStats.builder()
+                .queueDepth(getQueueDepth())
+                .queueCapacity(config.getConnectionQueueCapacity() * partitions.length)
+                .enqueued(enqueued.get())
+                .processedInline(processedInline.get())
+                .rejected(rejected.get())
+                .processed(processed.get())
+                .failed(failed.get())
+                .batches(batches.get())
+                .build();
+    }
+
+    private int getQueueDepth() {
+        int depth = 0;
+        for (Partition p : partitions) {
+            depth += p.queue.size();
+        }
+        return depth;
+    }
+
+    private boolean awaitWorkers() {
+        try {
+            return executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void reject(ChargeBoxConnectionEvent event) {
+        rejected.incrementAndGet();
+        log.warn("Rejecting the {} event of '{}', since it could overtake the queued events of the station",
+                event.isOnline() ? "connect" : "disconnect", event.getChargeBoxId());
+    }
+
+    private Partition partitionOf(String chargeBoxId) {
+        return partitions[Math.floorMod(chargeBoxId.hashCode(), partitions.length)];
+    }
+
+    /**
+     * @return the state of each station after the events, in the order the stations first appear
+     */
+    static Collection<ChargeBoxConnectionState> collapse(List<ChargeBoxConnectionEvent> events) {
+        Map<String, ChargeBoxConnectionState> states = new LinkedHashMap<>();
+        for (ChargeBoxConnectionEvent e : events) {
+            states.computeIfAbsent(e.getChargeBoxId(), ChargeBoxConnectionState::new).apply(e);
+        }
+        return states.values();
+    }
+
+    /**
+     * The tables are written independently, so that a failure in one of them does not hold back the others.
+     */
+    private void write(List<ChargeBoxConnectionEvent> batch) {
+        Collection<ChargeBoxConnectionState> states = collapse(batch);
+
+        Map<String, OcppProtocol> protocols = new HashMap<>();
+        for (ChargeBoxConnectionState s : states) {
+            if (s.getProtocol() != null) {
+                protocols.put(s.getChargeBoxId(), s.getProtocol());
+            }
+        }
+
+        boolean ok = run("chargebox_status", batch, () -> chargerPointAvailableStatusService.updateChargerStatus(states));
+        ok &= run("charger_status", batch, () -> chargerStatusService.updateOnline(batch, states));
+        if (!protocols.isEmpty()) {
+            ok &= run("OCPP protocol", batch, () -> ocppServerRepository.updateOcppProtocol(protocols));
+        }
+
+        batches.incrementAndGet();
+        if (ok) {
+            processed.addAndGet(batch.size());
+        } else {
+            failed.addAndGet(batch.size());
+        }
+    }
+
+    private static boolean run(String what, List<ChargeBoxConnectionEvent> batch, Runnable r) {
+        try {
+            r.run();
+            return true;
+        } catch (Exception e) {
+            log.error("Writing {} for {} connection events failed", what, batch.size(), e);
+            return false;
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Partition
+    // -------------------------------------------------------------------------
+
+    private final class Partition implements Runnable {
+        private final BlockingQueue<ChargeBoxConnectionEvent> queue =
+                new ArrayBlockingQueue<>(config.getConnectionQueueCapacity());
+
+        @Override
+        public void run() {
+            int batchSize = config.getConnectionBatchSize();
+            while (running || !queue.isEmpty()) {
+                try {
+                    ChargeBoxConnectionEvent first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+
+                    List<ChargeBoxConnectionEvent> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    write(batch);
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Unexpected error in connection event worker", e);
+                }
+            }
+        }
+    }
+}
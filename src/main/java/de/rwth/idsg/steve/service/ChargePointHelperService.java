@@ -18,6 +18,10 @@
  */
 package de.rwth.idsg.steve.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.common.util.concurrent.Striped;
 import de.rwth.idsg.steve.ocpp.OcppProtocol;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
@@ -31,7 +35,10 @@ import de.rwth.idsg.steve.repository.ChargePointRepository;
 import de.rwth.idsg.steve.repository.GenericRepository;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
 import de.rwth.idsg.steve.repository.dto.ConnectorStatus;
+import de.rwth.idsg.steve.service.dto.CacheStatistics;
 import de.rwth.idsg.steve.service.dto.UnidentifiedIncomingObject;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import de.rwth.idsg.steve.service.notification.ChargePointRegistrationChanged;
 import de.rwth.idsg.steve.utils.ConnectorStatusCountFilter;
 import de.rwth.idsg.steve.utils.DateTimeUtils;
 import de.rwth.idsg.steve.web.dto.ConnectorStatusForm;
@@ -41,10 +48,13 @@ import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.RegistrationStatus;
 import org.joda.time.DateTime;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
@@ -58,9 +68,37 @@ import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
 @Service
 public class ChargePointHelperService {
 
+    private static final long KNOWN_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long UNKNOWN_TTL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
     private final boolean autoRegisterUnknownStations = CONFIG.getOcpp().isAutoRegisterUnknownStations();
     private final Striped<Lock> isRegisteredLocks = Striped.lock(16);
 
+    // Invalidated when a charge point is added, updated or deleted here. Other applications on this database might
+    // change the rows as well, so the entries expire anyway; unknown ones sooner, so that a new station gets in quickly.
+    private final Cache<String, Optional<RegistrationStatus>> registrationStatuses = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfter(new Expiry<String, Optional<RegistrationStatus>>() {
+                @Override
+                public long expireAfterCreate(String key, Optional<RegistrationStatus> value, long currentTime) {
+                    return value.isPresent() ? KNOWN_TTL_NANOS : UNKNOWN_TTL_NANOS;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Optional<RegistrationStatus> value, long currentTime,
+                                              long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Optional<RegistrationStatus> value, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+
     @Autowired
     private GenericRepository genericRepository;
 
@@ -80,18 +118,57 @@ public class ChargePointHelperService {
 
     private final UnidentifiedIncomingObjectService unknownChargePointService = new UnidentifiedIncomingObjectService(100);
 
+    @PostConstruct
+    public void init() {
+        chargePointRepository.getRegistrationStatuses()
+                             .forEach((chargeBoxId, status) -> registrationStatuses.put(chargeBoxId, toStatus(status)));
+    }
+
+    /**
+     * Answered from memory for all known stations and for the unknown ones that were asked for recently, so that the
+     * reconnect storm after a restart does not turn into a storm of queries.
+     */
     public Optional<RegistrationStatus> getRegistrationStatus(String chargeBoxId) {
-        Lock l = isRegisteredLocks.get(chargeBoxId);
-        l.lock();
-        try {
-            Optional<RegistrationStatus> status = getRegistrationStatusInternal(chargeBoxId);
-            if (status.isEmpty()) {
-                unknownChargePointService.processNewUnidentified(chargeBoxId);
+        Optional<RegistrationStatus> status = registrationStatuses.getIfPresent(chargeBoxId);
+        if (status == null) {
+            Lock l = isRegisteredLocks.get(chargeBoxId);
+            l.lock();
+            try {
+                status = registrationStatuses.getIfPresent(chargeBoxId);
+                if (status == null) {
+                    // Not computed within the cache, since auto-registration invalidates the same entry
+                    status = getRegistrationStatusInternal(chargeBoxId);
+                    registrationStatuses.put(chargeBoxId, status);
+                }
+            } finally {
+                l.unlock();
             }
-            return status;
-        } finally {
-            l.unlock();
         }
+
+        if (status.isEmpty()) {
+            unknownChargePointService.processNewUnidentified(chargeBoxId);
+        }
+        return status;
+    }
+
+    @EventListener
+    public void onChargePointRegistrationChanged(ChargePointRegistrationChanged event) {
+        registrationStatuses.invalidateAll(event.getChargeBoxIds());
+    }
+
+    @EventListener
+    public void onChargePointDeleted(ChargePointDeleted event) {
+        registrationStatuses.invalidate(event.getChargeBoxId());
+    }
+
+    public CacheStatistics getRegistrationStatusCacheStats() {
+        CacheStats stats = registrationStatuses.stats();
+        return CacheStatistics.builder()
+                              .size(registrationStatuses.estimatedSize())
+                              .hits(stats.hitCount())
+                              .misses(stats.missCount())
+                              .hitRate(stats.hitRate())
+                              .build();
     }
 
     public Statistics getStats() {
@@ -200,13 +277,7 @@ public class ChargePointHelperService {
         // 1. exit if already registered
         Optional<String> status = chargePointRepository.getRegistrationStatus(chargeBoxId);
         if (status.isPresent()) {
-            try {
-                return Optional.ofNullable(RegistrationStatus.fromValue(status.get()));
-            } catch (Exception e) {
-                // in cases where the database entry (string) is altered, and therefore cannot be converted to enum
-                log.error("Exception happened", e);
-                return Optional.empty();
-            }
+            return toStatus(status.get());
         }
 
         // 2. ok, this chargeBoxId is unknown. exit if auto-register is disabled
@@ -225,6 +296,16 @@ public class ChargePointHelperService {
         }
     }
 
+    private static Optional<RegistrationStatus> toStatus(String status) {
+        try {
+            return Optional.ofNullable(RegistrationStatus.fromValue(status));
+        } catch (Exception e) {
+            // in cases where the database entry (string) is altered, and therefore cannot be converted to enum
+            log.error("Exception happened", e);
+            return Optional.empty();
+        }
+    }
+
     private List<ChargePointSelect> getChargePoints(OcppProtocol protocol, List<RegistrationStatus> inStatusFilter,
                                                     List<String> chargeBoxIdFilter, AbstractWebSocketEndpoint jsonEndpoint) {
         // soap stations
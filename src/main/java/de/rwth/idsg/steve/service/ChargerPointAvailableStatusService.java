@@ -18,70 +18,55 @@
  */
 package de.rwth.idsg.steve.service;
 
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionState;
+import jooq.steve.db2.tables.records.ChargeboxStatusRecord;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep4;
+import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
+
 import static jooq.steve.db2.Tables.CHARGEBOX_STATUS;
 
 @Slf4j
 @Service
 public class ChargerPointAvailableStatusService {
 
-    @Autowired
-    private HomeService homeService;
-
     @Autowired
     @Qualifier("secondary")
     private DSLContext dslContext;
 
+    /**
+     * Writes the connection states of many stations with one upsert (charge_box_id is unique). A timestamp that is
+     * not part of the state keeps its stored value.
+     */
+    public void updateChargerStatus(Collection<ChargeBoxConnectionState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
 
-    public void updateChargerStatus(final String chargeBoxId, final boolean status) {
-        try {
-            String chargeBox = dslContext.select(CHARGEBOX_STATUS.CHARGE_BOX_ID)
-                    .from(CHARGEBOX_STATUS)
-                    .where(CHARGEBOX_STATUS.CHARGE_BOX_ID.eq(chargeBoxId))
-                    .fetchOne(CHARGEBOX_STATUS.CHARGE_BOX_ID);
-
-            if (chargeBox != null) {
-                if (status) {
-                    dslContext.update(CHARGEBOX_STATUS)
-                            .set(CHARGEBOX_STATUS.STATUS, status)
-                            .set(CHARGEBOX_STATUS.CONNECTED_TIMESTAMP, DateTime.now())
-                            .where(CHARGEBOX_STATUS.CHARGE_BOX_ID.eq(chargeBox))
-                            .execute();
-                } else {
-                    dslContext.update(CHARGEBOX_STATUS)
-                            .set(CHARGEBOX_STATUS.STATUS, status)
-                            .set(CHARGEBOX_STATUS.DISCONNECTED_TIMESTAMP, DateTime.now())
-                            .where(CHARGEBOX_STATUS.CHARGE_BOX_ID.eq(chargeBox))
-                            .execute();
-                }
-
-            } else {
-                if (status) {
-                    dslContext.insertInto(CHARGEBOX_STATUS)
-                            .set(CHARGEBOX_STATUS.CHARGE_BOX_ID, chargeBoxId)
-                            .set(CHARGEBOX_STATUS.STATUS, status)
-                            .set(CHARGEBOX_STATUS.CONNECTED_TIMESTAMP, DateTime.now())
-                            .execute();
-                } else {
-                    dslContext.insertInto(CHARGEBOX_STATUS)
-                            .set(CHARGEBOX_STATUS.CHARGE_BOX_ID, chargeBoxId)
-                            .set(CHARGEBOX_STATUS.STATUS, status)
-                            .set(CHARGEBOX_STATUS.DISCONNECTED_TIMESTAMP, DateTime.now())
-                            .execute();
-
-                }
+        InsertValuesStep4<ChargeboxStatusRecord, String, Boolean, DateTime, DateTime> insert =
+                dslContext.insertInto(CHARGEBOX_STATUS, CHARGEBOX_STATUS.CHARGE_BOX_ID, CHARGEBOX_STATUS.STATUS,
+                        CHARGEBOX_STATUS.CONNECTED_TIMESTAMP, CHARGEBOX_STATUS.DISCONNECTED_TIMESTAMP);
 
-            }
-        } catch (Exception e) {
-            log.error("Exception Occur In ChargerPointAvailableStatusService : " + e.getMessage());
+        for (ChargeBoxConnectionState s : states) {
+            insert = insert.values(s.getChargeBoxId(), s.isOnline(), s.getConnectedAt(), s.getDisconnectedAt());
         }
-    }
 
+        insert.onDuplicateKeyUpdate()
+              .set(CHARGEBOX_STATUS.STATUS, DSL.excluded(CHARGEBOX_STATUS.STATUS))
+              .set(CHARGEBOX_STATUS.CONNECTED_TIMESTAMP, keepIfNotSet(CHARGEBOX_STATUS.CONNECTED_TIMESTAMP))
+              .set(CHARGEBOX_STATUS.DISCONNECTED_TIMESTAMP, keepIfNotSet(CHARGEBOX_STATUS.DISCONNECTED_TIMESTAMP))
+              .execute();
+    }
 
+    private static Field<DateTime> keepIfNotSet(Field<DateTime> field) {
+        return DSL.coalesce(DSL.excluded(field), field);
+    }
 }
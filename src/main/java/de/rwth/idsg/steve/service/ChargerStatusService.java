@@ -18,19 +18,18 @@
  */
 package de.rwth.idsg.steve.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionEvent;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionState;
+import de.rwth.idsg.steve.service.dto.PushAlert;
+import jooq.steve.db2.tables.records.ChargerStatusRecord;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep5;
 import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
 
@@ -50,33 +49,9 @@ public class ChargerStatusService {
     private DSLContext dslContext;
 
     @Autowired
-    private RestTemplate restTemplate;
-    private static final String HEADING = "Charger Alert";
-    private static final String API_URL = "http://15.207.37.132/new/send_notification.php";
-
-    public void sendNotification(String title, String message) {
-        try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("idtag", "tucker");
-            requestBody.put("title", title);
-            requestBody.put("message", message);
-            requestBody.put("payload", "");
-
-            ObjectMapper mapper = new ObjectMapper();
-            String json = mapper.writeValueAsString(requestBody);
-            HttpEntity<String> request = new HttpEntity<>(json, headers);
-
-            ResponseEntity<String> response =
-                    restTemplate.postForEntity(API_URL, request, String.class);
-
-        } catch (Exception e) {
-            log.error("SendNotification Error Occur : ");
-        }
-    }
+    private PushNotificationDispatcher pushNotificationDispatcher;
 
+    private static final String HEADING = "Charger Alert";
 
     public void sendNotification(final String chargeBoxId, final Integer connectorId, final String status, final String errorCode, final String errorInfo, final String vendorErrorCode) {
 
@@ -102,7 +77,7 @@ public class ChargerStatusService {
                     "ChargeBox: %s | Connector: %d | Status: %s | Error: %s | Info: %s | Vendor Code: %s",
                     chargeBoxId, connectorId, status, errorCode, errorInfo, vendorErrorCode
             );
-            sendNotification(HEADING, content);
+            push(chargeBoxId, connectorId, "error", true, content);
 
             secondaryContext.insertInto(CHARGER_CONNECTOR_STATUS_LOG)
                     .set(CHARGER_CONNECTOR_STATUS_LOG.CHARGER_ID, chargeBoxId)
@@ -130,7 +105,7 @@ public class ChargerStatusService {
                         "ChargeBox: %s | Connector: %d | Status: %s",
                         chargeBoxId, connectorId, "Connector Error Resolved"
                 );
-                sendNotification(HEADING, content);
+                push(chargeBoxId, connectorId, "error", false, content);
 
                 secondaryContext.update(CHARGER_STATUS)
                         .set(CHARGER_STATUS.CONNECTOR_LAST_STATUS, status)
@@ -169,67 +144,74 @@ public class ChargerStatusService {
         }
     }
 
-    private void insertChargerStatus(final String chargeBoxId, final Integer connectorId, final boolean isOnline) {
-        boolean exists = secondaryContext.fetchExists(
-                secondaryContext.selectOne()
-                        .from(CHARGER_STATUS)
-                        .where(CHARGER_STATUS.CHARGE_POINT.eq(chargeBoxId))
-                        .and(CHARGER_STATUS.CONNECTOR_ID.eq(connectorId))
-        );
-
-        if (exists) {
-            if (isOnline) {
-                String content = String.format(
-                        "ChargeBox: %s | Connector: %d | Status: %s",
-                        chargeBoxId, connectorId, "Is Online"
-                );
-                sendNotification(HEADING, content);
-                secondaryContext.update(CHARGER_STATUS)
-                        .set(CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP, DateTime.now())
-                        .set(CHARGER_STATUS.IS_ONLINE, true)
-                        .where(CHARGER_STATUS.CHARGE_POINT.eq(chargeBoxId)
-                                .and(CHARGER_STATUS.CONNECTOR_ID.eq(connectorId)))
-                        .execute();
-            } else {
-                String content = String.format(
-                        "ChargeBox: %s | Connector: %d | Status: %s",
-                        chargeBoxId, connectorId, "Is Offline"
-                );
-                sendNotification(HEADING, content);
-                secondaryContext.update(CHARGER_STATUS)
-                        .set(CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP, DateTime.now())
-                        .set(CHARGER_STATUS.IS_ONLINE, false)
-                        .where(CHARGER_STATUS.CHARGE_POINT.eq(chargeBoxId)
-                                .and(CHARGER_STATUS.CONNECTOR_ID.eq(connectorId)))
-                        .execute();
-            }
-
-        } else {
-            secondaryContext.insertInto(CHARGER_STATUS)
-                    .set(CHARGER_STATUS.CHARGE_POINT, chargeBoxId)
-                    .set(CHARGER_STATUS.CONNECTOR_ID, connectorId)
-                    .set(CHARGER_STATUS.IS_ONLINE, isOnline)
-                    .set(isOnline ? CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP : CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP,
-                            DateTime.now())
-                    .execute();
+    /**
+     * Marks the connectors of the stations online or offline. The rows of all stations are written with one upsert
+     * ((charge_point, connector_id) is unique). The alerts are raised for every event in order, but only for rows
+     * that existed before, so that a new station does not report itself as being back online.
+     */
+    public void updateOnline(List<ChargeBoxConnectionEvent> events, Collection<ChargeBoxConnectionState> states) {
+        Set<String> chargeBoxIds = new HashSet<>();
+        for (ChargeBoxConnectionState s : states) {
+            chargeBoxIds.add(s.getChargeBoxId());
         }
 
-    }
+        Map<String, List<Integer>> connectorIds = new HashMap<>();
+        dslContext.select(CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+                  .from(CONNECTOR)
+                  .where(CONNECTOR.CHARGE_BOX_ID.in(chargeBoxIds))
+                  .fetch()
+                  .forEach(r -> connectorIds.computeIfAbsent(r.value1(), k -> new ArrayList<>()).add(r.value2()));
 
-    public void get(final String chargeBoxId, final boolean isOnline) {
+        if (connectorIds.isEmpty()) {
+            return;
+        }
 
-        List<Integer> connectorIds = Optional.of(
-                dslContext.select(CONNECTOR.CONNECTOR_ID)
-                        .from(CONNECTOR)
-                        .where(CONNECTOR.CHARGE_BOX_ID.eq(chargeBoxId))
-                        .fetchInto(Integer.class)
-        ).orElse(Collections.emptyList());
+        Set<String> existing = new HashSet<>();
+        secondaryContext.select(CHARGER_STATUS.CHARGE_POINT, CHARGER_STATUS.CONNECTOR_ID)
+                        .from(CHARGER_STATUS)
+                        .where(CHARGER_STATUS.CHARGE_POINT.in(connectorIds.keySet()))
+                        .fetch()
+                        .forEach(r -> existing.add(r.value1() + "/" + r.value2()));
+
+        for (ChargeBoxConnectionEvent e : events) {
+            for (Integer connectorId : connectorIds.getOrDefault(e.getChargeBoxId(), Collections.emptyList())) {
+                if (existing.contains(e.getChargeBoxId() + "/" + connectorId)) {
+                    String content = String.format(
+                            "ChargeBox: %s | Connector: %d | Status: %s",
+                            e.getChargeBoxId(), connectorId, e.isOnline() ? "Is Online" : "Is Offline"
+                    );
+                    push(e.getChargeBoxId(), connectorId, "availability", !e.isOnline(), content);
+                }
+            }
+        }
 
+        InsertValuesStep5<ChargerStatusRecord, String, Integer, Boolean, DateTime, DateTime> insert =
+                secondaryContext.insertInto(CHARGER_STATUS, CHARGER_STATUS.CHARGE_POINT, CHARGER_STATUS.CONNECTOR_ID,
+                        CHARGER_STATUS.IS_ONLINE, CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP,
+                        CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP);
 
-        for (Integer i : connectorIds) {
-            insertChargerStatus(chargeBoxId, i, isOnline);
+        for (ChargeBoxConnectionState s : states) {
+            for (Integer connectorId : connectorIds.getOrDefault(s.getChargeBoxId(), Collections.emptyList())) {
+                insert = insert.values(s.getChargeBoxId(), connectorId, s.isOnline(), s.getConnectedAt(),
+                        s.getDisconnectedAt());
+            }
         }
-    }
 
+        insert.onDuplicateKeyUpdate()
+              .set(CHARGER_STATUS.IS_ONLINE, DSL.excluded(CHARGER_STATUS.IS_ONLINE))
+              .set(CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP,
+                      DSL.coalesce(DSL.excluded(CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP), CHARGER_STATUS.CHARGER_ONLINE_TIMESTAMP))
+              .set(CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP,
+                      DSL.coalesce(DSL.excluded(CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP), CHARGER_STATUS.CHARGER_OFFLINE_TIMESTAMP))
+              .execute();
+    }
 
+    private void push(String chargeBoxId, Integer connectorId, String condition, boolean raised, String content) {
+        pushNotificationDispatcher.submit(PushAlert.builder()
+                .key(chargeBoxId + "/" + connectorId + "/" + condition)
+                .raised(raised)
+                .title(HEADING)
+                .message(content)
+                .build());
+    }
 }
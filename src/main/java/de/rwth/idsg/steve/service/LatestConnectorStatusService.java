@@ -0,0 +1,147 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.LatestConnectorStatus;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import jooq.steve.db.tables.records.ConnectorStatusLatestRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static jooq.steve.db.Tables.CONNECTOR;
+import static jooq.steve.db.Tables.CONNECTOR_STATUS_LATEST;
+
+/**
+ * Maintains connector_status_latest, the newest status of each connector, and an in-memory mirror of it. The
+ * history in connector_status stays as it is.
+ *
+ * A status only replaces the current one if its timestamp is not older, since transaction messages that arrive late
+ * (or are pushed again after a failure) carry their own timestamps.
+ */
+@Slf4j
+@Service
+public class LatestConnectorStatusService {
+
+    @Autowired
+    private DSLContext dslContext;
+
+    private final Map<Integer, LatestConnectorStatus> byConnectorPk = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        dslContext.selectFrom(CONNECTOR_STATUS_LATEST)
+                  .fetch()
+                  .forEach(r -> apply(toStatus(r)));
+
+        log.info("Loaded the latest status of {} connectors", byConnectorPk.size());
+    }
+
+    @Nullable
+    public LatestConnectorStatus get(@Nullable Integer connectorPk) {
+        return connectorPk == null ? null : byConnectorPk.get(connectorPk);
+    }
+
+    @Nullable
+    public String getStatus(@Nullable Integer connectorPk) {
+        LatestConnectorStatus status = get(connectorPk);
+        return status == null ? null : status.getStatus();
+    }
+
+    /**
+     * Upserts the row of the connector with the given context, so that it is part of the caller's transaction. Call
+     * {@link #apply(LatestConnectorStatus)} once that is committed.
+     */
+    public void write(DSLContext ctx, LatestConnectorStatus s) {
+        Condition notOlder = CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP.isNull()
+                .or(CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP.le(s.getStatusTimestamp()));
+
+        // MySQL applies the assignments from left to right, so the timestamp that the condition reads is set last
+        ctx.insertInto(CONNECTOR_STATUS_LATEST)
+           .set(CONNECTOR_STATUS_LATEST.CONNECTOR_PK, s.getConnectorPk())
+           .set(CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP, s.getStatusTimestamp())
+           .set(CONNECTOR_STATUS_LATEST.STATUS, s.getStatus())
+           .set(CONNECTOR_STATUS_LATEST.ERROR_CODE, s.getErrorCode())
+           .set(CONNECTOR_STATUS_LATEST.ERROR_INFO, s.getErrorInfo())
+           .set(CONNECTOR_STATUS_LATEST.VENDOR_ID, s.getVendorId())
+           .set(CONNECTOR_STATUS_LATEST.VENDOR_ERROR_CODE, s.getVendorErrorCode())
+           .onDuplicateKeyUpdate()
+           .set(CONNECTOR_STATUS_LATEST.STATUS, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.STATUS, s.getStatus()))
+           .set(CONNECTOR_STATUS_LATEST.ERROR_CODE, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.ERROR_CODE, s.getErrorCode()))
+           .set(CONNECTOR_STATUS_LATEST.ERROR_INFO, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.ERROR_INFO, s.getErrorInfo()))
+           .set(CONNECTOR_STATUS_LATEST.VENDOR_ID, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.VENDOR_ID, s.getVendorId()))
+           .set(CONNECTOR_STATUS_LATEST.VENDOR_ERROR_CODE, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.VENDOR_ERROR_CODE, s.getVendorErrorCode()))
+           .set(CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP, ifNotOlder(notOlder, CONNECTOR_STATUS_LATEST.STATUS_TIMESTAMP, s.getStatusTimestamp()))
+           .execute();
+    }
+
+    public void apply(LatestConnectorStatus s) {
+        byConnectorPk.merge(s.getConnectorPk(), s, (current, update) -> update.supersedes(current) ? update : current);
+    }
+
+    /**
+     * The rows of the connectors are deleted with the charge point, but the event does not say which connectors
+     * these were. So we keep the entries of the connectors that are still there.
+     */
+    @EventListener
+    public void onChargePointDeleted(ChargePointDeleted event) {
+        Set<Integer> remaining = dslContext.select(CONNECTOR.CONNECTOR_PK)
+                                           .from(CONNECTOR)
+                                           .fetchSet(CONNECTOR.CONNECTOR_PK);
+
+        int before = byConnectorPk.size();
+        byConnectorPk.keySet().retainAll(remaining);
+        log.debug("Dropped the latest status of {} connectors of {}", before - byConnectorPk.size(), event.getChargeBoxId());
+    }
+
+    public int size() {
+        return byConnectorPk.size();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static <T> Field<T> ifNotOlder(Condition notOlder, Field<T> current, T value) {
+        return DSL.when(notOlder, DSL.val(value, current)).otherwise(current);
+    }
+
+    private static LatestConnectorStatus toStatus(ConnectorStatusLatestRecord r) {
+        return LatestConnectorStatus.builder()
+                                    .connectorPk(r.getConnectorPk())
+                                    .statusTimestamp(r.getStatusTimestamp())
+                                    .status(r.getStatus())
+                                    .errorCode(r.getErrorCode())
+                                    .errorInfo(r.getErrorInfo())
+                                    .vendorId(r.getVendorId())
+                                    .vendorErrorCode(r.getVendorErrorCode())
+                                    .build();
+    }
+}
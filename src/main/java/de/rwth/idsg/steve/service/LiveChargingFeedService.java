@@ -0,0 +1,215 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.LiveChargingDelta;
+import de.rwth.idsg.steve.service.dto.LiveTransactionDTO;
+import de.rwth.idsg.steve.service.notification.OcppTransactionEnded;
+import de.rwth.idsg.steve.service.notification.OcppTransactionStarted;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * In-memory snapshot of the live charging sessions, so that the dashboards do not query the databases on every poll.
+ * <p>
+ * The MeterValues, billing, start and stop paths only mark a transaction as changed. The changed ones are re-read
+ * periodically in one query, and every change of the snapshot is handed to the listeners as a delta. A full refresh
+ * every now and then catches the changes that do not go through these paths.
+ */
+@Slf4j
+@Service
+public class LiveChargingFeedService {
+
+    // A stopped transaction is not re-added from a replica that is behind
+    private static final long ENDED_MEMORY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    @Autowired
+    private LiveTransactionService liveTransactionService;
+
+    private final Set<Integer> changed = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Long> recentlyEnded = new ConcurrentHashMap<>();
+    private final List<Consumer<LiveChargingDelta>> listeners = new CopyOnWriteArrayList<>();
+
+    // Guarded by this
+    private final TreeMap<Integer, LiveTransactionDTO> sessions = new TreeMap<>();
+
+    // Distinguishes the versions of this run from the ones before a restart
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), etag(0));
+
+    public void markChanged(Integer transactionId) {
+        if (transactionId != null) {
+            changed.add(transactionId);
+        }
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * The listeners are called in the order of the versions, while holding the lock of the snapshot. So, they must
+     * not block.
+     */
+    public void addListener(Consumer<LiveChargingDelta> listener) {
+        listeners.add(listener);
+    }
+
+    public Map<String, Object> getStats() {
+        Snapshot s = snapshot;
+        return Map.of(
+                "sessions", s.getSessions().size(),
+                "version", s.getVersion(),
+                "pendingChanges", changed.size());
+    }
+
+    @EventListener
+    public void onTransactionStarted(OcppTransactionStarted event) {
+        markChanged(event.getTransactionId());
+    }
+
+    @EventListener
+    public void onTransactionEnded(OcppTransactionEnded event) {
+        int transactionId = event.getParams().getTransactionId();
+        recentlyEnded.put(transactionId, System.currentTimeMillis());
+        changed.remove(transactionId);
+        apply(List.of(), Set.of(transactionId));
+    }
+
+    @Scheduled(fixedDelay = 2_000)
+    public void refreshChanged() {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        List<Integer> transactionIds = new ArrayList<>(changed);
+        changed.removeAll(transactionIds);
+
+        List<LiveTransactionDTO> live;
+        try {
+            live = liveTransactionService.getLiveTransactions(transactionIds);
+        } catch (Exception e) {
+            changed.addAll(transactionIds);
+            log.warn("Refreshing {} live charging sessions failed", transactionIds.size(), e);
+            return;
+        }
+
+        Set<Integer> removed = new HashSet<>(transactionIds);
+        live.forEach(dto -> removed.remove(idOf(dto)));
+        apply(live, removed);
+    }
+
+    @Scheduled(initialDelay = 0, fixedDelay = 30_000)
+    public void refreshAll() {
+        Set<Integer> before;
+        synchronized (this) {
+            before = new HashSet<>(sessions.keySet());
+        }
+
+        List<LiveTransactionDTO> live;
+        try {
+            live = liveTransactionService.getLiveTransactions();
+        } catch (Exception e) {
+            log.warn("Refreshing the live charging sessions failed", e);
+            return;
+        }
+
+        // Only the ones known before the query, the others were added meanwhile
+        live.forEach(dto -> before.remove(idOf(dto)));
+        apply(live, before);
+
+        long limit = System.currentTimeMillis() - ENDED_MEMORY_MILLIS;
+        recentlyEnded.values().removeIf(endedAt -> endedAt < limit);
+    }
+
+    private synchronized void apply(List<LiveTransactionDTO> live, Collection<Integer> removedIds) {
+        List<LiveTransactionDTO> upserted = new ArrayList<>();
+        for (LiveTransactionDTO dto : live) {
+            Integer transactionId = idOf(dto);
+            if (recentlyEnded.containsKey(transactionId)) {
+                continue;
+            }
+            LiveTransactionDTO old = sessions.put(transactionId, dto);
+            if (!dto.equals(old)) {
+                upserted.add(dto);
+            }
+        }
+
+        List<String> removed = new ArrayList<>();
+        for (Integer transactionId : removedIds) {
+            if (sessions.remove(transactionId) != null) {
+                removed.add(String.valueOf(transactionId));
+            }
+        }
+
+        if (upserted.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        long version = snapshot.getVersion() + 1;
+        snapshot = new Snapshot(version, List.copyOf(sessions.values()), etag(version));
+
+        LiveChargingDelta delta = LiveChargingDelta.builder()
+                .version(version)
+                .upserted(upserted)
+                .removed(removed)
+                .build();
+
+        for (Consumer<LiveChargingDelta> listener : listeners) {
+            try {
+                listener.accept(delta);
+            } catch (Exception e) {
+                log.error("Live charging listener failed", e);
+            }
+        }
+    }
+
+    private String etag(long version) {
+        return "\"" + epoch + "-" + version + "\"";
+    }
+
+    private static Integer idOf(LiveTransactionDTO dto) {
+        return Integer.valueOf(dto.getTransactionId());
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class Snapshot {
+        private final long version;
+        private final List<LiveTransactionDTO> sessions;
+        private final String etag;
+    }
+}
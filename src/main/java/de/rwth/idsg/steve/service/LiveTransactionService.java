@@ -18,11 +18,13 @@
  */
 package de.rwth.idsg.steve.service;
 
+import de.rwth.idsg.steve.repository.dto.OcppTagStats;
 import de.rwth.idsg.steve.service.dto.FareBreakdownDTO;
 import de.rwth.idsg.steve.service.dto.LiveTransactionDTO;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
 import org.jooq.Result;
 import org.jooq.impl.DSL;
@@ -40,18 +42,34 @@ import java.util.stream.Collectors;
 @Slf4j
 public class LiveTransactionService {
 
+    // Only reads, which can be served by the replicas
+
     @Autowired
-    @Qualifier("secondary")
+    @Qualifier("secondaryReadOnly")
     private DSLContext secondary;
 
     @Autowired
-    @Qualifier("php")
+    @Qualifier("phpReadOnly")
     private DSLContext php;
 
     @Autowired
-    private DSLContext dsl;
+    private OcppTagStatsService ocppTagStatsService;
 
     public List<LiveTransactionDTO> getLiveTransactions() {
+        return getLiveTransactions(DSL.noCondition());
+    }
+
+    /**
+     * @return the ones of the given transactions that are still active
+     */
+    public List<LiveTransactionDTO> getLiveTransactions(Collection<Integer> transactionIds) {
+        if (transactionIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return getLiveTransactions(DSL.field("w.transaction_id", Integer.class).in(transactionIds));
+    }
+
+    private List<LiveTransactionDTO> getLiveTransactions(Condition condition) {
 
         List<LiveTransactionDTO> list = new ArrayList<>();
 
@@ -89,21 +107,18 @@ public class LiveTransactionService {
                 .leftJoin("ev_history.live_full_details f")
                 .on(DSL.field("w.transaction_id").eq(DSL.field("f.transaction_id")))
                 .where(DSL.field("w.is_active_transaction", Integer.class).eq(1))
+                .and(condition)
                 .fetch();
 
         if (records.isEmpty()) return list;
 
-        // ------------------ PREFETCH TRANSACTION COUNTS PER IDTAG ------------------
-        Map<String, Integer> txCountMap = dsl.select(DSL.field("id_tag"), DSL.count())
-                .from("stevedb.transaction")
-                .where(DSL.field("id_tag").in(
-                        records.stream()
-                                .map(r -> r.get("id_tag", String.class))
-                                .filter(Objects::nonNull)
-                                .collect(Collectors.toSet())
-                ))
-                .groupBy(DSL.field("id_tag"))
-                .fetchMap(r -> r.get("id_tag", String.class), r -> r.get(1, Integer.class));
+        // ------------------ LIFETIME STATS PER IDTAG ------------------
+        Map<String, OcppTagStats> statsMap = ocppTagStatsService.getAll(
+                records.stream()
+                        .map(r -> r.get("id_tag", String.class))
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet())
+        );
 
         // ------------------ GROUP BY TRANSACTION ------------------
         Map<Integer, List<Record>> grouped = records.stream()
@@ -126,8 +141,10 @@ public class LiveTransactionService {
             String idTag = safe(first, "id_tag", "N/A");
 
             // ---------------- TRANSACTION COUNT + RANK ----------------
-            int transactionCount = txCountMap.getOrDefault(idTag, 0);
-            String rank = calculateRank(transactionCount);
+            // the completed ones and this one
+            OcppTagStats stats = statsMap.get(idTag);
+            int transactionCount = (stats == null ? 0 : stats.getSessionCount()) + 1;
+            String rank = OcppTagStatsService.calculateRank(transactionCount);
 
             // ---------------- METRICS ----------------
             String startSoc = safe(first, "latest_soc", "0");
@@ -275,13 +292,6 @@ public class LiveTransactionService {
         return new BigDecimal(value).setScale(precision, RoundingMode.HALF_UP).doubleValue();
     }
 
-    private String calculateRank(int count) {
-        if (count >= 100) return "Platinum";
-        if (count >= 50)  return "Gold";
-        if (count >= 10)  return "Silver";
-        return "Normal";
-    }
-
     private String formatTs(Timestamp ts) {
         if (ts == null) return "";
         return new DateTime(ts.getTime(), DateTimeZone.forID("Asia/Kolkata"))
@@ -22,8 +22,10 @@ import com.google.common.base.Strings;
 import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.repository.SettingsRepository;
 import de.rwth.idsg.steve.repository.dto.MailSettings;
+import de.rwth.idsg.steve.service.notification.SettingsChanged;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
@@ -70,6 +72,11 @@ public class MailService {
         session = createSession(getSettings());
     }
 
+    @EventListener
+    public void onSettingsChanged(SettingsChanged event) {
+        loadSettingsFromDB();
+    }
+
     public MailSettings getSettings() {
         readLock.lock();
         try {
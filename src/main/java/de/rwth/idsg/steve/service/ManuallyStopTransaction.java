@@ -19,18 +19,20 @@
 package de.rwth.idsg.steve.service;
 
 import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
+import de.rwth.idsg.steve.ocpp.OcppCallback;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
 import de.rwth.idsg.steve.ocpp.task.RemoteStopTransactionTask;
 import de.rwth.idsg.steve.repository.TaskStore;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
 import de.rwth.idsg.steve.web.dto.ocpp.RemoteStopTransactionParams;
+import org.jetbrains.annotations.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ManuallyStopTransaction {
@@ -41,9 +43,17 @@ public class ManuallyStopTransaction {
     @Autowired
     private ChargePointService16_InvokerImpl chargePointService16Invoker;
 
-    private static final Map<Integer, String> customReasonMap = new HashMap<>();
+    private static final Map<Integer, String> customReasonMap = new ConcurrentHashMap<>();
 
     public void manuallyStopTransaction(String chargeBoxId, Integer transactionId, String reason) {
+        manuallyStopTransaction(chargeBoxId, transactionId, reason, null);
+    }
+
+    /**
+     * @param callback to be informed about the response of the charge point, can be null
+     */
+    public void manuallyStopTransaction(String chargeBoxId, Integer transactionId, String reason,
+                                        @Nullable OcppCallback<String> callback) {
         ChargePointSelect select = new ChargePointSelect(OcppTransport.JSON, chargeBoxId);
 
         RemoteStopTransactionParams params = new RemoteStopTransactionParams();
@@ -58,7 +68,13 @@ public class ManuallyStopTransaction {
                 return req;
             }
         };
-        customReasonMap.put(transactionId, reason);
+        if (callback != null) {
+            task.addCallback(callback);
+        }
+        // Billing of several transactions runs in parallel, and the stop path reads and removes concurrently
+        if (reason != null) {
+            customReasonMap.put(transactionId, reason);
+        }
         chargePointService16Invoker.remoteStopTransaction(select, task);
         taskStore.add(task);
 
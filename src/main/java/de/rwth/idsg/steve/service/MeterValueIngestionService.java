@@ -0,0 +1,409 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.IngestionFullPolicy;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import de.rwth.idsg.steve.repository.OcppServerRepository;
+import de.rwth.idsg.steve.repository.dto.MeterValueSample;
+import de.rwth.idsg.steve.service.dto.MeterValueIngestionStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decouples the storage of MeterValues from the WebSocket threads. The messages are partitioned by chargeBoxId, and
+ * each partition has its own bounded queue and worker, so that the messages of one station are stored (and billed)
+ * in the order they arrived, while the worker writes the messages of many stations with one multi-row insert.
+ */
+@Slf4j
+@Service
+public class MeterValueIngestionService {
+
+    @Autowired
+    private OcppServerRepository ocppServerRepository;
+    @Autowired
+    private LiveChargingFeedService liveChargingFeedService;
+    @Autowired
+    private RetrieveTransactionMeterValues retrieveTransactionMeterValues;
+    @Autowired
+    private SessionGraphService sessionGraphService;
+
+    private final SteveConfiguration.Ingestion config = SteveConfiguration.CONFIG.getIngestion();
+    private final ObjectMapper mapper = JsonObjectMapper.INSTANCE.getMapper();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong stored = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong drainLatencySumMillis = new AtomicLong();
+    private final AtomicLong drainLatencyCount = new AtomicLong();
+    private final AtomicLong maxDrainLatencyMillis = new AtomicLong();
+    private volatile long lastDrainLatencyMillis;
+
+    private Partition[] partitions;
+    private ExecutorService executor;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Path spillDirectory = Paths.get(config.getMeterValueSpillDirectory());
+        if (config.getMeterValueFullPolicy() == IngestionFullPolicy.SPILL) {
+            Files.createDirectories(spillDirectory);
+        }
+
+        int workers = config.getMeterValueWorkers();
+        partitions = new Partition[workers];
+        for (int i = 0; i < workers; i++) {
+            partitions[i] = new Partition(i, spillDirectory);
+        }
+
+        running = true;
+        executor = Executors.newFixedThreadPool(workers,
+                new ThreadFactoryBuilder().setNameFormat("SteVe-MeterValues-%d").build());
+        for (Partition p : partitions) {
+            executor.execute(p);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        running = false;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                log.warn("MeterValues workers did not finish in time, {} samples are lost", getQueueDepth());
+            }
+        } catch (InterruptedException e) {
+            log.error("Termination interrupted", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands the sample over to the worker of its station. Depending on the configured policy, blocks or spills the
+     * sample to disk when the queue is full.
+     */
+    public void submit(MeterValueSample sample) {
+        if (!running) {
+            store(Collections.singletonList(sample));
+            return;
+        }
+
+        Partition p = partitionOf(sample.getChargeBoxId());
+        try {
+            if (config.getMeterValueFullPolicy() == IngestionFullPolicy.SPILL) {
+                if (!p.queue.offer(sample)) {
+                    p.spill(sample);
+                    return;
+                }
+            } else {
+                p.queue.put(sample);
+            }
+            p.submitted.incrementAndGet();
+            enqueued.incrementAndGet();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            store(Collections.singletonList(sample));
+        }
+    }
+
+    /**
+     * Waits until all samples of the station that were submitted before this call are stored. Used before the
+     * transaction is stopped, so that its final billing sees all samples.
+     *
+     * @return false, if the timeout elapsed before
+     */
+    public boolean awaitStored(String chargeBoxId, long timeoutMillis) {
+        Partition p = partitionOf(chargeBoxId);
+        long target = p.submitted.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+
+        synchronized (p) {
+            while (p.processed < target) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    p.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Whether samples of the transaction might not be stored yet, because they are queued or in the batch that is
+     * being stored. The spill files are not searched: while the partition of the station has one, the samples of
+     * all its transactions count as pending.
+     */
+    public boolean hasPendingSamples(String chargeBoxId, int transactionId) {
+        Partition p = partitionOf(chargeBoxId);
+        return p.hasSpilled()
+                || containsTransaction(p.queue, transactionId)
+                || containsTransaction(p.inFlight, transactionId);
+    }
+
+    public MeterValueIngestionStats getStats() {
+        long count = drainLatencyCount.get();
+        return MeterValueIngestionStats.builder()
+                .queueDepth(getQueueDepth())
+                .queueCapacity(config.getMeterValueQueueCapacity() * partitions.length)
+                .enqueued(enqueued.get())
+                .spilled(spilled.get())
+                .replayed(replayed.get())
+                .stored(stored.get())
+                .failed(failed.get())
+                .lastDrainLatencyMillis(lastDrainLatencyMillis)
+                .maxDrainLatencyMillis(maxDrainLatencyMillis.get())
+                .avgDrainLatencyMillis(count == 0 ? 0 : drainLatencySumMillis.get() / count)
+                .build();
+    }
+
+    private int getQueueDepth() {
+        int depth = 0;
+        for (Partition p : partitions) {
+            depth += p.queue.size();
+        }
+        return depth;
+    }
+
+    private Partition partitionOf(String chargeBoxId) {
+        return partitions[Math.floorMod(chargeBoxId.hashCode(), partitions.length)];
+    }
+
+    private static boolean containsTransaction(Collection<MeterValueSample> samples, int transactionId) {
+        for (MeterValueSample s : samples) {
+            if (s.getTransactionId() != null && s.getTransactionId() == transactionId) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stores the samples with one round trip. If that fails, falls back to storing them one by one, so that a single
+     * bad sample does not take the others down with it. The samples are billed only once they are committed, in
+     * their order, so that a retried batch is not billed twice.
+     */
+    void store(List<MeterValueSample> batch) {
+        List<MeterValueSample> committed;
+        try {
+            ocppServerRepository.insertMeterValues(batch);
+            committed = batch;
+
+        } catch (Exception e) {
+            log.warn("Storing a batch of {} MeterValues failed, retrying one by one", batch.size(), e);
+            committed = new ArrayList<>(batch.size());
+            for (MeterValueSample s : batch) {
+                try {
+                    ocppServerRepository.insertMeterValues(Collections.singletonList(s));
+                    committed.add(s);
+                } catch (Exception ex) {
+                    failed.incrementAndGet();
+                    log.error("Storing MeterValues of '{}' failed", s.getChargeBoxId(), ex);
+                }
+            }
+        }
+        stored.addAndGet(committed.size());
+
+        retrieveTransactionMeterValues.bill(committed);
+
+        Set<Integer> transactionIds = new HashSet<>();
+        for (MeterValueSample s : committed) {
+            if (s.getTransactionId() != null) {
+                transactionIds.add(s.getTransactionId());
+            }
+        }
+        sessionGraphService.invalidate(transactionIds);
+
+        for (MeterValueSample s : batch) {
+            liveChargingFeedService.markChanged(s.getTransactionId());
+        }
+
+        long now = System.currentTimeMillis();
+        for (MeterValueSample s : batch) {
+            if (!s.isReplayed()) {
+                recordDrainLatency(now - s.getReceivedAtMillis());
+                break; // the oldest one of the batch is enough
+            }
+        }
+    }
+
+    private void recordDrainLatency(long latency) {
+        lastDrainLatencyMillis = latency;
+        drainLatencySumMillis.addAndGet(latency);
+        drainLatencyCount.incrementAndGet();
+        maxDrainLatencyMillis.accumulateAndGet(latency, Math::max);
+    }
+
+    // -------------------------------------------------------------------------
+    // Partition
+    // -------------------------------------------------------------------------
+
+    private final class Partition implements Runnable {
+        private final BlockingQueue<MeterValueSample> queue = new ArrayBlockingQueue<>(config.getMeterValueQueueCapacity());
+        private final AtomicLong submitted = new AtomicLong();
+        private final Path spillFile;
+        private final Path replayFile;
+
+        // guarded by this
+        private long processed;
+
+        // the batch that the worker is storing right now
+        private volatile List<MeterValueSample> inFlight = Collections.emptyList();
+
+        private Partition(int index, Path spillDirectory) {
+            spillFile = spillDirectory.resolve("metervalues-" + index + ".jsonl");
+            replayFile = spillDirectory.resolve("metervalues-" + index + ".replay");
+        }
+
+        @Override
+        public void run() {
+            int batchSize = config.getMeterValueBatchSize();
+            while (running || !queue.isEmpty()) {
+                try {
+                    MeterValueSample first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        replaySpilled();
+                        continue;
+                    }
+
+                    List<MeterValueSample> batch = new ArrayList<>(batchSize);
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    inFlight = batch;
+                    try {
+                        store(batch);
+                    } finally {
+                        inFlight = Collections.emptyList();
+                    }
+                    markProcessed(batch.size());
+
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                } catch (Exception e) {
+                    log.error("Unexpected error in MeterValues worker", e);
+                }
+            }
+        }
+
+        private synchronized void markProcessed(int count) {
+            processed += count;
+            notifyAll();
+        }
+
+        private boolean hasSpilled() {
+            return Files.exists(spillFile) || Files.exists(replayFile);
+        }
+
+        private synchronized void spill(MeterValueSample sample) {
+            try (Writer writer = Files.newBufferedWriter(spillFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                writer.write(mapper.writeValueAsString(sample));
+                writer.write('\n');
+                spilled.incrementAndGet();
+
+            } catch (IOException e) {
+                log.error("Could not spill MeterValues of '{}', storing them right away", sample.getChargeBoxId(), e);
+                store(Collections.singletonList(sample));
+            }
+        }
+
+        /**
+         * Called when the queue is idle. A replay file that is still there has been interrupted by a shutdown,
+         * so it is replayed first (which might store some samples twice).
+         */
+        private void replaySpilled() throws IOException {
+            synchronized (this) {
+                if (!Files.exists(replayFile)) {
+                    if (!Files.exists(spillFile)) {
+                        return;
+                    }
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+
+            int batchSize = config.getMeterValueBatchSize();
+            List<MeterValueSample> batch = new ArrayList<>(batchSize);
+
+            try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    MeterValueSample sample;
+                    try {
+                        sample = mapper.readValue(line, MeterValueSample.class);
+                    } catch (IOException e) {
+                        failed.incrementAndGet();
+                        log.error("Skipping unreadable line in {}", replayFile, e);
+                        continue;
+                    }
+                    sample.setReplayed(true);
+                    batch.add(sample);
+
+                    if (batch.size() == batchSize) {
+                        store(batch);
+                        replayed.addAndGet(batch.size());
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+
+            if (!batch.isEmpty()) {
+                store(batch);
+                replayed.addAndGet(batch.size());
+            }
+            Files.delete(replayFile);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.rwth.idsg.steve.repository.dto.InsertTransactionParams;
+import de.rwth.idsg.steve.service.dto.TransactionIdentity;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import de.rwth.idsg.steve.service.notification.OcppTransactionStarted;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static jooq.steve.db.Tables.CONNECTOR;
+import static jooq.steve.db.Tables.TRANSACTION_START;
+import static jooq.steve.db.Tables.TRANSACTION_STOP;
+
+/**
+ * In-memory lookup of the identifiers that every MeterValues message needs, so that they are not queried again for
+ * each sample:
+ *
+ * (chargeBoxId, connectorId) <-> connectorPk, and transactionPk -> (connectorPk, chargeBoxId, idTag, startValue).
+ *
+ * None of these change once the rows exist. Connectors are loaded at startup, transactions that are still running
+ * too. New entries are added at StartTransaction or when a lookup misses. The entries of a charge point are dropped
+ * when it is deleted.
+ */
+@Slf4j
+@Service
+public class OcppIdentityDirectory {
+
+    private static final int PRELOAD_TRANSACTION_DAYS = 7;
+
+    @Autowired
+    private DSLContext dslContext;
+
+    // chargeBoxId -> (connectorId -> connectorPk)
+    private final Map<String, Map<Integer, Integer>> connectorPks = new ConcurrentHashMap<>();
+
+    // connectorPk -> chargeBoxId
+    private final Map<Integer, String> chargeBoxIds = new ConcurrentHashMap<>();
+
+    // Transactions are only needed while they run and shortly after, when the late samples arrive
+    private final Cache<Integer, TransactionIdentity> transactions = Caffeine.newBuilder()
+            .expireAfterAccess(2, TimeUnit.DAYS)
+            .maximumSize(100_000)
+            .build();
+
+    @PostConstruct
+    public void init() {
+        dslContext.select(CONNECTOR.CONNECTOR_PK, CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+                  .from(CONNECTOR)
+                  .fetch()
+                  .forEach(r -> putConnector(r.value2(), r.value3(), r.value1()));
+
+        dslContext.select(TRANSACTION_START.TRANSACTION_PK, TRANSACTION_START.CONNECTOR_PK,
+                          TRANSACTION_START.ID_TAG, TRANSACTION_START.START_VALUE, CONNECTOR.CHARGE_BOX_ID)
+                  .from(TRANSACTION_START)
+                  .join(CONNECTOR).on(CONNECTOR.CONNECTOR_PK.eq(TRANSACTION_START.CONNECTOR_PK))
+                  .leftJoin(TRANSACTION_STOP).on(TRANSACTION_STOP.TRANSACTION_PK.eq(TRANSACTION_START.TRANSACTION_PK))
+                  .where(TRANSACTION_STOP.TRANSACTION_PK.isNull())
+                  .and(TRANSACTION_START.START_TIMESTAMP.ge(DateTime.now().minusDays(PRELOAD_TRANSACTION_DAYS)))
+                  .fetch()
+                  .forEach(r -> transactions.put(r.get(TRANSACTION_START.TRANSACTION_PK), toIdentity(r)));
+
+        log.info("Loaded {} connectors and {} running transactions", chargeBoxIds.size(), transactions.estimatedSize());
+    }
+
+    // -------------------------------------------------------------------------
+    // Connectors
+    // -------------------------------------------------------------------------
+
+    /**
+     * @return null, if the connector is not known yet. Unlike the other lookups, this one does not query the
+     * database, because the caller has to insert a missing connector anyway.
+     */
+    @Nullable
+    public Integer getConnectorPk(String chargeBoxId, int connectorId) {
+        Map<Integer, Integer> map = connectorPks.get(chargeBoxId);
+        return map == null ? null : map.get(connectorId);
+    }
+
+    /**
+     * To be called with the connectorPk of a committed row only.
+     */
+    public void putConnector(String chargeBoxId, int connectorId, int connectorPk) {
+        connectorPks.computeIfAbsent(chargeBoxId, k -> new ConcurrentHashMap<>()).put(connectorId, connectorPk);
+        chargeBoxIds.put(connectorPk, chargeBoxId);
+    }
+
+    @Nullable
+    public String getChargeBoxId(int connectorPk) {
+        String chargeBoxId = chargeBoxIds.get(connectorPk);
+        if (chargeBoxId != null) {
+            return chargeBoxId;
+        }
+
+        Record r = dslContext.select(CONNECTOR.CHARGE_BOX_ID, CONNECTOR.CONNECTOR_ID)
+                             .from(CONNECTOR)
+                             .where(CONNECTOR.CONNECTOR_PK.eq(connectorPk))
+                             .fetchOne();
+        if (r == null) {
+            return null;
+        }
+
+        putConnector(r.get(CONNECTOR.CHARGE_BOX_ID), r.get(CONNECTOR.CONNECTOR_ID), connectorPk);
+        return r.get(CONNECTOR.CHARGE_BOX_ID);
+    }
+
+    // -------------------------------------------------------------------------
+    // Transactions
+    // -------------------------------------------------------------------------
+
+    @Nullable
+    public TransactionIdentity getTransaction(int transactionPk) {
+        return getTransactions(Set.of(transactionPk)).get(transactionPk);
+    }
+
+    /**
+     * @return the transactions that exist, with one query for all that are not known yet
+     */
+    public Map<Integer, TransactionIdentity> getTransactions(Collection<Integer> transactionPks) {
+        Map<Integer, TransactionIdentity> found = new HashMap<>(transactions.getAllPresent(transactionPks));
+        if (found.size() == transactionPks.size()) {
+            return found;
+        }
+
+        Set<Integer> missing = new HashSet<>(transactionPks);
+        missing.removeAll(found.keySet());
+
+        dslContext.select(TRANSACTION_START.TRANSACTION_PK, TRANSACTION_START.CONNECTOR_PK,
+                          TRANSACTION_START.ID_TAG, TRANSACTION_START.START_VALUE, CONNECTOR.CHARGE_BOX_ID)
+                  .from(TRANSACTION_START)
+                  .join(CONNECTOR).on(CONNECTOR.CONNECTOR_PK.eq(TRANSACTION_START.CONNECTOR_PK))
+                  .where(TRANSACTION_START.TRANSACTION_PK.in(missing))
+                  .fetch()
+                  .forEach(r -> {
+                      TransactionIdentity identity = toIdentity(r);
+                      transactions.put(identity.getTransactionPk(), identity);
+                      found.put(identity.getTransactionPk(), identity);
+                  });
+
+        return found;
+    }
+
+    @EventListener
+    public void onTransactionStarted(OcppTransactionStarted event) {
+        InsertTransactionParams p = event.getParams();
+
+        // The connector was inserted, if necessary, before the transaction
+        Integer connectorPk = getConnectorPk(p.getChargeBoxId(), p.getConnectorId());
+        if (connectorPk == null) {
+            return;
+        }
+
+        transactions.put(event.getTransactionId(), TransactionIdentity.builder()
+                .transactionPk(event.getTransactionId())
+                .connectorPk(connectorPk)
+                .chargeBoxId(p.getChargeBoxId())
+                .idTag(p.getIdTag())
+                .startValue(toDouble(p.getStartMeterValue()))
+                .build());
+    }
+
+    @EventListener
+    public void onChargePointDeleted(ChargePointDeleted event) {
+        String chargeBoxId = event.getChargeBoxId();
+
+        Map<Integer, Integer> map = connectorPks.remove(chargeBoxId);
+        if (map != null) {
+            map.values().forEach(chargeBoxIds::remove);
+        }
+        transactions.asMap().values().removeIf(t -> chargeBoxId.equals(t.getChargeBoxId()));
+    }
+
+    public int getConnectorCount() {
+        return chargeBoxIds.size();
+    }
+
+    public long getTransactionCount() {
+        return transactions.estimatedSize();
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private static TransactionIdentity toIdentity(Record r) {
+        return TransactionIdentity.builder()
+                .transactionPk(r.get(TRANSACTION_START.TRANSACTION_PK))
+                .connectorPk(r.get(TRANSACTION_START.CONNECTOR_PK))
+                .chargeBoxId(r.get(CONNECTOR.CHARGE_BOX_ID))
+                .idTag(r.get(TRANSACTION_START.ID_TAG))
+                .startValue(toDouble(r.get(TRANSACTION_START.START_VALUE)))
+                .build();
+    }
+
+    @Nullable
+    private static Double toDouble(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Double.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
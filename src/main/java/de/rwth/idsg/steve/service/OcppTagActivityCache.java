@@ -0,0 +1,120 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.rwth.idsg.steve.repository.OcppTagRepository;
+import de.rwth.idsg.steve.service.dto.CacheStatistics;
+import de.rwth.idsg.steve.service.dto.TransactionIdentity;
+import de.rwth.idsg.steve.service.notification.OcppTransactionEnded;
+import de.rwth.idsg.steve.service.notification.OcppTransactionStarted;
+import jooq.steve.db.tables.records.OcppTagActivityRecord;
+import lombok.RequiredArgsConstructor;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the ocpp_tag_activity row of an idTag for the authorization decisions of Authorize, StartTransaction and
+ * StopTransaction. Most of these repeat the same cards, and the row does not change between them.
+ *
+ * Writes through OcppTagService and transaction starts/stops invalidate the entry of the idTag. Since tags are also
+ * written by the other applications on this database, entries expire after a short time anyway; unknown tags even
+ * sooner, so that a newly registered card is accepted quickly.
+ */
+@Service
+@RequiredArgsConstructor
+public class OcppTagActivityCache {
+
+    private static final long KNOWN_TTL_NANOS = TimeUnit.SECONDS.toNanos(60);
+    private static final long UNKNOWN_TTL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final OcppTagRepository ocppTagRepository;
+    private final OcppIdentityDirectory identityDirectory;
+
+    private final Cache<String, Optional<OcppTagActivityRecord>> cache = Caffeine.newBuilder()
+            .maximumSize(20_000)
+            .expireAfter(new Expiry<String, Optional<OcppTagActivityRecord>>() {
+                @Override
+                public long expireAfterCreate(String key, Optional<OcppTagActivityRecord> value, long currentTime) {
+                    return value.isPresent() ? KNOWN_TTL_NANOS : UNKNOWN_TTL_NANOS;
+                }
+
+                @Override
+                public long expireAfterUpdate(String key, Optional<OcppTagActivityRecord> value, long currentTime,
+                                              long currentDuration) {
+                    return expireAfterCreate(key, value, currentTime);
+                }
+
+                @Override
+                public long expireAfterRead(String key, Optional<OcppTagActivityRecord> value, long currentTime,
+                                            long currentDuration) {
+                    return currentDuration;
+                }
+            })
+            .recordStats()
+            .build();
+
+    /**
+     * @return null, if the idTag is not in the database
+     */
+    @Nullable
+    public OcppTagActivityRecord get(String idTag) {
+        return cache.get(idTag, k -> Optional.ofNullable(ocppTagRepository.getRecord(k))).orElse(null);
+    }
+
+    public void invalidate(@Nullable String idTag) {
+        if (idTag != null) {
+            cache.invalidate(idTag);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @EventListener
+    public void onTransactionStarted(OcppTransactionStarted event) {
+        invalidate(event.getParams().getIdTag());
+    }
+
+    @EventListener
+    public void onTransactionEnded(OcppTransactionEnded event) {
+        TransactionIdentity transaction = identityDirectory.getTransaction(event.getParams().getTransactionId());
+        if (transaction != null) {
+            invalidate(transaction.getIdTag());
+        }
+    }
+
+    public CacheStatistics getStats() {
+        CacheStats stats = cache.stats();
+        return CacheStatistics.builder()
+                              .size(cache.estimatedSize())
+                              .hits(stats.hitCount())
+                              .misses(stats.missCount())
+                              .hitRate(stats.hitRate())
+                              .build();
+    }
+}
@@ -55,6 +55,7 @@ public class OcppTagService {
 
     private final OcppTagRepository ocppTagRepository;
     private final AuthTagService authTagService;
+    private final OcppTagActivityCache ocppTagActivityCache;
 
     public List<OcppTag.Overview> getOverview(OcppTagQueryForm form) {
         return ocppTagRepository.getOverview(form);
@@ -132,26 +133,40 @@ public class OcppTagService {
 
     public int addOcppTag(OcppTagForm form) {
         var id = ocppTagRepository.addOcppTag(form);
+        ocppTagActivityCache.invalidate(form.getIdTag());
         removeUnknown(Collections.singletonList(form.getIdTag()));
         return id;
     }
     public void addOcppTagList(List<String> idTagList) {
         ocppTagRepository.addOcppTagList(idTagList);
+        idTagList.forEach(ocppTagActivityCache::invalidate);
         removeUnknown(idTagList);
     }
 
     public void updateOcppTag(OcppTagForm form) {
         ocppTagRepository.updateOcppTag(form);
+        ocppTagActivityCache.invalidate(getIdTag(form.getOcppTagPk()));
     }
 
     public void deleteOcppTag(int ocppTagPk) {
+        String idTag = getIdTag(ocppTagPk);
         ocppTagRepository.deleteOcppTag(ocppTagPk);
+        ocppTagActivityCache.invalidate(idTag);
     }
 
     // -------------------------------------------------------------------------
     // Private helpers
     // -------------------------------------------------------------------------
 
+    @Nullable
+    private String getIdTag(@Nullable Integer ocppTagPk) {
+        if (ocppTagPk == null) {
+            return null;
+        }
+        OcppTagActivityRecord record = ocppTagRepository.getRecord(ocppTagPk);
+        return record == null ? null : record.getIdTag();
+    }
+
     /**
      * ConcurrentTx is only valid for StartTransactionRequest
      */
@@ -0,0 +1,176 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.repository.OcppTagStatsRepository;
+import de.rwth.idsg.steve.repository.dto.OcppTagStats;
+import de.rwth.idsg.steve.service.dto.CacheStatistics;
+import de.rwth.idsg.steve.service.notification.OcppTransactionEnded;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lifetime stats of idTags (completed sessions, kWh, spend, last session), for the loyalty rank and the summaries of
+ * the mobile API. Every completed transaction is counted once into ocpp_tag_stats: on StopTransaction, and for the
+ * history by a backfill at startup. The backfill also catches up on the stops whose counting failed.
+ */
+@Slf4j
+@Service
+public class OcppTagStatsService {
+
+    private static final int BACKFILL_WORKERS = 4;
+    private static final int BACKFILL_CHUNK_SIZE = 1_000;
+
+    @Autowired
+    private OcppTagStatsRepository ocppTagStatsRepository;
+
+    private final Cache<String, OcppTagStats> cache = Caffeine.newBuilder()
+            .maximumSize(50_000)
+            .expireAfterWrite(1, TimeUnit.HOURS)
+            .recordStats()
+            .build();
+
+    private ExecutorService backfillExecutor;
+    private final AtomicInteger backfillChunksTotal = new AtomicInteger();
+    private final AtomicInteger backfillChunksDone = new AtomicInteger();
+    private final AtomicLong backfillCounted = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        backfillExecutor = Executors.newFixedThreadPool(BACKFILL_WORKERS,
+                new ThreadFactoryBuilder().setNameFormat("SteVe-TagStatsBackfill-%d").build());
+        backfillExecutor.execute(this::backfill);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        backfillExecutor.shutdownNow();
+    }
+
+    public OcppTagStats get(String idTag) {
+        return getAll(List.of(idTag)).get(idTag);
+    }
+
+    /**
+     * @return an entry for each of the idTags, the empty stats for the ones without completed transactions
+     */
+    public Map<String, OcppTagStats> getAll(Collection<String> idTags) {
+        return cache.getAll(idTags, missing -> {
+            Map<String, OcppTagStats> loaded = new HashMap<>(ocppTagStatsRepository.getStats(missing));
+            for (String idTag : missing) {
+                loaded.putIfAbsent(idTag, OcppTagStats.empty(idTag));
+            }
+            return loaded;
+        });
+    }
+
+    @EventListener
+    public void onTransactionEnded(OcppTransactionEnded event) {
+        try {
+            count(List.of(event.getParams().getTransactionId()));
+        } catch (Exception e) {
+            // the backfill of the next start counts it
+            log.error("Counting transaction {} into the idTag stats failed", event.getParams().getTransactionId(), e);
+        }
+    }
+
+    public static String calculateRank(int transactionCount) {
+        if (transactionCount >= 100) return "Platinum";
+        if (transactionCount >= 50)  return "Gold";
+        if (transactionCount >= 10)  return "Silver";
+        return "Normal";
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        return Map.of(
+                "cache", CacheStatistics.builder()
+                                        .size(cache.estimatedSize())
+                                        .hits(stats.hitCount())
+                                        .misses(stats.missCount())
+                                        .hitRate(stats.hitRate())
+                                        .build(),
+                "backfillChunksTotal", backfillChunksTotal.get(),
+                "backfillChunksDone", backfillChunksDone.get(),
+                "backfillCounted", backfillCounted.get());
+    }
+
+    private void count(Collection<Integer> transactionPks) {
+        Set<String> changed = ocppTagStatsRepository.countCompleted(transactionPks);
+        cache.invalidateAll(changed);
+    }
+
+    /**
+     * Walks the transaction history in chunks of primary keys, which the workers count in parallel. Transactions that
+     * are counted already are skipped, so this is cheap after the first run.
+     */
+    private void backfill() {
+        long start = System.currentTimeMillis();
+
+        int maxPk = ocppTagStatsRepository.getMaxTransactionPk();
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int from = 0; from <= maxPk; from += BACKFILL_CHUNK_SIZE) {
+            int fromPk = from;
+            chunks.add(CompletableFuture.runAsync(() -> backfillChunk(fromPk, fromPk + BACKFILL_CHUNK_SIZE), backfillExecutor));
+        }
+        backfillChunksTotal.set(chunks.size());
+
+        CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0]))
+                .whenComplete((result, e) -> {
+                    log.info("Backfill of the idTag stats counted {} transactions in {} ms",
+                            backfillCounted.get(), System.currentTimeMillis() - start);
+                    backfillExecutor.shutdown();
+                });
+    }
+
+    private void backfillChunk(int fromPk, int toPk) {
+        try {
+            List<Integer> transactionPks = ocppTagStatsRepository.getUncountedCompleted(fromPk, toPk);
+            if (!transactionPks.isEmpty()) {
+                count(transactionPks);
+                backfillCounted.addAndGet(transactionPks.size());
+            }
+        } catch (Exception e) {
+            log.error("Backfill of the idTag stats failed for transactions {} to {}", fromPk, toPk - 1, e);
+        } finally {
+            backfillChunksDone.incrementAndGet();
+        }
+    }
+}
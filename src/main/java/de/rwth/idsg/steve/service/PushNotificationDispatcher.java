@@ -0,0 +1,301 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
+import de.rwth.idsg.steve.service.dto.PushAlert;
+import de.rwth.idsg.steve.service.dto.PushDispatcherStats;
+import de.rwth.idsg.steve.utils.TimerWheel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static de.rwth.idsg.steve.SteveConfiguration.CONFIG;
+
+/**
+ * Delivers push notifications in the background, so that the OCPP threads never wait for the notification endpoint.
+ *
+ * Submitted alerts are held for a short window. Within it, a new alert with the same key replaces the pending one,
+ * and an alert that ends the pending condition (e.g. online after offline) cancels it, so that flapping stations do
+ * not flood the operators. Due alerts are sent in batches, one request per title, by a small worker pool. Failed
+ * requests are retried with exponential backoff.
+ */
+@Slf4j
+@Service
+public class PushNotificationDispatcher {
+
+    private static final String API_URL = "http://15.207.37.132/new/send_notification.php";
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    @Autowired
+    private IntegrationClients integrationClients;
+    @Autowired
+    private ScheduledExecutorService scheduledExecutorService;
+    @Autowired
+    private TimerWheel timerWheel;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private final long windowMillis;
+    private final int capacity;
+    private final int batchSize;
+    private final int workerCount;
+    private final int maxAttempts;
+
+    // Guarded by this. In order of arrival, so that the oldest alerts are due first.
+    private final Map<String, Pending> pending = new LinkedHashMap<>();
+    private long uniqueKeySequence;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private ThreadPoolExecutor workers;
+    private ScheduledFuture<?> flusher;
+
+    public PushNotificationDispatcher() {
+        this(CONFIG.getNotification());
+    }
+
+    PushNotificationDispatcher(SteveConfiguration.Notification config) {
+        this.windowMillis = TimeUnit.SECONDS.toMillis(config.getPushWindowSeconds());
+        this.capacity = config.getPushQueueCapacity();
+        this.batchSize = config.getPushBatchSize();
+        this.workerCount = config.getPushWorkers();
+        this.maxAttempts = config.getPushMaxAttempts();
+    }
+
+    @PostConstruct
+    public void init() {
+        workers = new ThreadPoolExecutor(workerCount, workerCount, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, capacity / batchSize)),
+                new ThreadFactoryBuilder().setNameFormat("SteVe-Push-%d").build(),
+                (task, executor) -> {
+                    Batch batch = ((BatchTask) task).batch;
+                    dropped.addAndGet(batch.alerts.size());
+                    log.warn("Dropped {} push notifications, the workers are saturated", batch.alerts.size());
+                });
+
+        flusher = scheduledExecutorService.scheduleWithFixedDelay(this::flushDue, 1, 1, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        if (flusher != null) {
+            flusher.cancel(false);
+        }
+        drainDue(Long.MAX_VALUE).forEach(this::execute);
+
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+                log.warn("Push notifications were not delivered completely before shutdown");
+                workers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            workers.shutdownNow();
+        }
+    }
+
+    public void submit(PushAlert alert) {
+        offer(alert, System.currentTimeMillis());
+    }
+
+    public PushDispatcherStats getStats() {
+        int pendingCount;
+        synchronized (this) {
+            pendingCount = pending.size();
+        }
+        return PushDispatcherStats.builder()
+                                  .pending(pendingCount)
+                                  .submitted(submitted.get())
+                                  .coalesced(coalesced.get())
+                                  .cancelled(cancelled.get())
+                                  .dropped(dropped.get())
+                                  .sent(sent.get())
+                                  .retried(retried.get())
+                                  .failed(failed.get())
+                                  .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Coalescing
+    // -------------------------------------------------------------------------
+
+    synchronized void offer(PushAlert alert, long nowMillis) {
+        submitted.incrementAndGet();
+
+        String key = alert.getKey() == null ? "#" + (uniqueKeySequence++) : alert.getKey();
+        Pending existing = pending.get(key);
+
+        if (existing != null) {
+            if (existing.alert.isRaised() != alert.isRaised()) {
+                // The condition ended before anybody was told about it
+                pending.remove(key);
+                cancelled.addAndGet(2);
+            } else {
+                existing.alert = alert;
+                coalesced.incrementAndGet();
+            }
+            return;
+        }
+
+        if (pending.size() >= capacity) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        pending.put(key, new Pending(alert, nowMillis));
+    }
+
+    /**
+     * @return the alerts that were held for the whole window, grouped by title and cut into batches
+     */
+    synchronized List<Batch> drainDue(long nowMillis) {
+        Map<String, List<PushAlert>> byTitle = new LinkedHashMap<>();
+
+        Iterator<Pending> it = pending.values().iterator();
+        while (it.hasNext()) {
+            Pending p = it.next();
+            if (nowMillis != Long.MAX_VALUE && p.enqueuedAtMillis + windowMillis > nowMillis) {
+                break;
+            }
+            it.remove();
+            byTitle.computeIfAbsent(p.alert.getTitle(), k -> new ArrayList<>()).add(p.alert);
+        }
+
+        List<Batch> batches = new ArrayList<>();
+        byTitle.forEach((title, alerts) -> {
+            for (int i = 0; i < alerts.size(); i += batchSize) {
+                batches.add(new Batch(title, alerts.subList(i, Math.min(i + batchSize, alerts.size()))));
+            }
+        });
+        return batches;
+    }
+
+    // -------------------------------------------------------------------------
+    // Delivery
+    // -------------------------------------------------------------------------
+
+    private void flushDue() {
+        try {
+            drainDue(System.currentTimeMillis()).forEach(this::execute);
+        } catch (Exception e) {
+            log.error("Flushing push notifications failed", e);
+        }
+    }
+
+    private void execute(Batch batch) {
+        workers.execute(new BatchTask(batch));
+    }
+
+    private void send(Batch batch) {
+        try {
+            Map<String, Object> requestBody = new LinkedHashMap<>();
+            requestBody.put("idtag", "tucker");
+            requestBody.put("title", batch.title);
+            requestBody.put("message", batch.alerts.stream().map(PushAlert::getMessage).collect(Collectors.joining("\n")));
+            requestBody.put("payload", "");
+
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+
+            HttpEntity<String> entity = new HttpEntity<>(mapper.writeValueAsString(requestBody), headers);
+            integrationClients.get(HttpIntegration.NOTIFICATION)
+                              .execute(rt -> rt.postForEntity(API_URL, entity, String.class));
+            sent.addAndGet(batch.alerts.size());
+
+        } catch (Exception e) {
+            batch.attempts++;
+            if (batch.attempts >= maxAttempts || workers.isShutdown()) {
+                failed.addAndGet(batch.alerts.size());
+                log.error("Sending {} push notifications failed after {} attempts: {}",
+                        batch.alerts.size(), batch.attempts, e.getMessage());
+                return;
+            }
+
+            long backoffSeconds = Math.min(1L << batch.attempts, MAX_BACKOFF_SECONDS);
+            retried.incrementAndGet();
+            log.warn("Sending {} push notifications failed, retrying in {} s: {}",
+                    batch.alerts.size(), backoffSeconds, e.getMessage());
+            timerWheel.schedule(() -> execute(batch), backoffSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    private static final class Pending {
+        private PushAlert alert;
+        private final long enqueuedAtMillis;
+
+        private Pending(PushAlert alert, long enqueuedAtMillis) {
+            this.alert = alert;
+            this.enqueuedAtMillis = enqueuedAtMillis;
+        }
+    }
+
+    static final class Batch {
+        final String title;
+        final List<PushAlert> alerts;
+        private int attempts;
+
+        private Batch(String title, List<PushAlert> alerts) {
+            this.title = title;
+            this.alerts = new ArrayList<>(alerts);
+        }
+    }
+
+    private final class BatchTask implements Runnable {
+        private final Batch batch;
+
+        private BatchTask(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void run() {
+            send(batch);
+        }
+    }
+}
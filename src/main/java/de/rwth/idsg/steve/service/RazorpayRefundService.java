@@ -18,6 +18,8 @@
  */
 package de.rwth.idsg.steve.service;
 
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
 import de.rwth.idsg.steve.service.dto.RefundAmountAfterTransactionSend;
 import de.rwth.idsg.steve.service.dto.RefundAmountAfterTransactionSendResponse;
 import de.rwth.idsg.steve.service.dto.RefundAmountDTO;
@@ -30,7 +32,6 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import static jooq.steve.db.tables.PaymentRequest.PAYMENT_REQUEST;
 
@@ -39,7 +40,7 @@ import static jooq.steve.db.tables.PaymentRequest.PAYMENT_REQUEST;
 public class RazorpayRefundService {
 
     @Autowired
-    private RestTemplate restTemplate;
+    private IntegrationClients integrationClients;
 
     @Autowired
     private DSLContext dslContext;
@@ -62,8 +63,8 @@ public class RazorpayRefundService {
             HttpEntity<RefundAmountDTO> entity =
                     new HttpEntity<>(request, headers);
 
-            ResponseEntity<String> response =
-                    restTemplate.postForEntity(url, entity, String.class);
+            integrationClients.get(HttpIntegration.PAYOUT)
+                              .execute(rt -> rt.postForEntity(url, entity, String.class));
         } catch (Exception e) {
             log.error("Exception occurred RazorpayRefundService in  57 line", e);
         }
@@ -84,7 +85,8 @@ public class RazorpayRefundService {
                     new HttpEntity<>(request, headers);
 
             ResponseEntity<RefundAmountAfterTransactionSendResponse> response =
-                    restTemplate.postForEntity(url, entity, RefundAmountAfterTransactionSendResponse.class);
+                    integrationClients.get(HttpIntegration.PAYOUT)
+                                      .execute(rt -> rt.postForEntity(url, entity, RefundAmountAfterTransactionSendResponse.class));
 
             RefundAmountAfterTransactionSendResponse body = response.getBody();
             log.info("RazorpayRefundService  PayOut Trigger value : chargeAmount = " + chargeAmount + ",  balanceAmount = " + balanceAmount);
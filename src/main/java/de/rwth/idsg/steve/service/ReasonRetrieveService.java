@@ -19,56 +19,43 @@
 package de.rwth.idsg.steve.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ocpp.cs._2015._10.Reason;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @Service
 public class ReasonRetrieveService {
 
-    private static final ObjectMapper mapper = new ObjectMapper();
+    public static final Map<Integer, String> customReasonMap = new ConcurrentHashMap<>();
 
-    public static final Map<Integer, String> customReasonMap = new HashMap<>();
-
-    public static String retrieve(String msg) {
-
-
-        try {
-            JsonNode root = mapper.readTree(msg);
-            int messageType = root.get(0).asInt();
-
-            if (messageType == 2) {
-                String action = root.get(2).asText();
-
-                if ("StopTransaction".equals(action)) {
-                    ObjectNode payload = (ObjectNode) root.get(3);
-
-                    if (payload.has("reason") && payload.has("transactionId")) {
-                        int txId = payload.get("transactionId").asInt();
-                        String reason = payload.get("reason").asText();
-
-                        if (!isStandardReason(reason)) {
-                            customReasonMap.put(txId, reason);
-                            payload.put("reason", "Other");
+    /**
+     * StopTransaction requests with a reason outside of the OCPP enumeration would not deserialize. The original
+     * reason is remembered for the transaction and the payload is rewritten to "Other", in place on the already
+     * parsed frame.
+     */
+    public static void rewrite(JsonNode root) {
+        if (root.path(0).asInt() != 2 || !"StopTransaction".equals(root.path(2).asText())) {
+            return;
+        }
 
-                        }
-                        customReasonMap.put(txId, reason);
-                    }
-                }
-            }
+        JsonNode payloadNode = root.path(3);
+        if (!payloadNode.isObject() || !payloadNode.has("reason") || !payloadNode.has("transactionId")) {
+            return;
+        }
 
-            return mapper.writeValueAsString(root);
+        ObjectNode payload = (ObjectNode) payloadNode;
+        int txId = payload.get("transactionId").asInt();
+        String reason = payload.get("reason").asText();
 
-        } catch (Exception e) {
-            log.error(e.getMessage());
-            return msg;
+        if (!isStandardReason(reason)) {
+            payload.put("reason", Reason.OTHER.value());
         }
+        customReasonMap.put(txId, reason);
     }
 
     private static boolean isStandardReason(String value) {
@@ -85,9 +72,6 @@ public class ReasonRetrieveService {
     }
 
     public static void removeCustomReason(int txId) {
-        if (customReasonMap.containsKey(txId)) {
-            customReasonMap.remove(txId);
-        }
-
+        customReasonMap.remove(txId);
     }
 }
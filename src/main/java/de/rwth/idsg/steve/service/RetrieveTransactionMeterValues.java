@@ -18,6 +18,8 @@
  */
 package de.rwth.idsg.steve.service;
 
+import de.rwth.idsg.steve.repository.dto.MeterValueSample;
+import de.rwth.idsg.steve.service.dto.TransactionIdentity;
 import de.rwth.idsg.steve.service.dto.TransactionMeterValues;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.MeterValue;
@@ -29,11 +31,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
-import static jooq.steve.db.Tables.TRANSACTION_METER_VALUES;
-import static jooq.steve.db.tables.Connector.CONNECTOR;
-import static jooq.steve.db.tables.TransactionStart.TRANSACTION_START;
 import static jooq.steve.db2.Tables.LIVE_CHARGING_DATA;
 import static org.jooq.impl.DSL.iif;
 import static org.jooq.impl.DSL.val;
@@ -42,8 +45,6 @@ import static org.jooq.impl.DSL.val;
 @Service
 public class RetrieveTransactionMeterValues {
 
-    @Autowired
-    private DSLContext dslContext;
     @Autowired
     private ManuallyStopTransaction manuallyStopTransaction;
     @Autowired
@@ -53,21 +54,124 @@ public class RetrieveTransactionMeterValues {
     private TariffAmountCalculation tariffAmountCalculation;
     @Autowired
     private ChargerFeeExceptUserService chargerFeeExceptUserService;
+    @Autowired
+    private OcppIdentityDirectory identityDirectory;
+    @Autowired
+    private TransactionMeterValueStore meterValueStore;
 
 
     public TransactionMeterValues buildTransactionMeterValues(
             List<MeterValue> list,
             int connectorPk,
             Integer transactionId) {
-        String chargeBoxId = dslContext.select(CONNECTOR.CHARGE_BOX_ID)
-                .from(CONNECTOR)
-                .where(CONNECTOR.CONNECTOR_PK.eq(connectorPk))
-                .fetchOne(CONNECTOR.CHARGE_BOX_ID);
-
-        String idTag = dslContext.select(TRANSACTION_START.ID_TAG)
-                .from(TRANSACTION_START)
-                .where(TRANSACTION_START.TRANSACTION_PK.eq(transactionId))
-                .fetchOne(TRANSACTION_START.ID_TAG);
+        String chargeBoxId = identityDirectory.getChargeBoxId(connectorPk);
+
+        TransactionIdentity transaction = identityDirectory.getTransaction(transactionId);
+        String idTag = transaction == null ? null : transaction.getIdTag();
+        TransactionMeterValues tmv = aggregate(list, connectorPk, transactionId);
+        tmv.setChargeBoxId(chargeBoxId);
+        tmv.setOcppTagPk(idTag);
+
+        tariffAmountCalculation.sets(idTag, tmv.getEnergy(), chargeBoxId, latestTimestamp(list), transactionId, connectorPk);
+        // ✅ GUARANTEED INSERT
+        meterValueStore.store(List.of(tmv));
+        insertTransactionLiveData(transactionId, tmv);
+        return tmv;
+    }
+
+    /**
+     * Batch variant of {@link #buildTransactionMeterValues(List, int, Integer)} for the ingestion workers, in three
+     * steps: the rows of the samples are built with the idTags from the directory and inserted within the transaction
+     * of the caller, the live data follows after the commit, and billing only after the whole batch is committed
+     * (see {@link #bill(List)}).
+     */
+    public List<TransactionMeterValues> toTransactionMeterValues(List<MeterValueSample> samples) {
+        List<MeterValueSample> txSamples = samples.stream()
+                .filter(s -> s.getTransactionId() != null)
+                .collect(Collectors.toList());
+        if (txSamples.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Integer, TransactionIdentity> transactions = getTransactions(txSamples);
+
+        List<TransactionMeterValues> rows = new ArrayList<>(txSamples.size());
+        for (MeterValueSample s : txSamples) {
+            TransactionMeterValues tmv = aggregate(s.getMeterValues(), s.getConnectorPk(), s.getTransactionId());
+            tmv.setChargeBoxId(s.getChargeBoxId());
+            TransactionIdentity transaction = transactions.get(s.getTransactionId());
+            tmv.setOcppTagPk(transaction == null ? null : transaction.getIdTag());
+            rows.add(tmv);
+        }
+        return rows;
+    }
+
+    /**
+     * Called after the rows of {@link #toTransactionMeterValues(List)} are committed. Does not throw, so that the
+     * caller does not store the samples again.
+     */
+    public void afterStored(List<TransactionMeterValues> rows) {
+        try {
+            meterValueStore.appendBlocks(rows);
+        } catch (Exception e) {
+            log.error("Appending {} MeterValues to their blocks failed", rows.size(), e);
+        }
+
+        for (TransactionMeterValues tmv : rows) {
+            insertTransactionLiveData(tmv.getTransactionPk(), tmv);
+        }
+    }
+
+    /**
+     * Bills the samples in the given order. Every sample is billed only once, even if it is passed again. The ones
+     * replayed from the spill file are not billed, since newer samples of their transactions may already have been
+     * billed.
+     * <p>
+     * Must only be called with committed samples: a batch that fails and is retried one by one must not bill its
+     * samples twice, and out of order.
+     */
+    public void bill(List<MeterValueSample> samples) {
+        List<MeterValueSample> billable = samples.stream()
+                .filter(s -> s.getTransactionId() != null && s.isValuesStored() && !s.isReplayed() && !s.isBilled())
+                .collect(Collectors.toList());
+        if (billable.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, TransactionIdentity> transactions = getTransactions(billable);
+
+        for (MeterValueSample s : billable) {
+            s.setBilled(true);
+            TransactionIdentity transaction = transactions.get(s.getTransactionId());
+            String idTag = transaction == null ? null : transaction.getIdTag();
+            try {
+                TransactionMeterValues tmv = aggregate(s.getMeterValues(), s.getConnectorPk(), s.getTransactionId());
+                tariffAmountCalculation.sets(idTag, tmv.getEnergy(), s.getChargeBoxId(),
+                        latestTimestamp(s.getMeterValues()), s.getTransactionId(), s.getConnectorPk());
+            } catch (Exception e) {
+                log.error("Billing failed for transaction {}", s.getTransactionId(), e);
+            }
+        }
+    }
+
+    private Map<Integer, TransactionIdentity> getTransactions(List<MeterValueSample> samples) {
+        Set<Integer> transactionIds = samples.stream()
+                .map(MeterValueSample::getTransactionId)
+                .collect(Collectors.toSet());
+        return identityDirectory.getTransactions(transactionIds);
+    }
+
+    private static DateTime latestTimestamp(List<MeterValue> list) {
+        return list.stream()
+                .map(MeterValue::getTimestamp)
+                .reduce((first, second) -> second)
+                .orElse(null);
+    }
+
+    private static TransactionMeterValues aggregate(
+            List<MeterValue> list,
+            int connectorPk,
+            Integer transactionId) {
         TransactionMeterValues tmv = new TransactionMeterValues();
         tmv.setConnectorPk(connectorPk);
         tmv.setTransactionPk(transactionId);
@@ -132,24 +236,6 @@ public class RetrieveTransactionMeterValues {
         if (voltageCount > 0) tmv.setVoltage(voltageSum / voltageCount);
         if (currentSum > 0) tmv.setCurrent(currentSum);
         if (powerSum > 0) tmv.setPower(powerSum);
-        DateTime latestTimestamp = list.stream()
-                .map(MeterValue::getTimestamp)
-                .reduce((first, second) -> second)
-                .orElse(null);
-        tariffAmountCalculation.sets(idTag, tmv.getEnergy(), chargeBoxId, latestTimestamp, transactionId, connectorPk);
-        // ✅ GUARANTEED INSERT
-        dslContext.insertInto(TRANSACTION_METER_VALUES)
-                .set(TRANSACTION_METER_VALUES.TRANSACTION_PK, transactionId)
-                .set(TRANSACTION_METER_VALUES.OCPP_TAG_ID, idTag)
-                .set(TRANSACTION_METER_VALUES.CHARGE_BOX_ID, chargeBoxId)
-                .set(TRANSACTION_METER_VALUES.CONNECTOR_PK, connectorPk)
-                .set(TRANSACTION_METER_VALUES.VOLTAGE, tmv.getVoltage())
-                .set(TRANSACTION_METER_VALUES.CURRENT, tmv.getCurrent())
-                .set(TRANSACTION_METER_VALUES.POWER, tmv.getPower())
-                .set(TRANSACTION_METER_VALUES.ENERGY, tmv.getEnergy())
-                .set(TRANSACTION_METER_VALUES.SOC, tmv.getSoc())
-                .execute();
-        insertTransactionLiveData(transactionId, tmv);
         return tmv;
     }
 
@@ -213,22 +299,20 @@ public class RetrieveTransactionMeterValues {
 
     public void insertTran(final Integer transactionPk, final Integer connectorPk, final double voltage, final double power, final double energy, final double soc, final double current, final String idTag, final String chargerBoxId) {
         try {
-            dslContext.insertInto(TRANSACTION_METER_VALUES)
-                    .set(TRANSACTION_METER_VALUES.TRANSACTION_PK, transactionPk)
-                    .set(TRANSACTION_METER_VALUES.CONNECTOR_PK, connectorPk)
-                    .set(TRANSACTION_METER_VALUES.VOLTAGE, voltage)
-                    .set(TRANSACTION_METER_VALUES.POWER, power)
-                    .set(TRANSACTION_METER_VALUES.ENERGY, energy)
-                    .set(TRANSACTION_METER_VALUES.SOC, soc)
-                    .set(TRANSACTION_METER_VALUES.CURRENT, current)
-                    .set(TRANSACTION_METER_VALUES.OCPP_TAG_ID, idTag)
-                    .set(TRANSACTION_METER_VALUES.CHARGE_BOX_ID, chargerBoxId)
-                    .execute();
+            TransactionMeterValues tmv = new TransactionMeterValues();
+            tmv.setTransactionPk(transactionPk);
+            tmv.setConnectorPk(connectorPk);
+            tmv.setVoltage(voltage);
+            tmv.setPower(power);
+            tmv.setEnergy(energy);
+            tmv.setSoc(soc);
+            tmv.setCurrent(current);
+            tmv.setOcppTagPk(idTag);
+            tmv.setChargeBoxId(chargerBoxId);
+            meterValueStore.store(List.of(tmv));
         } catch (Exception e) {
             log.error("Exception Occur in Retrieve Transaction Meter Values : " + e.getMessage());
         }
     }
 
 }
-
-
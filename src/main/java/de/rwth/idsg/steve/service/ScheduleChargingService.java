@@ -38,6 +38,9 @@
 package de.rwth.idsg.steve.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.SteveException;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
 import de.rwth.idsg.steve.externalconfig.ScheduledChargingMessages;
 import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
 import de.rwth.idsg.steve.ocpp.OcppCallback;
@@ -46,7 +49,8 @@ import de.rwth.idsg.steve.ocpp.OcppVersion;
 import de.rwth.idsg.steve.ocpp.task.RemoteStartTransactionTask;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
-import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
+import de.rwth.idsg.steve.utils.TimerWheel;
 import de.rwth.idsg.steve.web.dto.OcppJsonStatus;
 import de.rwth.idsg.steve.web.dto.ocpp.RemoteStartTransactionParams;
 import jooq.steve.db.tables.records.ScheduleChargingRecord;
@@ -54,27 +58,29 @@ import lombok.extern.slf4j.Slf4j;
 import ocpp.cp._2015._10.RemoteStopTransactionRequest;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
 import org.jooq.DSLContext;
 import org.jooq.Result;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.sql.Timestamp;
 import java.time.*;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import static jooq.steve.db.Tables.SCHEDULE_CHARGING;
@@ -89,61 +95,255 @@ public class ScheduleChargingService {
     @Autowired
     private ChargePointService16_InvokerImpl chargePointService16Invoker;
     @Autowired
-    private TransactionRepositoryImpl transactionRepository;
-    @Autowired
     private ManuallyStopTransaction manuallyStopTransaction;
     @Autowired
     private HomeService homeService;
 
-    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    @Autowired
+    private TimerWheel timerWheel;
+    @Autowired
+    private ActiveTransactionRegistry activeTransactionRegistry;
+
+    private static final ZoneId IST = ZoneId.of("Asia/Kolkata");
 
     @Autowired
-    private RestTemplate restTemplate;
+    private IntegrationClients integrationClients;
     private static final String LIVE_API_URL = "http://cms.tuckerio.bigtot.in/flutter/schNotify.php";
 
     private static final String TEST_API_URL = "https://tuckerio.com/flutter/schNotify.php";
 
-    @Scheduled(fixedRate = 1000)
-    public void checkScheduledCharging() {
-        Instant nowUtc = Instant.now();
-        ZonedDateTime istTime = nowUtc.atZone(ZoneId.of("Asia/Kolkata"));
-        LocalDateTime istLocalDateTime = istTime.toLocalDateTime();
+    // -------------------------------------------------------------------------
+    // Timers
+    //
+    // Every enabled schedule that is not finished yet has up to three timers on the shared timer wheel: the reminder
+    // 30 minutes before the start, the start and the stop. The table is only read at startup, once a minute to pick
+    // up changes made by other applications, when we are told about a change (refresh), and by primary key when a
+    // timer fires, to make sure the schedule is still valid.
+    // -------------------------------------------------------------------------
+
+    /**
+     * Events that were missed (e.g. the server was down) are still fired if they are less than this late.
+     */
+    private static final Duration CATCH_UP_WINDOW = Duration.ofHours(12);
+
+    private final Map<Long, ScheduleTimers> timers = new ConcurrentHashMap<>();
+    private final AtomicBoolean loaded = new AtomicBoolean();
+
+    private static final class ScheduleTimers {
+        private TimerWheel.Timeout reminder, start, stop;
+        private boolean reminderFired, startFired, stopFired;
+
+        private void cancelAll() {
+            for (TimerWheel.Timeout t : new TimerWheel.Timeout[]{reminder, start, stop}) {
+                if (t != null) {
+                    t.cancel();
+                }
+            }
+            reminder = start = stop = null;
+        }
+    }
 
-        Result<ScheduleChargingRecord> toStart = dslContext
-                .selectFrom(SCHEDULE_CHARGING)
-                .where("DATE_FORMAT({0}, '%Y-%m-%d %H:%i:%s') = DATE_FORMAT({1}, '%Y-%m-%d %H:%i:%s')",
-                        SCHEDULE_CHARGING.START_TIME,
-                        Timestamp.valueOf(istLocalDateTime))
-                .and(SCHEDULE_CHARGING.IS_START.eq(false)
-                        .and(SCHEDULE_CHARGING.IS_ENABLE.eq(true)))
-                .fetch();
+    @EventListener
+    public void afterStart(ContextRefreshedEvent event) {
+        if (loaded.compareAndSet(false, true)) {
+            reloadSchedules();
+        }
+    }
+
+    /**
+     * Picks up schedules that were inserted or changed by other applications without calling {@link #refresh(Long)}.
+     */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void reloadSchedules() {
+        LocalDateTime since = LocalDateTime.now(IST).minus(CATCH_UP_WINDOW);
 
-        Result<ScheduleChargingRecord> toStop = dslContext
+        Result<ScheduleChargingRecord> records = dslContext
                 .selectFrom(SCHEDULE_CHARGING)
-                .where("DATE_FORMAT({0}, '%Y-%m-%d %H:%i:%s') = DATE_FORMAT({1}, '%Y-%m-%d %H:%i:%s')",
-                        SCHEDULE_CHARGING.END_TIME,
-                        Timestamp.valueOf(istLocalDateTime))
-                .and(SCHEDULE_CHARGING.IS_STOP.eq(false)
-                        .and(SCHEDULE_CHARGING.IS_ENABLE.eq(true)))
+                .where(SCHEDULE_CHARGING.IS_ENABLE.eq(true))
+                .and(SCHEDULE_CHARGING.IS_STOP.eq(false))
+                .and(SCHEDULE_CHARGING.END_TIME.ge(toDateTime(since)))
                 .fetch();
-        if (!toStart.isEmpty()) {
-            for (ScheduleChargingRecord r : toStart) {
-                try {
-                    if (isRoutine(r.getDay())) {
-                        sendRemoteStart(r.getChargeBoxId(), r.getIdtag(), Integer.parseInt(r.getConnectorId()), r.getId(), r.getStartTime(), r.getEndTime());
-                    }
-                    insertNextSchedules(r.getIdtag(), r.getChargeBoxId(), r.getConnectorId(), r.getDay(), r.getStartTime(), r.getEndTime());
-                } catch (NullPointerException e) {
 
+        Set<Long> ids = new HashSet<>();
+        for (ScheduleChargingRecord r : records) {
+            ids.add(r.getId());
+            sync(r);
+        }
+
+        // Disabled, finished or deleted in the meantime
+        for (Long id : timers.keySet()) {
+            if (!ids.contains(id)) {
+                remove(id);
+            }
+        }
+    }
+
+    /**
+     * To be called after a schedule was inserted or updated, so that its timers follow without waiting for the next
+     * reload.
+     */
+    public void refresh(Long id) {
+        ScheduleChargingRecord r = fetchSchedule(id);
+        if (r == null) {
+            remove(id);
+        } else {
+            sync(r);
+        }
+    }
+
+    public int getPendingScheduleCount() {
+        return timers.size();
+    }
+
+    private void sync(ScheduleChargingRecord r) {
+        Long id = r.getId();
+        if (!Boolean.TRUE.equals(r.getIsEnable()) || Boolean.TRUE.equals(r.getIsStop())) {
+            remove(id);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long startAt = toIstMillis(r.getStartTime());
+        long stopAt = toIstMillis(r.getEndTime());
+        long reminderAt = startAt - TimeUnit.MINUTES.toMillis(30);
+        long catchUpSince = now - CATCH_UP_WINDOW.toMillis();
+
+        ScheduleTimers t = timers.computeIfAbsent(id, k -> new ScheduleTimers());
+        synchronized (t) {
+            t.cancelAll();
+
+            // The reminder only makes sense before the start
+            if (!Boolean.TRUE.equals(r.getIsNotifySend()) && !t.reminderFired && startAt > now) {
+                t.reminder = timerWheel.schedule(() -> fireReminder(id), reminderAt - now, TimeUnit.MILLISECONDS);
+            }
+
+            if (!Boolean.TRUE.equals(r.getIsStart()) && !t.startFired && startAt >= catchUpSince) {
+                t.start = timerWheel.schedule(() -> fireStart(id), startAt - now, TimeUnit.MILLISECONDS);
+            }
+
+            // A missed stop is only caught up if we know that the charging was started by this schedule
+            boolean stopMissed = stopAt <= now;
+            if (!t.stopFired && stopAt >= catchUpSince && (!stopMissed || Boolean.TRUE.equals(r.getIsStart()))) {
+                t.stop = timerWheel.schedule(() -> fireStop(id), stopAt - now, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void remove(Long id) {
+        ScheduleTimers t = timers.remove(id);
+        if (t != null) {
+            synchronized (t) {
+                t.cancelAll();
+            }
+        }
+    }
+
+    private void fireReminder(Long id) {
+        if (!markFired(id, EventType.REMINDER)) {
+            return;
+        }
+        ScheduleChargingRecord r = fetchSchedule(id);
+        if (r == null || !Boolean.TRUE.equals(r.getIsEnable()) || Boolean.TRUE.equals(r.getIsNotifySend())) {
+            return;
+        }
+
+        sendNotification(r.getIdtag(), "Reminder Before Start ", ScheduledChargingMessages.REMINDER_BEFORE_START);
+        dslContext.update(SCHEDULE_CHARGING)
+                .set(SCHEDULE_CHARGING.IS_NOTIFY_SEND, true)
+                .where(SCHEDULE_CHARGING.ID.eq(id))
+                .execute();
+    }
+
+    private void fireStart(Long id) {
+        if (!markFired(id, EventType.START)) {
+            return;
+        }
+        ScheduleChargingRecord r = fetchSchedule(id);
+        if (r == null || !Boolean.TRUE.equals(r.getIsEnable()) || Boolean.TRUE.equals(r.getIsStart())) {
+            return;
+        }
+
+        boolean missed = toIstMillis(r.getEndTime()) <= System.currentTimeMillis();
+        try {
+            if (!missed && isRoutine(r.getDay())) {
+                sendRemoteStart(r.getChargeBoxId(), r.getIdtag(), Integer.parseInt(r.getConnectorId()), r.getId(), r.getStartTime(), r.getEndTime());
+            }
+            // Even if the start was missed, the next occurrence of a routine must be planned
+            if (r.getDay() != null) {
+                Long nextId = insertNextSchedules(r.getIdtag(), r.getChargeBoxId(), r.getConnectorId(), r.getDay(), r.getStartTime(), r.getEndTime());
+                if (nextId != null) {
+                    refresh(nextId);
                 }
             }
+        } catch (Exception e) {
+            log.error("Scheduled start of schedule {} failed", id, e);
+        }
+    }
+
+    private void fireStop(Long id) {
+        if (!markFired(id, EventType.STOP)) {
+            return;
+        }
+        ScheduleChargingRecord r = fetchSchedule(id);
+        if (r == null || !Boolean.TRUE.equals(r.getIsEnable()) || Boolean.TRUE.equals(r.getIsStop())) {
+            return;
         }
-        if (!toStop.isEmpty()) {
-            for (ScheduleChargingRecord r : toStop) {
-                sendRemoteStop(r.getChargeBoxId(), Integer.parseInt(r.getConnectorId()), r.getId(), r.getIdtag(), r.getEndTime());
+
+        sendRemoteStop(r.getChargeBoxId(), Integer.parseInt(r.getConnectorId()), r.getId(), r.getIdtag(), r.getEndTime());
+    }
+
+    private enum EventType { REMINDER, START, STOP }
+
+    /**
+     * Makes sure that each event fires only once, even if a reload happens while the first firing is still waiting
+     * for the charge point (the flags in the table are only set when it responds).
+     */
+    private boolean markFired(Long id, EventType type) {
+        ScheduleTimers t = timers.get(id);
+        if (t == null) {
+            return false;
+        }
+        synchronized (t) {
+            switch (type) {
+                case REMINDER:
+                    if (t.reminderFired) {
+                        return false;
+                    }
+                    t.reminderFired = true;
+                    return true;
+                case START:
+                    if (t.startFired) {
+                        return false;
+                    }
+                    t.startFired = true;
+                    return true;
+                case STOP:
+                    if (t.stopFired) {
+                        return false;
+                    }
+                    t.stopFired = true;
+                    return true;
+                default:
+                    return false;
             }
         }
-        sendNotification(istLocalDateTime);
+    }
+
+    private ScheduleChargingRecord fetchSchedule(Long id) {
+        return dslContext.selectFrom(SCHEDULE_CHARGING)
+                .where(SCHEDULE_CHARGING.ID.eq(id))
+                .fetchOne();
+    }
+
+    /**
+     * The times in schedule_charging are IST wall-clock times.
+     */
+    private static long toIstMillis(DateTime dbTime) {
+        return dbTime.toLocalDateTime().toDateTime(DateTimeZone.forID(IST.getId())).getMillis();
+    }
+
+    private static DateTime toDateTime(LocalDateTime istLocalDateTime) {
+        return new DateTime(Timestamp.valueOf(istLocalDateTime));
     }
 
     private void sendRemoteStart(String chargeBoxId, String idTag, int connectorId, Long id,
@@ -172,19 +372,9 @@ public class ScheduleChargingService {
         ChargePointSelect select = new ChargePointSelect(OcppTransport.JSON, chargeBoxId);
         RemoteStartTransactionTask task = new RemoteStartTransactionTask(OcppVersion.V_16, params);
         task.addCallback(new OcppCallback<String>() {
-            private final ScheduledFuture<?> timeout = scheduler.schedule(() -> {
-                String message = String.format(
-                        ScheduledChargingMessages.FAILED_TO_START,
-                        startTime
-                );
-                sendNotification(idTag,
-                        "Failed to Start (Timeout)",
-                        message);
-            }, 10, TimeUnit.SECONDS);
 
             @Override
             public void success(String cbId, String response) {
-                timeout.cancel(false);
 
                 if (response == null) {
                     String message = String.format(
@@ -221,7 +411,6 @@ public class ScheduleChargingService {
 
             @Override
             public void success(String cbId, OcppJsonError error) {
-                timeout.cancel(false);
                 sendNotification(idTag,
                         "Failed to Start (OCPP Error)",
                         ScheduledChargingMessages.FAILED_TO_START);
@@ -229,7 +418,16 @@ public class ScheduleChargingService {
 
             @Override
             public void failed(String cbId, Exception e) {
-                timeout.cancel(false);
+                if (e instanceof SteveException.Timeout) {
+                    String message = String.format(
+                            ScheduledChargingMessages.FAILED_TO_START,
+                            startTime
+                    );
+                    sendNotification(idTag,
+                            "Failed to Start (Timeout)",
+                            message);
+                    return;
+                }
                 sendNotification(idTag,
                         "Failed to Start (Exception: " + e.getMessage() + ")",
                         ScheduledChargingMessages.FAILED_TO_START);
@@ -246,7 +444,8 @@ public class ScheduleChargingService {
             request.setTransactionId(transactionId);
             manuallyStopTransaction.manuallyStopTransaction(chargeBoxId, transactionId, "Scheduled stop");
 
-            scheduler.schedule(() -> {
+            // Give the charge point time to send the StopTransaction
+            timerWheel.schedule(() -> {
                 String reason = retrieveStopReason(transactionId);
                 if (reason != null) {
                     if (reason.equalsIgnoreCase("Scheduled stop")) {
@@ -283,24 +482,6 @@ public class ScheduleChargingService {
                 .anyMatch(d -> d.equalsIgnoreCase(today));
     }
 
-    public void sendNotification(LocalDateTime istLocalDateTime) {
-        Result<ScheduleChargingRecord> toNotify = dslContext
-                .selectFrom(SCHEDULE_CHARGING)
-                .where("DATE_FORMAT({0}, '%Y-%m-%d %H:%i:%s') = DATE_FORMAT({1}, '%Y-%m-%d %H:%i:%s')",
-                        SCHEDULE_CHARGING.START_TIME,
-                        Timestamp.valueOf(istLocalDateTime.plusMinutes(30)))
-                .and(SCHEDULE_CHARGING.IS_NOTIFY_SEND.eq(false))
-                .fetch();
-
-        for (ScheduleChargingRecord record : toNotify) {
-            sendNotification(record.getIdtag(), "Reminder Before Start ", ScheduledChargingMessages.REMINDER_BEFORE_START);
-            dslContext.update(SCHEDULE_CHARGING)
-                    .set(SCHEDULE_CHARGING.IS_NOTIFY_SEND, true)
-                    .where(SCHEDULE_CHARGING.ID.eq(record.getId()))
-                    .execute();
-        }
-    }
-
     public boolean checkChargePointIsOnline(final String chargePoint) {
         List<OcppJsonStatus> onlinePoints = this.homeService.onlineChargePoint();
         if (onlinePoints == null || onlinePoints.isEmpty()) {
@@ -322,7 +503,10 @@ public class ScheduleChargingService {
                 .orElse(null);
     }
 
-    public void insertNextSchedules(String idTag,
+    /**
+     * @return the id of the inserted schedule, or null
+     */
+    public Long insertNextSchedules(String idTag,
                                     String chargeBoxId,
                                     String connectorId,
                                     String dayValues,
@@ -336,7 +520,7 @@ public class ScheduleChargingService {
                 .sorted()
                 .collect(Collectors.toList());
         if (scheduledDays.isEmpty()) {
-            return;
+            return null;
         }
 
         DateTime now = DateTime.now();
@@ -356,7 +540,7 @@ public class ScheduleChargingService {
         DateTime nextStop = nextStart.plus(durationMillis);
 
         try {
-            dslContext.insertInto(SCHEDULE_CHARGING)
+            return dslContext.insertInto(SCHEDULE_CHARGING)
                     .set(SCHEDULE_CHARGING.IDTAG, idTag)
                     .set(SCHEDULE_CHARGING.CHARGE_BOX_ID, chargeBoxId)
                     .set(SCHEDULE_CHARGING.CONNECTOR_ID, connectorId)
@@ -365,9 +549,12 @@ public class ScheduleChargingService {
                     .set(SCHEDULE_CHARGING.IS_ROUTINE, true)
                     .set(SCHEDULE_CHARGING.IS_ENABLE, true)
                     .set(SCHEDULE_CHARGING.DAY, dayValues)
-                    .execute();
+                    .returning(SCHEDULE_CHARGING.ID)
+                    .fetchOne()
+                    .getId();
         } catch (Exception e) {
             log.error("Schedule Charging Service" + e.getMessage());
+            return null;
         }
     }
 
@@ -393,21 +580,8 @@ public class ScheduleChargingService {
     }
 
     private Integer getActiveTransactionId(String chargeBoxId, int connectorId) {
-        List<Integer> activeTxIds = transactionRepository.getActiveTransactionIds(chargeBoxId);
-        for (Integer txId : activeTxIds) {
-            if (!isTransactionStopped(txId)) {
-                return txId;
-            }
-        }
-        return null;
-    }
-
-    private boolean isTransactionStopped(Integer txId) {
-        return dslContext.fetchExists(
-                dslContext.selectOne()
-                        .from(TRANSACTION_STOP)
-                        .where(TRANSACTION_STOP.TRANSACTION_PK.eq(txId))
-        );
+        List<ActiveTransaction> active = activeTransactionRegistry.getByConnector(chargeBoxId, connectorId);
+        return active.isEmpty() ? null : active.get(0).getTransactionPk();
     }
 
     public void sendNotification(String idtag, String title, String message) {
@@ -425,8 +599,8 @@ public class ScheduleChargingService {
             String json = mapper.writeValueAsString(requestBody);
             HttpEntity<String> request = new HttpEntity<>(json, headers);
 
-            ResponseEntity<String> response =
-                    restTemplate.postForEntity(TEST_API_URL, request, String.class);
+            integrationClients.get(HttpIntegration.SCHEDULE_NOTIFY)
+                              .execute(rt -> rt.postForEntity(TEST_API_URL, request, String.class));
 
         } catch (Exception e) {
             log.error("SendNotification Error Occur : ");
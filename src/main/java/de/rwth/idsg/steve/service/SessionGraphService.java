@@ -0,0 +1,161 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import de.rwth.idsg.steve.service.dto.CacheStatistics;
+import de.rwth.idsg.steve.service.dto.TransactionMeterValueSample;
+import de.rwth.idsg.steve.service.testmobiledto.PowerAndSocGraphResponseDTO;
+import de.rwth.idsg.steve.service.testmobiledto.PowerAndSocGraphSeriesDTO;
+import de.rwth.idsg.steve.utils.Lttb;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static jooq.steve.db.tables.TransactionStop.TRANSACTION_STOP;
+
+/**
+ * Power and SoC series of a session for the graphs of the app. A series has at most a given number of points, which
+ * are selected with LTTB on the power so that the shape survives the downsampling.
+ * <p>
+ * The series of a finished session is cached once the ingestion queue has had time to store the MeterValues that were
+ * still queued at the stop. Samples that arrive even later (e.g. replayed from the spool) invalidate the entry. Of an
+ * ongoing session, the app fetches the whole series once and then only the points after the cursor of the previous
+ * response.
+ */
+@Service
+public class SessionGraphService {
+
+    public static final int DEFAULT_MAX_POINTS = 300;
+    public static final int MAX_MAX_POINTS = 2_000;
+
+    private static final int CACHE_AFTER_STOP_SECONDS = 60;
+
+    @Autowired
+    private DSLContext ctx;
+
+    @Autowired
+    @Qualifier("readOnly")
+    private DSLContext readOnlyCtx;
+
+    @Autowired
+    private TransactionMeterValueStore meterValueStore;
+
+    // Key: transactionPk, value: the series by maxPoints
+    private final Cache<Integer, Map<Integer, PowerAndSocGraphSeriesDTO>> finishedSeries = Caffeine.newBuilder()
+            .maximumSize(5_000)
+            .expireAfterAccess(6, TimeUnit.HOURS)
+            .recordStats()
+            .build();
+
+    /**
+     * @param since     epoch millis, only the points after it are returned. The whole series, if null
+     * @param maxPoints limited to MAX_MAX_POINTS
+     */
+    public PowerAndSocGraphSeriesDTO getSeries(int transactionPk, @Nullable Long since, int maxPoints) {
+        int limit = Math.max(3, Math.min(maxPoints, MAX_MAX_POINTS));
+
+        if (since == null) {
+            Map<Integer, PowerAndSocGraphSeriesDTO> cached = finishedSeries.getIfPresent(transactionPk);
+            if (cached != null && cached.containsKey(limit)) {
+                return cached.get(limit);
+            }
+        }
+
+        // Read from the primary, so that the cached series of a session that has just finished is complete
+        DateTime stoppedAt = ctx.select(DSL.max(TRANSACTION_STOP.EVENT_TIMESTAMP))
+                                .from(TRANSACTION_STOP)
+                                .where(TRANSACTION_STOP.TRANSACTION_PK.eq(transactionPk))
+                                .fetchOne()
+                                .value1();
+        boolean finished = stoppedAt != null;
+        DSLContext source = finished ? ctx : readOnlyCtx;
+
+        List<TransactionMeterValueSample> rows =
+                meterValueStore.read(source, transactionPk, since == null ? null : new DateTime(since), null);
+
+        PowerAndSocGraphSeriesDTO series = new PowerAndSocGraphSeriesDTO();
+        series.setFinished(finished);
+        series.setCursor(rows.isEmpty() ? since : rows.get(rows.size() - 1).getTimestamp().getMillis());
+        series.setPoints(Collections.unmodifiableList(downsample(rows, limit)));
+
+        if (finished && since == null && stoppedAt.plusSeconds(CACHE_AFTER_STOP_SECONDS).isBeforeNow()) {
+            finishedSeries.asMap()
+                          .computeIfAbsent(transactionPk, k -> new ConcurrentHashMap<>())
+                          .put(limit, series);
+        }
+        return series;
+    }
+
+    /**
+     * Called with the transactions of the MeterValues that have just been stored, since the cached series of a
+     * finished one would miss them.
+     */
+    public void invalidate(Collection<Integer> transactionPks) {
+        finishedSeries.invalidateAll(transactionPks);
+    }
+
+    public CacheStatistics getCacheStats() {
+        CacheStats stats = finishedSeries.stats();
+        return CacheStatistics.builder()
+                              .size(finishedSeries.estimatedSize())
+                              .hits(stats.hitCount())
+                              .misses(stats.missCount())
+                              .hitRate(stats.hitRate())
+                              .build();
+    }
+
+    private static List<PowerAndSocGraphResponseDTO> downsample(List<TransactionMeterValueSample> rows, int limit) {
+        int n = rows.size();
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            TransactionMeterValueSample r = rows.get(i);
+            x[i] = r.getTimestamp().getMillis();
+            y[i] = r.getPower() == null ? 0 : r.getPower();
+        }
+
+        int[] selected = Lttb.select(x, y, limit);
+
+        List<PowerAndSocGraphResponseDTO> points = new ArrayList<>(selected.length);
+        for (int i : selected) {
+            TransactionMeterValueSample r = rows.get(i);
+            PowerAndSocGraphResponseDTO point = new PowerAndSocGraphResponseDTO();
+            point.setSoc(r.getSoc() == null ? null : String.valueOf(r.getSoc()));
+            point.setPower(r.getPower() == null ? null : String.valueOf(r.getPower()));
+            point.setTimestamp(r.getTimestamp().toString());
+            points.add(point);
+        }
+        return points;
+    }
+}
@@ -18,31 +18,28 @@
  */
 package de.rwth.idsg.steve.service;
 
-import de.rwth.idsg.steve.externalconfig.WalletResponse;
-import de.rwth.idsg.steve.repository.TransactionRepository;
-import de.rwth.idsg.steve.repository.dto.Transaction;
-import de.rwth.idsg.steve.service.dto.Tariff;
-import de.rwth.idsg.steve.service.dto.TariffResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
+import de.rwth.idsg.steve.service.dto.TransactionBillingState;
+import de.rwth.idsg.steve.service.dto.TransactionIdentity;
+import de.rwth.idsg.steve.service.dto.WalletTrackSegment;
 import de.rwth.idsg.steve.web.controller.PaymentController;
-import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
+import jooq.steve.db2.tables.records.WalletTrackRecord;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
-import org.joda.time.DateTimeZone;
-import org.joda.time.LocalTime;
-import org.joda.time.format.DateTimeFormat;
-import org.joda.time.format.DateTimeFormatter;
 import org.jooq.DSLContext;
-import org.jooq.impl.DSL;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+
+import javax.annotation.PreDestroy;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import static jooq.steve.db.Tables.*;
-import static jooq.steve.db.tables.Connector.CONNECTOR;
-import static jooq.steve.db.tables.TransactionMeterValues.TRANSACTION_METER_VALUES;
 import static jooq.steve.db.tables.TransactionStart.TRANSACTION_START;
 import static jooq.steve.db2.Tables.WALLET_TRACK;
 import static jooq.steve.db2.Tables.WALLET_TRACK_SETTLEMENT_NEW;
@@ -55,55 +52,103 @@ public class TariffAmountCalculation {
     @Qualifier("secondary")
     private DSLContext dslContext;
 
-    @Autowired
-    private DSLContext dslContextOne;
-
-    @Autowired
-    private RestTemplate restTemplate;
     @Autowired
     private ManuallyStopTransaction stopTransaction;
     @Autowired
-    private TransactionRepository transactionRepository;
-    @Autowired
     private ChargerFeeExceptUserService chargerFeeExceptUserService;
     @Autowired
     private WalletTrackSettlementService walletTrackSettlementService;
 
     @Autowired
     private PaymentController paymentController;
-
-    private static final String LIVE_TARIFF_API_URL = "http://cms.tuckerio.bigtot.in/test/tod.php?charger_id=";
-    private static final String LIVE_WALLET_API_URL = "http://cms.tuckerio.bigtot.in/auto_charge/auto.php?idtag=";
-
-    private static final String TEST_TARIFF_API_URL = "https://tuckerio.com/test/tod.php?charger_id=";
-    private static final String TEST_WALLET_API_URL = "https://tuckerio.com/auto_charge/auto.php?idtag=";
+    @Autowired
+    private TariffScheduleService tariffScheduleService;
+    @Autowired
+    private WalletLedgerService walletLedgerService;
+    @Autowired
+    private OcppIdentityDirectory identityDirectory;
+    @Autowired
+    private ActiveTransactionRegistry activeTransactionRegistry;
+    @Autowired
+    private LiveChargingFeedService liveChargingFeedService;
+    @Autowired
+    private TransactionMeterValueStore meterValueStore;
 
 
-    private static final DateTimeFormatter TIME_ONLY_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");
-    private static final DateTimeZone IST = DateTimeZone.forID("Asia/Kolkata");
     private static boolean isHeaderPrinted = false;
 
     private double round2(double value) {
         return Math.round(value * 100.0) / 100.0;
     }
 
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+
+    /**
+     * Billing state of ongoing transactions, keyed by transaction id. Each entry is guarded by its own monitor, so
+     * that samples of the same transaction are processed in order while unrelated chargers are billed in parallel.
+     */
+    private final ConcurrentHashMap<Integer, TransactionBillingState> billingStates = new ConcurrentHashMap<>();
+
+    // Transactions that stopped recently, whose late samples must not create a new billing state
+    private final Cache<Integer, Boolean> completedTransactions = Caffeine.newBuilder()
+            .expireAfterWrite(12, TimeUnit.HOURS)
+            .maximumSize(100_000)
+            .build();
 
     /**
      * Core method: called for each incoming MeterValues reading (~ every 30 sec)
      */
-    public synchronized void sets(final String idTag,
-                                  final double lastEnergy,
-                                  final String chargeBoxId,
-                                  final DateTime latestTimestamp,
-                                  final Integer transactionId,
-                                  final Integer connectorPk) {
+    public void sets(final String idTag,
+                     final double lastEnergy,
+                     final String chargeBoxId,
+                     final DateTime latestTimestamp,
+                     final Integer transactionId,
+                     final Integer connectorPk) {
+
+        if (completedTransactions.getIfPresent(transactionId) != null) {
+            log.debug("Ignoring a sample of the completed transaction {}", transactionId);
+            return;
+        }
+
+        TransactionBillingState state = billingStates.computeIfAbsent(transactionId, TransactionBillingState::new);
 
-        if (check(lastEnergy, chargeBoxId, transactionId, connectorPk)) {
+        synchronized (state) {
+            if (state.isClosed()) {
+                return;
+            }
+            // the transaction may have been completed since the check above
+            if (completedTransactions.getIfPresent(transactionId) != null) {
+                billingStates.remove(transactionId, state);
+                return;
+            }
+            state.setLastAccessMillis(System.currentTimeMillis());
+            if (!state.isLoaded()) {
+                loadBillingState(state, idTag, chargeBoxId, connectorPk);
+            }
+            bill(state, lastEnergy, latestTimestamp);
+        }
+    }
+
+    private void bill(final TransactionBillingState state,
+                      final double lastEnergy,
+                      final DateTime latestTimestamp) {
+
+        final String idTag = state.getIdTag();
+        final String chargeBoxId = state.getChargeBoxId();
+        final int transactionId = state.getTransactionId();
+
+        if (check(state, lastEnergy)) {
+            // so that the next sample is compared with this one, and not with the one before
+            state.setLastEnergy(lastEnergy);
             return;
         }
         double unitFare = getUnitFareFromUtcTime(chargeBoxId, latestTimestamp);
-        double previousEnergy = retrieveCurrentTransactionPreviewsEnergy(connectorPk, transactionId);
-        double walletBalance = retrieveUserWalletAmount(idTag);
+        double previousEnergy = state.getLastEnergy();
+        double walletBalance = walletLedgerService.getBalance(idTag);
+        state.setWalletBalance(walletBalance);
 
         double consumedEnergy = (lastEnergy - previousEnergy) / 1000.0;
 
@@ -114,14 +159,49 @@ public class TariffAmountCalculation {
         double consumedAmount = baseCost + gstCost;
         consumedAmount = Math.round(consumedAmount * 100.0) / 100.0;
 
-        double previousTotal = previousConsumedAmount(transactionId);
-        double updateConsumedAmount = previousTotal + consumedAmount;
-        double totalConsumedAmount = previousTotalConsumedAmount(transactionId) + consumedAmount;
+        double totalConsumedAmount = state.getTotalConsumedAmount() + consumedAmount;
         totalConsumedAmount = Math.round(totalConsumedAmount * 100.0) / 100.0;
 
+        boolean newSegment = isAnotherTariff(state, unitFare);
+        if (newSegment) {
+            log.info("Tariff changed → new tariff segment : consumedAmount = " + consumedAmount + " , totalConsumedAmount = " + totalConsumedAmount);
+
+            state.setUnitFare(unitFare);
+            state.setSegmentNo(state.getSegmentNo() + 1);
+            state.setSegmentStartEnergy(previousEnergy);
+            state.setSegmentConsumedAmount(consumedAmount);
+            state.setSegmentStartTimestamp(latestTimestamp);
+        } else {
+            log.info("Tariff same → update tariff segment : consumedAmount = " + consumedAmount + " , totalConsumedAmount = " + totalConsumedAmount);
+
+            state.setSegmentConsumedAmount(state.getSegmentConsumedAmount() + consumedAmount);
+        }
+
+        state.setLastEnergy(lastEnergy);
+        state.setLastTimestamp(latestTimestamp);
+        state.setTotalConsumedAmount(totalConsumedAmount);
+        walletLedgerService.reserve(idTag, transactionId, totalConsumedAmount);
+        state.enqueue(WalletTrackSegment.builder()
+                .newSegment(newSegment)
+                .transactionId(transactionId)
+                .segmentNo(state.getSegmentNo())
+                .idTag(idTag)
+                .chargeBoxId(chargeBoxId)
+                .connectorPk(state.getConnectorPk())
+                .unitFare(unitFare)
+                .gstWithUnitFare(gstWithUnitFare)
+                .walletAmount(walletBalance)
+                .startEnergy(state.getSegmentStartEnergy())
+                .lastEnergy(lastEnergy)
+                .consumedAmount(state.getSegmentConsumedAmount())
+                .totalConsumedAmount(totalConsumedAmount)
+                .startTimestamp(state.getSegmentStartTimestamp())
+                .stopTimestamp(latestTimestamp)
+                .build());
+
         if (isIdTagIsAlreadyTransaction(idTag)) {
-            if (isQrPaymentUser(idTag)) {
-                if (paymentController.isDcCharger(chargeBoxId, 1)) {
+            if (state.isQrPayment()) {
+                if (isDcCharger(state)) {
                     if ((totalConsumedAmount + 8) > walletBalance) {
                         stopTransaction.manuallyStopTransaction(chargeBoxId, transactionId, "Charging Finished");
                     }
@@ -135,83 +215,187 @@ public class TariffAmountCalculation {
                 }
             }
         } else {
-            List<Integer> activeTxIds = getActiveTransactionIds(idTag);
-            double totalConsumedAmountMultiTransaction = 0;
+            double totalConsumedAmountMultiTransaction = walletLedgerService.getInFlightAmount(idTag);
 
-            for (Integer txId : activeTxIds) {
-                totalConsumedAmountMultiTransaction += previousTotalConsumedAmount(txId);
+            if ((totalConsumedAmountMultiTransaction + 30) >= walletBalance) {
+                for (ActiveTransaction tx : activeTransactionRegistry.getByIdTag(idTag)) {
+                    stopTransaction.manuallyStopTransaction(tx.getChargeBoxId(), tx.getTransactionPk(), "Low Wallet");
+                }
             }
+        }
+    }
 
-            if ((totalConsumedAmountMultiTransaction + 30) >= walletBalance) {
-                List<Integer> activeTxId = getActiveTransactionIds(idTag);
-                for (Integer txId : activeTxId) {
-                    String chargerId = fetchCurrentlyChargingPointsForIdTag(txId);
-                    stopTransaction.manuallyStopTransaction(chargerId, txId, "Low Wallet");
+    /**
+     * Populates the state once per transaction. After a restart, the running totals and the current tariff segment
+     * are recovered from the latest wallet_track row.
+     */
+    private void loadBillingState(final TransactionBillingState state,
+                                  final String idTag,
+                                  final String chargeBoxId,
+                                  final Integer connectorPk) {
+        int transactionId = state.getTransactionId();
+
+        state.setIdTag(idTag);
+        state.setChargeBoxId(chargeBoxId);
+        state.setConnectorPk(connectorPk);
+        state.setQrPayment(isQrPaymentUser(idTag));
+        state.setStartEnergy(retrieveStartEnergy(transactionId));
+        state.setLastEnergy(retrieveCurrentTransactionPreviewsEnergy(connectorPk, transactionId));
+        state.setPreviousStopEnergy(retrievePreviousTransactionLastEnergy(connectorPk));
+
+        WalletTrackRecord latest = dslContext.selectFrom(WALLET_TRACK)
+                .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
+                .orderBy(WALLET_TRACK.START_TIMESTAMP.desc())
+                .limit(1)
+                .fetchOne();
+
+        if (latest != null) {
+            state.setUnitFare(latest.getTariffAmount());
+            state.setSegmentStartEnergy(valueOrZero(latest.getStartEnergy()));
+            state.setSegmentConsumedAmount(valueOrZero(latest.getConsumedAmount()));
+            state.setTotalConsumedAmount(valueOrZero(latest.getTotalConsumedAmount()));
+            state.setSegmentStartTimestamp(latest.getStartTimestamp());
+            state.setLastTimestamp(latest.getStopTimestamp());
+            // After a crash, the block storage may have lost samples that were billed already
+            if (latest.getLastEnergy() != null && latest.getLastEnergy() > state.getLastEnergy()) {
+                state.setLastEnergy(latest.getLastEnergy());
+            }
+        }
+
+        state.setLoaded(true);
+    }
+
+    private boolean isDcCharger(final TransactionBillingState state) {
+        if (state.getDcCharger() == null) {
+            state.setDcCharger(paymentController.isDcCharger(state.getChargeBoxId(), 1));
+        }
+        return state.getDcCharger();
+    }
+
+    // -------------------------------------------------------------------------
+    // Write-behind projection into wallet_track / wallet_track_settlement
+    // -------------------------------------------------------------------------
+
+    @Scheduled(fixedDelay = 5_000)
+    public void flushBillingStates() {
+        long idleLimit = System.currentTimeMillis() - TimeUnit.HOURS.toMillis(12);
+
+        for (TransactionBillingState state : billingStates.values()) {
+            flush(state);
+
+            // Transactions that never received a StopTransaction. Their reservations would otherwise keep the wallet
+            // of the idTag blocked.
+            if (state.getLastAccessMillis() < idleLimit) {
+                boolean evicted = false;
+                synchronized (state) {
+                    if (state.getPendingSegments().isEmpty()) {
+                        evicted = billingStates.remove(state.getTransactionId(), state);
+                    }
+                }
+                if (evicted) {
+                    walletLedgerService.release(state.getTransactionId());
                 }
             }
         }
+    }
 
-        if (isAnotherTariff(transactionId, unitFare)) {
-            log.info("Tariff changed → insert new tariff record : consumedAmount = " + consumedAmount + " , totalConsumedAmount = " + totalConsumedAmount);
-
-            insertChargerTariffAmountAgeignestTransactionIdData(
-                    transactionId,
-                    previousEnergy,
-                    lastEnergy,
-                    idTag,
-                    unitFare,
-                    walletBalance,
-                    consumedEnergy,
-                    consumedAmount,
-                    totalConsumedAmount,
-                    latestTimestamp
-            );
+    /**
+     * Writes the pending state of the transaction, releases its wallet reservation and forgets about it. Called when
+     * the transaction stops, so that the subsequent reads of wallet_track see the final amounts. Idempotent.
+     * <p>
+     * The state is closed and flushed while holding its lock, and removed last, so that a late sample neither
+     * rebuilds it from a wallet_track that is not flushed yet, nor is billed after the stop.
+     */
+    public void completeTransaction(final Integer transactionId) {
+        completedTransactions.put(transactionId, Boolean.TRUE);
 
-            walletTrackSettlementService.insertChargerTariffAmountSettlementService(transactionId,previousEnergy,lastEnergy,idTag,unitFare,gstWithUnitFare,walletBalance,consumedEnergy,consumedAmount,totalConsumedAmount,latestTimestamp,chargeBoxId,connectorPk);
+        TransactionBillingState state = billingStates.get(transactionId);
+        if (state == null) {
+            // e.g. evicted, or not billed since a restart
+            walletLedgerService.release(transactionId);
+            return;
+        }
 
+        // same lock order as the write-behind job
+        synchronized (state.getFlushLock()) {
+            synchronized (state) {
+                state.setClosed(true);
+                flush(state);
+            }
+        }
+        if (state.getIdTag() != null) {
+            walletLedgerService.release(state.getIdTag(), transactionId);
         } else {
-            log.info("Tariff same  update existing tariff record : consumedAmount = " + consumedAmount + " , totalConsumedAmount = " + totalConsumedAmount);
-
-            updateConsumedAmount(
-                    transactionId,
-                    unitFare,
-                    lastEnergy,
-                    updateConsumedAmount,
-                    totalConsumedAmount,
-                    latestTimestamp, walletBalance
-            );
-
-            walletTrackSettlementService.updateSettlementService(transactionId, unitFare, lastEnergy, updateConsumedAmount, totalConsumedAmount,latestTimestamp, walletBalance);
+            walletLedgerService.release(transactionId);
         }
+        billingStates.remove(transactionId, state);
     }
 
-    public String fetchCurrentlyChargingPointsForIdTag(Integer transactionId) {
-        Integer connectorPk = dslContext
-                .select(TRANSACTION_START.CONNECTOR_PK)
-                .from(TRANSACTION_START)
-                .where(TRANSACTION_START.TRANSACTION_PK.eq(transactionId))
-                .fetchOne(TRANSACTION_START.CONNECTOR_PK);
+    @PreDestroy
+    public void shutDown() {
+        billingStates.values().forEach(this::flush);
+    }
 
-        return dslContext
-                .select(CONNECTOR.CHARGE_BOX_ID)
-                .from(CONNECTOR)
-                .where(CONNECTOR.CONNECTOR_PK.eq(connectorPk))
-                .fetchOne(CONNECTOR.CHARGE_BOX_ID);
+    private void flush(final TransactionBillingState state) {
+        synchronized (state.getFlushLock()) {
+            List<WalletTrackSegment> segments;
+            synchronized (state) {
+                segments = state.drainPendingSegments();
+            }
+
+            for (WalletTrackSegment segment : segments) {
+                try {
+                    writeSegment(segment);
+                } catch (Exception e) {
+                    log.error("Error writing tariff segment {} of tx {}: {}",
+                            segment.getSegmentNo(), segment.getTransactionId(), e.getMessage(), e);
+                }
+            }
+            if (!segments.isEmpty()) {
+                liveChargingFeedService.markChanged(state.getTransactionId());
+            }
+        }
     }
 
-    private double previousConsumedAmount(final Integer transactionId) {
-        Double consumed = dslContext
-                .select(WALLET_TRACK.CONSUMED_AMOUNT)
-                .from(WALLET_TRACK)
-                .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
-                .orderBy(WALLET_TRACK.START_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOneInto(Double.class);
+    private void writeSegment(final WalletTrackSegment segment) {
+        if (segment.isNewSegment()) {
+            insertChargerTariffAmountAgeignestTransactionIdData(segment);
+            walletTrackSettlementService.insertChargerTariffAmountSettlementService(
+                    segment.getTransactionId(),
+                    segment.getStartEnergy(),
+                    segment.getLastEnergy(),
+                    segment.getIdTag(),
+                    segment.getUnitFare(),
+                    segment.getGstWithUnitFare(),
+                    segment.getWalletAmount(),
+                    segment.getConsumedEnergy(),
+                    segment.getConsumedAmount(),
+                    segment.getTotalConsumedAmount(),
+                    segment.getStartTimestamp(),
+                    segment.getChargeBoxId(),
+                    segment.getConnectorPk()
+            );
+            // the settlement row is inserted with the start timestamp as stop timestamp
+            if (!segment.getStartTimestamp().equals(segment.getStopTimestamp())) {
+                walletTrackSettlementService.updateSettlementService(segment);
+            }
+        } else {
+            updateConsumedAmount(segment);
+            walletTrackSettlementService.updateSettlementService(segment);
+        }
+    }
 
-        return consumed != null ? consumed : 0.0;
+    public String fetchCurrentlyChargingPointsForIdTag(Integer transactionId) {
+        TransactionIdentity transaction = identityDirectory.getTransaction(transactionId);
+        return transaction == null ? null : transaction.getChargeBoxId();
     }
 
     public double previousTotalConsumedAmount(final Integer transactionId) {
+        TransactionBillingState state = billingStates.get(transactionId);
+        if (state != null && state.isLoaded()) {
+            return state.getTotalConsumedAmount();
+        }
+
         Double consumed = dslContext
                 .select(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT)
                 .from(WALLET_TRACK)
@@ -226,83 +410,49 @@ public class TariffAmountCalculation {
     /**
      * Update latest record for same-tariff group
      */
-    private void updateConsumedAmount(final Integer transactionId, final double unitFare,
-                                      final double lastEnergy,
-                                      final double consumedAmount,
-                                      final double totalConsumedAmount,
-                                      final DateTime lastTimeStamp, final double walletAmount) {
-
-        double startEnergy = getStartEnergy(transactionId);
-        double consumedEnergy = (lastEnergy - startEnergy) / 1000;
+    private void updateConsumedAmount(final WalletTrackSegment segment) {
         dslContext.update(WALLET_TRACK)
-                .set(WALLET_TRACK.LAST_ENERGY, lastEnergy)
-                .set(WALLET_TRACK.CONSUMED_ENERGY, consumedEnergy)
-                .set(WALLET_TRACK.CONSUMED_AMOUNT, consumedAmount)
-                .set(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT, totalConsumedAmount)
-                .set(WALLET_TRACK.STOP_TIMESTAMP, lastTimeStamp)
-                .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
+                .set(WALLET_TRACK.LAST_ENERGY, segment.getLastEnergy())
+                .set(WALLET_TRACK.CONSUMED_ENERGY, segment.getConsumedEnergy())
+                .set(WALLET_TRACK.CONSUMED_AMOUNT, segment.getConsumedAmount())
+                .set(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT, segment.getTotalConsumedAmount())
+                .set(WALLET_TRACK.STOP_TIMESTAMP, segment.getStopTimestamp())
+                .where(WALLET_TRACK.TRANSACTION_ID.eq(segment.getTransactionId()))
                 .orderBy(WALLET_TRACK.START_TIMESTAMP.desc())
                 .limit(1)
                 .execute();
 
     }
 
-    private double getStartEnergy(final Integer transactionId) {
-        Double startEnergy = dslContext
-                .select(WALLET_TRACK.START_ENERGY)
-                .from(WALLET_TRACK)
-                .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
-                .orderBy(WALLET_TRACK.START_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOneInto(Double.class);
-
-        return startEnergy != null ? startEnergy : 0.0;
-    }
-
     /**
      * Insert new record when tariff changes
      */
-    private void insertChargerTariffAmountAgeignestTransactionIdData(final Integer transactionId,
-                                                                     final double startEnergy,
-                                                                     final double lastEnergy,
-                                                                     final String idTag,
-                                                                     final double tariffAmount,
-                                                                     final double walletAmount,
-                                                                     final double consumedEnergy,
-                                                                     final double consumedAmount,
-                                                                     final double totalConsumedAmount,
-                                                                     final DateTime startTime) {
+    private void insertChargerTariffAmountAgeignestTransactionIdData(final WalletTrackSegment segment) {
         try {
             dslContext.insertInto(WALLET_TRACK)
-                    .set(WALLET_TRACK.TRANSACTION_ID, transactionId)
-                    .set(WALLET_TRACK.ID_TAG, idTag)
-                    .set(WALLET_TRACK.START_ENERGY, startEnergy)
-                    .set(WALLET_TRACK.LAST_ENERGY, lastEnergy)
-                    .set(WALLET_TRACK.CONSUMED_ENERGY, consumedEnergy)
-                    .set(WALLET_TRACK.TARIFF_AMOUNT, tariffAmount)
-                    .set(WALLET_TRACK.WALLET_AMOUNT, walletAmount)
-                    .set(WALLET_TRACK.CONSUMED_AMOUNT, consumedAmount)
-                    .set(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT, totalConsumedAmount)
-                    .set(WALLET_TRACK.START_TIMESTAMP, startTime)
-                    .set(WALLET_TRACK.STOP_TIMESTAMP, startTime)
+                    .set(WALLET_TRACK.TRANSACTION_ID, segment.getTransactionId())
+                    .set(WALLET_TRACK.ID_TAG, segment.getIdTag())
+                    .set(WALLET_TRACK.START_ENERGY, segment.getStartEnergy())
+                    .set(WALLET_TRACK.LAST_ENERGY, segment.getLastEnergy())
+                    .set(WALLET_TRACK.CONSUMED_ENERGY, segment.getConsumedEnergy())
+                    .set(WALLET_TRACK.TARIFF_AMOUNT, segment.getUnitFare())
+                    .set(WALLET_TRACK.WALLET_AMOUNT, segment.getWalletAmount())
+                    .set(WALLET_TRACK.CONSUMED_AMOUNT, segment.getConsumedAmount())
+                    .set(WALLET_TRACK.TOTAL_CONSUMED_AMOUNT, segment.getTotalConsumedAmount())
+                    .set(WALLET_TRACK.START_TIMESTAMP, segment.getStartTimestamp())
+                    .set(WALLET_TRACK.STOP_TIMESTAMP, segment.getStopTimestamp())
                     .execute();
 
         } catch (Exception e) {
-            log.error("Error inserting tariff record for tx {}: {}", transactionId, e.getMessage(), e);
+            log.error("Error inserting tariff record for tx {}: {}", segment.getTransactionId(), e.getMessage(), e);
         }
     }
 
     /**
      * Detect tariff change
      */
-    private boolean isAnotherTariff(final Integer transactionId, final double tariffAmount) {
-        Double existingTariff = dslContext.select(WALLET_TRACK.TARIFF_AMOUNT)
-                .from(WALLET_TRACK)
-                .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
-                .orderBy(WALLET_TRACK.START_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOneInto(Double.class);
-
+    private boolean isAnotherTariff(final TransactionBillingState state, final double tariffAmount) {
+        Double existingTariff = state.getUnitFare();
         return existingTariff == null || Double.compare(existingTariff, tariffAmount) != 0;
     }
 
@@ -310,119 +460,30 @@ public class TariffAmountCalculation {
      * Tariff lookup by charger and time (IST)
      */
     public double getUnitFareFromUtcTime(String chargerId, DateTime utcTime) {
-        LocalTime istTime = utcTime.withZone(IST).toLocalTime();
-        TariffResponse tariffResponse = fetchTariffResponse(chargerId);
-
-        for (Tariff tariff : tariffResponse.getTariffs()) {
-            if (isInTimeRange(istTime, tariff.getStart_time(), tariff.getEnd_time())) {
-                return tariff.getUnit_fare();
-            }
-        }
-        throw new RuntimeException("No matching tariff found for time: " + istTime);
-    }
-
-    /**
-     * Helper: fetch tariff from external API
-     */
-    private TariffResponse fetchTariffResponse(String chargerId) {
-        try {
-            String url = TEST_TARIFF_API_URL + chargerId;
-            TariffResponse response = restTemplate.getForObject(url, TariffResponse.class);
-            if (response == null || response.getTariffs() == null || response.getTariffs().isEmpty()) {
-                throw new RuntimeException("No tariff data for charger: " + chargerId);
-            }
-            return response;
-        } catch (Exception e) {
-            //log.error("Failed to fetch tariff for charger: {}", chargerId, e);
-            throw new RuntimeException("Failed to fetch tariff for charger: " + chargerId, e);
-        }
-    }
-
-    private boolean isInTimeRange(LocalTime now, String startStr, String endStr) {
-        LocalTime start = TIME_ONLY_FORMATTER.parseLocalTime(startStr);
-        LocalTime end = TIME_ONLY_FORMATTER.parseLocalTime(endStr);
-
-        if (end.isBefore(start)) {
-            return now.isAfter(start) || now.isBefore(end);
-        } else {
-            return !now.isBefore(start) && now.isBefore(end);
-        }
+        return tariffScheduleService.getUnitFare(chargerId, utcTime);
     }
 
     /**
      * Fetch latest energy for current transaction
      */
     public Double retrieveCurrentTransactionPreviewsEnergy(Integer connectorPk, Integer transactionPk) {
-        Double lastEnergy = dslContext
-                .select(TRANSACTION_METER_VALUES.ENERGY)
-                .from(TRANSACTION_METER_VALUES)
-                .where(TRANSACTION_METER_VALUES.CONNECTOR_PK.eq(connectorPk))
-                .and(TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionPk))
-                .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOneInto(Double.class);
+        Double lastEnergy = meterValueStore.getLatestEnergy(transactionPk);
 
         return lastEnergy != null ? lastEnergy : retrieveStartEnergy(transactionPk);
     }
 
     public Double retrieveStartEnergy(Integer transactionId) {
         try {
-            return dslContext.select(TRANSACTION_START.START_VALUE)
-                    .from(TRANSACTION_START)
-                    .where(TRANSACTION_START.TRANSACTION_PK.eq(transactionId))
-                    .fetchOneInto(Double.class);
+            TransactionIdentity transaction = identityDirectory.getTransaction(transactionId);
+            return transaction == null ? null : transaction.getStartValue();
         } catch (Exception e) {
             throw new RuntimeException("Transaction Id : " + transactionId + " Start Value Null ");
         }
 
     }
 
-    public Double retrieveUserWalletAmount(String idTag) {
-        try {
-            String url = TEST_WALLET_API_URL + idTag;
-            WalletResponse response = restTemplate.getForObject(url, WalletResponse.class);
-            if (response == null) {
-                // throw new RuntimeException("No wallet data received for idTag: " + idTag);
-                return QrUserAmount(idTag);
-            }
-            return response.getWallet_amount();
-        } catch (Exception e) {
-            log.error("Tariff Amount Calculation That Transaction Should Qr Payment " + e);
-            return QrUserAmount(idTag);
-        }
-    }
-
     private boolean isIdTagIsAlreadyTransaction(final String idTag) {
-        Integer count = dslContextOne
-                .select(DSL.count())
-                .from(OCPP_TAG_ACTIVITY)
-                .where(OCPP_TAG_ACTIVITY.ID_TAG.eq(idTag)
-                        .and(OCPP_TAG_ACTIVITY.ACTIVE_TRANSACTION_COUNT.eq(1L)))
-                .fetchOneInto(Integer.class);
-
-        return count != null && count == 1;
-    }
-
-
-    private List<Integer> getActiveTransactionIds(final String idTag) {
-        TransactionQueryForm form = new TransactionQueryForm();
-        form.setChargeBoxId(null);
-        form.setOcppIdTag(null);
-        form.setFrom(null);
-        form.setTo(null);
-        form.setTransactionPk(null);
-        form.setReturnCSV(false);
-        form.setType(TransactionQueryForm.QueryType.ACTIVE);
-        form.setPeriodType(TransactionQueryForm.QueryPeriodType.ALL);
-
-        // Fetch all active transactions
-        List<Transaction> txList = transactionRepository.getTransactions(form);
-
-        // Filter by idTag and collect transaction IDs
-        return txList.stream()
-                .filter(tx -> tx.getOcppIdTag() != null && tx.getOcppIdTag().equals(idTag))
-                .map(Transaction::getId)
-                .collect(Collectors.toList());
+        return activeTransactionRegistry.countByIdTag(idTag) == 1;
     }
 
 
@@ -437,23 +498,12 @@ public class TariffAmountCalculation {
         return count != null && count > 0;
     }
 
-    private Double QrUserAmount(final String payId) {
-
-        return dslContext
-                .select(PAYMENT_REQUEST.AMOUNT)
-                .from(PAYMENT_REQUEST)
-                .where(PAYMENT_REQUEST.RRNID.eq(payId))
-                .fetchOneInto(Double.class);   // Correct type
-    }
-
-    private boolean check(
-            final double currentEnergy,
-            final String chargeBoxId,
-            final Integer transactionId,
-            final Integer connectorPk) {
+    private boolean check(final TransactionBillingState state, final double currentEnergy) {
+        final String chargeBoxId = state.getChargeBoxId();
+        final int transactionId = state.getTransactionId();
 
-        double startEnergy = retrieveStartEnergy(transactionId);
-        double previousEnergy = retrieveCurrentTransactionPreviewsEnergy(connectorPk, transactionId);
+        double startEnergy = state.getStartEnergy();
+        double previousEnergy = state.getLastEnergy();
 
         if (startEnergy == 0) {
             if (previousEnergy > currentEnergy) {
@@ -461,7 +511,7 @@ public class TariffAmountCalculation {
                 return true;   // STOP SIGNAL
             }
         } else {
-            double lastStopValue = retrievePreviousTransactionLastEnergy(connectorPk);
+            double lastStopValue = state.getPreviousStopEnergy();
             if (lastStopValue > currentEnergy) {
                 stopTransaction.manuallyStopTransaction(chargeBoxId, transactionId, "Charger Faulted");
                 return true;
@@ -0,0 +1,104 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
+import de.rwth.idsg.steve.service.dto.TariffResponse;
+import de.rwth.idsg.steve.service.dto.TariffSchedule;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the compiled time-of-day tariff of each charger, so that pricing a meter sample does not need a round trip
+ * to the tod.php endpoint.
+ *
+ * Entries are refreshed in the background after {@link #REFRESH_AFTER_MINUTES}. While a refresh is running or if it
+ * fails, the previous schedule is served. Only the very first lookup of a charger waits for the upstream.
+ */
+@Slf4j
+@Service
+public class TariffScheduleService {
+
+    private static final String LIVE_TARIFF_API_URL = "http://cms.tuckerio.bigtot.in/test/tod.php?charger_id=";
+    private static final String TEST_TARIFF_API_URL = "https://tuckerio.com/test/tod.php?charger_id=";
+
+    private static final long REFRESH_AFTER_MINUTES = 10;
+    private static final long EXPIRE_AFTER_ACCESS_HOURS = 24;
+
+    private static final DateTimeZone IST = DateTimeZone.forID("Asia/Kolkata");
+
+    @Autowired
+    private IntegrationClients integrationClients;
+
+    private final LoadingCache<String, TariffSchedule> schedules = Caffeine.newBuilder()
+            .refreshAfterWrite(REFRESH_AFTER_MINUTES, TimeUnit.MINUTES)
+            .expireAfterAccess(EXPIRE_AFTER_ACCESS_HOURS, TimeUnit.HOURS)
+            .build(this::fetchSchedule);
+
+    /**
+     * Tariff lookup by charger and time (IST)
+     */
+    public double getUnitFare(String chargerId, DateTime utcTime) {
+        long millis = utcTime.getMillis();
+        long localSeconds = (millis + IST.getOffset(millis)) / 1000;
+        int secondOfDay = (int) Math.floorMod(localSeconds, (long) TariffSchedule.SECONDS_PER_DAY);
+
+        double unitFare = schedules.get(chargerId).getUnitFare(secondOfDay);
+        if (Double.isNaN(unitFare)) {
+            throw new RuntimeException("No matching tariff found for time: " + utcTime.withZone(IST).toLocalTime());
+        }
+        return unitFare;
+    }
+
+    /**
+     * Drops the cached schedule, so that the next lookup fetches the current one. Called when the tariff of the
+     * charger was changed upstream.
+     */
+    public void invalidate(String chargerId) {
+        schedules.invalidate(chargerId);
+        log.info("Invalidated the cached tariff of charger '{}'", chargerId);
+    }
+
+    public void invalidateAll() {
+        schedules.invalidateAll();
+        log.info("Invalidated all cached tariffs");
+    }
+
+    private TariffSchedule fetchSchedule(String chargerId) {
+        try {
+            String url = TEST_TARIFF_API_URL + chargerId;
+            TariffResponse response = integrationClients.get(HttpIntegration.TARIFF)
+                    .execute(rt -> rt.getForObject(url, TariffResponse.class));
+            if (response == null || response.getTariffs() == null || response.getTariffs().isEmpty()) {
+                throw new RuntimeException("No tariff data for charger: " + chargerId);
+            }
+            return TariffSchedule.compile(response.getTariffs());
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to fetch tariff for charger: " + chargerId, e);
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.service;
 
+import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
 import de.rwth.idsg.steve.ocpp.OcppCallback;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
@@ -25,18 +26,21 @@ import de.rwth.idsg.steve.ocpp.OcppVersion;
 import de.rwth.idsg.steve.ocpp.task.RemoteStopTransactionTask;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
+import de.rwth.idsg.steve.repository.dto.OcppTagStats;
 import de.rwth.idsg.steve.repository.dto.Transaction;
 import de.rwth.idsg.steve.repository.dto.TransactionDetails;
 import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
 import de.rwth.idsg.steve.service.remote.OcppRemoteCommandExecutor;
 import de.rwth.idsg.steve.service.testmobiledto.*;
 import de.rwth.idsg.steve.service.testmobiledto.ResponseDTO;
+import de.rwth.idsg.steve.utils.TimerWheel;
 import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
 import de.rwth.idsg.steve.web.dto.ocpp.RemoteStartTransactionParams;
 import de.rwth.idsg.steve.web.dto.ocpp.RemoteStopTransactionParams;
 import lombok.extern.slf4j.Slf4j;
 import ocpp.cs._2015._10.RegistrationStatus;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.impl.DSL;
@@ -70,6 +74,16 @@ public class TestAppService {
     @Qualifier("secondary")
     private DSLContext evHistory;
 
+    // For the history and graphs, which can be served by the replicas
+
+    @Autowired
+    @Qualifier("readOnly")
+    private DSLContext readOnlyContext;
+
+    @Autowired
+    @Qualifier("secondaryReadOnly")
+    private DSLContext readOnlyEvHistory;
+
     @Autowired
     private ChargePointHelperService chargePointHelperService;
 
@@ -91,19 +105,35 @@ public class TestAppService {
     @Autowired
     private TariffAmountCalculation tariffAmountCalculation;
 
-    private final ScheduledExecutorService scheduler =
-            Executors.newSingleThreadScheduledExecutor();
+    @Autowired
+    private WalletLedgerService walletLedgerService;
+
+    @Autowired
+    private TimerWheel timerWheel;
+
+    @Autowired
+    private LatestConnectorStatusService latestConnectorStatusService;
+
+    @Autowired
+    private OcppTagStatsService ocppTagStatsService;
+
+    @Autowired
+    private SessionGraphService sessionGraphService;
 
-    public ResponseDTO startTransaction(
+    /**
+     * Completes when the charger has responded to the RemoteStart, without blocking the calling thread meanwhile.
+     */
+    public CompletableFuture<ResponseDTO> startTransaction(
             final String connectorQrCode,
             final String idTag) {
         final String chargeBoxId = retrieveChargeBoxId(connectorQrCode);
         final int connectorId = getSequenceNumber(connectorQrCode);
         final Integer connectorPk = getConnectorPk(chargeBoxId, connectorId);
         final String lastStatus = getConnectorLastStatusByPk(connectorPk);
-        double walletAmount = tariffAmountCalculation.retrieveUserWalletAmount(idTag);
+        // The balance minus the running amounts of the other active transactions of the idTag
+        double walletAmount = walletLedgerService.open(idTag);
         if (walletAmount <= 30) {
-            return buildFailureResponse(connectorQrCode, lastStatus, "LOW_WALLET");
+            return CompletableFuture.completedFuture(buildFailureResponse(connectorQrCode, lastStatus, "LOW_WALLET"));
         }
         final List<RegistrationStatus> allowedStatuses =
                 Arrays.asList(RegistrationStatus.ACCEPTED, RegistrationStatus.PENDING);
@@ -114,14 +144,14 @@ public class TestAppService {
 
 
         if (!isChargeBoxAvailable(chargeBoxId, availableChargers)) {
-            return buildFailureResponse(
-                    connectorQrCode, lastStatus, "CHARGER_UN_AVAILABLE");
+            return CompletableFuture.completedFuture(buildFailureResponse(
+                    connectorQrCode, lastStatus, "CHARGER_UN_AVAILABLE"));
         }
 
         // 2️⃣ Invalid connector / QR
         if ("UNKNOWN".equalsIgnoreCase(lastStatus)) {
-            return buildFailureResponse(
-                    connectorQrCode, lastStatus, "CONNECTOR_UN_AVAILABLE");
+            return CompletableFuture.completedFuture(buildFailureResponse(
+                    connectorQrCode, lastStatus, "CONNECTOR_UN_AVAILABLE"));
         }
 
         final boolean isType6 = isType6Charger(chargeBoxId, connectorId);
@@ -130,11 +160,11 @@ public class TestAppService {
 
             String reason = resolveStartFailureReason(lastStatus);
 
-            return buildFailureResponse(
+            return CompletableFuture.completedFuture(buildFailureResponse(
                     connectorQrCode,
                     lastStatus,
                     reason
-            );
+            ));
         }
 
 
@@ -144,25 +174,44 @@ public class TestAppService {
         params.setIdTag(idTag);
         params.setConnectorId(connectorId);
 
+        CompletableFuture<Boolean> started;
         try {
-            final boolean started = commandExecutor
-                    .sendRemoteStart(chargeBoxId, connectorId, params, idTag)
-                    .join();
-
-            return buildFinalStartResponse(
-                    started, connectorQrCode, connectorId, chargeBoxId);
-
+            started = commandExecutor.sendRemoteStart(chargeBoxId, connectorId, params, idTag);
         } catch (Exception ex) {
             log.error("RemoteStart failed chargeBoxId={}, connectorId={}",
                     chargeBoxId, connectorId, ex);
-
-            return buildFinalStartResponse(
-                    false, connectorQrCode, connectorId, chargeBoxId);
+            started = CompletableFuture.completedFuture(false);
         }
+
+        final CompletableFuture<ResponseDTO> future =
+                new CompletableFuture<>();
+
+        started.whenComplete((accepted, ex) -> {
+            if (ex != null) {
+                log.error("RemoteStart failed chargeBoxId={}, connectorId={}",
+                        chargeBoxId, connectorId, ex);
+            }
+            boolean ok = ex == null && Boolean.TRUE.equals(accepted);
+
+            // Give the charger time to send the StartTransaction, before looking up the transaction
+            timerWheel.schedule(() -> {
+                try {
+                    future.complete(buildFinalStartResponse(
+                            ok, connectorQrCode, connectorId, chargeBoxId));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                }
+            }, 2, TimeUnit.SECONDS);
+        });
+
+        return future;
     }
 
 
-    public ResponseDTO stopTransaction(
+    /**
+     * Completes when the charger has responded to the RemoteStop, without blocking the calling thread meanwhile.
+     */
+    public CompletableFuture<ResponseDTO> stopTransaction(
             final Integer transactionId,
             final String stopReason) {
 
@@ -184,12 +233,12 @@ public class TestAppService {
         if (transactionDetails == null ||
                 transactionDetails.getTransaction() == null) {
 
-            return buildStopResponse(
+            return CompletableFuture.completedFuture(buildStopResponse(
                     false,
                     String.valueOf(transactionId),
                     null,
                     "INVALID_TRANSACTION"
-            );
+            ));
         }
 
         Transaction transaction =
@@ -219,36 +268,7 @@ public class TestAppService {
                         params
                 );
 
-        // 3️⃣ Timeout handling
-        ScheduledFuture<?> timeoutTask =
-                scheduler.schedule(() -> {
-
-                    if (completed.compareAndSet(false, true)) {
-
-                        log.warn(
-                                "RemoteStop timeout chargeBoxId={}, transactionId={}",
-                                chargeBoxId, transactionId
-                        );
-
-                        manuallyStopTransaction.manuallyStopTransaction(
-                                chargeBoxId,
-                                transactionId,
-                                finalStopReason + " - Timeout"
-                        );
-
-                        future.complete(
-                                buildStopResponse(
-                                        false,
-                                        String.valueOf(transactionId),
-                                        chargeBoxId,
-                                        "TIMEOUT_STOPPED_MANUALLY"
-                                )
-                        );
-                    }
-
-                }, 10, TimeUnit.SECONDS);
-
-        // 4️⃣ OCPP Callback
+        // 3️⃣ OCPP Callback (the store fails the task, if the charger does not respond in time)
         task.addCallback(new OcppCallback<String>() {
 
             @Override
@@ -256,8 +276,6 @@ public class TestAppService {
 
                 if (completed.compareAndSet(false, true)) {
 
-                    timeoutTask.cancel(false);
-
                     boolean accepted =
                             "Accepted".equalsIgnoreCase(response);
 
@@ -279,8 +297,6 @@ public class TestAppService {
 
                 if (completed.compareAndSet(false, true)) {
 
-                    timeoutTask.cancel(false);
-
                     manuallyStopTransaction.manuallyStopTransaction(
                             chargeBoxId,
                             transactionId,
@@ -303,12 +319,18 @@ public class TestAppService {
 
                 if (completed.compareAndSet(false, true)) {
 
-                    timeoutTask.cancel(false);
+                    boolean timeout = ex instanceof SteveException.Timeout;
+                    if (timeout) {
+                        log.warn(
+                                "RemoteStop timeout chargeBoxId={}, transactionId={}",
+                                chargeBoxId, transactionId
+                        );
+                    }
 
                     manuallyStopTransaction.manuallyStopTransaction(
                             chargeBoxId,
                             transactionId,
-                            finalStopReason + " - FAILED"
+                            finalStopReason + (timeout ? " - Timeout" : " - FAILED")
                     );
 
                     future.complete(
@@ -316,7 +338,9 @@ public class TestAppService {
                                     false,
                                     String.valueOf(transactionId),
                                     chargeBoxId,
-                                    "REMOTE_STOP_FAILED"
+                                    timeout
+                                            ? "TIMEOUT_STOPPED_MANUALLY"
+                                            : "REMOTE_STOP_FAILED"
                             )
                     );
                 }
@@ -326,7 +350,7 @@ public class TestAppService {
         chargePointService16Invoker
                 .remoteStopTransaction(select, task);
 
-        return future.join();
+        return future;
     }
 
 
@@ -348,6 +372,24 @@ public class TestAppService {
         return response;
     }
 
+    public ResponseDTO getIdTagSummary(final String idTag) {
+        OcppTagStats stats = ocppTagStatsService.get(idTag);
+
+        IdTagSummaryDTO summary = new IdTagSummaryDTO();
+        summary.setIdTag(idTag);
+        summary.setRank(OcppTagStatsService.calculateRank(stats.getSessionCount()));
+        summary.setSessionCount(stats.getSessionCount());
+        summary.setTotalEnergyKWh(String.format("%.3f", stats.getTotalEnergyKwh()));
+        summary.setTotalSpend(String.format("%.2f", stats.getTotalSpend()));
+        summary.setLastSessionTime(stats.getLastSessionTimestamp() == null ? null
+                : stats.getLastSessionTimestamp().withZone(DateTimeZone.forID("Asia/Kolkata")).toString("yyyy-MM-dd HH:mm:ss"));
+
+        ResponseDTO response = new ResponseDTO();
+        response.setStatus(stats.getSessionCount() > 0);
+        response.setData(summary);
+        return response;
+    }
+
     public ResponseDTO getAlleTransactionByIdTag(final String idTag) {
 
         List<ChargingHistoryDTO> liveData =
@@ -490,7 +532,7 @@ public class TestAppService {
         form.setType(TransactionQueryForm.QueryType.ALL);
         form.setPeriodType(TransactionQueryForm.QueryPeriodType.ALL);
 
-        return transactionRepository.getTransactions(form)
+        return transactionRepository.getTransactionsReadOnly(form)
                 .stream()
                 .map(tx -> {
                     ChargingHistoryDTO dto = new ChargingHistoryDTO();
@@ -585,8 +627,6 @@ public class TestAppService {
             final int connectorId,
             final String chargeBoxId) {
 
-        sleepSafely(2000);
-
         final Integer connectorPk =
                 getConnectorPk(chargeBoxId, connectorId);
 
@@ -678,14 +718,8 @@ public class TestAppService {
     }
 
     private String getConnectorLastStatusByPk(Integer connectorPk) {
-        return connectorPk == null ? "UNKNOWN" :
-                dslContext.select(CONNECTOR_STATUS.STATUS)
-                        .from(CONNECTOR_STATUS)
-                        .where(CONNECTOR_STATUS.CONNECTOR_PK.eq(connectorPk))
-                        .orderBy(CONNECTOR_STATUS.STATUS_TIMESTAMP.desc())
-                        .limit(1)
-                        .fetchOptional(CONNECTOR_STATUS.STATUS)
-                        .orElse("UNKNOWN");
+        String status = latestConnectorStatusService.getStatus(connectorPk);
+        return status == null ? "UNKNOWN" : status;
     }
 
 
@@ -702,14 +736,6 @@ public class TestAppService {
         }
     }
 
-    private void sleepSafely(long millis) {
-        try {
-            Thread.sleep(millis);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-        }
-    }
-
     private String resolveStartFailureReason(String lastStatus) {
 
         if (lastStatus == null) {
@@ -733,7 +759,7 @@ public class TestAppService {
     }
 
     private Optional<String> getChargerQr(final String chargeBoxId, final Integer connectorId) {
-        return dslContext
+        return readOnlyContext
                 .select(CHARGER_SERVER.CHARGER_QR_CODE)
                 .from(CHARGER_SERVER)
                 .where(CHARGER_SERVER.CHARGER_BOX_ID.eq(chargeBoxId))
@@ -744,7 +770,7 @@ public class TestAppService {
     private double retrieveConsumedTotalEnergy(final Integer transactionId) {
 
         return Optional.ofNullable(
-                evHistory
+                readOnlyEvHistory
                         .select(WALLET_TRACK.CONSUMED_ENERGY)
                         .from(WALLET_TRACK)
                         .where(WALLET_TRACK.TRANSACTION_ID.eq(transactionId))
@@ -755,17 +781,17 @@ public class TestAppService {
     }
 
     public List<PowerAndSocGraphResponseDTO> retrieveGraphData(final Integer transactionId) {
+        return sessionGraphService.getSeries(transactionId, null, SessionGraphService.DEFAULT_MAX_POINTS).getPoints();
+    }
 
-        return dslContext
-                .select(
-                        TRANSACTION_METER_VALUES.SOC.as("soc"),
-                        TRANSACTION_METER_VALUES.POWER.as("power"),
-                        TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.as("timestamp")
-                )
-                .from(TRANSACTION_METER_VALUES)
-                .where(TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionId))
-                .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.asc())
-                .fetchInto(PowerAndSocGraphResponseDTO.class);
+    public ResponseDTO retrieveGraphSeries(final Integer transactionId, final Long since, final Integer maxPoints) {
+        PowerAndSocGraphSeriesDTO series = sessionGraphService.getSeries(
+                transactionId, since, maxPoints == null ? SessionGraphService.DEFAULT_MAX_POINTS : maxPoints);
+
+        ResponseDTO response = new ResponseDTO();
+        response.setStatus(true);
+        response.setData(series);
+        return response;
     }
 
 
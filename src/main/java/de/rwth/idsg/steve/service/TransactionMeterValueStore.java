@@ -0,0 +1,468 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.MeterValueStorage;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.service.dto.MeterValueStorageStats;
+import de.rwth.idsg.steve.service.dto.TransactionMeterValueSample;
+import de.rwth.idsg.steve.service.dto.TransactionMeterValues;
+import de.rwth.idsg.steve.service.notification.OcppTransactionEnded;
+import de.rwth.idsg.steve.utils.TimeSeriesBlock;
+import jooq.steve.db.tables.records.TransactionMeterValuesRecord;
+import lombok.extern.slf4j.Slf4j;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertSetStep;
+import org.jooq.Record2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static jooq.steve.db.Tables.TRANSACTION_METER_VALUES;
+import static jooq.steve.db.Tables.TRANSACTION_METER_VALUE_BLOCK;
+
+/**
+ * Storage of the MeterValues samples of transactions, either as one row per sample or as compressed blocks (see
+ * {@link MeterValueStorage}). The readers get the samples of both formats, so that switching the format does not
+ * hide the samples stored before.
+ * <p>
+ * In the block format, the open block of a transaction lives in the memory of this instance. It is written when it
+ * is complete, when the transaction ends, and in between every few minutes. Until then, only the readers of this
+ * class see its samples. The last complete block is kept as well, so that readers of a replica do not miss it.
+ */
+@Slf4j
+@Service
+public class TransactionMeterValueStore {
+
+    // Columns of a block
+    private static final int VOLTAGE = 0;
+    private static final int CURRENT = 1;
+    private static final int POWER = 2;
+    private static final int ENERGY = 3;
+    private static final int SOC = 4;
+    private static final int COLUMNS = 5;
+
+    // Bounds the size of a block of stations that send their samples every few seconds
+    private static final int MAX_BLOCK_SAMPLES = 4_096;
+
+    @Autowired
+    private DSLContext ctx;
+
+    private final SteveConfiguration.Ingestion config = SteveConfiguration.CONFIG.getIngestion();
+    private final long blockMillis = TimeUnit.MINUTES.toMillis(config.getMeterValueBlockMinutes());
+    private final long flushMillis = TimeUnit.SECONDS.toMillis(config.getMeterValueBlockFlushSeconds());
+
+    // Key: transactionPk
+    private final ConcurrentHashMap<Integer, OpenBlock> openBlocks = new ConcurrentHashMap<>();
+
+    private final LongAdder samplesAppended = new LongAdder();
+    private final LongAdder blockWrites = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+
+    /**
+     * The idTag of a sample is expected in ocppTagPk.
+     */
+    public void store(List<TransactionMeterValues> samples) {
+        storeRows(ctx, samples);
+        appendBlocks(samples);
+    }
+
+    /**
+     * Inserts the samples within the given transaction, if they are stored as rows.
+     */
+    public void storeRows(DSLContext context, List<TransactionMeterValues> samples) {
+        if (samples.isEmpty() || config.getMeterValueStorage() != MeterValueStorage.ROWS) {
+            return;
+        }
+
+        InsertSetMoreStep<TransactionMeterValuesRecord> insert = null;
+        for (TransactionMeterValues s : samples) {
+            insert = setValues(insert == null ? context.insertInto(TRANSACTION_METER_VALUES) : insert.newRecord(), s);
+        }
+        insert.execute();
+        samplesAppended.add(samples.size());
+    }
+
+    /**
+     * Appends the samples to the open blocks of their transactions, if they are stored as blocks. Since they are not
+     * part of a database transaction, this must only be called once the other writes of the samples are committed.
+     */
+    public void appendBlocks(List<TransactionMeterValues> samples) {
+        if (samples.isEmpty() || config.getMeterValueStorage() != MeterValueStorage.BLOCKS) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (TransactionMeterValues s : samples) {
+            append(s, now);
+        }
+        samplesAppended.add(samples.size());
+    }
+
+    /**
+     * @param source the database part is read from, e.g. a replica
+     * @param from   exclusive, from the beginning if null
+     * @param to     inclusive, until the end if null
+     * @return the samples in the order of their timestamps
+     */
+    public List<TransactionMeterValueSample> read(DSLContext source, int transactionPk,
+                                                  @Nullable DateTime from, @Nullable DateTime to) {
+        // Before reading the database, so that a block that is completed in between is not missed
+        List<Record2<DateTime, byte[]>> inMemory = getOpenBlocks(transactionPk);
+
+        Condition rowCondition = TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionPk);
+        Condition blockCondition = TRANSACTION_METER_VALUE_BLOCK.TRANSACTION_PK.eq(transactionPk);
+        if (from != null) {
+            rowCondition = rowCondition.and(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.gt(from));
+            blockCondition = blockCondition.and(TRANSACTION_METER_VALUE_BLOCK.BLOCK_END.gt(from));
+        }
+        if (to != null) {
+            rowCondition = rowCondition.and(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.le(to));
+            blockCondition = blockCondition.and(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START.le(to));
+        }
+
+        List<TransactionMeterValueSample> samples = new ArrayList<>();
+
+        source.select(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP,
+                      TRANSACTION_METER_VALUES.VOLTAGE,
+                      TRANSACTION_METER_VALUES.CURRENT,
+                      TRANSACTION_METER_VALUES.POWER,
+                      TRANSACTION_METER_VALUES.ENERGY,
+                      TRANSACTION_METER_VALUES.SOC)
+              .from(TRANSACTION_METER_VALUES)
+              .where(rowCondition)
+              .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.asc())
+              .forEach(r -> samples.add(TransactionMeterValueSample.builder()
+                                                                   .timestamp(r.value1())
+                                                                   .voltage(r.value2())
+                                                                   .current(r.value3())
+                                                                   .power(r.value4())
+                                                                   .energy(r.value5())
+                                                                   .soc(r.value6())
+                                                                   .build()));
+
+        List<Record2<DateTime, byte[]>> blocks = new ArrayList<>(
+                source.select(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START, TRANSACTION_METER_VALUE_BLOCK.DATA)
+                      .from(TRANSACTION_METER_VALUE_BLOCK)
+                      .where(blockCondition)
+                      .orderBy(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START.asc())
+                      .fetch());
+
+        // The version in memory is at least as recent as the one in the database
+        blocks.removeIf(b -> inMemory.stream().anyMatch(m -> m.value1().isEqual(b.value1())));
+        blocks.addAll(inMemory);
+
+        for (Record2<DateTime, byte[]> block : blocks) {
+            addSamples(samples, TimeSeriesBlock.decode(block.value2()), from, to);
+        }
+
+        samples.sort(Comparator.comparing(TransactionMeterValueSample::getTimestamp));
+        return samples;
+    }
+
+    /**
+     * The energy of the latest sample of the transaction, or null if there is none.
+     */
+    @Nullable
+    public Double getLatestEnergy(int transactionPk) {
+        if (config.getMeterValueStorage() == MeterValueStorage.ROWS) {
+            Double energy = getLatestRowEnergy(transactionPk);
+            return energy != null ? energy : getLatestBlockEnergy(transactionPk);
+        }
+
+        OpenBlock open = openBlocks.get(transactionPk);
+        if (open != null) {
+            synchronized (open) {
+                if (open.encoder.getCount() > 0) {
+                    return open.lastValues[ENERGY];
+                }
+            }
+        }
+        Double energy = getLatestBlockEnergy(transactionPk);
+        return energy != null ? energy : getLatestRowEnergy(transactionPk);
+    }
+
+    @EventListener
+    public void onTransactionEnded(OcppTransactionEnded event) {
+        OpenBlock block = openBlocks.get(event.getParams().getTransactionId());
+        if (block == null) {
+            return;
+        }
+        synchronized (block) {
+            // otherwise the next flush retries
+            if (!block.isDirty() || write(block)) {
+                remove(block);
+            }
+        }
+    }
+
+    /**
+     * Writes the open blocks that changed since the flush interval, and drops the ones of transactions that did not
+     * receive samples for a whole block, e.g. because their end was missed.
+     */
+    @Scheduled(fixedDelay = 10_000)
+    public void flushBlocks() {
+        long now = System.currentTimeMillis();
+        for (OpenBlock block : openBlocks.values()) {
+            synchronized (block) {
+                boolean idle = now - block.lastAppend >= blockMillis;
+                if (block.isDirty() && (idle || now - block.lastWrite >= flushMillis)) {
+                    write(block);
+                }
+                if (idle && !block.isDirty()) {
+                    remove(block);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (OpenBlock block : openBlocks.values()) {
+            synchronized (block) {
+                if (block.isDirty()) {
+                    write(block);
+                }
+            }
+        }
+    }
+
+    public MeterValueStorageStats getStats() {
+        return MeterValueStorageStats.builder()
+                                     .storage(config.getMeterValueStorage().name())
+                                     .openBlocks(openBlocks.size())
+                                     .samplesAppended(samplesAppended.sum())
+                                     .blockWrites(blockWrites.sum())
+                                     .bytesWritten(bytesWritten.sum())
+                                     .writeFailures(writeFailures.sum())
+                                     .build();
+    }
+
+    // -------------------------------------------------------------------------
+    // Private helpers
+    // -------------------------------------------------------------------------
+
+    private void append(TransactionMeterValues s, long now) {
+        while (true) {
+            OpenBlock block = openBlocks.computeIfAbsent(s.getTransactionPk(), k -> new OpenBlock(s, now));
+            synchronized (block) {
+                if (block.removed) {
+                    continue;
+                }
+
+                int count = block.encoder.getCount();
+                if (count > 0 && (now - block.encoder.getFirstTimestamp() >= blockMillis || count >= MAX_BLOCK_SAMPLES)) {
+                    // If it fails, the block grows until a write succeeds
+                    if (write(block)) {
+                        block.complete();
+                    }
+                }
+
+                double[] values = {s.getVoltage(), s.getCurrent(), s.getPower(), s.getEnergy(), s.getSoc()};
+                block.encoder.append(now, values);
+                block.lastValues = values;
+                block.lastAppend = now;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock of the block.
+     *
+     * @return whether the block was written
+     */
+    private boolean write(OpenBlock block) {
+        TimeSeriesBlock.Encoder encoder = block.encoder;
+        byte[] data = encoder.toByteArray();
+        DateTime start = new DateTime(encoder.getFirstTimestamp());
+        DateTime end = new DateTime(encoder.getLastTimestamp());
+
+        try {
+            ctx.insertInto(TRANSACTION_METER_VALUE_BLOCK)
+               .set(TRANSACTION_METER_VALUE_BLOCK.TRANSACTION_PK, block.transactionPk)
+               .set(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START, start)
+               .set(TRANSACTION_METER_VALUE_BLOCK.BLOCK_END, end)
+               .set(TRANSACTION_METER_VALUE_BLOCK.CONNECTOR_PK, block.connectorPk)
+               .set(TRANSACTION_METER_VALUE_BLOCK.CHARGE_BOX_ID, block.chargeBoxId)
+               .set(TRANSACTION_METER_VALUE_BLOCK.OCPP_TAG_ID, block.idTag)
+               .set(TRANSACTION_METER_VALUE_BLOCK.SAMPLE_COUNT, encoder.getCount())
+               .set(TRANSACTION_METER_VALUE_BLOCK.DATA, data)
+               .onDuplicateKeyUpdate()
+               .set(TRANSACTION_METER_VALUE_BLOCK.BLOCK_END, end)
+               .set(TRANSACTION_METER_VALUE_BLOCK.SAMPLE_COUNT, encoder.getCount())
+               .set(TRANSACTION_METER_VALUE_BLOCK.DATA, data)
+               .execute();
+        } catch (Exception e) {
+            writeFailures.increment();
+            log.error("Writing the MeterValues block of transaction {} failed", block.transactionPk, e);
+            return false;
+        }
+
+        block.writtenCount = encoder.getCount();
+        block.lastWrite = System.currentTimeMillis();
+        blockWrites.increment();
+        bytesWritten.add(data.length);
+        return true;
+    }
+
+    /**
+     * Must be called while holding the lock of the block.
+     */
+    private void remove(OpenBlock block) {
+        block.removed = true;
+        openBlocks.remove(block.transactionPk, block);
+    }
+
+    private List<Record2<DateTime, byte[]>> getOpenBlocks(int transactionPk) {
+        List<Record2<DateTime, byte[]>> blocks = new ArrayList<>(2);
+        OpenBlock block = openBlocks.get(transactionPk);
+        if (block == null) {
+            return blocks;
+        }
+        synchronized (block) {
+            if (block.previous != null) {
+                blocks.add(blockRecord(block.previousStart, block.previous));
+            }
+            if (block.encoder.getCount() > 0) {
+                blocks.add(blockRecord(block.encoder.getFirstTimestamp(), block.encoder.toByteArray()));
+            }
+        }
+        return blocks;
+    }
+
+    private Record2<DateTime, byte[]> blockRecord(long start, byte[] data) {
+        Record2<DateTime, byte[]> r = ctx.newRecord(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START,
+                                                    TRANSACTION_METER_VALUE_BLOCK.DATA);
+        r.value1(new DateTime(start));
+        r.value2(data);
+        return r;
+    }
+
+    @Nullable
+    private Double getLatestRowEnergy(int transactionPk) {
+        return ctx.select(TRANSACTION_METER_VALUES.ENERGY)
+                  .from(TRANSACTION_METER_VALUES)
+                  .where(TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionPk))
+                  .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.desc())
+                  .limit(1)
+                  .fetchOne(TRANSACTION_METER_VALUES.ENERGY);
+    }
+
+    @Nullable
+    private Double getLatestBlockEnergy(int transactionPk) {
+        byte[] data = ctx.select(TRANSACTION_METER_VALUE_BLOCK.DATA)
+                         .from(TRANSACTION_METER_VALUE_BLOCK)
+                         .where(TRANSACTION_METER_VALUE_BLOCK.TRANSACTION_PK.eq(transactionPk))
+                         .orderBy(TRANSACTION_METER_VALUE_BLOCK.BLOCK_START.desc())
+                         .limit(1)
+                         .fetchOne(TRANSACTION_METER_VALUE_BLOCK.DATA);
+        if (data == null) {
+            return null;
+        }
+        TimeSeriesBlock.Decoded decoded = TimeSeriesBlock.decode(data);
+        return decoded.size() == 0 ? null : decoded.getValues()[decoded.size() - 1][ENERGY];
+    }
+
+    private static void addSamples(List<TransactionMeterValueSample> samples, TimeSeriesBlock.Decoded decoded,
+                                   @Nullable DateTime from, @Nullable DateTime to) {
+        for (int i = 0; i < decoded.size(); i++) {
+            long timestamp = decoded.getTimestamps()[i];
+            if ((from != null && timestamp <= from.getMillis()) || (to != null && timestamp > to.getMillis())) {
+                continue;
+            }
+            double[] values = decoded.getValues()[i];
+            samples.add(TransactionMeterValueSample.builder()
+                                                   .timestamp(new DateTime(timestamp))
+                                                   .voltage(values[VOLTAGE])
+                                                   .current(values[CURRENT])
+                                                   .power(values[POWER])
+                                                   .energy(values[ENERGY])
+                                                   .soc(values[SOC])
+                                                   .build());
+        }
+    }
+
+    private static InsertSetMoreStep<TransactionMeterValuesRecord> setValues(
+            InsertSetStep<TransactionMeterValuesRecord> step,
+            TransactionMeterValues tmv) {
+        return step.set(TRANSACTION_METER_VALUES.TRANSACTION_PK, tmv.getTransactionPk())
+                .set(TRANSACTION_METER_VALUES.OCPP_TAG_ID, tmv.getOcppTagPk())
+                .set(TRANSACTION_METER_VALUES.CHARGE_BOX_ID, tmv.getChargeBoxId())
+                .set(TRANSACTION_METER_VALUES.CONNECTOR_PK, tmv.getConnectorPk())
+                .set(TRANSACTION_METER_VALUES.VOLTAGE, tmv.getVoltage())
+                .set(TRANSACTION_METER_VALUES.CURRENT, tmv.getCurrent())
+                .set(TRANSACTION_METER_VALUES.POWER, tmv.getPower())
+                .set(TRANSACTION_METER_VALUES.ENERGY, tmv.getEnergy())
+                .set(TRANSACTION_METER_VALUES.SOC, tmv.getSoc());
+    }
+
+    private static final class OpenBlock {
+        private final int transactionPk;
+        private final int connectorPk;
+        private final String chargeBoxId;
+        private final String idTag;
+
+        private TimeSeriesBlock.Encoder encoder = new TimeSeriesBlock.Encoder(COLUMNS);
+        private double[] lastValues;
+        // Samples of the encoder that are in the database
+        private int writtenCount;
+        private long lastAppend;
+        private long lastWrite;
+
+        // The last complete block
+        private byte[] previous;
+        private long previousStart;
+
+        private boolean removed;
+
+        private OpenBlock(TransactionMeterValues first, long now) {
+            this.transactionPk = first.getTransactionPk();
+            this.connectorPk = first.getConnectorPk();
+            this.chargeBoxId = first.getChargeBoxId();
+            this.idTag = first.getOcppTagPk();
+            this.lastWrite = now;
+        }
+
+        private boolean isDirty() {
+            return encoder.getCount() > writtenCount;
+        }
+
+        private void complete() {
+            previous = encoder.toByteArray();
+            previousStart = encoder.getFirstTimestamp();
+            encoder = new TimeSeriesBlock.Encoder(COLUMNS);
+            writtenCount = 0;
+        }
+    }
+}
@@ -65,6 +65,8 @@ public class TransactionStopService {
     private HomeService homeService;
     @Autowired
     private DSLContext dslContext;
+    @Autowired
+    private TransactionMeterValueStore meterValueStore;
 
     public void stop(List<Integer> transactionPkList) {
         transactionPkList.stream()
@@ -207,13 +209,7 @@ public class TransactionStopService {
     }
 
     private Double getLastEnergy(Integer transactionPk) {
-        return dslContext
-                .select(TRANSACTION_METER_VALUES.ENERGY)
-                .from(TRANSACTION_METER_VALUES)
-                .where(TRANSACTION_METER_VALUES.TRANSACTION_PK.eq(transactionPk))
-                .orderBy(TRANSACTION_METER_VALUES.EVENT_TIMESTAMP.desc())
-                .limit(1)
-                .fetchOptionalInto(Double.class)
+        return Optional.ofNullable(meterValueStore.getLatestEnergy(transactionPk))
                 .orElseGet(() ->
                         dslContext
                                 .select(TRANSACTION_START.START_VALUE)
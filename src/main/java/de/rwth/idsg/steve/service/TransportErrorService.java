@@ -18,10 +18,7 @@
  */
 package de.rwth.idsg.steve.service;
 
-import de.rwth.idsg.steve.repository.dto.Transaction;
-import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
-import de.rwth.idsg.steve.web.dto.TransactionQueryForm;
-import jooq.steve.db.tables.ConnectorMeterValue;
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.jooq.DSLContext;
@@ -29,17 +26,20 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
-import static jooq.steve.db.Tables.*;
-import static jooq.steve.db.Tables.CONNECTOR;
+import static jooq.steve.db.Tables.CONNECTOR_METER_VALUE;
 
 @Slf4j
 @Service
 public class TransportErrorService {
 
     @Autowired
-    private TransactionRepositoryImpl transactionRepository;
+    private ActiveTransactionRegistry activeTransactionRegistry;
 
     @Autowired
     private DSLContext dslContext;
@@ -47,58 +47,72 @@ public class TransportErrorService {
     @Autowired
     private TransactionStopService transactionStopService;
 
+    @Autowired
+    private OcppIdentityDirectory identityDirectory;
+
+    @Autowired
+    private MeterValueIngestionService meterValueIngestionService;
+
+    // Transactions that are known to have meter values. They do not have to be checked again.
+    private final Set<Integer> withValues = ConcurrentHashMap.newKeySet();
+
     @Scheduled(fixedRate = 120000)
     public void avoidTransportError() {
+        DateTime oneMinuteAgo = DateTime.now().minusMinutes(1);
+
+        withValues.retainAll(activeTransactionRegistry.getAll().stream()
+                                                       .map(ActiveTransaction::getTransactionPk)
+                                                       .collect(Collectors.toSet()));
+
+        List<ActiveTransaction> candidates = new ArrayList<>();
+        for (ActiveTransaction tx : activeTransactionRegistry.getAll()) {
+            if (!withValues.contains(tx.getTransactionPk())
+                    && tx.getStartTimestamp() != null
+                    && tx.getStartTimestamp().isBefore(oneMinuteAgo)) {
+                candidates.add(tx);
+            }
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+
+        Set<Integer> candidatePks = candidates.stream()
+                                              .map(ActiveTransaction::getTransactionPk)
+                                              .collect(Collectors.toSet());
+
+        withValues.addAll(dslContext.selectDistinct(CONNECTOR_METER_VALUE.TRANSACTION_PK)
+                .from(CONNECTOR_METER_VALUE)
+                .where(CONNECTOR_METER_VALUE.TRANSACTION_PK.in(candidatePks))
+                .fetch(CONNECTOR_METER_VALUE.TRANSACTION_PK));
+
+        for (ActiveTransaction tx : candidates) {
+            if (withValues.contains(tx.getTransactionPk())) {
+                continue;
+            }
+            // The MeterValues are stored asynchronously, they may just not have reached the table yet
+            if (meterValueIngestionService.hasPendingSamples(tx.getChargeBoxId(), tx.getTransactionPk())) {
+                continue;
+            }
 
-        TransactionQueryForm form = new TransactionQueryForm();
-        form.setChargeBoxId(null);
-        form.setOcppIdTag(null);
-        form.setFrom(null);
-        form.setTo(null);
-        form.setTransactionPk(null);
-        form.setReturnCSV(false);
-        form.setType(TransactionQueryForm.QueryType.ACTIVE);
-        form.setPeriodType(TransactionQueryForm.QueryPeriodType.ALL);
-        List<Transaction> txList = transactionRepository.getTransactions(form);
-        for (Transaction tx : txList) {
-
-            DateTime txStartTime = dslContext.select(TRANSACTION_START.START_TIMESTAMP)
-                    .from(TRANSACTION_START)
-                    .where(TRANSACTION_START.TRANSACTION_PK.eq(tx.getId()))
-                    .fetchOneInto(DateTime.class);
-
-            if (txStartTime != null && txStartTime.plusMinutes(1).isBefore(DateTime.now())) {
-
-                boolean hasValues = dslContext.fetchCount(CONNECTOR_METER_VALUE,
-                        CONNECTOR_METER_VALUE.TRANSACTION_PK.eq(tx.getId())) > 0;
-
-
-                if (!hasValues) {
-                    log.info("Stopping transaction with id: {} on chargeBox: {}", tx.getId(), tx.getChargeBoxId());
-                    try {
-                        Integer connectorPk = dslContext.select(CONNECTOR.CONNECTOR_PK)
-                                .from(CONNECTOR)
-                                .where(CONNECTOR.CONNECTOR_ID.eq(tx.getConnectorId())
-                                        .and(CONNECTOR.CHARGE_BOX_ID.eq(tx.getChargeBoxId())))
-                                .fetchOne(CONNECTOR.CONNECTOR_PK);
-                        dslContext.insertInto(CONNECTOR_METER_VALUE)
-                                .set(CONNECTOR_METER_VALUE.CONNECTOR_PK, connectorPk)
-                                .set(CONNECTOR_METER_VALUE.TRANSACTION_PK, tx.getId())
-                                .set(CONNECTOR_METER_VALUE.VALUE_TIMESTAMP, DateTime.now())
-                                .set(CONNECTOR_METER_VALUE.VALUE, "")
-                                .set(CONNECTOR_METER_VALUE.READING_CONTEXT, "reading context")
-                                .set(CONNECTOR_METER_VALUE.FORMAT, "format")
-                                .set(CONNECTOR_METER_VALUE.MEASURAND, "Energy.Active.Import.Register")
-                                .set(CONNECTOR_METER_VALUE.LOCATION, "location")
-                                .set(CONNECTOR_METER_VALUE.UNIT, "wh")
-                                .execute();
-                    } catch (Exception e) {
-                        throw new RuntimeException("Auto Stoped Transaction Without get Any Meter Values" + e.getMessage());
-                    }
-                    transactionStopService.stop(tx.getId());
-
-                }
+            log.info("Stopping transaction with id: {} on chargeBox: {}", tx.getTransactionPk(), tx.getChargeBoxId());
+            try {
+                Integer connectorPk = identityDirectory.getConnectorPk(tx.getChargeBoxId(), tx.getConnectorId());
+                dslContext.insertInto(CONNECTOR_METER_VALUE)
+                        .set(CONNECTOR_METER_VALUE.CONNECTOR_PK, connectorPk)
+                        .set(CONNECTOR_METER_VALUE.TRANSACTION_PK, tx.getTransactionPk())
+                        .set(CONNECTOR_METER_VALUE.VALUE_TIMESTAMP, DateTime.now())
+                        .set(CONNECTOR_METER_VALUE.VALUE, "")
+                        .set(CONNECTOR_METER_VALUE.READING_CONTEXT, "reading context")
+                        .set(CONNECTOR_METER_VALUE.FORMAT, "format")
+                        .set(CONNECTOR_METER_VALUE.MEASURAND, "Energy.Active.Import.Register")
+                        .set(CONNECTOR_METER_VALUE.LOCATION, "location")
+                        .set(CONNECTOR_METER_VALUE.UNIT, "wh")
+                        .execute();
+            } catch (Exception e) {
+                log.error("Could not auto stop transaction {} without any meter values", tx.getTransactionPk(), e);
+                continue;
             }
+            transactionStopService.stop(tx.getTransactionPk());
         }
     }
 
@@ -0,0 +1,209 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
+import de.rwth.idsg.steve.externalconfig.WalletResponse;
+import de.rwth.idsg.steve.service.dto.WalletLedger;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static jooq.steve.db.Tables.PAYMENT_REQUEST;
+
+/**
+ * Keeps the wallet of each charging idTag in memory, so that the low-wallet checks of every meter sample do not
+ * need a round trip to the auto.php endpoint.
+ *
+ * The balance is loaded when a transaction starts (or at its first sample after a restart), re-synced with the
+ * upstream wallet periodically while transactions are active, and dropped after the last transaction of the idTag
+ * stops, so that the next session starts with a fresh balance.
+ */
+@Slf4j
+@Service
+public class WalletLedgerService {
+
+    private static final String LIVE_WALLET_API_URL = "http://cms.tuckerio.bigtot.in/auto_charge/auto.php?idtag=";
+    private static final String TEST_WALLET_API_URL = "https://tuckerio.com/auto_charge/auto.php?idtag=";
+
+    private static final long RESYNC_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long EVICT_IDLE_AFTER_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    @Autowired
+    @Qualifier("secondary")
+    private DSLContext dslContext;
+
+    @Autowired
+    private IntegrationClients integrationClients;
+
+    private final ConcurrentHashMap<String, WalletLedger> ledgers = new ConcurrentHashMap<>();
+
+    /**
+     * Called before a new session is started. Always syncs with the upstream wallet.
+     *
+     * @return the balance that is not reserved by other active transactions of the idTag
+     */
+    public double open(String idTag) {
+        WalletLedger ledger = ledgers.computeIfAbsent(idTag, WalletLedger::new);
+        synchronized (ledger) {
+            sync(ledger);
+        }
+        return getLedger(idTag).getAvailableAmount();
+    }
+
+    /**
+     * @return the last synced balance of the idTag, loading it at first access
+     */
+    public double getBalance(String idTag) {
+        return getLedger(idTag).getBalance();
+    }
+
+    /**
+     * @return the amount consumed by all active transactions of the idTag, that is not settled yet
+     */
+    public double getInFlightAmount(String idTag) {
+        WalletLedger ledger = ledgers.get(idTag);
+        return ledger == null ? 0 : ledger.getInFlightAmount();
+    }
+
+    /**
+     * Records the running total of the transaction against the wallet of the idTag.
+     */
+    public void reserve(String idTag, int transactionId, double consumedAmount) {
+        WalletLedger ledger = getLedger(idTag);
+        ledger.getReservations().put(transactionId, consumedAmount);
+        ledger.setLastAccessMillis(System.currentTimeMillis());
+    }
+
+    /**
+     * Called when the transaction stops. If it was the last active transaction of the idTag, the ledger is dropped
+     * and the next access loads the settled balance. Otherwise, the ledger is re-synced right away.
+     */
+    public void release(String idTag, int transactionId) {
+        WalletLedger ledger = ledgers.get(idTag);
+        if (ledger == null) {
+            return;
+        }
+
+        synchronized (ledger) {
+            ledger.getReservations().remove(transactionId);
+            if (ledger.getReservations().isEmpty()) {
+                ledgers.remove(idTag, ledger);
+                return;
+            }
+            sync(ledger);
+        }
+    }
+
+    /**
+     * Variant of {@link #release(String, int)} for when the idTag of the transaction is not known anymore, e.g. after
+     * its billing state was evicted.
+     */
+    public void release(int transactionId) {
+        for (WalletLedger ledger : ledgers.values()) {
+            if (ledger.getReservations().containsKey(transactionId)) {
+                release(ledger.getIdTag(), transactionId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelay = 60_000)
+    public void resync() {
+        long now = System.currentTimeMillis();
+
+        for (WalletLedger ledger : ledgers.values()) {
+            if (ledger.getReservations().isEmpty()) {
+                if (now - ledger.getLastAccessMillis() > EVICT_IDLE_AFTER_MILLIS) {
+                    ledgers.remove(ledger.getIdTag(), ledger);
+                }
+            } else if (now - ledger.getSyncedAtMillis() > RESYNC_AFTER_MILLIS) {
+                synchronized (ledger) {
+                    sync(ledger);
+                }
+            }
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------------------------
+
+    private WalletLedger getLedger(String idTag) {
+        WalletLedger ledger = ledgers.computeIfAbsent(idTag, WalletLedger::new);
+        if (!ledger.isLoaded()) {
+            synchronized (ledger) {
+                if (!ledger.isLoaded()) {
+                    sync(ledger);
+                }
+            }
+            if (!ledger.isLoaded()) {
+                ledgers.remove(idTag, ledger);
+                throw new RuntimeException("No wallet data for idTag: " + idTag);
+            }
+        }
+        return ledger;
+    }
+
+    private void sync(WalletLedger ledger) {
+        Double balance = retrieveUserWalletAmount(ledger.getIdTag());
+
+        // keep serving the previous balance, if the upstream and the fallback fail
+        if (balance != null) {
+            ledger.setBalance(balance);
+            ledger.setLoaded(true);
+            ledger.setSyncedAtMillis(System.currentTimeMillis());
+        }
+    }
+
+    private Double retrieveUserWalletAmount(String idTag) {
+        String url = TEST_WALLET_API_URL + idTag;
+        WalletResponse response = integrationClients.get(HttpIntegration.WALLET).execute(
+                rt -> rt.getForObject(url, WalletResponse.class),
+                e -> {
+                    log.error("Wallet of '{}' could not be retrieved, that transaction should be a QR payment: {}",
+                            idTag, e.getMessage());
+                    return null;
+                });
+
+        if (response == null) {
+            return qrUserAmount(idTag);
+        }
+        return response.getWallet_amount();
+    }
+
+    private Double qrUserAmount(final String payId) {
+        try {
+            return dslContext
+                    .select(PAYMENT_REQUEST.AMOUNT)
+                    .from(PAYMENT_REQUEST)
+                    .where(PAYMENT_REQUEST.RRNID.eq(payId))
+                    .fetchOneInto(Double.class);
+        } catch (Exception e) {
+            log.error("QR payment amount of '{}' could not be retrieved: {}", payId, e.getMessage());
+            return null;
+        }
+    }
+}
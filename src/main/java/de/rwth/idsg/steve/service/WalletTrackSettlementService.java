@@ -19,6 +19,7 @@
 package de.rwth.idsg.steve.service;
 
 import de.rwth.idsg.steve.service.dto.ChargerStationDTO;
+import de.rwth.idsg.steve.service.dto.WalletTrackSegment;
 import de.rwth.idsg.steve.web.dto.WalletSettlementDTO;
 import jooq.steve.db2.tables.records.WalletTrackSettlementRecord;
 import lombok.extern.slf4j.Slf4j;
@@ -48,6 +49,10 @@ public class WalletTrackSettlementService {
     @Qualifier("secondary")
     private DSLContext secondary;
 
+    @Autowired
+    @Qualifier("secondaryReadOnly")
+    private DSLContext secondaryReadOnly;
+
     @Autowired
     @Qualifier("php")
     private DSLContext php;
@@ -110,7 +115,7 @@ public class WalletTrackSettlementService {
             condition = condition.and(WALLET_TRACK_SETTLEMENT.TRANSACTION_ID.eq(transactionId));
         }
 
-        return secondary
+        return secondaryReadOnly
                 .select(
                         WALLET_TRACK_SETTLEMENT.ID,
                         WALLET_TRACK_SETTLEMENT.TRANSACTION_ID,
@@ -176,37 +181,17 @@ public class WalletTrackSettlementService {
                 });
     }
 
-   public void updateSettlementService(final Integer transactionId, final double unitFare,
-                                 final double lastEnergy,
-                                 final double updateConsumedAmount,
-                                 final double totalConsumedAmount,
-                                 final DateTime lastTimeStamp, final double walletAmount){
-
-       double startEnergy = getStartEnergy(transactionId);
-       double consumedEnergy = (lastEnergy - startEnergy) / 1000;
-            secondary.update(WALLET_TRACK_SETTLEMENT)
-               .set(WALLET_TRACK_SETTLEMENT.LAST_ENERGY, lastEnergy)
-               .set(WALLET_TRACK_SETTLEMENT.CONSUMED_ENERGY, consumedEnergy)
-               .set(WALLET_TRACK_SETTLEMENT.CONSUMED_AMOUNT, updateConsumedAmount)
-               .set(WALLET_TRACK_SETTLEMENT.TOTAL_CONSUMED_AMOUNT, totalConsumedAmount)
-               .set(WALLET_TRACK_SETTLEMENT.STOP_TIMESTAMP, lastTimeStamp)
-               .where(WALLET_TRACK_SETTLEMENT.TRANSACTION_ID.eq(transactionId))
-               .orderBy(WALLET_TRACK_SETTLEMENT.START_TIMESTAMP.desc())
-               .limit(1)
-               .execute();
-
-   }
-
-    private double getStartEnergy(final Integer transactionId) {
-        Double startEnergy = secondary
-                .select(WALLET_TRACK_SETTLEMENT.START_ENERGY)
-                .from(WALLET_TRACK_SETTLEMENT)
-                .where(WALLET_TRACK_SETTLEMENT.TRANSACTION_ID.eq(transactionId))
+    public void updateSettlementService(final WalletTrackSegment segment) {
+        secondary.update(WALLET_TRACK_SETTLEMENT)
+                .set(WALLET_TRACK_SETTLEMENT.LAST_ENERGY, segment.getLastEnergy())
+                .set(WALLET_TRACK_SETTLEMENT.CONSUMED_ENERGY, segment.getConsumedEnergy())
+                .set(WALLET_TRACK_SETTLEMENT.CONSUMED_AMOUNT, segment.getConsumedAmount())
+                .set(WALLET_TRACK_SETTLEMENT.TOTAL_CONSUMED_AMOUNT, segment.getTotalConsumedAmount())
+                .set(WALLET_TRACK_SETTLEMENT.STOP_TIMESTAMP, segment.getStopTimestamp())
+                .where(WALLET_TRACK_SETTLEMENT.TRANSACTION_ID.eq(segment.getTransactionId()))
                 .orderBy(WALLET_TRACK_SETTLEMENT.START_TIMESTAMP.desc())
                 .limit(1)
-                .fetchOneInto(Double.class);
-
-        return startEnergy != null ? startEnergy : 0.0;
+                .execute();
     }
 
     public void insertChargerTariffAmountSettlementService(final Integer transactionId,
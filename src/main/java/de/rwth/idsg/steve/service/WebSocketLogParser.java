@@ -25,7 +25,6 @@ import com.github.benmanes.caffeine.cache.Caffeine;
 import de.rwth.idsg.steve.service.dto.WebSocketLog;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
-import org.jooq.DSLContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -40,32 +39,40 @@ import org.springframework.web.socket.WebSocketSession;
 import java.time.format.DateTimeFormatter;
 import java.util.concurrent.TimeUnit;
 
-import static jooq.steve.db.Tables.WEBSOCKET_LOG;
-
 @Slf4j
 @Service
 public class WebSocketLogParser {
 
-    private static DSLContext dslContext;
     private static ExtractMac extractMac;
+    private static WebSocketLogSink webSocketLogSink;
     private static final ObjectMapper mapper = new ObjectMapper();
 
 
     @Autowired
-    public void setDslContext(DSLContext dslContext) {
-        WebSocketLogParser.dslContext = dslContext;
+    public void setExtractMac(ExtractMac extractMac) {
+        WebSocketLogParser.extractMac = extractMac;
     }
 
     @Autowired
-    public void setExtractMac(ExtractMac extractMac) {
-        WebSocketLogParser.extractMac = extractMac;
+    public void setWebSocketLogSink(WebSocketLogSink webSocketLogSink) {
+        WebSocketLogParser.webSocketLogSink = webSocketLogSink;
     }
 
 
     public static WebSocketLog parse(String directionType, String chargeBoxId, WebSocketSession session, String msg) {
         try {
-            JsonNode root = mapper.readTree(msg);
+            return parse(directionType, chargeBoxId, session, mapper.readTree(msg));
+        } catch (Exception e) {
+            log.error(e.getMessage());
+            return null;
+        }
+    }
 
+    /**
+     * Same as above, for frames that were already parsed by the caller.
+     */
+    public static WebSocketLog parse(String directionType, String chargeBoxId, WebSocketSession session, JsonNode root) {
+        try {
             int messageType = root.get(0).asInt();
             if (messageType != 2) {
                 return null;
@@ -115,7 +122,7 @@ public class WebSocketLogParser {
             view.setDirection(direction + " " + chargeBoxId);
             view.setEvent(event);
             view.setTransactionId(transactionId);
-            view.setPayload(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(payloadNode));
+            view.setPayload(mapper.writeValueAsString(payloadNode));
 
             addLogData(view);
             return view;
@@ -127,15 +134,7 @@ public class WebSocketLogParser {
     }
 
     public static void addLogData(WebSocketLog view) {
-        dslContext.insertInto(WEBSOCKET_LOG)
-                .set(WEBSOCKET_LOG.TIME, view.getTime())
-                .set(WEBSOCKET_LOG.CHARGE_BOX_ID, view.getChargeBoxId())
-                .set(WEBSOCKET_LOG.SESSION_ID, view.getSessionId())
-                .set(WEBSOCKET_LOG.TRANSACTION_ID, view.getTransactionId())
-                .set(WEBSOCKET_LOG.EVENT, view.getEvent())
-                .set(WEBSOCKET_LOG.PAYLOAD, view.getPayload())
-                .set(WEBSOCKET_LOG.DIRECTION, view.getDirection())
-                .execute();
+        webSocketLogSink.enqueue(view);
     }
 
 
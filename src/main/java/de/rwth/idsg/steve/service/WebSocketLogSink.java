@@ -0,0 +1,191 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.repository.WebSocketLogRepository;
+import de.rwth.idsg.steve.service.dto.WebSocketLog;
+import de.rwth.idsg.steve.service.dto.WebSocketLogSinkStats;
+import lombok.extern.slf4j.Slf4j;
+import org.joda.time.LocalDate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind sink of the websocket log. The WebSocket threads only publish into a ring buffer, a single background
+ * thread writes the entries in multi-row batches. Under overload we rather lose log entries than slow down the
+ * stations: when the buffer is filling up, only every {@link #SAMPLE_RATE}th MeterValues entry is kept, and when it
+ * is full, entries are dropped.
+ */
+@Slf4j
+@Service
+public class WebSocketLogSink {
+
+    private static final int SAMPLE_RATE = 10;
+    private static final int PURGE_CHUNK_SIZE = 10_000;
+    private static final int PARTITIONS_AHEAD_DAYS = 7;
+
+    @Autowired
+    private WebSocketLogRepository webSocketLogRepository;
+
+    private final SteveConfiguration.Ingestion config = SteveConfiguration.CONFIG.getIngestion();
+
+    private final AtomicLong enqueued = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+    private final AtomicLong meterValuesSeen = new AtomicLong();
+
+    private Disruptor<Slot> disruptor;
+    private RingBuffer<Slot> ringBuffer;
+
+    private static final class Slot {
+        private WebSocketLog entry;
+    }
+
+    @PostConstruct
+    public void init() {
+        disruptor = new Disruptor<>(Slot::new, config.getWsLogBufferSize(),
+                new ThreadFactoryBuilder().setNameFormat("SteVe-WebSocketLog-%d").build(),
+                ProducerType.MULTI, new BlockingWaitStrategy());
+        disruptor.handleEventsWith(new BatchWriter(config.getWsLogBatchSize()));
+        ringBuffer = disruptor.start();
+
+        try {
+            webSocketLogRepository.createPartitionsUntil(LocalDate.now().plusDays(PARTITIONS_AHEAD_DAYS));
+        } catch (Exception e) {
+            log.error("Creating websocket_log partitions failed", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        try {
+            disruptor.shutdown(10, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            log.warn("WebSocket log was not flushed completely before shutdown");
+            disruptor.halt();
+        }
+    }
+
+    public void enqueue(WebSocketLog entry) {
+        if (isSampledOut(entry)) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        boolean published = ringBuffer.tryPublishEvent((slot, sequence, e) -> slot.entry = e, entry);
+        if (published) {
+            enqueued.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * MeterValues are by far the most frequent entries and the least interesting ones, they are thinned out first.
+     */
+    private boolean isSampledOut(WebSocketLog entry) {
+        if (!"MeterValues".equals(entry.getEvent())) {
+            return false;
+        }
+        boolean underPressure = ringBuffer.remainingCapacity() < ringBuffer.getBufferSize() / 4;
+        return underPressure && meterValuesSeen.incrementAndGet() % SAMPLE_RATE != 0;
+    }
+
+    /**
+     * Creates the partitions of the coming days and drops the ones that fell out of the retention window. Falls back
+     * to chunked deletes, if the table is not partitioned.
+     */
+    @Scheduled(cron = "0 30 3 * * *")
+    public void purge() {
+        LocalDate today = LocalDate.now();
+        LocalDate threshold = today.minusDays(config.getWsLogRetentionDays());
+        try {
+            webSocketLogRepository.createPartitionsUntil(today.plusDays(PARTITIONS_AHEAD_DAYS));
+            if (!webSocketLogRepository.dropPartitionsBefore(threshold)) {
+                int count = webSocketLogRepository.deleteOlderThan(threshold.toDateTimeAtStartOfDay(), PURGE_CHUNK_SIZE);
+                purged.addAndGet(count);
+                log.info("Purged {} websocket log entries older than {}", count, threshold);
+            }
+        } catch (Exception e) {
+            log.error("Purging the websocket log failed", e);
+        }
+    }
+
+    public WebSocketLogSinkStats getStats() {
+        return WebSocketLogSinkStats.builder()
+                .bufferSize(ringBuffer.getBufferSize())
+                .bufferRemaining(ringBuffer.remainingCapacity())
+                .enqueued(enqueued.get())
+                .flushed(flushed.get())
+                .dropped(dropped.get())
+                .failed(failed.get())
+                .purged(purged.get())
+                .build();
+    }
+
+    private final class BatchWriter implements EventHandler<Slot> {
+        private final int batchSize;
+        private final List<WebSocketLog> batch;
+
+        private BatchWriter(int batchSize) {
+            this.batchSize = batchSize;
+            this.batch = new ArrayList<>(batchSize);
+        }
+
+        @Override
+        public void onEvent(Slot slot, long sequence, boolean endOfBatch) {
+            batch.add(slot.entry);
+            slot.entry = null;
+
+            if (endOfBatch || batch.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            try {
+                webSocketLogRepository.insert(batch);
+                flushed.addAndGet(batch.size());
+            } catch (Exception e) {
+                failed.addAndGet(batch.size());
+                log.error("Writing {} websocket log entries failed", batch.size(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import lombok.Getter;
+import org.jetbrains.annotations.Nullable;
+import org.joda.time.DateTime;
+
+/**
+ * The outcome of the connection events of one station: whether it is online after the last of them, and the time of
+ * the last connect and disconnect among them (null, if there was none).
+ */
+@Getter
+public class ChargeBoxConnectionState {
+    private final String chargeBoxId;
+    private boolean online;
+    @Nullable
+    private OcppProtocol protocol;
+    @Nullable
+    private DateTime connectedAt;
+    @Nullable
+    private DateTime disconnectedAt;
+
+    public ChargeBoxConnectionState(String chargeBoxId) {
+        this.chargeBoxId = chargeBoxId;
+    }
+
+    /**
+     * The events have to be applied in the order they happened.
+     */
+    public void apply(ChargeBoxConnectionEvent event) {
+        online = event.isOnline();
+        if (online) {
+            connectedAt = event.getTimestamp();
+            protocol = event.getProtocol();
+        } else {
+            disconnectedAt = event.getTimestamp();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import org.joda.time.DateTime;
+
+/**
+ * The newest status that was reported for a connector.
+ */
+@Getter
+@Builder
+public class LatestConnectorStatus {
+    private final int connectorPk;
+    private final DateTime statusTimestamp;
+    private final String status;
+    private final String errorCode;
+    private final String errorInfo;
+    private final String vendorId;
+    private final String vendorErrorCode;
+
+    /**
+     * Of two statuses with the same timestamp, the one that arrived later wins.
+     */
+    public boolean supersedes(LatestConnectorStatus other) {
+        if (statusTimestamp == null || other.statusTimestamp == null) {
+            return other.statusTimestamp == null;
+        }
+        return !statusTimestamp.isBefore(other.statusTimestamp);
+    }
+}
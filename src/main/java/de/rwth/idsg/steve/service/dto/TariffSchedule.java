@@ -0,0 +1,124 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * Time-of-day tariff of one charger, compiled into non-overlapping second-of-day intervals that are sorted by their
+ * start. Intervals crossing midnight are split, and where tariffs overlap, the first one in the upstream list wins
+ * (as with the former linear scan).
+ *
+ * {@link #getUnitFare(int)} is a binary search over primitive arrays, and therefore does not allocate.
+ */
+public final class TariffSchedule {
+
+    public static final int SECONDS_PER_DAY = 24 * 60 * 60;
+
+    private static final DateTimeFormatter TIME_ONLY_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");
+
+    // starts[i] (inclusive) until starts[i + 1] (exclusive) is charged with unitFares[i]. NaN means no tariff.
+    private final int[] starts;
+    private final double[] unitFares;
+
+    private TariffSchedule(int[] starts, double[] unitFares) {
+        this.starts = starts;
+        this.unitFares = unitFares;
+    }
+
+    public static TariffSchedule compile(List<Tariff> tariffs) {
+        List<int[]> pieces = new ArrayList<>();
+        List<Double> pieceFares = new ArrayList<>();
+
+        for (Tariff tariff : tariffs) {
+            int start = toSecondOfDay(tariff.getStart_time());
+            int end = toSecondOfDay(tariff.getEnd_time());
+
+            if (end < start) {
+                pieces.add(new int[]{start, SECONDS_PER_DAY});
+                pieceFares.add(tariff.getUnit_fare());
+                pieces.add(new int[]{0, end});
+                pieceFares.add(tariff.getUnit_fare());
+            } else if (end > start) {
+                pieces.add(new int[]{start, end});
+                pieceFares.add(tariff.getUnit_fare());
+            }
+        }
+
+        TreeSet<Integer> boundaries = new TreeSet<>();
+        boundaries.add(0);
+        for (int[] piece : pieces) {
+            boundaries.add(piece[0]);
+            boundaries.add(piece[1]);
+        }
+        boundaries.remove(SECONDS_PER_DAY);
+
+        List<Integer> starts = new ArrayList<>();
+        List<Double> fares = new ArrayList<>();
+
+        for (int boundary : boundaries) {
+            double fare = Double.NaN;
+            for (int i = 0; i < pieces.size(); i++) {
+                int[] piece = pieces.get(i);
+                if (piece[0] <= boundary && boundary < piece[1]) {
+                    fare = pieceFares.get(i);
+                    break;
+                }
+            }
+
+            // merge with the previous interval, if it has the same fare
+            int last = fares.size() - 1;
+            if (last >= 0 && Double.compare(fares.get(last), fare) == 0) {
+                continue;
+            }
+            starts.add(boundary);
+            fares.add(fare);
+        }
+
+        return new TariffSchedule(
+                starts.stream().mapToInt(Integer::intValue).toArray(),
+                fares.stream().mapToDouble(Double::doubleValue).toArray()
+        );
+    }
+
+    /**
+     * @return the unit fare at the given second of the day, or NaN if no tariff covers it
+     */
+    public double getUnitFare(int secondOfDay) {
+        int index = Arrays.binarySearch(starts, secondOfDay);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? Double.NaN : unitFares[index];
+    }
+
+    public int size() {
+        return starts.length;
+    }
+
+    private static int toSecondOfDay(String time) {
+        return TIME_ONLY_FORMATTER.parseLocalTime(time).getMillisOfDay() / 1000;
+    }
+}
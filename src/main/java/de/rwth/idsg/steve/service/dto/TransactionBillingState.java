@@ -0,0 +1,97 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory billing state of one ongoing transaction. It is the source of truth while the transaction is running,
+ * whereas wallet_track and wallet_track_settlement rows are only a projection of it, written behind.
+ *
+ * All mutations must happen while holding the monitor of this object. The write-behind job serializes its
+ * flushes of this transaction with {@link #getFlushLock()}.
+ */
+@Getter
+@Setter
+@RequiredArgsConstructor
+public class TransactionBillingState {
+
+    private final int transactionId;
+    private final Object flushLock = new Object();
+
+    private boolean loaded;
+    // Set when the transaction stops. Samples that arrive afterwards are not billed anymore.
+    private boolean closed;
+    private String idTag;
+    private String chargeBoxId;
+    private Integer connectorPk;
+    private boolean qrPayment;
+    private Boolean dcCharger;
+
+    // Energy readings in Wh
+    private double startEnergy;
+    private double previousStopEnergy;
+    private double lastEnergy;
+
+    private volatile double walletBalance;
+
+    // Current tariff segment. unitFare is null, as long as no segment was started.
+    private Double unitFare;
+    private int segmentNo;
+    private double segmentStartEnergy;
+    private double segmentConsumedAmount;
+    private DateTime segmentStartTimestamp;
+    private DateTime lastTimestamp;
+
+    // Read without locking when summing up the consumption of all transactions of an idTag
+    private volatile double totalConsumedAmount;
+
+    private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    // Segment snapshots that are not written to DB yet, in order
+    private final List<WalletTrackSegment> pendingSegments = new ArrayList<>();
+
+    /**
+     * Adds the snapshot to the pending writes. Consecutive snapshots of the same segment are coalesced, so that
+     * only the latest one is written, but the pending INSERT of a new segment is not lost.
+     */
+    public void enqueue(WalletTrackSegment segment) {
+        int lastIndex = pendingSegments.size() - 1;
+        if (!segment.isNewSegment() && lastIndex >= 0) {
+            WalletTrackSegment last = pendingSegments.get(lastIndex);
+            if (last.getSegmentNo() == segment.getSegmentNo()) {
+                pendingSegments.set(lastIndex, segment.toBuilder().newSegment(last.isNewSegment()).build());
+                return;
+            }
+        }
+        pendingSegments.add(segment);
+    }
+
+    public List<WalletTrackSegment> drainPendingSegments() {
+        List<WalletTrackSegment> drained = new ArrayList<>(pendingSegments);
+        pendingSegments.clear();
+        return drained;
+    }
+}
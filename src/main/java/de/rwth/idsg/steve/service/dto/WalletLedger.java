@@ -0,0 +1,58 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wallet of one idTag as seen by the billing: the balance last synced from the upstream wallet, and the amounts
+ * consumed so far by each of the active transactions of this idTag. The upstream wallet is only debited after a
+ * transaction is settled, so the in-flight amounts are reserved against the synced balance.
+ */
+@Getter
+@RequiredArgsConstructor
+public class WalletLedger {
+
+    private final String idTag;
+
+    @Setter private volatile boolean loaded;
+    @Setter private volatile double balance;
+    @Setter private volatile long syncedAtMillis;
+    @Setter private volatile long lastAccessMillis = System.currentTimeMillis();
+
+    // transactionId -> consumed amount of the transaction
+    private final Map<Integer, Double> reservations = new ConcurrentHashMap<>();
+
+    public double getInFlightAmount() {
+        double sum = 0;
+        for (double amount : reservations.values()) {
+            sum += amount;
+        }
+        return sum;
+    }
+
+    public double getAvailableAmount() {
+        return balance - getInFlightAmount();
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import org.joda.time.DateTime;
+
+/**
+ * Immutable snapshot of one tariff segment of a transaction, as it should be projected into the
+ * wallet_track and wallet_track_settlement tables.
+ */
+@Getter
+@Builder(toBuilder = true)
+@ToString
+public class WalletTrackSegment {
+
+    // true, if the segment row does not exist in DB yet and must be inserted
+    private final boolean newSegment;
+
+    private final int transactionId;
+    private final int segmentNo;
+    private final String idTag;
+    private final String chargeBoxId;
+    private final Integer connectorPk;
+
+    private final double unitFare;
+    private final double gstWithUnitFare;
+    private final double walletAmount;
+
+    private final double startEnergy;
+    private final double lastEnergy;
+    private final double consumedAmount;
+    private final double totalConsumedAmount;
+
+    private final DateTime startTimestamp;
+    private final DateTime stopTimestamp;
+
+    public double getConsumedEnergy() {
+        return (lastEnergy - startEnergy) / 1000.0;
+    }
+}
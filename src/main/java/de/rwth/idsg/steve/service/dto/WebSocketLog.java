@@ -24,6 +24,7 @@ import org.joda.time.DateTime;
 @Data
 public class WebSocketLog {
 
+    private Long id;
     private DateTime time;
     private String chargeBoxId;
     private String sessionId;
@@ -35,7 +36,8 @@ public class WebSocketLog {
     @Override
     public String toString() {
         return "WebSocketLogView{" +
-                "time='" + time + '\'' +
+                "id=" + id +
+                ", time='" + time + '\'' +
                 ", chargeBoxId='" + chargeBoxId + '\'' +
                 ", sessionId='" + sessionId + '\'' +
                 ", transactionId='" + transactionId + '\'' +
@@ -18,6 +18,7 @@
  */
 package de.rwth.idsg.steve.service.remote;
 
+import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
 import de.rwth.idsg.steve.ocpp.OcppCallback;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
@@ -35,9 +36,6 @@ import org.springframework.stereotype.Component;
 
 import java.util.Collections;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 @Slf4j
@@ -47,9 +45,6 @@ public class OcppRemoteCommandExecutor {
     @Autowired
     private ChargePointService16_InvokerImpl invoker;
 
-    @Autowired
-    private ScheduledExecutorService scheduler;
-
     @Autowired
     private ManuallyStopTransaction manuallyStopTransaction;
 
@@ -68,28 +63,20 @@ public class OcppRemoteCommandExecutor {
         RemoteStartTransactionTask task =
                 new RemoteStartTransactionTask(OcppVersion.V_16, params);
 
-        ScheduledFuture<?> timeout = scheduler.schedule(
-                () -> future.complete(false),
-                10, TimeUnit.SECONDS
-        );
-
         task.addCallback(new OcppCallback<String>() {
 
             @Override
             public void success(String cbId, String response) {
-                timeout.cancel(false);
                 future.complete("Accepted".equalsIgnoreCase(response));
             }
 
             @Override
             public void success(String cbId, OcppJsonError error) {
-                timeout.cancel(false);
                 future.complete(false);
             }
 
             @Override
             public void failed(String cbId, Exception e) {
-                timeout.cancel(false);
                 future.complete(false);
             }
         });
@@ -119,27 +106,11 @@ public class OcppRemoteCommandExecutor {
         RemoteStopTransactionTask task =
                 new RemoteStopTransactionTask(OcppVersion.V_16, params);
 
-        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
-            if (completed.compareAndSet(false, true)) {
-                log.warn("RemoteStop timeout for {}", chargeBoxId);
-
-                manuallyStopTransaction.manuallyStopTransaction(
-                        chargeBoxId,
-                        transactionId,
-                        reason + " - Timeout"
-                );
-
-                future.complete(false);
-            }
-        }, 10, TimeUnit.SECONDS);
-
         task.addCallback(new OcppCallback<String>() {
 
             @Override
             public void success(String cbId, String response) {
                 if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-
                     boolean accepted = "Accepted".equalsIgnoreCase(response);
                     log.info("RemoteStop response from {} : {}", chargeBoxId, response);
 
@@ -150,8 +121,6 @@ public class OcppRemoteCommandExecutor {
             @Override
             public void success(String cbId, OcppJsonError error) {
                 if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-
                     log.error("RemoteStop OCPP error from {} : {}", chargeBoxId, error);
 
                     manuallyStopTransaction.manuallyStopTransaction(
@@ -167,14 +136,17 @@ public class OcppRemoteCommandExecutor {
             @Override
             public void failed(String cbId, Exception e) {
                 if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-
-                    log.error("RemoteStop failed for {}", chargeBoxId, e);
+                    boolean timeout = e instanceof SteveException.Timeout;
+                    if (timeout) {
+                        log.warn("RemoteStop timeout for {}", chargeBoxId);
+                    } else {
+                        log.error("RemoteStop failed for {}", chargeBoxId, e);
+                    }
 
                     manuallyStopTransaction.manuallyStopTransaction(
                             chargeBoxId,
                             transactionId,
-                            reason + " - Failed"
+                            reason + (timeout ? " - Timeout" : " - Failed")
                     );
 
                     future.complete(false);
@@ -0,0 +1,96 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+/**
+ * Largest-Triangle-Three-Buckets downsampling (Steinarsson, 2013). Keeps the first and the last point, and from each
+ * bucket in between the point that spans the largest triangle with the point kept before and the average of the next
+ * bucket. Unlike averaging or taking every n-th point, this keeps the peaks and dips that give a series its shape.
+ */
+public final class Lttb {
+
+    private Lttb() { }
+
+    /**
+     * @param x         ascending
+     * @param y         of the same length as x
+     * @param threshold max number of points to keep
+     * @return the ascending indices of the points to keep
+     */
+    public static int[] select(long[] x, double[] y, int threshold) {
+        int n = x.length;
+        if (y.length != n) {
+            throw new IllegalArgumentException("x and y must have the same length");
+        }
+
+        if (threshold >= n || threshold < 3) {
+            int[] all = new int[n];
+            for (int i = 0; i < n; i++) {
+                all[i] = i;
+            }
+            return all;
+        }
+
+        int[] selected = new int[threshold];
+        int count = 0;
+
+        // relative to the first point, so that epoch millis do not lose precision in the products
+        long x0 = x[0];
+        double every = (double) (n - 2) / (threshold - 2);
+
+        int a = 0;
+        selected[count++] = a;
+
+        for (int i = 0; i < threshold - 2; i++) {
+            // average of the next bucket, the last point for the last bucket
+            int avgStart = (int) Math.floor((i + 1) * every) + 1;
+            int avgEnd = Math.min((int) Math.floor((i + 2) * every) + 1, n);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = avgStart; j < avgEnd; j++) {
+                avgX += x[j] - x0;
+                avgY += y[j];
+            }
+            int avgCount = avgEnd - avgStart;
+            avgX /= avgCount;
+            avgY /= avgCount;
+
+            int rangeStart = (int) Math.floor(i * every) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * every) + 1;
+
+            double ax = x[a] - x0;
+            double ay = y[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((ax - avgX) * (y[j] - ay) - (ax - (x[j] - x0)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+
+            selected[count++] = next;
+            a = next;
+        }
+
+        selected[count] = n - 1;
+        return selected;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+/**
+ * Counts events per second over a sliding window of the last seconds, for monitoring. Each slot of the ring remembers
+ * the second it counts, so that a slot that was not touched for a full turn is not mistaken for a recent one.
+ *
+ * The caller passes the time (epoch seconds), so that the counter can be tested without waiting.
+ */
+public class PerSecondCounter {
+
+    private final long[] seconds;
+    private final long[] counts;
+
+    public PerSecondCounter(int windowSeconds) {
+        if (windowSeconds < 1) {
+            throw new IllegalArgumentException("windowSeconds must be positive");
+        }
+        seconds = new long[windowSeconds];
+        counts = new long[windowSeconds];
+    }
+
+    public synchronized void increment(long nowSecond) {
+        int slot = (int) Math.floorMod(nowSecond, (long) seconds.length);
+        if (seconds[slot] != nowSecond) {
+            seconds[slot] = nowSecond;
+            counts[slot] = 0;
+        }
+        counts[slot]++;
+    }
+
+    /**
+     * @return the counts of the completed seconds of the window, oldest first. The current second is left out,
+     * because it is not over yet.
+     */
+    public synchronized long[] getHistory(long nowSecond) {
+        long[] history = new long[seconds.length - 1];
+        for (int i = 0; i < history.length; i++) {
+            long second = nowSecond - history.length + i;
+            int slot = (int) Math.floorMod(second, (long) seconds.length);
+            history[i] = seconds[slot] == second ? counts[slot] : 0;
+        }
+        return history;
+    }
+}
@@ -0,0 +1,290 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Arrays;
+
+/**
+ * Compact encoding of a block of samples, each a timestamp in millis and a fixed number of double columns, after
+ * Facebook's Gorilla (Pelkonen et al., 2015): the timestamps are stored as delta-of-deltas and the values as the XOR
+ * with the previous value of their column. Samples taken at a regular interval whose values change slowly take a few
+ * bits each, instead of the 8 bytes per column of a row.
+ * <p>
+ * The encoder only appends. A block can be serialized at any time and appended to afterwards.
+ */
+public final class TimeSeriesBlock {
+
+    private static final int VERSION = 1;
+
+    // version, column count, sample count
+    private static final int HEADER_BYTES = 6;
+
+    private TimeSeriesBlock() { }
+
+    /**
+     * Not thread-safe.
+     */
+    public static final class Encoder {
+        private final int columns;
+        private final BitWriter out = new BitWriter();
+
+        @Getter private int count;
+        @Getter private long firstTimestamp;
+        @Getter private long lastTimestamp;
+        private long lastDelta;
+
+        private final long[] lastBits;
+        private final int[] lastLeading;
+        private final int[] lastTrailing;
+
+        public Encoder(int columns) {
+            if (columns < 1 || columns > 255) {
+                throw new IllegalArgumentException("The number of columns must be between 1 and 255");
+            }
+            this.columns = columns;
+            this.lastBits = new long[columns];
+            this.lastLeading = new int[columns];
+            this.lastTrailing = new int[columns];
+        }
+
+        public void append(long timestamp, double... values) {
+            if (values.length != columns) {
+                throw new IllegalArgumentException("Expected " + columns + " values, got " + values.length);
+            }
+
+            if (count == 0) {
+                out.write(timestamp, 64);
+                firstTimestamp = timestamp;
+            } else {
+                long delta = timestamp - lastTimestamp;
+                writeDeltaOfDelta(delta - lastDelta);
+                lastDelta = delta;
+            }
+            lastTimestamp = timestamp;
+
+            for (int c = 0; c < columns; c++) {
+                writeValue(c, Double.doubleToRawLongBits(values[c]));
+            }
+            count++;
+        }
+
+        public byte[] toByteArray() {
+            int length = (out.bitPos + 7) >>> 3;
+            byte[] data = new byte[HEADER_BYTES + length];
+            data[0] = (byte) VERSION;
+            data[1] = (byte) columns;
+            data[2] = (byte) (count >>> 24);
+            data[3] = (byte) (count >>> 16);
+            data[4] = (byte) (count >>> 8);
+            data[5] = (byte) count;
+            System.arraycopy(out.buf, 0, data, HEADER_BYTES, length);
+            return data;
+        }
+
+        private void writeDeltaOfDelta(long dod) {
+            if (dod == 0) {
+                out.write(0b0, 1);
+            } else if (fits(dod, 7)) {
+                out.write(0b10, 2);
+                out.write(dod, 7);
+            } else if (fits(dod, 9)) {
+                out.write(0b110, 3);
+                out.write(dod, 9);
+            } else if (fits(dod, 12)) {
+                out.write(0b1110, 4);
+                out.write(dod, 12);
+            } else if (fits(dod, 32)) {
+                out.write(0b11110, 5);
+                out.write(dod, 32);
+            } else {
+                out.write(0b11111, 5);
+                out.write(dod, 64);
+            }
+        }
+
+        private void writeValue(int c, long bits) {
+            if (count == 0) {
+                out.write(bits, 64);
+                lastBits[c] = bits;
+                lastLeading[c] = -1;
+                return;
+            }
+
+            long xor = bits ^ lastBits[c];
+            lastBits[c] = bits;
+
+            if (xor == 0) {
+                out.write(0b0, 1);
+                return;
+            }
+
+            int leading = Math.min(Long.numberOfLeadingZeros(xor), 31);
+            int trailing = Long.numberOfTrailingZeros(xor);
+
+            if (lastLeading[c] >= 0 && leading >= lastLeading[c] && trailing >= lastTrailing[c]) {
+                // the meaningful bits fit into the window of the previous value
+                out.write(0b10, 2);
+                out.write(xor >>> lastTrailing[c], 64 - lastLeading[c] - lastTrailing[c]);
+            } else {
+                int meaningful = 64 - leading - trailing;
+                out.write(0b11, 2);
+                out.write(leading, 5);
+                out.write(meaningful - 1, 6);
+                out.write(xor >>> trailing, meaningful);
+                lastLeading[c] = leading;
+                lastTrailing[c] = trailing;
+            }
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Decoded {
+        private final long[] timestamps;
+        // [sample][column]
+        private final double[][] values;
+
+        public int size() {
+            return timestamps.length;
+        }
+    }
+
+    public static Decoded decode(byte[] data) {
+        if (data.length < HEADER_BYTES || data[0] != VERSION) {
+            throw new IllegalArgumentException("Not a time series block of version " + VERSION);
+        }
+        int columns = data[1] & 0xFF;
+        int count = ((data[2] & 0xFF) << 24) | ((data[3] & 0xFF) << 16) | ((data[4] & 0xFF) << 8) | (data[5] & 0xFF);
+
+        BitReader in = new BitReader(data, HEADER_BYTES);
+        long[] timestamps = new long[count];
+        double[][] values = new double[count][columns];
+
+        long[] lastBits = new long[columns];
+        int[] lastLeading = new int[columns];
+        int[] lastTrailing = new int[columns];
+        long timestamp = 0;
+        long delta = 0;
+
+        for (int i = 0; i < count; i++) {
+            if (i == 0) {
+                timestamp = in.read(64);
+            } else {
+                delta += readDeltaOfDelta(in);
+                timestamp += delta;
+            }
+            timestamps[i] = timestamp;
+
+            for (int c = 0; c < columns; c++) {
+                if (i == 0) {
+                    lastBits[c] = in.read(64);
+                } else if (in.read(1) == 1) {
+                    if (in.read(1) == 0) {
+                        lastBits[c] ^= in.read(64 - lastLeading[c] - lastTrailing[c]) << lastTrailing[c];
+                    } else {
+                        int leading = (int) in.read(5);
+                        int meaningful = (int) in.read(6) + 1;
+                        int trailing = 64 - leading - meaningful;
+                        lastBits[c] ^= in.read(meaningful) << trailing;
+                        lastLeading[c] = leading;
+                        lastTrailing[c] = trailing;
+                    }
+                }
+                values[i][c] = Double.longBitsToDouble(lastBits[c]);
+            }
+        }
+        return new Decoded(timestamps, values);
+    }
+
+    private static long readDeltaOfDelta(BitReader in) {
+        int ones = 0;
+        while (ones < 5 && in.read(1) == 1) {
+            ones++;
+        }
+        switch (ones) {
+            case 0: return 0;
+            case 1: return signExtend(in.read(7), 7);
+            case 2: return signExtend(in.read(9), 9);
+            case 3: return signExtend(in.read(12), 12);
+            case 4: return signExtend(in.read(32), 32);
+            default: return in.read(64);
+        }
+    }
+
+    private static boolean fits(long v, int bits) {
+        return v >= -(1L << (bits - 1)) && v < (1L << (bits - 1));
+    }
+
+    private static long signExtend(long v, int bits) {
+        return (v << (64 - bits)) >> (64 - bits);
+    }
+
+    private static final class BitWriter {
+        private byte[] buf = new byte[64];
+        private int bitPos;
+
+        /**
+         * Writes the lowest bits of the value, the most significant first.
+         */
+        private void write(long value, int bits) {
+            while (bits > 0) {
+                int index = bitPos >>> 3;
+                if (index == buf.length) {
+                    buf = Arrays.copyOf(buf, buf.length * 2);
+                }
+                int free = 8 - (bitPos & 7);
+                int n = Math.min(free, bits);
+                int chunk = (int) (value >>> (bits - n)) & ((1 << n) - 1);
+                buf[index] |= (byte) (chunk << (free - n));
+                bitPos += n;
+                bits -= n;
+            }
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] buf;
+        private int bitPos;
+
+        private BitReader(byte[] buf, int offset) {
+            this.buf = buf;
+            this.bitPos = offset * 8;
+        }
+
+        private long read(int bits) {
+            long value = 0;
+            while (bits > 0) {
+                int index = bitPos >>> 3;
+                if (index >= buf.length) {
+                    throw new IllegalArgumentException("Truncated time series block");
+                }
+                int available = 8 - (bitPos & 7);
+                int n = Math.min(available, bits);
+                int chunk = ((buf[index] & 0xFF) >>> (available - n)) & ((1 << n) - 1);
+                value = (value << n) | chunk;
+                bitPos += n;
+                bits -= n;
+            }
+            return value;
+        }
+    }
+}
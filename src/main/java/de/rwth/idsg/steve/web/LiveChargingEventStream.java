@@ -0,0 +1,217 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import de.rwth.idsg.steve.service.LiveChargingFeedService;
+import de.rwth.idsg.steve.service.dto.LiveChargingDelta;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Server-Sent Events of the live charging sessions. A subscriber first gets the "snapshot" event with all sessions,
+ * and then a "delta" event for every change. The event id is the version of the snapshot, and deltas with a version
+ * that is not greater than the one of the snapshot are already contained in it.
+ * <p>
+ * Every subscriber has its own bounded queue, which is drained by at most one sender thread at a time, so that its
+ * events arrive in order. A stalled subscriber only holds its own sender, and is dropped once its queue is full.
+ */
+@Slf4j
+@Component
+public class LiveChargingEventStream {
+
+    private static final long TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final int MAX_SUBSCRIBERS = 200;
+    private static final int QUEUE_CAPACITY = 500;
+
+    // Queued in place of the snapshot and heartbeat events, which are built when they are sent
+    private static final Object SNAPSHOT = new Object();
+    private static final Object HEARTBEAT = new Object();
+
+    @Autowired
+    private LiveChargingFeedService liveChargingFeedService;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    // One thread per subscriber at most, since a subscriber is drained by one task at a time
+    private final ExecutorService sender = Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder().setNameFormat("SteVe-LiveCharging-%d").build());
+
+    @PostConstruct
+    public void init() {
+        liveChargingFeedService.addListener(this::broadcast);
+    }
+
+    @PreDestroy
+    public void shutDown() {
+        sender.shutdownNow();
+        subscribers.forEach(this::drop);
+        subscribers.clear();
+    }
+
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= MAX_SUBSCRIBERS) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many live charging subscribers");
+        }
+
+        SseEmitter emitter = new SseEmitter(TIMEOUT_MILLIS);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+
+        // The snapshot is taken when it is sent, so that it contains the deltas that are queued before it
+        subscriber.offer(SNAPSHOT);
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Proxies and load balancers close idle connections, and a dead subscriber is only noticed when writing to it
+     */
+    @Scheduled(fixedDelay = 20_000)
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT);
+        }
+    }
+
+    private void broadcast(LiveChargingDelta delta) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(delta);
+        }
+    }
+
+    private void drop(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.queue.clear();
+        try {
+            subscriber.emitter.complete();
+        } catch (Exception e) {
+            // already gone
+        }
+    }
+
+    private final class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        // only accessed by the sender that drains the queue
+        private long snapshotVersion = -1;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Object event) {
+            if (!queue.offer(event)) {
+                log.debug("Dropping live charging subscriber that fell behind");
+                drop(this);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // shutting down
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object event;
+                while ((event = queue.poll()) != null) {
+                    if (!send(event)) {
+                        return;
+                    }
+                }
+            } finally {
+                scheduled.set(false);
+            }
+            // an event that was offered while the flag was still set
+            if (!queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private boolean send(Object event) {
+            try {
+                if (event == SNAPSHOT) {
+                    LiveChargingFeedService.Snapshot snapshot = liveChargingFeedService.getSnapshot();
+                    snapshotVersion = snapshot.getVersion();
+                    Map<String, Object> data = Map.of(
+                            "version", snapshot.getVersion(),
+                            "sessions", snapshot.getSessions());
+                    sendEvent("snapshot", snapshot.getVersion(), data);
+
+                } else if (event == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+
+                } else {
+                    LiveChargingDelta delta = (LiveChargingDelta) event;
+                    if (delta.getVersion() > snapshotVersion) {
+                        sendEvent("delta", delta.getVersion(), delta);
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                log.debug("Dropping live charging subscriber: {}", e.getMessage());
+                drop(this);
+                return false;
+            }
+        }
+
+        private void sendEvent(String name, long version, Object data) throws Exception {
+            emitter.send(SseEmitter.event()
+                    .name(name)
+                    .id(Long.toString(version))
+                    .data(data, MediaType.APPLICATION_JSON));
+        }
+    }
+}
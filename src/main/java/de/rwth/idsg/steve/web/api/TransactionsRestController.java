@@ -63,7 +63,7 @@ public class TransactionsRestController {
             throw new BadRequestException("returnCSV=true is not supported for API calls");
         }
 
-        var response = transactionRepository.getTransactions(params);
+        var response = transactionRepository.getTransactionsReadOnly(params);
         log.debug("Read response for query: {}", response);
         return response;
     }
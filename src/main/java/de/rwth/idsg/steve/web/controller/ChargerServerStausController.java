@@ -148,7 +148,7 @@ public class ChargerServerStausController {
     public ServerChargerCountResponse activeTransactionWss() {
 
         // Fetch all active transactions
-        List<Transaction> txList = transactionRepository.getTransactions(getActiveForm());
+        List<Transaction> txList = transactionRepository.getTransactionsReadOnly(getActiveForm());
 
         return new ServerChargerCountResponse(txList.size());
     }
@@ -165,12 +165,12 @@ public class ChargerServerStausController {
 
     @GetMapping("/get/total/trans")
     public List<Transaction> getTotalTransaction() {
-        return transactionRepository.getAllTransactions(getForm());
+        return transactionRepository.getAllTransactionsReadOnly(getForm());
     }
 
     @GetMapping("active/transaction")
     public List<Transaction> GetActiveTransaction() {
-        return transactionRepository.getTransactions(getActiveForm());
+        return transactionRepository.getTransactionsReadOnly(getActiveForm());
     }
 
     @GetMapping("/ocppJsonStatus")
@@ -18,47 +18,89 @@
  */
 package de.rwth.idsg.steve.web.controller;
 
-import de.rwth.idsg.steve.service.LiveTransactionService;
-import de.rwth.idsg.steve.service.dto.LiveTransactionDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.rwth.idsg.steve.service.LiveChargingFeedService;
+import de.rwth.idsg.steve.web.LiveChargingEventStream;
 import de.rwth.idsg.steve.web.dto.LiveChargingApiResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+/**
+ * Serves the snapshot of {@link LiveChargingFeedService}. The body of a version is serialized once, and polls with
+ * the ETag of the current version get a 304 without any body.
+ */
 @RestController
 @RequestMapping("/api")
 @Slf4j
 public class LiveChargingController {
 
     @Autowired
-    private LiveTransactionService liveTransactionService;
+    private LiveChargingFeedService liveChargingFeedService;
 
-    @GetMapping("/live-charging")
-    public ResponseEntity<LiveChargingApiResponse> getLiveCharging() {
+    @Autowired
+    private LiveChargingEventStream liveChargingEventStream;
 
-        try {
-            List<LiveTransactionDTO> responses =
-                    liveTransactionService.getLiveTransactions();
+    @Autowired
+    private ObjectMapper objectMapper;
 
-            if (responses.isEmpty()) {
-                return ResponseEntity.ok(
-                        new LiveChargingApiResponse("false", List.of())
-                );
-            }
+    private volatile SerializedSnapshot serialized;
 
-            return ResponseEntity.ok(
-                    new LiveChargingApiResponse("true", responses)
-            );
+    @GetMapping("/live-charging")
+    public ResponseEntity<byte[]> getLiveCharging(WebRequest request) {
+        LiveChargingFeedService.Snapshot snapshot = liveChargingFeedService.getSnapshot();
+        if (request.checkNotModified(snapshot.getEtag())) {
+            return null;
+        }
+
+        try {
+            return ResponseEntity.ok()
+                    .eTag(snapshot.getEtag())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(serialize(snapshot));
 
         } catch (Exception e) {
-            log.error("Error fetching live charging data", e);
+            log.error("Error serializing live charging data", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(new LiveChargingApiResponse("false", List.of()));
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body("{\"status\":\"false\",\"message\":[]}".getBytes(StandardCharsets.UTF_8));
         }
     }
+
+    @GetMapping(value = "/live-charging/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLiveCharging() {
+        return liveChargingEventStream.subscribe();
+    }
+
+    private byte[] serialize(LiveChargingFeedService.Snapshot snapshot) throws Exception {
+        SerializedSnapshot s = serialized;
+        if (s != null && s.snapshot == snapshot) {
+            return s.body;
+        }
+
+        LiveChargingApiResponse response = snapshot.getSessions().isEmpty()
+                ? new LiveChargingApiResponse("false", List.of())
+                : new LiveChargingApiResponse("true", snapshot.getSessions());
+
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        serialized = new SerializedSnapshot(snapshot, body);
+        return body;
+    }
+
+    @RequiredArgsConstructor
+    private static class SerializedSnapshot {
+        private final LiveChargingFeedService.Snapshot snapshot;
+        private final byte[] body;
+    }
 }
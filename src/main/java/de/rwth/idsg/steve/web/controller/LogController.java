@@ -21,12 +21,14 @@ package de.rwth.idsg.steve.web.controller;
 import de.rwth.idsg.steve.repository.WebSocketLogRepository;
 import de.rwth.idsg.steve.service.dto.WebSocketLog;
 import de.rwth.idsg.steve.utils.LogFileRetriever;
+import de.rwth.idsg.steve.web.dto.WebSocketLogQueryForm;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.LocalDate;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
@@ -49,6 +51,8 @@ import java.util.Optional;
 @RequestMapping(value = "/manager")
 public class LogController {
 
+    private static final int WEBSOCKET_LOG_PAGE_SIZE = 200;
+
     @Autowired
     private WebSocketLogRepository webSocketLogRepository;
 
@@ -71,8 +75,9 @@ public class LogController {
 
 
     @GetMapping("/websocket-logs")
-    public String getLogsByDate(
+    public String getLogs(
             @RequestParam(value = "date", required = false) String dateStr,
+            @ModelAttribute WebSocketLogQueryForm form,
             Model model
     ) {
         LocalDate date;
@@ -82,12 +87,23 @@ public class LogController {
                     : LocalDate.parse(dateStr);
         } catch (Exception e) {
             model.addAttribute("error", "Invalid date format");
+            model.addAttribute("form", form);
             return "websocket-logs";
         }
+        form.setDay(date);
+
+        List<WebSocketLog> logs = webSocketLogRepository.getLogs(form, WEBSOCKET_LOG_PAGE_SIZE + 1);
 
-        List<WebSocketLog> logs = webSocketLogRepository.getLogsByDate(date);
+        // One more than a page was fetched, to know whether there is a next page
+        if (logs.size() > WEBSOCKET_LOG_PAGE_SIZE) {
+            logs = logs.subList(0, WEBSOCKET_LOG_PAGE_SIZE);
+            WebSocketLog last = logs.get(logs.size() - 1);
+            model.addAttribute("nextBeforeTime", last.getTime().getMillis());
+            model.addAttribute("nextBeforeId", last.getId());
+        }
 
         model.addAttribute("logs", logs);
+        model.addAttribute("form", form);
         model.addAttribute("selectedDate", date.toString());
         model.addAttribute("today", LocalDate.now().toString());
         return "websocket-logs";
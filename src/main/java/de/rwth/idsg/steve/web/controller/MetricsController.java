@@ -0,0 +1,122 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.controller;
+
+import de.rwth.idsg.steve.config.DatabasePools;
+import de.rwth.idsg.steve.externalconfig.IntegrationClients;
+import de.rwth.idsg.steve.ocpp.ws.FutureResponseContextStore;
+import de.rwth.idsg.steve.ocpp.ws.HandshakeAdmissionControl;
+import de.rwth.idsg.steve.service.ActiveTransactionRegistry;
+import de.rwth.idsg.steve.service.ChargeBoxConnectionEventProcessor;
+import de.rwth.idsg.steve.service.ChargePointHelperService;
+import de.rwth.idsg.steve.service.LiveChargingFeedService;
+import de.rwth.idsg.steve.service.MeterValueIngestionService;
+import de.rwth.idsg.steve.service.OcppIdentityDirectory;
+import de.rwth.idsg.steve.service.OcppTagActivityCache;
+import de.rwth.idsg.steve.service.OcppTagStatsService;
+import de.rwth.idsg.steve.service.PushNotificationDispatcher;
+import de.rwth.idsg.steve.service.ScheduleChargingService;
+import de.rwth.idsg.steve.service.SessionGraphService;
+import de.rwth.idsg.steve.service.TransactionMeterValueStore;
+import de.rwth.idsg.steve.service.WebSocketLogSink;
+import de.rwth.idsg.steve.utils.TimerWheel;
+import de.rwth.idsg.steve.web.LiveChargingEventStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runtime counters of the asynchronous parts of the server, for monitoring.
+ */
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    @Autowired
+    private MeterValueIngestionService meterValueIngestionService;
+    @Autowired
+    private WebSocketLogSink webSocketLogSink;
+    @Autowired
+    private FutureResponseContextStore futureResponseContextStore;
+    @Autowired
+    private OcppIdentityDirectory identityDirectory;
+    @Autowired
+    private ScheduleChargingService scheduleChargingService;
+    @Autowired
+    private TimerWheel timerWheel;
+    @Autowired
+    private ActiveTransactionRegistry activeTransactionRegistry;
+    @Autowired
+    private OcppTagActivityCache ocppTagActivityCache;
+    @Autowired
+    private PushNotificationDispatcher pushNotificationDispatcher;
+    @Autowired
+    private ChargeBoxConnectionEventProcessor connectionEventProcessor;
+    @Autowired
+    private HandshakeAdmissionControl handshakeAdmissionControl;
+    @Autowired
+    private ChargePointHelperService chargePointHelperService;
+    @Autowired
+    private IntegrationClients integrationClients;
+    @Autowired
+    private DatabasePools databasePools;
+    @Autowired
+    private LiveChargingFeedService liveChargingFeedService;
+    @Autowired
+    private LiveChargingEventStream liveChargingEventStream;
+    @Autowired
+    private OcppTagStatsService ocppTagStatsService;
+    @Autowired
+    private SessionGraphService sessionGraphService;
+    @Autowired
+    private TransactionMeterValueStore transactionMeterValueStore;
+
+    @GetMapping
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("meterValueIngestion", meterValueIngestionService.getStats());
+        metrics.put("webSocketLog", webSocketLogSink.getStats());
+        metrics.put("pendingCalls", futureResponseContextStore.getStats());
+        metrics.put("identityDirectory", Map.of(
+                "connectors", identityDirectory.getConnectorCount(),
+                "transactions", identityDirectory.getTransactionCount()));
+        metrics.put("scheduledCharging", scheduleChargingService.getPendingScheduleCount());
+        metrics.put("timerWheelPending", timerWheel.getPending());
+        metrics.put("activeTransactions", activeTransactionRegistry.size());
+        metrics.put("authCache", ocppTagActivityCache.getStats());
+        metrics.put("pushNotifications", pushNotificationDispatcher.getStats());
+        metrics.put("connectionEvents", connectionEventProcessor.getStats());
+        metrics.put("handshakes", handshakeAdmissionControl.getStats());
+        metrics.put("registrationStatusCache", chargePointHelperService.getRegistrationStatusCacheStats());
+        metrics.put("integrations", integrationClients.getStats());
+        metrics.put("connectionPools", databasePools.getStats());
+        metrics.put("replicaRouting", databasePools.getReplicaStats());
+        metrics.put("liveCharging", Map.of(
+                "snapshot", liveChargingFeedService.getStats(),
+                "subscribers", liveChargingEventStream.getSubscriberCount()));
+        metrics.put("ocppTagStats", ocppTagStatsService.getStats());
+        metrics.put("sessionGraphCache", sessionGraphService.getCacheStats());
+        metrics.put("meterValueStorage", transactionMeterValueStore.getStats());
+        return metrics;
+    }
+}
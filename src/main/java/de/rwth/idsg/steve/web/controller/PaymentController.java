@@ -18,26 +18,25 @@
  */
 package de.rwth.idsg.steve.web.controller;
 
+import de.rwth.idsg.steve.SteveException;
 import de.rwth.idsg.steve.ocpp.ChargePointService16_InvokerImpl;
 import de.rwth.idsg.steve.ocpp.OcppCallback;
 import de.rwth.idsg.steve.ocpp.OcppTransport;
 import de.rwth.idsg.steve.ocpp.OcppVersion;
 import de.rwth.idsg.steve.ocpp.task.RemoteStartTransactionTask;
-import de.rwth.idsg.steve.ocpp.task.RemoteStopTransactionTask;
 import de.rwth.idsg.steve.ocpp.ws.data.OcppJsonError;
 import de.rwth.idsg.steve.repository.dto.ChargePointSelect;
 import de.rwth.idsg.steve.repository.dto.Transaction;
 import de.rwth.idsg.steve.repository.dto.TransactionDetails;
-import de.rwth.idsg.steve.repository.impl.OcppTagRepositoryImpl;
 import de.rwth.idsg.steve.repository.impl.TransactionRepositoryImpl;
 import de.rwth.idsg.steve.service.ManuallyStopTransaction;
+import de.rwth.idsg.steve.service.OcppTagService;
 import de.rwth.idsg.steve.service.RazorpayRefundService;
 import de.rwth.idsg.steve.service.TariffAmountCalculation;
 import de.rwth.idsg.steve.web.dto.OcppTagForm;
 import de.rwth.idsg.steve.web.dto.PaymentRequest;
 import de.rwth.idsg.steve.web.dto.PaymentStartResponse;
 import de.rwth.idsg.steve.web.dto.ocpp.RemoteStartTransactionParams;
-import de.rwth.idsg.steve.web.dto.ocpp.RemoteStopTransactionParams;
 import lombok.extern.slf4j.Slf4j;
 import org.joda.time.DateTime;
 import org.jooq.DSLContext;
@@ -48,9 +47,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Collections;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 import static jooq.steve.db.Tables.*;
 
@@ -66,7 +63,7 @@ public class PaymentController {
     private DSLContext dslContext;
 
     @Autowired
-    private OcppTagRepositoryImpl ocppTagRepositoryImpl;
+    private OcppTagService ocppTagService;
 
     @Autowired
     private RazorpayRefundService razorpayRefundService;
@@ -99,8 +96,6 @@ public class PaymentController {
     private static final Field<Integer> LCD_CONNECTOR_ID = DSL.field("connector_id", Integer.class);
     private static final Field<String> LCD_ID_TAG = DSL.field("id_tag", String.class);
 
-    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
-
     @PostMapping("/payments")
     public PaymentStartResponse createPayment(@RequestBody PaymentRequest request) {
         PaymentStartResponse response = new PaymentStartResponse();
@@ -108,7 +103,8 @@ public class PaymentController {
         if (!isAlreadyIdTag(request.getRrnId())) {
             OcppTagForm form = new OcppTagForm();
             form.setIdTag(request.getRrnId());
-            ocppTagRepositoryImpl.addOcppTag(form);
+            // through the service, so that an idTag cached as unknown is accepted right away
+            ocppTagService.addOcppTag(form);
 
             System.out.println("RRNID: " + request.getRrnId());
 
@@ -196,17 +192,10 @@ public class PaymentController {
 
         task.addCallback(new OcppCallback<String>() {
 
-            private final ScheduledFuture<?> timeout = scheduler.schedule(() -> {
-                insertPayment(request, false);
-                future.complete(false);
-            }, 10, TimeUnit.SECONDS);
-
-
             @Override
             public void success(String cbId, String response) {
 
                 System.out.println("Response : " + response);
-                timeout.cancel(false);
 
                 if ("Accepted".equalsIgnoreCase(response)) {
                     future.complete(true);
@@ -217,13 +206,14 @@ public class PaymentController {
 
             @Override
             public void success(String cbId, OcppJsonError error) {
-                timeout.cancel(false);
                 future.complete(false);
             }
 
             @Override
             public void failed(String cbId, Exception e) {
-                timeout.cancel(false);
+                if (e instanceof SteveException.Timeout) {
+                    insertPayment(request, false);
+                }
                 future.complete(false);
             }
         });
@@ -239,58 +229,39 @@ public class PaymentController {
 
         Transaction transaction = transactionDetails.getTransaction();
         CompletableFuture<PaymentStartResponse> future = new CompletableFuture<>();
-        AtomicBoolean completed = new AtomicBoolean(false);
-
-        ChargePointSelect select = new ChargePointSelect(OcppTransport.JSON, transaction.getChargeBoxId());
 
-        RemoteStopTransactionParams params = new RemoteStopTransactionParams();
-        params.setTransactionId(transactionId);
-        params.setChargePointSelectList(Collections.singletonList(select));
-
-        RemoteStopTransactionTask task = new RemoteStopTransactionTask(OcppVersion.V_16, params);
-
-        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
-            if (completed.compareAndSet(false, true)) {
-                log.warn("Timeout - Charger Offline, triggering manual stop");
-                future.complete(buildResponse(true));
-            }
-        }, 10, TimeUnit.SECONDS);
-
-        task.addCallback(new OcppCallback<String>() {
+        // The callback is attached to the RemoteStop that is actually sent, so that the response completes the future
+        OcppCallback<String> callback = new OcppCallback<String>() {
 
             @Override
             public void success(String cbId, String response) {
-                if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-                    boolean accepted = "Accepted".equalsIgnoreCase(response);
-                    log.info("RemoteStop response: {}", response);
+                boolean accepted = "Accepted".equalsIgnoreCase(response);
+                log.info("RemoteStop response: {}", response);
 
-                    future.complete(buildResponse(accepted));
-                }
+                future.complete(buildResponse(accepted));
             }
 
             @Override
             public void success(String cbId, OcppJsonError error) {
-                if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-                    log.error("OCPP Error");
+                log.error("OCPP Error");
 
-                    future.complete(buildResponse(false));
-                }
+                future.complete(buildResponse(false));
             }
 
             @Override
             public void failed(String chargeBoxId, Exception e) {
-                if (completed.compareAndSet(false, true)) {
-                    timeout.cancel(false);
-                    log.error("RemoteStop failed", e);
-
-                    future.complete(buildResponse(false));
+                if (e instanceof SteveException.Timeout) {
+                    log.warn("Timeout - Charger Offline, triggering manual stop");
+                    future.complete(buildResponse(true));
+                    return;
                 }
+                log.error("RemoteStop failed", e);
+
+                future.complete(buildResponse(false));
             }
-        });
+        };
 
-        manuallyStopTransaction.manuallyStopTransaction(transaction.getChargeBoxId(), transactionId, "UPI Stop");
+        manuallyStopTransaction.manuallyStopTransaction(transaction.getChargeBoxId(), transactionId, "UPI Stop", callback);
 
         return future;
     }
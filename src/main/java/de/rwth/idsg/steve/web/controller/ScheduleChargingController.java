@@ -0,0 +1,51 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.controller;
+
+import de.rwth.idsg.steve.service.ScheduleChargingService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Schedules are written by the app backend directly into the database. After changing one, it should notify us
+ * here, so that the timers of the schedule are updated immediately instead of with the next periodic reload.
+ */
+@RestController
+@RequestMapping("/api/schedule-charging")
+public class ScheduleChargingController {
+
+    @Autowired
+    private ScheduleChargingService scheduleChargingService;
+
+    @PostMapping("/{id}/refresh")
+    public ResponseEntity<Void> refresh(@PathVariable("id") Long id) {
+        scheduleChargingService.refresh(id);
+        return ResponseEntity.noContent().build();
+    }
+
+    @PostMapping("/refresh")
+    public ResponseEntity<Void> refreshAll() {
+        scheduleChargingService.reloadSchedules();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.controller;
+
+import de.rwth.idsg.steve.service.TariffScheduleService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Lets the CMS push tariff changes, so that the cached time-of-day tariff is not used until its next refresh.
+ */
+@RestController
+@RequestMapping("/api/tariff")
+public class TariffController {
+
+    @Autowired
+    private TariffScheduleService tariffScheduleService;
+
+    @PostMapping("/invalidate")
+    public ResponseEntity<Void> invalidate(@RequestParam(required = false) String chargerId) {
+        if (chargerId == null || chargerId.isBlank()) {
+            tariffScheduleService.invalidateAll();
+        } else {
+            tariffScheduleService.invalidate(chargerId);
+        }
+        return ResponseEntity.ok().build();
+    }
+}
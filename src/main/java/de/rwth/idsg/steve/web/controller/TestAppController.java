@@ -23,6 +23,8 @@ import de.rwth.idsg.steve.service.testmobiledto.ResponseDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+
 @RestController
 @RequestMapping("/api/test")
 public class TestAppController {
@@ -31,14 +33,14 @@ public class TestAppController {
     private TestAppService service;
 
     @PostMapping("/start")
-    public ResponseDTO startTransaction(
+    public CompletableFuture<ResponseDTO> startTransaction(
             @RequestParam final String chargerConnectorQrCode,
             @RequestParam final String idTag) {
         return service.startTransaction(chargerConnectorQrCode, idTag);
     }
 
     @PostMapping("/stop")
-    public ResponseDTO stopTransaction(
+    public CompletableFuture<ResponseDTO> stopTransaction(
             @RequestParam final Integer transactionId) {
 
         return service.stopTransaction(transactionId, "Remote");
@@ -56,6 +58,11 @@ public class TestAppController {
         return service.getAlleTransactionByIdTag(idTag);
     }
 
+    @GetMapping("/idtag/summary")
+    public ResponseDTO getIdTagSummary(
+            @RequestParam String idTag) {
+        return service.getIdTagSummary(idTag);
+    }
 
     @GetMapping("/transaction/summary")
     public ResponseDTO transactionSummary(
@@ -72,4 +79,12 @@ public class TestAppController {
 
     }
 
+    @GetMapping("/transaction/Graph/series")
+    public ResponseDTO transactionGraphSeries(
+            @RequestParam Integer transactionId,
+            @RequestParam(required = false) Long since,
+            @RequestParam(required = false) Integer maxPoints) {
+        return service.retrieveGraphSeries(transactionId, since, maxPoints);
+    }
+
 }
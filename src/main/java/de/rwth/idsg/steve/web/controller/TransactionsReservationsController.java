@@ -89,7 +89,7 @@ public class TransactionsReservationsController {
         TransactionQueryForm params = new TransactionQueryForm();
         initList(model);
 
-        model.addAttribute("transList", transactionRepository.getTransactions(params));
+        model.addAttribute("transList", transactionRepository.getTransactionsReadOnly(params));
         model.addAttribute(PARAMS, params);
         return "data-man/transactions";
     }
@@ -126,7 +126,7 @@ public class TransactionsReservationsController {
             return null;
 
         } else {
-            model.addAttribute("transList", transactionRepository.getTransactions(params));
+            model.addAttribute("transList", transactionRepository.getTransactionsReadOnly(params));
             initList(model);
             model.addAttribute(PARAMS, params);
             return "data-man/transactions";
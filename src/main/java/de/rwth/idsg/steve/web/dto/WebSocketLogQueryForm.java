@@ -0,0 +1,61 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.web.dto;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.joda.time.LocalDate;
+
+/**
+ * Filters of the websocket log page. Results are paged with a keyset cursor (time and id of the last entry of the
+ * previous page), since offsets get slower the further one pages.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@ToString
+public class WebSocketLogQueryForm {
+
+    private LocalDate day;
+    private String chargeBoxId;
+    private String event;
+    private String transactionId;
+
+    // Cursor: entries strictly older than this position
+    private Long beforeTime;
+    private Long beforeId;
+
+    public boolean isChargeBoxIdSet() {
+        return chargeBoxId != null && !chargeBoxId.isEmpty();
+    }
+
+    public boolean isEventSet() {
+        return event != null && !event.isEmpty();
+    }
+
+    public boolean isTransactionIdSet() {
+        return transactionId != null && !transactionId.isEmpty();
+    }
+
+    public boolean isCursorSet() {
+        return beforeTime != null && beforeId != null;
+    }
+}
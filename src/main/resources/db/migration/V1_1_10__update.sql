@@ -0,0 +1,2 @@
+-- The scheduler only loads schedules that are enabled and not finished yet
+CREATE INDEX idx_schedule_charging_pending ON schedule_charging (is_enable, is_stop, end_time);
@@ -0,0 +1,25 @@
+-- The newest status of each connector, kept next to the append-only connector_status history so that the current
+-- status can be read without aggregating over the history
+CREATE TABLE `connector_status_latest` (
+  `connector_pk` int(11) unsigned NOT NULL,
+  `status_timestamp` timestamp(6) NULL DEFAULT NULL,
+  `status` varchar(255) DEFAULT NULL,
+  `error_code` varchar(255) DEFAULT NULL,
+  `error_info` varchar(255) DEFAULT NULL,
+  `vendor_id` varchar(255) DEFAULT NULL,
+  `vendor_error_code` varchar(255) DEFAULT NULL,
+  PRIMARY KEY (`connector_pk`),
+  KEY `connector_status_latest_status_idx` (`status`),
+  CONSTRAINT `FK_csl_pk` FOREIGN KEY (`connector_pk`) REFERENCES `connector` (`connector_pk`) ON DELETE CASCADE ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_unicode_ci;
+
+-- Rows that share the newest timestamp of a connector are indistinguishable, keep any one of them
+INSERT IGNORE INTO `connector_status_latest`
+  (`connector_pk`, `status_timestamp`, `status`, `error_code`, `error_info`, `vendor_id`, `vendor_error_code`)
+SELECT cs.`connector_pk`, cs.`status_timestamp`, cs.`status`, cs.`error_code`, cs.`error_info`, cs.`vendor_id`,
+       cs.`vendor_error_code`
+FROM `connector_status` cs
+JOIN (SELECT `connector_pk`, MAX(`status_timestamp`) AS `max_ts`
+      FROM `connector_status`
+      GROUP BY `connector_pk`) t
+  ON t.`connector_pk` = cs.`connector_pk` AND t.`max_ts` = cs.`status_timestamp`;
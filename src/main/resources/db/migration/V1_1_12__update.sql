@@ -0,0 +1,18 @@
+-- Lifetime counters of each idTag, maintained on StopTransaction, so that ranks and summaries do not aggregate over
+-- the transaction history
+CREATE TABLE `ocpp_tag_stats` (
+  `id_tag` varchar(255) NOT NULL,
+  `session_count` int(11) NOT NULL DEFAULT 0,
+  `total_energy_kwh` double NOT NULL DEFAULT 0,
+  `total_spend` double NOT NULL DEFAULT 0,
+  `last_session_timestamp` timestamp(6) NULL DEFAULT NULL,
+  PRIMARY KEY (`id_tag`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_unicode_ci;
+
+-- The transactions that are already counted in ocpp_tag_stats. Repeated StopTransactions and the backfill of the
+-- history must count every transaction only once.
+CREATE TABLE `ocpp_tag_stats_transaction` (
+  `transaction_pk` int(10) unsigned NOT NULL,
+  PRIMARY KEY (`transaction_pk`),
+  CONSTRAINT `FK_ots_transaction_pk` FOREIGN KEY (`transaction_pk`) REFERENCES `transaction_start` (`transaction_pk`) ON DELETE CASCADE ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_unicode_ci;
@@ -0,0 +1,3 @@
+-- The graphs of a session read its rows in the order of event_timestamp
+CREATE INDEX `transaction_meter_values_transaction_pk_event_timestamp_idx`
+  ON `transaction_meter_values` (`transaction_pk`, `event_timestamp`);
@@ -0,0 +1,15 @@
+-- Samples of transaction_meter_values, packed per transaction into blocks of a few minutes. The samples are encoded
+-- by TimeSeriesBlock: timestamps as delta-of-deltas, voltage, current, power, energy and soc as XOR with the previous
+-- value.
+CREATE TABLE `transaction_meter_value_block` (
+  `transaction_pk` int(10) unsigned NOT NULL,
+  `block_start` timestamp(3) NOT NULL,
+  `block_end` timestamp(3) NOT NULL,
+  `connector_pk` int(11) unsigned DEFAULT NULL,
+  `charge_box_id` varchar(255) DEFAULT NULL,
+  `ocpp_tag_id` varchar(255) DEFAULT NULL,
+  `sample_count` int(11) NOT NULL,
+  `data` mediumblob NOT NULL,
+  PRIMARY KEY (`transaction_pk`, `block_start`),
+  CONSTRAINT `FK_tmvb_transaction_pk` FOREIGN KEY (`transaction_pk`) REFERENCES `transaction_start` (`transaction_pk`) ON DELETE CASCADE ON UPDATE NO ACTION
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb3 COLLATE=utf8mb3_unicode_ci;
@@ -0,0 +1,25 @@
+-- websocket_log is partitioned by day, so that old entries are removed by dropping partitions instead of deleting
+-- rows. MySQL requires the partitioning column to be part of every unique key, hence the new primary key.
+-- Partitions for the coming days are created by the application (see WebSocketLogRepository), everything before the
+-- migration stays in p_history until it falls out of the retention window.
+
+UPDATE websocket_log SET time = '1970-01-01 00:00:00' WHERE time IS NULL;
+
+ALTER TABLE websocket_log
+    MODIFY time DATETIME(3) NOT NULL,
+    DROP PRIMARY KEY,
+    ADD PRIMARY KEY (id, time),
+    ADD INDEX idx_websocket_log_charge_box_time (charge_box_id, time),
+    ADD INDEX idx_websocket_log_transaction (transaction_id),
+    ADD INDEX idx_websocket_log_time (time);
+
+-- The partition bounds must be constants, therefore the first one (tomorrow, from the day the migration runs on) is
+-- put into the statement
+SET @websocket_log_partitioning = CONCAT(
+    'ALTER TABLE websocket_log PARTITION BY RANGE (TO_DAYS(time)) (',
+    'PARTITION p_history VALUES LESS THAN (TO_DAYS(''', CURDATE() + INTERVAL 1 DAY, ''')), ',
+    'PARTITION p_future VALUES LESS THAN MAXVALUE)');
+
+PREPARE websocket_log_partitioning FROM @websocket_log_partitioning;
+EXECUTE websocket_log_partitioning;
+DEALLOCATE PREPARE websocket_log_partitioning;
@@ -0,0 +1,10 @@
+-- Connection changes are written with one upsert per batch, which needs (charge_point, connector_id) to be unique.
+-- Until now every update hit all duplicates alike, so keeping one of them loses nothing.
+DELETE cs FROM charger_status cs
+JOIN charger_status newer
+  ON newer.charge_point = cs.charge_point
+ AND newer.connector_id = cs.connector_id
+ AND newer.id > cs.id;
+
+ALTER TABLE charger_status
+    ADD UNIQUE KEY uk_charge_point_connector (charge_point, connector_id);
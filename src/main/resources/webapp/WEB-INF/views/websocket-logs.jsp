@@ -244,6 +244,21 @@
             <input type="date" id="logDate" name="date" value="${selectedDate}" max="${today}" required>
         </div>
 
+        <div class="control-group">
+            <label for="chargeBoxIdInput">ChargeBox ID</label>
+            <input type="text" id="chargeBoxIdInput" name="chargeBoxId" value="${form.chargeBoxId}">
+        </div>
+
+        <div class="control-group">
+            <label for="eventInput">Event</label>
+            <input type="text" id="eventInput" name="event" value="${form.event}">
+        </div>
+
+        <div class="control-group">
+            <label for="transactionIdInput">Transaction ID</label>
+            <input type="text" id="transactionIdInput" name="transactionId" value="${form.transactionId}">
+        </div>
+
         <div class="control-group">
             <label for="filterInput">Filter Logs (by any column)</label>
             <input type="text" id="filterInput" placeholder="Type to filter anything...">
@@ -283,6 +298,17 @@
             <p class="no-logs-message">No logs found for the selected date.</p>
         </c:if>
     </div>
+    <c:if test="${not empty nextBeforeId}">
+        <c:url var="olderUrl" value="/manager/websocket-logs">
+            <c:param name="date" value="${selectedDate}"/>
+            <c:param name="chargeBoxId" value="${form.chargeBoxId}"/>
+            <c:param name="event" value="${form.event}"/>
+            <c:param name="transactionId" value="${form.transactionId}"/>
+            <c:param name="beforeTime" value="${nextBeforeTime}"/>
+            <c:param name="beforeId" value="${nextBeforeId}"/>
+        </c:url>
+        <p><a href="${olderUrl}">Older entries &raquo;</a></p>
+    </c:if>
 </div>
 
 <script type="text/javascript">
@@ -316,15 +342,21 @@
 
         function fetchLogs() {
             const selectedDate = logDateInput.val();
-            // Do not refresh if a filter is active to prevent user disruption
-            if (filterInput.val() !== '') {
+            // Do not refresh if a filter is active or an older page is shown to prevent user disruption
+            if (filterInput.val() !== '' || ${form.cursorSet}) {
                 return;
             }
 
             $.ajax({
                 url: '${ctxPath}/manager/websocket-logs',
                 method: 'GET',
-                data: { date: selectedDate, ajax: true }, // Added ajax param to potentially get only data in the future
+                data: {
+                    date: selectedDate,
+                    chargeBoxId: $('#chargeBoxIdInput').val(),
+                    event: $('#eventInput').val(),
+                    transactionId: $('#transactionIdInput').val(),
+                    ajax: true
+                },
                 success: function (html) {
                     const newTableBody = $(html).find('#log-table-body');
                     const newFirstRowHtml = newTableBody.find('tr:first').html();
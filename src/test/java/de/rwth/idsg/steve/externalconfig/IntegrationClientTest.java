@@ -0,0 +1,136 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.externalconfig;
+
+import com.sun.net.httpserver.HttpServer;
+import de.rwth.idsg.steve.HttpIntegration;
+import de.rwth.idsg.steve.SteveConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Against a stub HTTP server on localhost.
+ */
+public class IntegrationClientTest {
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMillis = 0;
+
+    private HttpServer server;
+    private IntegrationClient client;
+    private String url;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "pong".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        url = "http://localhost:" + server.getAddress().getPort() + "/ping";
+
+        client = new IntegrationClient(HttpIntegration.TARIFF, SteveConfiguration.Http.builder()
+                .connectTimeoutMillis(500)
+                .readTimeoutMillis(200)
+                .maxConcurrent(2)
+                .keepAliveSeconds(5)
+                .circuitFailureThreshold(2)
+                .circuitOpenSeconds(60)
+                .build());
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testSuccess() {
+        String body = client.execute(rt -> rt.getForObject(url, String.class));
+
+        Assertions.assertEquals("pong", body);
+        Assertions.assertEquals(1, client.getStats().getCalls());
+        Assertions.assertEquals(0, client.getStats().getFailures());
+    }
+
+    @Test
+    public void testReadTimeoutFallsBack() {
+        delayMillis = 1_000;
+
+        RuntimeException failure = client.execute(rt -> {
+            rt.getForObject(url, String.class);
+            return null;
+        }, ex -> ex);
+        Assertions.assertTrue(failure instanceof ResourceAccessException, "got " + failure);
+        Assertions.assertEquals(1, client.getStats().getFailures());
+    }
+
+    @Test
+    public void testCircuitOpensAfterServerErrors() {
+        status = 500;
+
+        for (int i = 0; i < 2; i++) {
+            Assertions.assertEquals("fallback", client.execute(rt -> rt.getForObject(url, String.class), e -> "fallback"));
+        }
+        Assertions.assertEquals("OPEN", client.getStats().getCircuit());
+
+        RuntimeException e = client.execute(rt -> {
+            rt.getForObject(url, String.class);
+            return null;
+        }, ex -> ex);
+
+        Assertions.assertTrue(e instanceof IntegrationClient.Unavailable);
+        Assertions.assertEquals(2, requests.get());
+        Assertions.assertEquals(1, client.getStats().getShortCircuited());
+    }
+
+    @Test
+    public void testClientErrorDoesNotOpenCircuit() {
+        status = 404;
+
+        for (int i = 0; i < 3; i++) {
+            client.execute(rt -> rt.getForObject(url, String.class), e -> null);
+        }
+
+        Assertions.assertEquals("CLOSED", client.getStats().getCircuit());
+        Assertions.assertEquals(3, client.getStats().getFailures());
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.ActiveTransaction;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class ActiveTransactionRegistryTest {
+
+    private final ActiveTransactionRegistry registry = new ActiveTransactionRegistry();
+
+    @Test
+    public void testIndexesFollowAddAndRemove() {
+        registry.add(tx(1, "tag-a", "cb-1", 1));
+        registry.add(tx(2, "tag-a", "cb-2", 1));
+        registry.add(tx(3, "tag-b", "cb-1", 2));
+
+        Assertions.assertEquals(3, registry.size());
+        Assertions.assertEquals(2, registry.countByIdTag("tag-a"));
+        Assertions.assertEquals(2, registry.getByChargeBoxId("cb-1").size());
+        Assertions.assertEquals(3, registry.getByConnector("cb-1", 2).get(0).getTransactionPk());
+
+        registry.remove(1);
+
+        Assertions.assertNull(registry.get(1));
+        Assertions.assertEquals(1, registry.countByIdTag("tag-a"));
+        Assertions.assertEquals(2, registry.getByIdTag("tag-a").get(0).getTransactionPk());
+        Assertions.assertTrue(registry.getByConnector("cb-1", 1).isEmpty());
+    }
+
+    @Test
+    public void testRemoveIsIdempotent() {
+        registry.add(tx(1, "tag-a", "cb-1", 1));
+
+        registry.remove(1);
+        registry.remove(1);
+
+        Assertions.assertEquals(0, registry.size());
+        Assertions.assertEquals(0, registry.countByIdTag("tag-a"));
+        Assertions.assertTrue(registry.getByChargeBoxId("cb-1").isEmpty());
+    }
+
+    @Test
+    public void testReplaceAllReportsDrift() {
+        registry.add(tx(1, "tag-a", "cb-1", 1));
+        registry.add(tx(2, "tag-b", "cb-1", 2));
+
+        int drift = registry.replaceAll(List.of(tx(2, "tag-b", "cb-1", 2), tx(3, "tag-a", "cb-2", 1)));
+
+        Assertions.assertEquals(2, drift);
+        Assertions.assertNull(registry.get(1));
+        Assertions.assertNotNull(registry.get(3));
+        Assertions.assertEquals(1, registry.countByIdTag("tag-a"));
+        Assertions.assertEquals("cb-2", registry.getByIdTag("tag-a").get(0).getChargeBoxId());
+    }
+
+    @Test
+    public void testReplaceAllDoesNotReAddStoppedTransaction() {
+        registry.add(tx(1, "tag-a", "cb-1", 1));
+        registry.add(tx(2, "tag-b", "cb-1", 2));
+
+        // stopped while the reconciliation read its snapshot
+        registry.remove(1);
+        int drift = registry.replaceAll(List.of(tx(1, "tag-a", "cb-1", 1), tx(2, "tag-b", "cb-1", 2)));
+
+        Assertions.assertEquals(0, drift);
+        Assertions.assertNull(registry.get(1));
+        Assertions.assertEquals(0, registry.countByIdTag("tag-a"));
+        Assertions.assertTrue(registry.getByConnector("cb-1", 1).isEmpty());
+    }
+
+    private static ActiveTransaction tx(int transactionPk, String idTag, String chargeBoxId, int connectorId) {
+        return ActiveTransaction.builder()
+                                .transactionPk(transactionPk)
+                                .idTag(idTag)
+                                .chargeBoxId(chargeBoxId)
+                                .connectorId(connectorId)
+                                .build();
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.ocpp.OcppProtocol;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionEvent;
+import de.rwth.idsg.steve.service.dto.ChargeBoxConnectionState;
+import org.joda.time.DateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChargeBoxConnectionEventProcessorTest {
+
+    private static final DateTime T0 = new DateTime(2026, 1, 1, 12, 0);
+
+    @Test
+    public void testLastEventWinsPerStation() {
+        List<ChargeBoxConnectionState> states = new ArrayList<>(ChargeBoxConnectionEventProcessor.collapse(List.of(
+                event("cb-1", true, 0),
+                event("cb-2", true, 1),
+                event("cb-1", false, 2),
+                event("cb-1", true, 3),
+                event("cb-2", false, 4)
+        )));
+
+        Assertions.assertEquals(2, states.size());
+
+        ChargeBoxConnectionState cb1 = states.get(0);
+        Assertions.assertEquals("cb-1", cb1.getChargeBoxId());
+        Assertions.assertTrue(cb1.isOnline());
+        Assertions.assertEquals(T0.plusSeconds(3), cb1.getConnectedAt());
+        Assertions.assertEquals(T0.plusSeconds(2), cb1.getDisconnectedAt());
+        Assertions.assertEquals(OcppProtocol.V_16_JSON, cb1.getProtocol());
+
+        ChargeBoxConnectionState cb2 = states.get(1);
+        Assertions.assertFalse(cb2.isOnline());
+        Assertions.assertEquals(T0.plusSeconds(1), cb2.getConnectedAt());
+        Assertions.assertEquals(T0.plusSeconds(4), cb2.getDisconnectedAt());
+    }
+
+    @Test
+    public void testDisconnectOnlyLeavesConnectedUnset() {
+        ChargeBoxConnectionState state = ChargeBoxConnectionEventProcessor.collapse(List.of(event("cb-1", false, 0)))
+                                                                          .iterator().next();
+
+        Assertions.assertFalse(state.isOnline());
+        Assertions.assertNull(state.getConnectedAt());
+        Assertions.assertNull(state.getProtocol());
+    }
+
+    private static ChargeBoxConnectionEvent event(String chargeBoxId, boolean online, int second) {
+        return ChargeBoxConnectionEvent.builder()
+                .chargeBoxId(chargeBoxId)
+                .online(online)
+                .protocol(online ? OcppProtocol.V_16_JSON : null)
+                .timestamp(T0.plusSeconds(second))
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.service.dto.LatestConnectorStatus;
+import de.rwth.idsg.steve.service.notification.ChargePointDeleted;
+import org.joda.time.DateTime;
+import org.jooq.DSLContext;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+import static jooq.steve.db.Tables.CONNECTOR;
+
+public class LatestConnectorStatusServiceTest {
+
+    private final DateTime now = DateTime.now();
+
+    // the connectors that are in the database
+    private final Set<Integer> connectorPks = new CopyOnWriteArraySet<>();
+
+    private LatestConnectorStatusService service;
+
+    @BeforeEach
+    public void init() {
+        DSLContext dsl = DSL.using(SQLDialect.MYSQL);
+        DSLContext ctx = DSL.using(new MockConnection(context -> {
+            Result<Record1<Integer>> result = dsl.newResult(CONNECTOR.CONNECTOR_PK);
+            connectorPks.forEach(pk -> result.add(dsl.newRecord(CONNECTOR.CONNECTOR_PK).values(pk)));
+            return new MockResult[]{new MockResult(result.size(), result)};
+        }), SQLDialect.MYSQL);
+
+        service = new LatestConnectorStatusService();
+        ReflectionTestUtils.setField(service, "dslContext", ctx);
+    }
+
+    @Test
+    public void testApplyAndGet() {
+        service.apply(status(1, now, "Available"));
+
+        Assertions.assertEquals("Available", service.getStatus(1));
+        Assertions.assertEquals(1, service.get(1).getConnectorPk());
+        Assertions.assertNull(service.get(2));
+        Assertions.assertNull(service.getStatus(null));
+    }
+
+    @Test
+    public void testOlderStatusDoesNotReplaceNewer() {
+        service.apply(status(1, now, "Charging"));
+        service.apply(status(1, now.minusSeconds(10), "Preparing"));
+        Assertions.assertEquals("Charging", service.getStatus(1));
+
+        service.apply(status(1, now, "Finishing"));
+        Assertions.assertEquals("Finishing", service.getStatus(1));
+    }
+
+    @Test
+    public void testChargePointDeletedDropsItsConnectors() {
+        service.apply(status(1, now, "Available"));
+        service.apply(status(2, now, "Charging"));
+        service.apply(status(3, now, "Faulted"));
+
+        // connectors 1 and 2 belonged to the deleted charge point
+        connectorPks.add(3);
+        service.onChargePointDeleted(new ChargePointDeleted("cb-1"));
+
+        Assertions.assertEquals(1, service.size());
+        Assertions.assertNull(service.get(1));
+        Assertions.assertNull(service.get(2));
+        Assertions.assertEquals("Faulted", service.getStatus(3));
+    }
+
+    private static LatestConnectorStatus status(int connectorPk, DateTime timestamp, String status) {
+        return LatestConnectorStatus.builder()
+                                    .connectorPk(connectorPk)
+                                    .statusTimestamp(timestamp)
+                                    .status(status)
+                                    .build();
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.repository.OcppServerRepository;
+import de.rwth.idsg.steve.repository.dto.MeterValueSample;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+public class MeterValueIngestionServiceTest {
+
+    @Mock
+    private OcppServerRepository ocppServerRepository;
+    @Mock
+    private LiveChargingFeedService liveChargingFeedService;
+    @Mock
+    private RetrieveTransactionMeterValues retrieveTransactionMeterValues;
+    @Mock
+    private SessionGraphService sessionGraphService;
+
+    @InjectMocks
+    private MeterValueIngestionService service;
+
+    @Test
+    public void testFailedBatchBillsEverySampleOnce() {
+        MeterValueSample a = sample("cb-1", 1);
+        MeterValueSample b = sample("cb-2", 2);
+        MeterValueSample bad = sample("cb-3", 3);
+        MeterValueSample c = sample("cb-1", 1);
+
+        // the batch fails because of one sample, the retry stores the others one by one
+        doAnswer(invocation -> {
+            List<MeterValueSample> samples = invocation.getArgument(0);
+            if (samples.size() > 1 || samples.get(0) == bad) {
+                throw new RuntimeException("insert failed");
+            }
+            return null;
+        }).when(ocppServerRepository).insertMeterValues(anyList());
+
+        List<MeterValueSample> billed = new ArrayList<>();
+        doAnswer(invocation -> {
+            billed.addAll(invocation.getArgument(0));
+            return null;
+        }).when(retrieveTransactionMeterValues).bill(anyList());
+
+        service.store(List.of(a, b, bad, c));
+
+        verify(ocppServerRepository, times(5)).insertMeterValues(anyList());
+        verify(retrieveTransactionMeterValues, times(1)).bill(anyList());
+
+        // in order, without the failed one
+        Assertions.assertEquals(List.of(a, b, c), billed);
+        Map<MeterValueSample, Integer> counts = new IdentityHashMap<>();
+        billed.forEach(s -> counts.merge(s, 1, Integer::sum));
+        counts.values().forEach(count -> Assertions.assertEquals(1, count));
+    }
+
+    @Test
+    public void testSuccessfulBatchIsBilledAfterInsert() {
+        MeterValueSample a = sample("cb-1", 1);
+        MeterValueSample b = sample("cb-2", 2);
+
+        List<String> calls = new ArrayList<>();
+        doAnswer(invocation -> calls.add("insert")).when(ocppServerRepository).insertMeterValues(anyList());
+        doAnswer(invocation -> calls.add("bill")).when(retrieveTransactionMeterValues).bill(anyList());
+
+        service.store(List.of(a, b));
+
+        Assertions.assertEquals(List.of("insert", "bill"), calls);
+        verify(ocppServerRepository, times(1)).insertMeterValues(List.of(a, b));
+        verify(retrieveTransactionMeterValues, times(1)).bill(List.of(a, b));
+    }
+
+    @Test
+    public void testStoredSamplesInvalidateTheirSeries() {
+        MeterValueSample a = sample("cb-1", 1);
+        MeterValueSample bad = sample("cb-2", 2);
+        MeterValueSample c = sample("cb-1", 3);
+        c.setTransactionId(null);
+
+        doAnswer(invocation -> {
+            List<MeterValueSample> samples = invocation.getArgument(0);
+            if (samples.size() > 1 || samples.get(0) == bad) {
+                throw new RuntimeException("insert failed");
+            }
+            return null;
+        }).when(ocppServerRepository).insertMeterValues(anyList());
+
+        service.store(List.of(a, bad, c));
+
+        // the failed sample was not stored and the one without a transaction has no series
+        verify(sessionGraphService, times(1)).invalidate(Set.of(1));
+    }
+
+    private static MeterValueSample sample(String chargeBoxId, int transactionId) {
+        MeterValueSample s = new MeterValueSample();
+        s.setChargeBoxId(chargeBoxId);
+        s.setConnectorId(1);
+        s.setTransactionId(transactionId);
+        s.setMeterValues(List.of());
+        s.setReceivedAtMillis(System.currentTimeMillis());
+        return s;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import de.rwth.idsg.steve.SteveConfiguration;
+import de.rwth.idsg.steve.service.dto.PushAlert;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class PushNotificationDispatcherTest {
+
+    private final PushNotificationDispatcher dispatcher = new PushNotificationDispatcher(
+            SteveConfiguration.Notification.builder()
+                                           .pushWindowSeconds(10)
+                                           .pushQueueCapacity(3)
+                                           .pushBatchSize(2)
+                                           .pushWorkers(1)
+                                           .pushMaxAttempts(1)
+                                           .build());
+
+    @Test
+    public void testOppositeAlertsCancelOut() {
+        dispatcher.offer(alert("cb/1/availability", true, "offline"), 0);
+        dispatcher.offer(alert("cb/1/availability", false, "online"), 1_000);
+
+        Assertions.assertTrue(dispatcher.drainDue(60_000).isEmpty());
+        Assertions.assertEquals(2, dispatcher.getStats().getCancelled());
+    }
+
+    @Test
+    public void testRepeatedAlertReplacesPendingOne() {
+        dispatcher.offer(alert("cb/1/error", true, "first"), 0);
+        dispatcher.offer(alert("cb/1/error", true, "second"), 1_000);
+
+        List<PushNotificationDispatcher.Batch> batches = dispatcher.drainDue(10_000);
+
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertEquals("second", batches.get(0).alerts.get(0).getMessage());
+    }
+
+    @Test
+    public void testAlertsAreHeldForTheWindowAndBatched() {
+        dispatcher.offer(alert("cb/1/error", true, "a"), 0);
+        dispatcher.offer(alert("cb/2/error", true, "b"), 0);
+        dispatcher.offer(alert(null, true, "c"), 5_000);
+
+        Assertions.assertTrue(dispatcher.drainDue(9_999).isEmpty());
+
+        List<PushNotificationDispatcher.Batch> batches = dispatcher.drainDue(10_000);
+        Assertions.assertEquals(1, batches.size());
+        Assertions.assertEquals(2, batches.get(0).alerts.size());
+
+        Assertions.assertEquals(1, dispatcher.drainDue(15_000).size());
+    }
+
+    @Test
+    public void testDropsWhenFull() {
+        for (int i = 0; i < 5; i++) {
+            dispatcher.offer(alert(null, true, "alert " + i), 0);
+        }
+
+        Assertions.assertEquals(3, dispatcher.getStats().getPending());
+        Assertions.assertEquals(2, dispatcher.getStats().getDropped());
+    }
+
+    private static PushAlert alert(String key, boolean raised, String message) {
+        return PushAlert.builder()
+                        .key(key)
+                        .raised(raised)
+                        .title("Charger Alert")
+                        .message(message)
+                        .build();
+    }
+}
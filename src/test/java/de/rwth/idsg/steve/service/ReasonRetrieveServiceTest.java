@@ -0,0 +1,57 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import de.rwth.idsg.steve.ocpp.ws.JsonObjectMapper;
+import ocpp.cs._2015._10.Reason;
+import ocpp.cs._2015._10.StopTransactionRequest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class ReasonRetrieveServiceTest {
+
+    @Test
+    public void testCustomReasonIsRewritten() throws Exception {
+        JsonNode frame = JsonObjectMapper.INSTANCE.getMapper().readTree(
+                "[2,\"1\",\"StopTransaction\",{\"transactionId\":4711,\"meterStop\":100,"
+                        + "\"timestamp\":\"2026-10-18T10:00:00Z\",\"reason\":\"GunUnplugged\"}]");
+
+        ReasonRetrieveService.rewrite(frame);
+
+        Assertions.assertEquals("Other", frame.get(3).get("reason").asText());
+        Assertions.assertEquals("GunUnplugged", ReasonRetrieveService.getCustomReason(4711));
+
+        StopTransactionRequest req = JsonObjectMapper.INSTANCE.getMapper().treeToValue(frame.get(3), StopTransactionRequest.class);
+        Assertions.assertEquals(Reason.OTHER, req.getReason());
+
+        ReasonRetrieveService.removeCustomReason(4711);
+    }
+
+    @Test
+    public void testOtherActionsAreUntouched() throws Exception {
+        String msg = "[2,\"2\",\"Authorize\",{\"idTag\":\"ABC\",\"reason\":\"GunUnplugged\",\"transactionId\":1}]";
+        JsonNode frame = JsonObjectMapper.INSTANCE.getMapper().readTree(msg);
+
+        ReasonRetrieveService.rewrite(frame);
+
+        Assertions.assertEquals(JsonObjectMapper.INSTANCE.getMapper().readTree(msg), frame);
+        Assertions.assertNull(ReasonRetrieveService.getCustomReason(1));
+    }
+}
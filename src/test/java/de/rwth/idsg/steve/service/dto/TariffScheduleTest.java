@@ -0,0 +1,88 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.service.dto;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class TariffScheduleTest {
+
+    @Test
+    public void testDayAndNight() {
+        TariffSchedule schedule = TariffSchedule.compile(List.of(
+                tariff("06:00:00", "22:00:00", 12.0),
+                tariff("22:00:00", "06:00:00", 8.0)
+        ));
+
+        Assertions.assertEquals(8.0, schedule.getUnitFare(0));
+        Assertions.assertEquals(8.0, schedule.getUnitFare(seconds(5, 59, 59)));
+        Assertions.assertEquals(12.0, schedule.getUnitFare(seconds(6, 0, 0)));
+        Assertions.assertEquals(12.0, schedule.getUnitFare(seconds(21, 59, 59)));
+        Assertions.assertEquals(8.0, schedule.getUnitFare(seconds(22, 0, 0)));
+        Assertions.assertEquals(8.0, schedule.getUnitFare(TariffSchedule.SECONDS_PER_DAY - 1));
+    }
+
+    @Test
+    public void testGap() {
+        TariffSchedule schedule = TariffSchedule.compile(List.of(
+                tariff("08:00:00", "10:00:00", 10.0)
+        ));
+
+        Assertions.assertTrue(Double.isNaN(schedule.getUnitFare(seconds(7, 59, 59))));
+        Assertions.assertEquals(10.0, schedule.getUnitFare(seconds(8, 0, 0)));
+        Assertions.assertTrue(Double.isNaN(schedule.getUnitFare(seconds(10, 0, 0))));
+    }
+
+    @Test
+    public void testOverlapFirstWins() {
+        TariffSchedule schedule = TariffSchedule.compile(List.of(
+                tariff("10:00:00", "12:00:00", 15.0),
+                tariff("00:00:00", "23:59:59", 9.0)
+        ));
+
+        Assertions.assertEquals(9.0, schedule.getUnitFare(seconds(9, 0, 0)));
+        Assertions.assertEquals(15.0, schedule.getUnitFare(seconds(11, 0, 0)));
+        Assertions.assertEquals(9.0, schedule.getUnitFare(seconds(12, 0, 0)));
+    }
+
+    @Test
+    public void testAdjacentSameFareIsMerged() {
+        TariffSchedule schedule = TariffSchedule.compile(List.of(
+                tariff("00:00:00", "12:00:00", 10.0),
+                tariff("12:00:00", "00:00:00", 10.0)
+        ));
+
+        Assertions.assertEquals(1, schedule.size());
+        Assertions.assertEquals(10.0, schedule.getUnitFare(seconds(18, 0, 0)));
+    }
+
+    private static Tariff tariff(String start, String end, double unitFare) {
+        Tariff tariff = new Tariff();
+        tariff.setStart_time(start);
+        tariff.setEnd_time(end);
+        tariff.setUnit_fare(unitFare);
+        return tariff;
+    }
+
+    private static int seconds(int hours, int minutes, int seconds) {
+        return hours * 3600 + minutes * 60 + seconds;
+    }
+}
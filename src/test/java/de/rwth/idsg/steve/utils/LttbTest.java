@@ -0,0 +1,72 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+public class LttbTest {
+
+    @Test
+    public void testKeepsAllIfBelowThreshold() {
+        long[] x = {1, 2, 3, 4};
+        double[] y = {5, 6, 7, 8};
+
+        Assertions.assertArrayEquals(new int[] {0, 1, 2, 3}, Lttb.select(x, y, 10));
+        Assertions.assertArrayEquals(new int[] {0, 1, 2, 3}, Lttb.select(x, y, 4));
+    }
+
+    @Test
+    public void testKeepsEndsAndSize() {
+        int n = 1_000;
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = 1_700_000_000_000L + i * 30_000L;
+            y[i] = Math.sin(i / 50.0);
+        }
+
+        int[] selected = Lttb.select(x, y, 100);
+
+        Assertions.assertEquals(100, selected.length);
+        Assertions.assertEquals(0, selected[0]);
+        Assertions.assertEquals(n - 1, selected[selected.length - 1]);
+        for (int i = 1; i < selected.length; i++) {
+            Assertions.assertTrue(selected[i] > selected[i - 1], "not ascending at " + i);
+        }
+    }
+
+    @Test
+    public void testKeepsSpike() {
+        int n = 500;
+        long[] x = new long[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = i;
+            y[i] = 10;
+        }
+        y[237] = 90;
+
+        int[] selected = Lttb.select(x, y, 20);
+
+        Assertions.assertTrue(Arrays.stream(selected).anyMatch(i -> i == 237), Arrays.toString(selected));
+    }
+}
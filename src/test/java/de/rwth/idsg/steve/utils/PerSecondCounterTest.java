@@ -0,0 +1,50 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+public class PerSecondCounterTest {
+
+    @Test
+    public void testHistoryLeavesOutCurrentSecond() {
+        PerSecondCounter counter = new PerSecondCounter(4);
+
+        counter.increment(100);
+        counter.increment(100);
+        counter.increment(102);
+        counter.increment(103);
+
+        Assertions.assertArrayEquals(new long[] {2, 0, 1}, counter.getHistory(103));
+    }
+
+    @Test
+    public void testStaleSlotsAreNotReported() {
+        PerSecondCounter counter = new PerSecondCounter(4);
+
+        counter.increment(101);
+        counter.increment(104); // reuses the slot of 100
+
+        Assertions.assertArrayEquals(new long[] {1, 0, 0}, counter.getHistory(104));
+
+        // the slot of 101 is the one of 109 as well, but it is more than a window old
+        Assertions.assertArrayEquals(new long[] {0, 0, 0}, counter.getHistory(110));
+    }
+}
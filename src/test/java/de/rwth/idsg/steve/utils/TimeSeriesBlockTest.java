@@ -0,0 +1,106 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class TimeSeriesBlockTest {
+
+    @Test
+    public void testEmpty() {
+        TimeSeriesBlock.Decoded decoded = TimeSeriesBlock.decode(new TimeSeriesBlock.Encoder(5).toByteArray());
+
+        Assertions.assertEquals(0, decoded.size());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(42);
+        int n = 1_000;
+        long[] timestamps = new long[n];
+        double[][] values = new double[n][5];
+
+        long t = 1_700_000_000_000L;
+        double energy = 12_345.0;
+        for (int i = 0; i < n; i++) {
+            // per-minute samples with jitter, and a few gaps
+            t += 60_000 + random.nextInt(2_000) - 1_000 + (i % 250 == 0 ? 3_600_000 : 0);
+            energy += random.nextDouble() * 800;
+            timestamps[i] = t;
+            values[i] = new double[] {
+                    400 + random.nextInt(5),
+                    random.nextDouble() * 125,
+                    i % 2 == 0 ? 50_000 : 49_500.5,
+                    energy,
+                    i < n / 2 ? 0 : Double.NaN
+            };
+        }
+
+        TimeSeriesBlock.Encoder encoder = new TimeSeriesBlock.Encoder(5);
+        for (int i = 0; i < n; i++) {
+            encoder.append(timestamps[i], values[i]);
+        }
+        Assertions.assertEquals(timestamps[0], encoder.getFirstTimestamp());
+        Assertions.assertEquals(timestamps[n - 1], encoder.getLastTimestamp());
+
+        TimeSeriesBlock.Decoded decoded = TimeSeriesBlock.decode(encoder.toByteArray());
+
+        Assertions.assertArrayEquals(timestamps, decoded.getTimestamps());
+        for (int i = 0; i < n; i++) {
+            Assertions.assertArrayEquals(values[i], decoded.getValues()[i]);
+        }
+    }
+
+    @Test
+    public void testAppendAfterSerializing() {
+        TimeSeriesBlock.Encoder encoder = new TimeSeriesBlock.Encoder(2);
+        encoder.append(1_000, 1.5, -2.0);
+        encoder.append(2_000, 1.5, -2.25);
+
+        Assertions.assertEquals(2, TimeSeriesBlock.decode(encoder.toByteArray()).size());
+
+        encoder.append(2_500, 1.75, Double.MAX_VALUE);
+        encoder.append(Long.MAX_VALUE, Double.MIN_VALUE, -0.0);
+
+        TimeSeriesBlock.Decoded decoded = TimeSeriesBlock.decode(encoder.toByteArray());
+        Assertions.assertArrayEquals(new long[] {1_000, 2_000, 2_500, Long.MAX_VALUE}, decoded.getTimestamps());
+        Assertions.assertArrayEquals(new double[] {1.75, Double.MAX_VALUE}, decoded.getValues()[2]);
+        Assertions.assertArrayEquals(new double[] {Double.MIN_VALUE, -0.0}, decoded.getValues()[3]);
+    }
+
+    @Test
+    public void testRegularSamplesAreCompact() {
+        TimeSeriesBlock.Encoder encoder = new TimeSeriesBlock.Encoder(5);
+        for (int i = 0; i < 60; i++) {
+            encoder.append(1_700_000_000_000L + i * 60_000L, 400, 120, 48_000, 10_000 + i * 800, 20 + i);
+        }
+
+        // 60 rows of 5 doubles and a timestamp take 2880 bytes
+        Assertions.assertTrue(encoder.toByteArray().length < 500);
+    }
+
+    @Test
+    public void testRejectsOtherData() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TimeSeriesBlock.decode(new byte[] {9, 9}));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new TimeSeriesBlock.Encoder(2).append(1, 1.0));
+    }
+}
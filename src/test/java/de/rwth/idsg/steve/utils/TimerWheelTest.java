@@ -0,0 +1,75 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class TimerWheelTest {
+
+    // Small wheel, so that the tests also cover timeouts that need more than one round
+    private final TimerWheel wheel = new TimerWheel("test-wheel", 10, TimeUnit.MILLISECONDS, 8, Runnable::run);
+
+    @AfterEach
+    public void tearDown() {
+        wheel.stop();
+    }
+
+    @Test
+    public void testExpiresNotBeforeDeadline() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        wheel.schedule(latch::countDown, 200, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(latch.await(2, TimeUnit.SECONDS));
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Assertions.assertTrue(elapsedMillis >= 190, "expired after " + elapsedMillis + " ms");
+        Assertions.assertEquals(0, wheel.getPending());
+    }
+
+    @Test
+    public void testCancelledDoesNotRun() throws InterruptedException {
+        AtomicBoolean ran = new AtomicBoolean();
+        TimerWheel.Timeout timeout = wheel.schedule(() -> ran.set(true), 50, TimeUnit.MILLISECONDS);
+
+        Assertions.assertEquals(1, wheel.getPending());
+        Assertions.assertTrue(timeout.cancel());
+        Assertions.assertEquals(0, wheel.getPending());
+
+        Thread.sleep(150);
+        Assertions.assertFalse(ran.get());
+        Assertions.assertFalse(timeout.isExpired());
+    }
+
+    @Test
+    public void testCancelAfterExpiry() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = wheel.schedule(latch::countDown, 0, TimeUnit.MILLISECONDS);
+
+        Assertions.assertTrue(latch.await(1, TimeUnit.SECONDS));
+        Assertions.assertTrue(timeout.isExpired());
+        Assertions.assertFalse(timeout.cancel());
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * SteVe - SteckdosenVerwaltung - https://github.com/steve-community/steve
+ * Copyright (C) 2013-2026 SteVe Community Team
+ * All Rights Reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ */
+package de.rwth.idsg.steve.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void testBurstThenRate() {
+        TokenBucket bucket = new TokenBucket(3, 2, 0);
+
+        Assertions.assertTrue(bucket.tryAcquire(0));
+        Assertions.assertTrue(bucket.tryAcquire(0));
+        Assertions.assertTrue(bucket.tryAcquire(0));
+        Assertions.assertFalse(bucket.tryAcquire(0));
+
+        long wait = bucket.nanosUntilAvailable(0);
+        Assertions.assertTrue(Math.abs(wait - SECOND / 2) < 10, "wait " + wait);
+
+        // two per second
+        long halfSecond = SECOND / 2 + 10;
+        Assertions.assertTrue(bucket.tryAcquire(halfSecond));
+        Assertions.assertFalse(bucket.tryAcquire(halfSecond));
+        Assertions.assertTrue(bucket.tryAcquire(SECOND + 20));
+    }
+
+    @Test
+    public void testRefillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(2, 10, 0);
+
+        long later = 60 * SECOND;
+        Assertions.assertTrue(bucket.tryAcquire(later));
+        Assertions.assertTrue(bucket.tryAcquire(later));
+        Assertions.assertFalse(bucket.tryAcquire(later));
+    }
+}
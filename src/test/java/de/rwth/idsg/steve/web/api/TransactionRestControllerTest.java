@@ -75,7 +75,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
         List<Transaction> results = Collections.emptyList();
 
         // when
-        when(transactionRepository.getTransactions(any())).thenReturn(results);
+        when(transactionRepository.getTransactionsReadOnly(any())).thenReturn(results);
 
         // then
         mockMvc.perform(get("/api/v1/transactions"))
@@ -90,7 +90,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
         List<Transaction> results = List.of(Transaction.builder().id(234).build());
 
         // when
-        when(transactionRepository.getTransactions(any())).thenReturn(results);
+        when(transactionRepository.getTransactionsReadOnly(any())).thenReturn(results);
 
         // then
         mockMvc.perform(get("/api/v1/transactions"))
@@ -104,7 +104,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
     @DisplayName("Downstream bean throws exception, expected 500")
     public void test3() throws Exception {
         // when
-        when(transactionRepository.getTransactions(any())).thenThrow(new RuntimeException("failed"));
+        when(transactionRepository.getTransactionsReadOnly(any())).thenThrow(new RuntimeException("failed"));
 
         // then
         mockMvc.perform(get("/api/v1/transactions"))
@@ -173,7 +173,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
             .build();
 
         // when
-        when(transactionRepository.getTransactions(any())).thenReturn(List.of(transaction));
+        when(transactionRepository.getTransactionsReadOnly(any())).thenReturn(List.of(transaction));
 
         // then
         mockMvc.perform(get("/api/v1/transactions")
@@ -216,7 +216,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
         ArgumentCaptor<TransactionQueryForm.ForApi> formToCapture = ArgumentCaptor.forClass(TransactionQueryForm.ForApi.class);
 
         // when
-        when(transactionRepository.getTransactions(any())).thenReturn(Collections.emptyList());
+        when(transactionRepository.getTransactionsReadOnly(any())).thenReturn(Collections.emptyList());
 
         // then
         mockMvc.perform(get("/api/v1/transactions")
@@ -237,7 +237,7 @@ public class TransactionRestControllerTest extends AbstractControllerTest {
         ArgumentCaptor<TransactionQueryForm.ForApi> formToCapture = ArgumentCaptor.forClass(TransactionQueryForm.ForApi.class);
 
         // when
-        when(transactionRepository.getTransactions(any())).thenReturn(Collections.emptyList());
+        when(transactionRepository.getTransactionsReadOnly(any())).thenReturn(Collections.emptyList());
 
         // then
         mockMvc.perform(get("/api/v1/transactions")